@@ -55,17 +55,44 @@ public class GestureEvent {
      */
     public static final int GESTURE_EVENT_TYPE_DOUBLETAP = 5;
 
+    /**
+     * Define the constant 6, indicating that the fingers are lifted, which ends a scroll or a two-finger gesture.
+     */
+    public static final int GESTURE_EVENT_TYPE_SCROLLEND = 6;
+
+    /**
+     * Define the constant 7, indicating that the gesture type is a two-finger pinch SCALE.
+     */
+    public static final int GESTURE_EVENT_TYPE_SCALE = 7;
+
+    /**
+     * Define the constant 8, indicating that the gesture type is a two-finger ROTATE.
+     */
+    public static final int GESTURE_EVENT_TYPE_ROTATE = 8;
+
     private int type;
 
-    private MotionEvent eventFirst;
+    private float firstX;
+
+    private float firstY;
 
-    private MotionEvent eventSecond;
+    private float secondX;
+
+    private float secondY;
 
     private float distanceX;
 
     private float distanceY;
 
-    private GestureEvent() {
+    private float scaleFactor = 1.0f;
+
+    private float rotation;
+
+    private long eventTime;
+
+    private long downTime;
+
+    GestureEvent() {
     }
 
     /**
@@ -76,8 +103,7 @@ public class GestureEvent {
      */
     public static GestureEvent createDownEvent(MotionEvent motionEvent) {
         GestureEvent ret = new GestureEvent();
-        ret.type = GESTURE_EVENT_TYPE_DOWN;
-        ret.eventFirst = motionEvent;
+        ret.setTap(GESTURE_EVENT_TYPE_DOWN, motionEvent);
         return ret;
     }
 
@@ -89,8 +115,7 @@ public class GestureEvent {
      */
     public static GestureEvent createSingleTapUpEvent(MotionEvent motionEvent) {
         GestureEvent ret = new GestureEvent();
-        ret.type = GESTURE_EVENT_TYPE_SINGLETAPUP;
-        ret.eventFirst = motionEvent;
+        ret.setTap(GESTURE_EVENT_TYPE_SINGLETAPUP, motionEvent);
         return ret;
     }
 
@@ -102,8 +127,7 @@ public class GestureEvent {
      */
     static GestureEvent createSingleTapConfirmEvent(MotionEvent motionEvent) {
         GestureEvent ret = new GestureEvent();
-        ret.type = GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED;
-        ret.eventFirst = motionEvent;
+        ret.setTap(GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED, motionEvent);
         return ret;
     }
 
@@ -115,8 +139,7 @@ public class GestureEvent {
      */
     static GestureEvent createDoubleTapEvent(MotionEvent motionEvent) {
         GestureEvent ret = new GestureEvent();
-        ret.type = GESTURE_EVENT_TYPE_DOUBLETAP;
-        ret.eventFirst = motionEvent;
+        ret.setTap(GESTURE_EVENT_TYPE_DOUBLETAP, motionEvent);
         return ret;
     }
 
@@ -131,14 +154,64 @@ public class GestureEvent {
      */
     public static GestureEvent createScrollEvent(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
         GestureEvent ret = new GestureEvent();
-        ret.type = GESTURE_EVENT_TYPE_SCROLL;
-        ret.eventFirst = e1;
-        ret.eventSecond = e2;
-        ret.distanceX = distanceX;
-        ret.distanceY = distanceY;
+        ret.setScroll(e1.getX(), e1.getY(), e2.getX(), e2.getY(), distanceX, distanceY, e1.getEventTime(),
+                e2.getEventTime());
         return ret;
     }
 
+    // The motion events are recycled by the framework after dispatch, so only their values are kept.
+    private void setTap(int type, MotionEvent motionEvent) {
+        set(type, motionEvent.getX(), motionEvent.getY(), 0.0f, 0.0f, 0.0f, 0.0f, motionEvent.getEventTime());
+    }
+
+    void set(int type, float firstX, float firstY, float secondX, float secondY, float distanceX, float distanceY,
+            long eventTime) {
+        this.type = type;
+        this.firstX = firstX;
+        this.firstY = firstY;
+        this.secondX = secondX;
+        this.secondY = secondY;
+        this.distanceX = distanceX;
+        this.distanceY = distanceY;
+        this.scaleFactor = 1.0f;
+        this.rotation = 0.0f;
+        this.eventTime = eventTime;
+        this.downTime = eventTime;
+    }
+
+    void setScroll(float firstX, float firstY, float secondX, float secondY, float distanceX, float distanceY,
+            long downTime, long eventTime) {
+        set(GESTURE_EVENT_TYPE_SCROLL, firstX, firstY, secondX, secondY, distanceX, distanceY, eventTime);
+        this.downTime = downTime;
+    }
+
+    void setTwoFinger(int type, float focusX, float focusY, float scaleFactor, float rotation, long eventTime) {
+        set(type, focusX, focusY, 0.0f, 0.0f, 0.0f, 0.0f, eventTime);
+        this.scaleFactor = scaleFactor;
+        this.rotation = rotation;
+    }
+
+    void set(GestureEvent other) {
+        set(other.type, other.firstX, other.firstY, other.secondX, other.secondY, other.distanceX, other.distanceY,
+                other.eventTime);
+        scaleFactor = other.scaleFactor;
+        rotation = other.rotation;
+        downTime = other.downTime;
+    }
+
+    /**
+     * Merge a later scroll of the same gesture into this one. The start point is kept, the end
+     * point becomes the end point of the later scroll, and the distances add up.
+     *
+     * @param later A later SCROLL event.
+     */
+    void mergeScroll(GestureEvent later) {
+        secondX = later.secondX;
+        secondY = later.secondY;
+        distanceX += later.distanceX;
+        distanceY += later.distanceY;
+    }
+
     public float getDistanceX() {
         return distanceX;
     }
@@ -151,11 +224,68 @@ public class GestureEvent {
         return type;
     }
 
-    public MotionEvent getEventFirst() {
-        return eventFirst;
+    /**
+     * Obtain the change of the distance between the two fingers of a SCALE event.
+     *
+     * @return Ratio of the new distance to the previous one.
+     */
+    public float getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * Obtain the change of the angle of the line between the two fingers of a ROTATE event.
+     *
+     * @return Clockwise angle on the screen, in degrees.
+     */
+    public float getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Obtain the X coordinate of the tap, of the down event that started a scroll, or of the
+     * point between the two fingers.
+     *
+     * @return X coordinate in pixels.
+     */
+    public float getFirstX() {
+        return firstX;
+    }
+
+    public float getFirstY() {
+        return firstY;
     }
 
-    public MotionEvent getEventSecond() {
-        return eventSecond;
+    /**
+     * Obtain the X coordinate of the latest motion event of a scroll.
+     *
+     * @return X coordinate in pixels.
+     */
+    public float getSecondX() {
+        return secondX;
+    }
+
+    public float getSecondY() {
+        return secondY;
+    }
+
+    /**
+     * Obtain the time of the earliest motion event that this gesture reports, in the
+     * {@link android.os.SystemClock#uptimeMillis()} time base.
+     *
+     * @return Event time in milliseconds.
+     */
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    /**
+     * Obtain the time of the down event that started the gesture. All scrolls of one drag share
+     * it, so it identifies the drag even when another drag starts at the same point.
+     *
+     * @return Down time in milliseconds, or the event time for single motion event gestures.
+     */
+    public long getDownTime() {
+        return downTime;
     }
-}
\ No newline at end of file
+}
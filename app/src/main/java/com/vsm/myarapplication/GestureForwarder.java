@@ -0,0 +1,113 @@
+package com.vsm.myarapplication;
+
+import android.util.Log;
+import android.view.MotionEvent;
+
+/**
+ * Offers the gestures of a surface view to a {@link GestureRing}, on the UI thread. The
+ * activities forward the taps and scrolls of their gesture detector, which differ in the taps
+ * they report, and every touch event of the view. The forwarder adds what the gesture detector
+ * does not report: the scale and rotation of two fingers, and the end of a gesture. The end is
+ * offered only when a scroll, scale or rotation was offered since the first finger went down, so
+ * a tap does not end a gesture that never started.
+ */
+public class GestureForwarder {
+    private static final String TAG = GestureForwarder.class.getSimpleName();
+
+    private final GestureRing mGestureRing;
+
+    private final TwoFingerTracker mTwoFingerTracker = new TwoFingerTracker();
+
+    private boolean mIsGestureEndPending = false;
+
+    /**
+     * Create a forwarder.
+     *
+     * @param gestureRing Ring that hands the gestures to the render thread.
+     */
+    public GestureForwarder(GestureRing gestureRing) {
+        mGestureRing = gestureRing;
+    }
+
+    /**
+     * Offer a tap reported by the gesture detector.
+     *
+     * @param type Gesture type, one of the GESTURE_EVENT_TYPE constants of {@link GestureEvent}.
+     * @param motionEvent The motion event.
+     */
+    public void offerTap(int type, MotionEvent motionEvent) {
+        onOffered(mGestureRing.offerTap(type, motionEvent));
+    }
+
+    /**
+     * Offer a scroll reported by the gesture detector. Scrolls with more than one finger are
+     * ignored, because two fingers scale and rotate the selected object instead of dragging it.
+     *
+     * @param e1 The down motion event that started the scroll.
+     * @param e2 The latest motion event of the scroll.
+     * @param distanceX The distance along the X axis since the previous scroll.
+     * @param distanceY The distance along the Y axis since the previous scroll.
+     */
+    public void offerScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+        if (e2.getPointerCount() > 1) {
+            return;
+        }
+        offerScroll(e1.getX(), e1.getY(), e2.getX(), e2.getY(), distanceX, distanceY, e1.getEventTime(),
+                e2.getEventTime());
+    }
+
+    /**
+     * Handle a touch event of the view, after the gesture detector.
+     *
+     * @param event The motion event.
+     */
+    public void onTouchEvent(MotionEvent event) {
+        int pointerCount = event.getPointerCount();
+        if (pointerCount > 1) {
+            onTouchEvent(event.getActionMasked(), pointerCount, event.getX(0), event.getY(0), event.getX(1),
+                    event.getY(1), event.getEventTime());
+        } else {
+            onTouchEvent(event.getActionMasked(), pointerCount, event.getX(), event.getY(), 0.0f, 0.0f,
+                    event.getEventTime());
+        }
+    }
+
+    void offerScroll(float firstX, float firstY, float secondX, float secondY, float distanceX,
+            float distanceY, long downTime, long eventTime) {
+        mIsGestureEndPending = true;
+        onOffered(mGestureRing.offerScroll(firstX, firstY, secondX, secondY, distanceX, distanceY, downTime,
+                eventTime));
+    }
+
+    // The coordinates of the second finger are only used with more than one pointer.
+    void onTouchEvent(int action, int pointerCount, float x0, float y0, float x1, float y1, long eventTime) {
+        if (action == MotionEvent.ACTION_MOVE) {
+            if (pointerCount > 1 && mTwoFingerTracker.update(x0, y0, x1, y1)) {
+                float focusX = mTwoFingerTracker.getFocusX();
+                float focusY = mTwoFingerTracker.getFocusY();
+                mIsGestureEndPending = true;
+                onOffered(mGestureRing.offerTwoFinger(GestureEvent.GESTURE_EVENT_TYPE_SCALE, focusX, focusY,
+                        mTwoFingerTracker.getScaleFactor(), 0.0f, eventTime));
+                onOffered(mGestureRing.offerTwoFinger(GestureEvent.GESTURE_EVENT_TYPE_ROTATE, focusX, focusY,
+                        1.0f, mTwoFingerTracker.getRotation(), eventTime));
+            }
+            return;
+        }
+
+        // A finger was added or lifted, so the pointer indexes changed.
+        mTwoFingerTracker.reset();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mIsGestureEndPending = false;
+        } else if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) && mIsGestureEndPending) {
+            mIsGestureEndPending = false;
+            onOffered(mGestureRing.offer(GestureEvent.GESTURE_EVENT_TYPE_SCROLLEND, x0, y0, 0.0f, 0.0f, 0.0f, 0.0f,
+                    eventTime));
+        }
+    }
+
+    private void onOffered(boolean offerResult) {
+        if (!offerResult) {
+            Log.i(TAG, "Gesture ring is full, the gesture is dropped.");
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.vsm.myarapplication;
+
+import android.view.MotionEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands gesture events from the UI thread to the render thread. The ring holds preallocated
+ * records, so neither side allocates or locks. Only one thread may offer events and only one
+ * thread may poll them.
+ * <p>
+ * The render thread drains all pending events once per frame. Consecutive scrolls of the same
+ * gesture are merged into one event with the net distance, so a burst of scrolls moves an
+ * object once instead of trailing behind the finger over several frames. When the ring is
+ * full, new events are dropped and counted. The time from a motion event to the end of the
+ * frame that handled it is recorded as an estimate of the touch-to-photon latency.
+ */
+public class GestureRing {
+    private final GestureEvent[] mRecords;
+
+    private final int mMask;
+
+    // Index of the next record to poll, written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+
+    // Index of the next record to offer, written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+
+    // Written by the producer only.
+    private volatile long mDroppedCount;
+
+    // The fields below are only used by the consumer.
+    private final GestureEvent mCurrent = new GestureEvent();
+
+    private long mCoalescedCount;
+
+    private long mOldestPendingTime = Long.MAX_VALUE;
+
+    private long mLatencyCount;
+
+    private long mLatencySum;
+
+    private long mMaxLatency;
+
+    /**
+     * Create a gesture ring.
+     *
+     * @param capacity Minimum number of pending events; rounded up to a power of two.
+     */
+    public GestureRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mRecords = new GestureEvent[size];
+        for (int i = 0; i < size; i++) {
+            mRecords[i] = new GestureEvent();
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Offer a gesture that consists of a single motion event, such as a tap. Producer only.
+     *
+     * @param type Gesture type, one of the GESTURE_EVENT_TYPE constants of {@link GestureEvent}.
+     * @param motionEvent The motion event.
+     * @return false if the ring is full and the event is dropped.
+     */
+    public boolean offerTap(int type, MotionEvent motionEvent) {
+        return offer(type, motionEvent.getX(), motionEvent.getY(), 0.0f, 0.0f, 0.0f, 0.0f,
+                motionEvent.getEventTime());
+    }
+
+    /**
+     * Offer a two-finger gesture. Producer only.
+     *
+     * @param type {@link GestureEvent#GESTURE_EVENT_TYPE_SCALE} or
+     *     {@link GestureEvent#GESTURE_EVENT_TYPE_ROTATE}.
+     * @param focusX X coordinate of the point between the fingers.
+     * @param focusY Y coordinate of the point between the fingers.
+     * @param scaleFactor Ratio of the new distance between the fingers to the previous one.
+     * @param rotation Clockwise change of the angle between the fingers, in degrees.
+     * @param eventTime Time of the motion event, in milliseconds since boot.
+     * @return false if the ring is full and the event is dropped.
+     */
+    public boolean offerTwoFinger(int type, float focusX, float focusY, float scaleFactor, float rotation,
+            long eventTime) {
+        GestureEvent record = claim();
+        if (record == null) {
+            return false;
+        }
+        record.setTwoFinger(type, focusX, focusY, scaleFactor, rotation, eventTime);
+        publish();
+        return true;
+    }
+
+    /**
+     * Offer a gesture by its values. Producer only. Scrolls are offered with
+     * {@link #offerScroll}, so that they can be merged.
+     *
+     * @param type Gesture type, one of the GESTURE_EVENT_TYPE constants of {@link GestureEvent}.
+     * @param firstX X coordinate of the tap, or of the down event of a scroll.
+     * @param firstY Y coordinate of the tap, or of the down event of a scroll.
+     * @param secondX X coordinate of the latest motion event of a scroll.
+     * @param secondY Y coordinate of the latest motion event of a scroll.
+     * @param distanceX Scrolled distance along the X axis.
+     * @param distanceY Scrolled distance along the Y axis.
+     * @param eventTime Time of the motion event, in milliseconds since boot.
+     * @return false if the ring is full and the event is dropped.
+     */
+    public boolean offer(int type, float firstX, float firstY, float secondX, float secondY,
+            float distanceX, float distanceY, long eventTime) {
+        GestureEvent record = claim();
+        if (record == null) {
+            return false;
+        }
+        record.set(type, firstX, firstY, secondX, secondY, distanceX, distanceY, eventTime);
+        publish();
+        return true;
+    }
+
+    /**
+     * Offer a scroll of a one-finger drag. Producer only.
+     *
+     * @param firstX X coordinate of the down event of the drag.
+     * @param firstY Y coordinate of the down event of the drag.
+     * @param secondX X coordinate of the latest motion event of the drag.
+     * @param secondY Y coordinate of the latest motion event of the drag.
+     * @param distanceX Scrolled distance along the X axis.
+     * @param distanceY Scrolled distance along the Y axis.
+     * @param downTime Time of the down event of the drag, which identifies the drag.
+     * @param eventTime Time of the latest motion event, in milliseconds since boot.
+     * @return false if the ring is full and the event is dropped.
+     */
+    public boolean offerScroll(float firstX, float firstY, float secondX, float secondY, float distanceX,
+            float distanceY, long downTime, long eventTime) {
+        GestureEvent record = claim();
+        if (record == null) {
+            return false;
+        }
+        record.setScroll(firstX, firstY, secondX, secondY, distanceX, distanceY, downTime, eventTime);
+        publish();
+        return true;
+    }
+
+    /**
+     * Take the next pending gesture, merged with the scrolls of the same gesture that follow
+     * it. Consumer only.
+     *
+     * @return The gesture, valid until the next call, or null if none is pending.
+     */
+    public GestureEvent poll() {
+        long head = mHead.get();
+        long tail = mTail.get();
+        if (head == tail) {
+            return null;
+        }
+        GestureEvent current = mCurrent;
+        current.set(mRecords[(int) head & mMask]);
+        head++;
+        if (current.getType() == GestureEvent.GESTURE_EVENT_TYPE_SCROLL) {
+            while (head != tail && isSameScroll(current, mRecords[(int) head & mMask])) {
+                current.mergeScroll(mRecords[(int) head & mMask]);
+                mCoalescedCount++;
+                head++;
+            }
+        }
+
+        // Release the records to the producer only after they are copied.
+        mHead.lazySet(head);
+        mOldestPendingTime = Math.min(mOldestPendingTime, current.getEventTime());
+        return current;
+    }
+
+    /**
+     * Record the latency of the gestures polled since the previous frame. Consumer only; call
+     * it once per frame after drawing.
+     *
+     * @param now Current time, in milliseconds since boot.
+     */
+    public void onFrameSubmitted(long now) {
+        if (mOldestPendingTime == Long.MAX_VALUE) {
+            return;
+        }
+        long latency = Math.max(0L, now - mOldestPendingTime);
+        mOldestPendingTime = Long.MAX_VALUE;
+        mLatencyCount++;
+        mLatencySum += latency;
+        mMaxLatency = Math.max(mMaxLatency, latency);
+    }
+
+    /**
+     * Obtain the number of gestures that were dropped because the ring was full.
+     *
+     * @return Number of dropped gestures.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Obtain the number of scrolls that were merged into an earlier one. Consumer only.
+     *
+     * @return Number of merged scrolls.
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Obtain the average latency of the frames that handled gestures. Consumer only.
+     *
+     * @return Average latency in milliseconds, or 0 if no gesture was handled.
+     */
+    public float getAverageLatency() {
+        return mLatencyCount == 0 ? 0.0f : (float) mLatencySum / mLatencyCount;
+    }
+
+    /**
+     * Obtain the largest latency of the frames that handled gestures. Consumer only.
+     *
+     * @return Largest latency in milliseconds.
+     */
+    public long getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    // Obtain the record at the tail, or null if the ring is full.
+    private GestureEvent claim() {
+        long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount++;
+            return null;
+        }
+        return mRecords[(int) tail & mMask];
+    }
+
+    // The ordered write publishes the record before the consumer can see the new tail.
+    private void publish() {
+        mTail.lazySet(mTail.get() + 1);
+    }
+
+    // Scrolls that start from the same down event belong to the same gesture. Two drags may start
+    // at the same pixel, but not at the same time.
+    private static boolean isSameScroll(GestureEvent scroll, GestureEvent next) {
+        return next.getType() == GestureEvent.GESTURE_EVENT_TYPE_SCROLL && next.getDownTime() == scroll.getDownTime();
+    }
+}
@@ -24,21 +24,20 @@ import com.huawei.hiar.exceptions.ARUnavailableServiceNotInstalledException;
 import com.vsm.myarapplication.common.ConnectAppMarketActivity;
 import com.vsm.myarapplication.common.DisplayRotationManager;
 import com.vsm.myarapplication.common.PermissionManager;
+import com.vsm.myarapplication.common.ProgramRegistry;
 import com.vsm.myarapplication.worldtracking.rendering.WorldRenderManager;
 
-import java.util.concurrent.ArrayBlockingQueue;
-
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = MainActivity.class.getSimpleName();
-    private static final int MOTIONEVENT_QUEUE_CAPACITY = 2;
-    private static final int OPENGLES_VERSION = 2;
+    private static final int MOTIONEVENT_QUEUE_CAPACITY = 64;
     private ARSession mArSession;
     private GLSurfaceView mSurfaceView;
     private WorldRenderManager mWorldRenderManager;
     private GestureDetector mGestureDetector;
     private DisplayRotationManager mDisplayRotationManager;
-    private ArrayBlockingQueue<GestureEvent> mQueuedSingleTaps = new ArrayBlockingQueue<>(MOTIONEVENT_QUEUE_CAPACITY);
+    private GestureRing mGestureRing = new GestureRing(MOTIONEVENT_QUEUE_CAPACITY);
+    private GestureForwarder mGestureForwarder = new GestureForwarder(mGestureRing);
     private String message = null;
     private boolean isRemindInstall = false;
 
@@ -52,14 +51,14 @@ public class MainActivity extends AppCompatActivity {
         mDisplayRotationManager = new DisplayRotationManager(this);
         initGestureDetector();
         mSurfaceView.setPreserveEGLContextOnPause(true);
-        mSurfaceView.setEGLContextClientVersion(OPENGLES_VERSION);
+        mSurfaceView.setEGLContextClientVersion(ProgramRegistry.getEglContextClientVersion(this));
         // Set the EGL configuration chooser, including for the number of
         // bits of the color buffer and the number of depth bits.
         mSurfaceView.setEGLConfigChooser(8, 8, 8, 8, 16, 0);
 
         mWorldRenderManager = new WorldRenderManager(this, this);
         mWorldRenderManager.setDisplayRotationManage(mDisplayRotationManager);
-        mWorldRenderManager.setQueuedSingleTaps(mQueuedSingleTaps);
+        mWorldRenderManager.setGestureRing(mGestureRing);
 
         mSurfaceView.setRenderer(mWorldRenderManager);
         mSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
@@ -69,13 +68,13 @@ public class MainActivity extends AppCompatActivity {
         mGestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
             @Override
             public boolean onDoubleTap(MotionEvent motionEvent) {
-                onGestureEvent(GestureEvent.createDoubleTapEvent(motionEvent));
+                mGestureForwarder.offerTap(GestureEvent.GESTURE_EVENT_TYPE_DOUBLETAP, motionEvent);
                 return true;
             }
 
             @Override
             public boolean onSingleTapConfirmed(MotionEvent motionEvent) {
-                onGestureEvent(GestureEvent.createSingleTapConfirmEvent(motionEvent));
+                mGestureForwarder.offerTap(GestureEvent.GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED, motionEvent);
                 return true;
             }
 
@@ -86,7 +85,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-                onGestureEvent(GestureEvent.createScrollEvent(e1, e2, distanceX, distanceY));
+                mGestureForwarder.offerScroll(e1, e2, distanceX, distanceY);
                 return true;
             }
         });
@@ -94,20 +93,13 @@ public class MainActivity extends AppCompatActivity {
         mSurfaceView.setOnTouchListener(new View.OnTouchListener() {
             @Override
             public boolean onTouch(View v, MotionEvent event) {
-                return mGestureDetector.onTouchEvent(event);
+                boolean isHandled = mGestureDetector.onTouchEvent(event);
+                mGestureForwarder.onTouchEvent(event);
+                return isHandled;
             }
         });
     }
 
-    private void onGestureEvent(GestureEvent e) {
-        boolean offerResult = mQueuedSingleTaps.offer(e);
-        if (offerResult) {
-            Log.i(TAG, "Successfully joined the queue.");
-        } else {
-            Log.i(TAG, "Failed to join queue.");
-        }
-    }
-
     @Override
     protected void onResume() {
         Log.i(TAG, "onResume");
@@ -163,6 +155,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         Log.i(TAG, "onDestroy start.");
+        mWorldRenderManager.release();
         if (mArSession != null) {
             mArSession.stop();
             mArSession = null;
@@ -0,0 +1,105 @@
+package com.vsm.myarapplication;
+
+/**
+ * Turns the positions of two fingers into incremental pinch and twist deltas. The
+ * {@link GestureForwarder} feeds it the first two pointers of every move event; it keeps only
+ * the previous distance and angle, so it does not allocate. This class does not depend on
+ * Android.
+ */
+public class TwoFingerTracker {
+    // Below this distance in pixels, the angle and the ratio of the distances are unstable.
+    private static final float MIN_SPAN = 16.0f;
+
+    private boolean mHasPrevious = false;
+
+    private float mSpan;
+
+    private float mAngle;
+
+    private float mFocusX;
+
+    private float mFocusY;
+
+    private float mScaleFactor = 1.0f;
+
+    private float mRotation;
+
+    /**
+     * Update the tracker with the current positions of the two fingers.
+     *
+     * @param x0 X coordinate of the first finger in pixels.
+     * @param y0 Y coordinate of the first finger in pixels.
+     * @param x1 X coordinate of the second finger in pixels.
+     * @param y1 Y coordinate of the second finger in pixels.
+     * @return true if {@link #getScaleFactor()} and {@link #getRotation()} hold new deltas, false
+     *     if these positions only start the gesture.
+     */
+    public boolean update(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float span = (float) Math.sqrt(dx * dx + dy * dy);
+        float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
+        mFocusX = (x0 + x1) / 2.0f;
+        mFocusY = (y0 + y1) / 2.0f;
+        if (span < MIN_SPAN) {
+            mHasPrevious = false;
+            return false;
+        }
+        boolean hasDelta = mHasPrevious;
+        if (hasDelta) {
+            mScaleFactor = span / mSpan;
+            mRotation = wrapAngle(angle - mAngle);
+        }
+        mSpan = span;
+        mAngle = angle;
+        mHasPrevious = true;
+        return hasDelta;
+    }
+
+    /**
+     * Forget the previous positions. Call it when a finger is added or lifted, because the
+     * pointer indexes change.
+     */
+    public void reset() {
+        mHasPrevious = false;
+        mScaleFactor = 1.0f;
+        mRotation = 0.0f;
+    }
+
+    /**
+     * Obtain the change of the distance between the fingers since the previous update.
+     *
+     * @return Ratio of the new distance to the previous one.
+     */
+    public float getScaleFactor() {
+        return mScaleFactor;
+    }
+
+    /**
+     * Obtain the change of the angle of the line between the fingers since the previous update.
+     *
+     * @return Clockwise angle on the screen in degrees, between -180 and 180.
+     */
+    public float getRotation() {
+        return mRotation;
+    }
+
+    public float getFocusX() {
+        return mFocusX;
+    }
+
+    public float getFocusY() {
+        return mFocusY;
+    }
+
+    // The screen Y axis points down, so a positive angle from atan2 is clockwise.
+    private static float wrapAngle(float angle) {
+        if (angle > 180.0f) {
+            return angle - 360.0f;
+        }
+        if (angle < -180.0f) {
+            return angle + 360.0f;
+        }
+        return angle;
+    }
+}
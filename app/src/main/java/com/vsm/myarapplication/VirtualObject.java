@@ -43,6 +43,9 @@ public class VirtualObject {
 
     private float[] mModelMatrix = new float[MATRIX_SIZE];
 
+    // Scratch matrix of the anchor pose, reused so that the frame loop does not allocate.
+    private float[] mAnchorMatrix = new float[MATRIX_SIZE];
+
     private boolean mIsSelectedFlag = false;
 
     /**
@@ -69,14 +72,24 @@ public class VirtualObject {
     }
 
     private void init() {
+        getLocalModelMatrix(mModelMatrix);
+    }
+
+    /**
+     * Obtain the transformation of the model relative to its anchor, which is the same for
+     * all virtual objects.
+     *
+     * @param rets Array with a length of at least 16 that receives the matrix.
+     */
+    public static void getLocalModelMatrix(float[] rets) {
         // Set a scaling matrix, in which the elements of the principal diagonal is the scaling coefficient.
-        Matrix.setIdentityM(mModelMatrix, 0);
-        mModelMatrix[0] = SCALE_FACTOR;
-        mModelMatrix[5] = SCALE_FACTOR;
-        mModelMatrix[10] = SCALE_FACTOR;
+        Matrix.setIdentityM(rets, 0);
+        rets[0] = SCALE_FACTOR;
+        rets[5] = SCALE_FACTOR;
+        rets[10] = SCALE_FACTOR;
 
         // Rotate the camera along the Y axis by a certain angle.
-        Matrix.rotateM(mModelMatrix, 0, ROTATION_ANGLE, 0f, 1f, 0f);
+        Matrix.rotateM(rets, 0, ROTATION_ANGLE, 0f, 1f, 0f);
     }
 
     /**
@@ -106,16 +119,24 @@ public class VirtualObject {
      * @return Color of the virtual object, returned in an array with a length of 4.
      */
     public float[] getColor() {
-        float[] rets = new float[4];
+        float[] rets = new float[COLOR_SIZE];
+        getColor(rets);
+        return rets;
+    }
+
+    /**
+     * Obtain the color of the virtual object without allocating memory.
+     *
+     * @param rets Array with a length of at least 4 that receives the color.
+     */
+    public void getColor(float[] rets) {
         if (mIsSelectedFlag) {
             rets[0] = 255.0f - mObjectColors[0];
             rets[1] = 255.0f - mObjectColors[1];
             rets[2] = 255.0f - mObjectColors[2];
             rets[3] = mObjectColors[3];
-            return rets;
         } else {
-            rets = Arrays.copyOf(mObjectColors, mObjectColors.length);
-            return rets;
+            System.arraycopy(mObjectColors, 0, rets, 0, COLOR_SIZE);
         }
     }
 
@@ -136,15 +157,24 @@ public class VirtualObject {
      * @return Anchor matrix data of the current virtual object.
      */
     public float[] getModelAnchorMatrix() {
-        float[] modelMatrix = new float[MATRIX_SIZE];
+        float[] rets = new float[MATRIX_SIZE];
+        getModelAnchorMatrix(rets);
+        return rets;
+    }
+
+    /**
+     * Obtain the anchor matrix data of the current virtual object without allocating memory.
+     * This method is not thread-safe and should be called only from the GL thread.
+     *
+     * @param rets Array with a length of at least 16 that receives the matrix.
+     */
+    public void getModelAnchorMatrix(float[] rets) {
         if (mArAnchor != null) {
-            mArAnchor.getPose().toMatrix(modelMatrix, 0);
+            mArAnchor.getPose().toMatrix(mAnchorMatrix, 0);
         } else {
-            Matrix.setIdentityM(modelMatrix, 0);
+            Matrix.setIdentityM(mAnchorMatrix, 0);
         }
-        float[] rets = new float[MATRIX_SIZE];
-        Matrix.multiplyMM(rets, 0, modelMatrix, 0, mModelMatrix, 0);
-        return rets;
+        Matrix.multiplyMM(rets, 0, mAnchorMatrix, 0, mModelMatrix, 0);
     }
 
     /**
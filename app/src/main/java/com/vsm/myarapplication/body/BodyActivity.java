@@ -23,6 +23,7 @@ import com.vsm.myarapplication.R;
 import com.vsm.myarapplication.body.rendering.BodyRenderManager;
 import com.vsm.myarapplication.common.ConnectAppMarketActivity;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.ProgramRegistry;
 
 public class BodyActivity extends AppCompatActivity {
     private static final String TAG = BodyActivity.class.getSimpleName();
@@ -55,7 +56,7 @@ public class BodyActivity extends AppCompatActivity {
         mSurfaceView.setPreserveEGLContextOnPause(true);
 
         // Set the OpenGLES version.
-        mSurfaceView.setEGLContextClientVersion(2);
+        mSurfaceView.setEGLContextClientVersion(ProgramRegistry.getEglContextClientVersion(this));
 
         // Set the EGL configuration chooser, including for the
         // number of bits of the color buffer and the number of depth bits.
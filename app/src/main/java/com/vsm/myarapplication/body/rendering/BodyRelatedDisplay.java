@@ -32,6 +32,11 @@ interface BodyRelatedDisplay {
      */
     void init();
 
+    /**
+     * Release the shader program, before init when the surface is created again.
+     */
+    void releaseProgram();
+
     /**
      * Render objects, call per frame.
      *
@@ -30,9 +30,16 @@ import com.huawei.hiar.ARSession;
 import com.huawei.hiar.ARTrackable;
 import com.vsm.myarapplication.common.ArDemoRuntimeException;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.FrameProfiler;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.ProgramRegistry;
+import com.vsm.myarapplication.common.ShaderUtil;
 import com.vsm.myarapplication.common.TextDisplay;
 import com.vsm.myarapplication.common.TextureDisplay;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -54,24 +61,36 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
 
     private static final float PROJECTION_MATRIX_FAR = 100.0f;
 
-    private static final float UPDATE_INTERVAL = 0.5f;
+    // Stages of a frame, in the order of the profiler stage names.
+    private static final int STAGE_UPDATE = 0;
 
-    private int frames = 0;
+    private static final int STAGE_BACKGROUND = 1;
 
-    private long lastInterval;
+    private static final int STAGE_TRACKABLES = 2;
+
+    private static final int STAGE_UI = 3;
+
+    private static final int STAGE_DISPLAYS = 4;
 
     private ARSession mSession;
 
-    private float fps;
+    private FrameProfiler mProfiler = new FrameProfiler("update", "background", "trackables", "ui", "displays");
 
     private Activity mActivity;
 
     private TextView mTextView;
 
-    private TextureDisplay mTextureDisplay = new TextureDisplay();
+    private TextureDisplay mTextureDisplay;
+
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
 
     private TextDisplay mTextDisplay = new TextDisplay();
 
+    // Reused for the text of each frame, which is only published when it changes.
+    private StringBuilder mMessageBuilder = new StringBuilder();
+
     private ArrayList<BodyRelatedDisplay> mBodyRelatedDisplays = new ArrayList<>();
 
     private DisplayRotationManager mDisplayRotationManager;
@@ -83,9 +102,13 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
      * @param activity Activity
      */
     public BodyRenderManager(Activity activity) {
+        GlStateCache glState = new GlStateCache(new Gles20Api());
         mActivity = activity;
-        BodyRelatedDisplay bodySkeletonDisplay = new BodySkeletonDisplay();
-        BodyRelatedDisplay bodySkeletonLineDisplay = new BodySkeletonLineDisplay();
+        mGl = glState.getGlApi();
+        mGlState = glState;
+        mTextureDisplay = new TextureDisplay(glState);
+        BodyRelatedDisplay bodySkeletonDisplay = new BodySkeletonDisplay(glState);
+        BodyRelatedDisplay bodySkeletonLineDisplay = new BodySkeletonLineDisplay(glState);
         mBodyRelatedDisplays.add(bodySkeletonDisplay);
         mBodyRelatedDisplays.add(bodySkeletonLineDisplay);
     }
@@ -132,55 +155,55 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         // Clear the color and set the window color.
-        GLES20.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGl.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGlState.invalidate();
+        ProgramRegistry.getDefault().setCacheDir(new File(mActivity.getCacheDir(), ProgramRegistry.CACHE_DIR_NAME));
+
+        // The programs of the previous surface are released before any display acquires one.
+        mTextureDisplay.releaseProgram();
+        for (BodyRelatedDisplay bodyRelatedDisplay : mBodyRelatedDisplays) {
+            bodyRelatedDisplay.releaseProgram();
+        }
         for (BodyRelatedDisplay bodyRelatedDisplay : mBodyRelatedDisplays) {
             bodyRelatedDisplay.init();
         }
         mTextureDisplay.init();
         mTextDisplay.setListener(new TextDisplay.OnTextInfoChangeListener() {
             @Override
-            public void textInfoChanged(String text, float positionX, float positionY) {
-                showBodyTypeTextView(text, positionX, positionY);
+            public void textInfoChanged(char[] text, int length, float positionX, float positionY) {
+                showBodyTypeTextView(text, length, positionX, positionY);
             }
         });
     }
 
     /**
-     * The OpenGL thread calls back the UI thread to display text.
+     * Display the text. This method is called back by TextDisplay in the UI thread.
      *
-     * @param text Gesture information displayed on the screen
+     * @param text Chars of the information displayed on the screen.
+     * @param length Number of chars to display.
      * @param positionX The left padding in pixels.
      * @param positionY The right padding in pixels.
      */
-    private void showBodyTypeTextView(final String text, final float positionX, final float positionY) {
-        mActivity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mTextView.setTextColor(Color.WHITE);
-
-                // Set the font size.
-                mTextView.setTextSize(10f);
-                if (text != null) {
-                    mTextView.setText(text);
-                    mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
-                } else {
-                    mTextView.setText("");
-                }
-            }
-        });
+    private void showBodyTypeTextView(char[] text, int length, float positionX, float positionY) {
+        mTextView.setTextColor(Color.WHITE);
+
+        // Set the font size.
+        mTextView.setTextSize(10f);
+        mTextView.setText(text, 0, length);
+        mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
     }
 
     @Override
     public void onSurfaceChanged(GL10 unused, int width, int height) {
         mTextureDisplay.onSurfaceChanged(width, height);
-        GLES20.glViewport(0, 0, width, height);
+        mGl.glViewport(0, 0, width, height);
         mDisplayRotationManager.updateViewportRotation(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
         // Clear the screen to notify the driver not to load pixels of the previous frame.
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
         if (mSession == null) {
             return;
@@ -189,10 +212,17 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
             mDisplayRotationManager.updateArSessionDisplayGeometry(mSession);
         }
 
+        mProfiler.beginFrame();
+        ShaderUtil.beginGlFrame();
         try {
+            mProfiler.begin(STAGE_UPDATE);
             mSession.setCameraTextureName(mTextureDisplay.getExternalTextureId());
             ARFrame frame = mSession.update();
 
+            // The session binds the camera texture, so the state of the last frame is unknown.
+            mGlState.beginFrame();
+            mProfiler.end(STAGE_UPDATE);
+
             // The size of the projection matrix is 4 * 4.
             float[] projectionMatrix = new float[16];
             ARCamera camera = frame.getCamera();
@@ -200,10 +230,16 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
             // Obtain the projection matrix of ARCamera.
             camera.getProjectionMatrix(projectionMatrix, PROJECTION_MATRIX_OFFSET, PROJECTION_MATRIX_NEAR,
                     PROJECTION_MATRIX_FAR);
+            mProfiler.begin(STAGE_BACKGROUND);
             mTextureDisplay.onDrawFrame(frame);
+            mProfiler.end(STAGE_BACKGROUND);
+            mProfiler.begin(STAGE_TRACKABLES);
             Collection<ARBody> bodies = mSession.getAllTrackables(ARBody.class);
+            mProfiler.end(STAGE_TRACKABLES);
+            mProfiler.begin(STAGE_UI);
             if (bodies.size() == 0) {
                 mTextDisplay.onDrawFrame(null);
+                mProfiler.end(STAGE_UI);
                 return;
             }
             for (ARBody body : bodies) {
@@ -212,21 +248,29 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
                 }
 
                 // Update the body recognition information to be displayed on the screen.
-                StringBuilder sb = new StringBuilder();
+                StringBuilder sb = mMessageBuilder;
+                sb.setLength(0);
                 updateMessageData(sb, body);
 
                 // Display the updated body information on the screen.
                 mTextDisplay.onDrawFrame(sb);
             }
+            mProfiler.end(STAGE_UI);
+            mProfiler.begin(STAGE_DISPLAYS);
             for (BodyRelatedDisplay bodyRelatedDisplay : mBodyRelatedDisplays) {
                 bodyRelatedDisplay.onDrawFrame(bodies, projectionMatrix);
             }
+            mProfiler.end(STAGE_DISPLAYS);
         } catch (ArDemoRuntimeException e) {
             Log.e(TAG, "Exception on the ArDemoRuntimeException!");
         } catch (Throwable t) {
             // This prevents the app from crashing due to unhandled exceptions.
             Log.e(TAG, "Exception on the OpenGL thread");
+        } finally {
+            ShaderUtil.endGlFrame(TAG);
+            mProfiler.endFrame();
         }
+        mProfiler.logReportIfDue(TAG);
     }
 
     /**
@@ -236,22 +280,12 @@ public class BodyRenderManager implements GLSurfaceView.Renderer {
      * @param body ARBody
      */
     private void updateMessageData(StringBuilder sb, ARBody body) {
-        float fpsResult = doFpsCalculate();
-        sb.append("FPS=").append(fpsResult).append(System.lineSeparator());
+        sb.append("FPS=");
+        FrameProfiler.appendFixed(sb, mProfiler.getFps());
+        sb.append(System.lineSeparator());
         int bodyAction = body.getBodyAction();
         sb.append("bodyAction=").append(bodyAction).append(System.lineSeparator());
-    }
-
-    private float doFpsCalculate() {
-        ++frames;
-        long timeNow = System.currentTimeMillis();
-
-        // Convert millisecond to second.
-        if (((timeNow - lastInterval) / 1000.0f) > UPDATE_INTERVAL) {
-            fps = frames / ((timeNow - lastInterval) / 1000.0f);
-            frames = 0;
-            lastInterval = timeNow;
-        }
-        return fps;
+        mGlState.appendStats(sb);
+        mProfiler.appendStats(sb);
     }
 }
\ No newline at end of file
@@ -16,8 +16,7 @@
 
 package com.vsm.myarapplication.body.rendering;
 
-import android.opengl.GLES20;
-import android.util.Log;
+import com.vsm.myarapplication.common.ProgramRegistry;
 
 /**
  * This class provides code and programs related to body rendering shader.
@@ -58,55 +57,25 @@ class BodyShaderUtil {
                     + "void main() {" + LS
                     + "    gl_FragColor = varColor;" + LS
                     + "}";
-    private static final String TAG = BodyShaderUtil.class.getSimpleName();
 
     private BodyShaderUtil() {
     }
 
     /**
-     * Create a shader.
+     * Create a shader. Displays of a GL context share the program.
      *
      * @return Shader program.
      */
     static int createGlProgram() {
-        int vertex = loadShader(GLES20.GL_VERTEX_SHADER, BODY_VERTEX);
-        if (vertex == 0) {
-            return 0;
-        }
-        int fragment = loadShader(GLES20.GL_FRAGMENT_SHADER, BODY_FRAGMENT);
-        if (fragment == 0) {
-            return 0;
-        }
-        int program = GLES20.glCreateProgram();
-        if (program != 0) {
-            GLES20.glAttachShader(program, vertex);
-            GLES20.glAttachShader(program, fragment);
-            GLES20.glLinkProgram(program);
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                Log.e(TAG, "Could not link program " + GLES20.glGetProgramInfoLog(program));
-                GLES20.glDeleteProgram(program);
-                program = 0;
-            }
-        }
-        return program;
+        return ProgramRegistry.getDefault().acquire(BODY_VERTEX, BODY_FRAGMENT);
     }
 
-    private static int loadShader(int shaderType, String source) {
-        int shader = GLES20.glCreateShader(shaderType);
-        if (0 != shader) {
-            GLES20.glShaderSource(shader, source);
-            GLES20.glCompileShader(shader);
-            int[] compiled = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-            if (compiled[0] == 0) {
-                Log.e(TAG, "glError: Could not compile shader " + shaderType);
-                Log.e(TAG, "glError: " + GLES20.glGetShaderInfoLog(shader));
-                GLES20.glDeleteShader(shader);
-                shader = 0;
-            }
-        }
-        return shader;
+    /**
+     * Release a shader created by {@link #createGlProgram()}.
+     *
+     * @param program Shader program, or 0.
+     */
+    static void releaseGlProgram(int program) {
+        ProgramRegistry.getDefault().release(program);
     }
 }
\ No newline at end of file
@@ -21,6 +21,9 @@ import android.opengl.GLES20;
 import com.huawei.hiar.ARBody;
 import com.huawei.hiar.ARCoordinateSystemType;
 import com.huawei.hiar.ARTrackable;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.ShaderUtil;
 
 import java.nio.FloatBuffer;
@@ -47,10 +50,16 @@ public class BodySkeletonDisplay implements BodyRelatedDisplay {
 
     private int mVboSize;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private int mProgram;
 
     private int mPosition;
 
+    private int mAttribs;
+
     private int mProjectionMatrix;
 
     private int mColor;
@@ -65,6 +74,23 @@ public class BodySkeletonDisplay implements BodyRelatedDisplay {
 
     private FloatBuffer mSkeletonPoints;
 
+    /**
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    public BodySkeletonDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    BodySkeletonDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
+    }
+
     /**
      * Create a body skeleton shader on the GL thread.
      * This method is called when {@link BodyRenderManager#onSurfaceCreated}.
@@ -73,33 +99,43 @@ public class BodySkeletonDisplay implements BodyRelatedDisplay {
     public void init() {
         ShaderUtil.checkGlError(TAG, "Init start.");
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        mGl.glGenBuffers(1, buffers, 0);
         mVbo = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         mVboSize = INITIAL_POINTS_SIZE * BYTES_PER_POINT;
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         ShaderUtil.checkGlError(TAG, "Before create gl program.");
         createProgram();
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Release the shader program. This method is called when {@link BodyRenderManager#onSurfaceCreated},
+     * before {@link #init()}.
+     */
+    @Override
+    public void releaseProgram() {
+        BodyShaderUtil.releaseGlProgram(mProgram);
+        mProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create gl program start.");
         mProgram = BodyShaderUtil.createGlProgram();
-        mColor = GLES20.glGetUniformLocation(mProgram, "inColor");
-        mPosition = GLES20.glGetAttribLocation(mProgram, "inPosition");
-        mPointSize = GLES20.glGetUniformLocation(mProgram, "inPointSize");
-        mProjectionMatrix = GLES20.glGetUniformLocation(mProgram, "inProjectionMatrix");
-        mCoordinateSystem = GLES20.glGetUniformLocation(mProgram, "inCoordinateSystem");
+        mColor = mGl.glGetUniformLocation(mProgram, "inColor");
+        mPosition = mGl.glGetAttribLocation(mProgram, "inPosition");
+        mAttribs = GlStateCache.getAttribBit(mPosition);
+        mPointSize = mGl.glGetUniformLocation(mProgram, "inPointSize");
+        mProjectionMatrix = mGl.glGetUniformLocation(mProgram, "inProjectionMatrix");
+        mCoordinateSystem = mGl.glGetUniformLocation(mProgram, "inCoordinateSystem");
         ShaderUtil.checkGlError(TAG, "Create gl program end.");
     }
 
     private void updateBodySkeleton() {
         ShaderUtil.checkGlError(TAG, "Update Body Skeleton data start.");
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
         mNumPoints = mPointsNum;
 
         if (mVboSize < mNumPoints * BYTES_PER_POINT) {
@@ -107,10 +143,9 @@ public class BodySkeletonDisplay implements BodyRelatedDisplay {
                 // If the size of VBO is insufficient to accommodate the new point cloud, resize the VBO.
                 mVboSize *= 2;
             }
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
+            mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         }
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT, mSkeletonPoints);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT, mSkeletonPoints);
 
         ShaderUtil.checkGlError(TAG, "Update Body Skeleton data end.");
     }
@@ -140,23 +175,23 @@ public class BodySkeletonDisplay implements BodyRelatedDisplay {
     private void drawBodySkeleton(float coordinate, float[] projectionMatrix) {
         ShaderUtil.checkGlError(TAG, "Draw body skeleton start.");
 
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.useProgram(mProgram);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         // The size of the vertex attribute is 4, and each vertex has four coordinate components.
-        GLES20.glVertexAttribPointer(
+        mGl.glVertexAttribPointer(
                 mPosition, 4, GLES20.GL_FLOAT, false, BYTES_PER_POINT, 0);
-        GLES20.glUniform4f(mColor, 0.0f, 0.0f, 1.0f, 1.0f);
-        GLES20.glUniformMatrix4fv(mProjectionMatrix, 1, false, projectionMatrix, 0);
+        mGl.glUniform4f(mColor, 0.0f, 0.0f, 1.0f, 1.0f);
+        mGl.glUniformMatrix4fv(mProjectionMatrix, 1, false, projectionMatrix, 0);
 
         // Set the size of the skeleton points.
-        GLES20.glUniform1f(mPointSize, 30.0f);
-        GLES20.glUniform1f(mCoordinateSystem, coordinate);
+        mGl.glUniform1f(mPointSize, 30.0f);
+        mGl.glUniform1f(mCoordinateSystem, coordinate);
 
-        GLES20.glDrawArrays(GLES20.GL_POINTS, 0, mNumPoints);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glDrawArrays(GLES20.GL_POINTS, 0, mNumPoints);
 
         ShaderUtil.checkGlError(TAG, "Draw body skeleton end.");
     }
@@ -21,6 +21,9 @@ import android.opengl.GLES20;
 import com.huawei.hiar.ARBody;
 import com.huawei.hiar.ARCoordinateSystemType;
 import com.huawei.hiar.ARTrackable;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.ShaderUtil;
 
 import java.nio.FloatBuffer;
@@ -49,10 +52,16 @@ public class BodySkeletonLineDisplay implements BodyRelatedDisplay {
 
     private int mVboSize = INITIAL_BUFFER_POINTS * BYTES_PER_POINT;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private int mProgram;
 
     private int mPosition;
 
+    private int mAttribs;
+
     private int mProjectionMatrix;
 
     private int mColor;
@@ -71,6 +80,17 @@ public class BodySkeletonLineDisplay implements BodyRelatedDisplay {
      * Constructor.
      */
     BodySkeletonLineDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    BodySkeletonLineDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
     }
 
     /**
@@ -82,52 +102,60 @@ public class BodySkeletonLineDisplay implements BodyRelatedDisplay {
         ShaderUtil.checkGlError(TAG, "Init start.");
 
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        mGl.glGenBuffers(1, buffers, 0);
         mVbo = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         ShaderUtil.checkGlError(TAG, "Before create gl program.");
         createProgram();
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Release the shader program. This method is called when {@link BodyRenderManager#onSurfaceCreated},
+     * before {@link #init()}.
+     */
+    @Override
+    public void releaseProgram() {
+        BodyShaderUtil.releaseGlProgram(mProgram);
+        mProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create gl program start.");
         mProgram = BodyShaderUtil.createGlProgram();
-        mPosition = GLES20.glGetAttribLocation(mProgram, "inPosition");
-        mColor = GLES20.glGetUniformLocation(mProgram, "inColor");
-        mPointSize = GLES20.glGetUniformLocation(mProgram, "inPointSize");
-        mProjectionMatrix = GLES20.glGetUniformLocation(mProgram, "inProjectionMatrix");
-        mCoordinateSystem = GLES20.glGetUniformLocation(mProgram, "inCoordinateSystem");
+        mPosition = mGl.glGetAttribLocation(mProgram, "inPosition");
+        mAttribs = GlStateCache.getAttribBit(mPosition);
+        mColor = mGl.glGetUniformLocation(mProgram, "inColor");
+        mPointSize = mGl.glGetUniformLocation(mProgram, "inPointSize");
+        mProjectionMatrix = mGl.glGetUniformLocation(mProgram, "inProjectionMatrix");
+        mCoordinateSystem = mGl.glGetUniformLocation(mProgram, "inCoordinateSystem");
         ShaderUtil.checkGlError(TAG, "Create gl program end.");
     }
 
     private void drawSkeletonLine(float coordinate, float[] projectionMatrix) {
         ShaderUtil.checkGlError(TAG, "Draw skeleton line start.");
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glEnableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.useProgram(mProgram);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         // Set the width of the rendered skeleton line.
-        GLES20.glLineWidth(18.0f);
+        mGlState.lineWidth(18.0f);
 
         // The size of the vertex attribute is 4, and each vertex has four coordinate components.
-        GLES20.glVertexAttribPointer(
+        mGl.glVertexAttribPointer(
                 mPosition, 4, GLES20.GL_FLOAT, false, BYTES_PER_POINT, 0);
-        GLES20.glUniform4f(mColor, 1.0f, 0.0f, 0.0f, 1.0f);
-        GLES20.glUniformMatrix4fv(mProjectionMatrix, 1, false, projectionMatrix, 0);
+        mGl.glUniform4f(mColor, 1.0f, 0.0f, 0.0f, 1.0f);
+        mGl.glUniformMatrix4fv(mProjectionMatrix, 1, false, projectionMatrix, 0);
 
         // Set the size of the points.
-        GLES20.glUniform1f(mPointSize, 100.0f);
-        GLES20.glUniform1f(mCoordinateSystem, coordinate);
+        mGl.glUniform1f(mPointSize, 100.0f);
+        mGl.glUniform1f(mCoordinateSystem, coordinate);
 
-        GLES20.glDrawArrays(GLES20.GL_LINES, 0, mNumPoints);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glDisableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glDrawArrays(GLES20.GL_LINES, 0, mNumPoints);
 
         ShaderUtil.checkGlError(TAG, "Draw skeleton line end.");
     }
@@ -159,17 +187,16 @@ public class BodySkeletonLineDisplay implements BodyRelatedDisplay {
     private void updateBodySkeletonLineData(ARBody body) {
         findValidConnectionSkeletonLines(body);
         ShaderUtil.checkGlError(TAG, "Update body skeleton line data start.");
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
         mNumPoints = mPointsLineNum;
         if (mVboSize < mNumPoints * BYTES_PER_POINT) {
             while (mVboSize < mNumPoints * BYTES_PER_POINT) {
                 // If the storage space is insufficient, allocate double the space.
                 mVboSize *= 2;
             }
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
+            mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         }
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT, mLinePoints);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT, mLinePoints);
         ShaderUtil.checkGlError(TAG, "Update body skeleton line data end.");
     }
 
@@ -0,0 +1,154 @@
+package com.vsm.myarapplication.common;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads assets without blocking the GL thread. Decoding and parsing run on a background
+ * executor, and the finished CPU-side data is queued for the GL thread, which uploads it
+ * in {@link #processUploads()} at the start of a frame.
+ * <p>
+ * {@link #reset()} is called when the GL context is recreated. Results of loads that were
+ * started before it are dropped, because their GL objects no longer exist.
+ */
+public class AssetLoader {
+    private static final String TAG = AssetLoader.class.getSimpleName();
+
+    private final ExecutorService mExecutor;
+
+    private final ConcurrentLinkedQueue<Runnable> mPendingUploads = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * Create an asset loader with a single background thread.
+     */
+    public AssetLoader() {
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Run a load task on the background executor and queue its result for upload.
+     *
+     * @param task Task that decodes or parses the asset. It must not use OpenGL.
+     * @param upload Called on the GL thread with the result of the task.
+     * @param <T> Type of the loaded data.
+     */
+    public <T> void load(Callable<T> task, Upload<T> upload) {
+        load(mExecutor, task, upload);
+    }
+
+    /**
+     * Run a load task on the given executor and queue its result for upload. This is used
+     * for work that has to run on a specific thread, such as drawing views on the UI thread.
+     *
+     * @param executor Executor that runs the task.
+     * @param task Task that produces the asset. It must not use OpenGL.
+     * @param upload Called on the GL thread with the result of the task.
+     * @param <T> Type of the loaded data.
+     */
+    public <T> void load(Executor executor, final Callable<T> task, final Upload<T> upload) {
+        final int generation = mGeneration.get();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final T data;
+                try {
+                    data = task.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Load asset failed.", e);
+                    return;
+                }
+                if (data == null || generation != mGeneration.get()) {
+                    return;
+                }
+                mPendingUploads.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration.get()) {
+                            upload.upload(data);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Upload all loaded assets. This method must be called on the GL thread.
+     *
+     * @return Number of uploads that were run.
+     */
+    public int processUploads() {
+        int count = 0;
+        Runnable upload = mPendingUploads.poll();
+        while (upload != null) {
+            upload.run();
+            count++;
+            upload = mPendingUploads.poll();
+        }
+        return count;
+    }
+
+    /**
+     * Drop all pending uploads and the results of loads that are still running.
+     */
+    public void reset() {
+        mGeneration.incrementAndGet();
+        mPendingUploads.clear();
+    }
+
+    /**
+     * Stop the background thread. Loads that are still queued are not run.
+     */
+    public void shutdown() {
+        reset();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Get the stamp of the installed package. Cached assets that were converted from the
+     * package store it, so an app update regenerates them.
+     *
+     * @param context Context.
+     * @return Last update time of the package, or 0 if it is unknown.
+     */
+    public static long getSourceStamp(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Package info not found.");
+            return 0L;
+        }
+    }
+
+    /**
+     * Receives loaded data on the GL thread.
+     *
+     * @param <T> Type of the loaded data.
+     */
+    public interface Upload<T> {
+        /**
+         * Upload the data to OpenGL.
+         *
+         * @param data Data returned by the load task, never null.
+         */
+        void upload(T data);
+    }
+}
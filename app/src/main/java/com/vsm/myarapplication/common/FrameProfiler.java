@@ -0,0 +1,262 @@
+package com.vsm.myarapplication.common;
+
+import android.util.Log;
+
+/**
+ * Times the stages of the frames of a renderer with {@link System#nanoTime()}. Each stage,
+ * the whole frame and the interval between frames have a {@link LatencyHistogram}, so a
+ * stall can be attributed to the stage that caused it. The renderer shows the FPS and the
+ * percentiles on screen and logs a report every {@link #REPORT_INTERVAL_NS}; after a report,
+ * the histograms start over. Timing a frame does not allocate. Only the GL thread may use
+ * the profiler.
+ */
+public class FrameProfiler {
+    /**
+     * Interval of the periodic reports.
+     */
+    public static final long REPORT_INTERVAL_NS = 10_000_000_000L;
+
+    // Interval of the FPS updates.
+    private static final long FPS_INTERVAL_NS = 500_000_000L;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private static final long NO_TIME = -1L;
+
+    private final String[] mStageNames;
+
+    private final LatencyHistogram[] mStageHistograms;
+
+    private final long[] mStageStarts;
+
+    private final LatencyHistogram mFrameHistogram = new LatencyHistogram();
+
+    private final LatencyHistogram mIntervalHistogram = new LatencyHistogram();
+
+    private long mFrameStart = NO_TIME;
+
+    private long mFpsStart = NO_TIME;
+
+    private int mFpsFrames;
+
+    private float mFps;
+
+    private long mReportStart = NO_TIME;
+
+    private final StringBuilder mReportBuilder = new StringBuilder();
+
+    /**
+     * Create a profiler for the stages of a renderer.
+     *
+     * @param stageNames Names of the stages, in the order of their indexes.
+     */
+    public FrameProfiler(String... stageNames) {
+        mStageNames = stageNames.clone();
+        mStageHistograms = new LatencyHistogram[stageNames.length];
+        mStageStarts = new long[stageNames.length];
+        for (int i = 0; i < stageNames.length; i++) {
+            mStageHistograms[i] = new LatencyHistogram();
+            mStageStarts[i] = NO_TIME;
+        }
+    }
+
+    /**
+     * Start a frame. Call it first in onDrawFrame.
+     */
+    public void beginFrame() {
+        beginFrame(System.nanoTime());
+    }
+
+    void beginFrame(long now) {
+        if (mFrameStart != NO_TIME) {
+            mIntervalHistogram.record(now - mFrameStart);
+        }
+        mFrameStart = now;
+        if (mReportStart == NO_TIME) {
+            mReportStart = now;
+        }
+        if (mFpsStart == NO_TIME) {
+            mFpsStart = now;
+            return;
+        }
+
+        // Count the frames that started after the start of the interval.
+        mFpsFrames++;
+        long elapsed = now - mFpsStart;
+        if (elapsed > FPS_INTERVAL_NS) {
+            mFps = mFpsFrames * 1.0e9f / elapsed;
+            mFpsFrames = 0;
+            mFpsStart = now;
+        }
+    }
+
+    /**
+     * Start a stage of the current frame.
+     *
+     * @param stage Index of the stage.
+     */
+    public void begin(int stage) {
+        mStageStarts[stage] = System.nanoTime();
+    }
+
+    void begin(int stage, long now) {
+        mStageStarts[stage] = now;
+    }
+
+    /**
+     * End a stage and record its duration. A stage that was not started is ignored.
+     *
+     * @param stage Index of the stage.
+     */
+    public void end(int stage) {
+        end(stage, System.nanoTime());
+    }
+
+    void end(int stage, long now) {
+        if (mStageStarts[stage] == NO_TIME) {
+            return;
+        }
+        mStageHistograms[stage].record(now - mStageStarts[stage]);
+        mStageStarts[stage] = NO_TIME;
+    }
+
+    /**
+     * End the current frame and record its duration.
+     */
+    public void endFrame() {
+        endFrame(System.nanoTime());
+    }
+
+    void endFrame(long now) {
+        if (mFrameStart != NO_TIME) {
+            mFrameHistogram.record(now - mFrameStart);
+        }
+    }
+
+    /**
+     * Obtain the frame rate, updated twice per second.
+     *
+     * @return Frames per second.
+     */
+    public float getFps() {
+        return mFps;
+    }
+
+    /**
+     * Obtain the histogram of a stage.
+     *
+     * @param stage Index of the stage.
+     * @return Durations of the stage in nanoseconds.
+     */
+    public LatencyHistogram getHistogram(int stage) {
+        return mStageHistograms[stage];
+    }
+
+    /**
+     * Obtain the histogram of the work done in a frame, from its start to its end.
+     *
+     * @return Durations of the frames in nanoseconds.
+     */
+    public LatencyHistogram getFrameHistogram() {
+        return mFrameHistogram;
+    }
+
+    /**
+     * Obtain the histogram of the intervals between the starts of consecutive frames.
+     *
+     * @return Frame intervals in nanoseconds.
+     */
+    public LatencyHistogram getIntervalHistogram() {
+        return mIntervalHistogram;
+    }
+
+    /**
+     * Append one line per stage with p50, p95, p99 and max in milliseconds, and the same for
+     * the frame work and the frame interval. Nothing is allocated.
+     *
+     * @param sb String buffer.
+     */
+    public void appendStats(StringBuilder sb) {
+        for (int i = 0; i < mStageNames.length; i++) {
+            appendHistogram(sb, mStageNames[i], mStageHistograms[i]);
+        }
+        appendHistogram(sb, "frame", mFrameHistogram);
+        appendHistogram(sb, "interval", mIntervalHistogram);
+    }
+
+    /**
+     * Log the stats and start over, once per {@link #REPORT_INTERVAL_NS}. Call it at the end
+     * of each frame.
+     *
+     * @param tag Log tag of the renderer.
+     */
+    public void logReportIfDue(String tag) {
+        if (!isReportDue(System.nanoTime())) {
+            return;
+        }
+        mReportBuilder.setLength(0);
+        appendStats(mReportBuilder);
+        Log.i(tag, "Frame stages:" + System.lineSeparator() + mReportBuilder);
+        reset();
+    }
+
+    boolean isReportDue(long now) {
+        return mReportStart != NO_TIME && now - mReportStart >= REPORT_INTERVAL_NS;
+    }
+
+    /**
+     * Forget the recorded durations and start a new report period.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : mStageHistograms) {
+            histogram.reset();
+        }
+        mFrameHistogram.reset();
+        mIntervalHistogram.reset();
+        mReportStart = NO_TIME;
+    }
+
+    private static void appendHistogram(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(name).append(" p50=");
+        appendMillis(sb, histogram.getPercentile(50.0));
+        sb.append(" p95=");
+        appendMillis(sb, histogram.getPercentile(95.0));
+        sb.append(" p99=");
+        appendMillis(sb, histogram.getPercentile(99.0));
+        sb.append(" max=");
+        appendMillis(sb, histogram.getMax());
+        sb.append(" ms").append(System.lineSeparator());
+    }
+
+    /**
+     * Append a value with two decimals. Appending a float may allocate, so the renderers
+     * append their FPS and latencies with this method instead.
+     *
+     * @param sb String buffer.
+     * @param value Value; NaN and infinite values are appended as 0.
+     */
+    public static void appendFixed(StringBuilder sb, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            value = 0.0f;
+        }
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths < 0L) {
+            sb.append('-');
+            hundredths = -hundredths;
+        }
+        appendHundredths(sb, hundredths);
+    }
+
+    static void appendMillis(StringBuilder sb, long nanos) {
+        appendHundredths(sb, (nanos / NANOS_PER_MICRO + 5L) / 10L);
+    }
+
+    private static void appendHundredths(StringBuilder sb, long hundredths) {
+        sb.append(hundredths / 100L).append('.');
+        long fraction = hundredths % 100L;
+        if (fraction < 10L) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
@@ -0,0 +1,91 @@
+package com.vsm.myarapplication.common;
+
+import java.nio.Buffer;
+
+/**
+ * OpenGL ES 2.0 commands used by the displays. Rendering code issues its commands through
+ * this interface instead of calling {@link android.opengl.GLES20} directly, so the per-frame
+ * path can be exercised and measured without a GPU. {@link Gles20Api} forwards to GLES20, and
+ * the tests record the commands into a command buffer.
+ *
+ * @see android.opengl.GLES20
+ */
+public interface GlApi {
+    void glActiveTexture(int texture);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBindTexture(int target, int texture);
+
+    void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+
+    void glClear(int mask);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                                int imageSize, Buffer data);
+
+    void glDepthMask(boolean flag);
+
+    void glDisable(int cap);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    void glEnable(int cap);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glGenerateMipmap(int target);
+
+    int glGetAttribLocation(int program, String name);
+
+    int glGetError();
+
+    String glGetString(int name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glLineWidth(float width);
+
+    void glPixelStorei(int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                      int type, Buffer pixels);
+
+    void glTexParameterf(int target, int pname, float param);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform4f(int location, float x, float y, float z, float w);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUseProgram(int program);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    void glViewport(int x, int y, int width, int height);
+}
@@ -0,0 +1,391 @@
+package com.vsm.myarapplication.common;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+/**
+ * Shadow of the OpenGL ES state that the displays change: the program, the buffer and texture
+ * bindings, the enabled vertex attribute arrays, the blend and depth state and the line width.
+ * A call that matches the known state is not issued, and is counted as elided.
+ * <p>
+ * The displays set the state they need before they draw, and do not restore it afterwards, so
+ * that consecutive displays with the same state issue no calls. State that the displays do not
+ * change, such as other texture targets or capabilities, is passed through without shadowing.
+ * <p>
+ * Code that changes the shadowed state without going through the cache must be followed by
+ * {@link #invalidate()}, as must the creation of a GL context. The renderers start every frame
+ * with {@link #beginFrame()}, which forgets only the external texture bindings, because the AR
+ * session binds the camera texture when it updates the frame; the rest of the state carries over
+ * from the previous frame, so that its calls are elided. Each renderer owns a cache for its GL
+ * context, and only the GL thread may use it.
+ */
+public class GlStateCache {
+    /**
+     * Number of vertex attribute arrays that are shadowed.
+     */
+    public static final int MAX_VERTEX_ATTRIBS = 16;
+
+    private static final int UNKNOWN = -1;
+
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    // Capabilities with a shadowed state; the index in the array is their bit in the masks.
+    private static final int[] CAPABILITIES = {
+        GLES20.GL_BLEND, GLES20.GL_CULL_FACE, GLES20.GL_DEPTH_TEST, GLES20.GL_SCISSOR_TEST, GLES20.GL_STENCIL_TEST
+    };
+
+    private final GlApi mGl;
+
+    private int mProgram;
+
+    private int mArrayBuffer;
+
+    private int mElementArrayBuffer;
+
+    private int mActiveTexture;
+
+    private final int[] mTextures2d = new int[MAX_TEXTURE_UNITS];
+
+    private final int[] mTexturesExternal = new int[MAX_TEXTURE_UNITS];
+
+    private int mEnabledCapabilities;
+
+    private int mDisabledCapabilities;
+
+    // Vertex attribute arrays that are known to be enabled or disabled, and that were ever used.
+    private int mEnabledAttribs;
+
+    private int mDisabledAttribs;
+
+    private int mUsedAttribs;
+
+    private int mDepthMask;
+
+    private int mBlendSrcRgb;
+
+    private int mBlendDstRgb;
+
+    private int mBlendSrcAlpha;
+
+    private int mBlendDstAlpha;
+
+    private float mLineWidth;
+
+    private int mIssuedCount;
+
+    private int mElidedCount;
+
+    private int mFrameIssuedCount;
+
+    private int mFrameElidedCount;
+
+    /**
+     * Create a cache that issues its calls through the given API. The state is unknown until
+     * it is set.
+     *
+     * @param gl OpenGL ES command interface.
+     */
+    public GlStateCache(GlApi gl) {
+        mGl = gl;
+        invalidate();
+    }
+
+    /**
+     * Obtain the API through which the cache issues its calls. The displays issue their other
+     * commands through it too.
+     *
+     * @return OpenGL ES command interface.
+     */
+    public GlApi getGlApi() {
+        return mGl;
+    }
+
+    /**
+     * Obtain the bit of a vertex attribute for {@link #setVertexAttribArrays(int)}.
+     *
+     * @param location Location of the attribute; -1 for an attribute that is not used.
+     * @return Bit of the attribute, or 0 if the location is not shadowed.
+     */
+    public static int getAttribBit(int location) {
+        if (location < 0 || location >= MAX_VERTEX_ATTRIBS) {
+            return 0;
+        }
+        return 1 << location;
+    }
+
+    /**
+     * Forget the shadowed state, so that the next call of each kind is issued. This method is
+     * called when the GL context was created, and after code that changed the state directly.
+     */
+    public void invalidate() {
+        mProgram = UNKNOWN;
+        mArrayBuffer = UNKNOWN;
+        mElementArrayBuffer = UNKNOWN;
+        mActiveTexture = UNKNOWN;
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            mTextures2d[i] = UNKNOWN;
+            mTexturesExternal[i] = UNKNOWN;
+        }
+        mEnabledCapabilities = 0;
+        mDisabledCapabilities = 0;
+        mEnabledAttribs = 0;
+        mDisabledAttribs = 0;
+        mDepthMask = UNKNOWN;
+        mBlendSrcRgb = UNKNOWN;
+        mBlendDstRgb = UNKNOWN;
+        mBlendSrcAlpha = UNKNOWN;
+        mBlendDstAlpha = UNKNOWN;
+        mLineWidth = Float.NaN;
+    }
+
+    /**
+     * Start a frame: keep the counts of the last frame and forget the external texture
+     * bindings, which the AR session changes when it updates the camera texture. This method
+     * is called in {@link android.opengl.GLSurfaceView.Renderer#onDrawFrame} after the AR
+     * session was updated, before the first display draws.
+     */
+    public void beginFrame() {
+        mFrameIssuedCount = mIssuedCount;
+        mFrameElidedCount = mElidedCount;
+        mIssuedCount = 0;
+        mElidedCount = 0;
+
+        // The session binds the camera texture on whichever unit is active, so no unit is trusted.
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            mTexturesExternal[i] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Obtain the number of state calls issued in the last frame.
+     *
+     * @return Number of calls.
+     */
+    public int getIssuedCount() {
+        return mFrameIssuedCount;
+    }
+
+    /**
+     * Obtain the number of state calls elided in the last frame.
+     *
+     * @return Number of calls.
+     */
+    public int getElidedCount() {
+        return mFrameElidedCount;
+    }
+
+    /**
+     * Append the state call counts of the last frame without allocating.
+     *
+     * @param sb String builder.
+     */
+    public void appendStats(StringBuilder sb) {
+        sb.append("GL state calls=").append(mFrameIssuedCount)
+                .append(" elided=").append(mFrameElidedCount).append(System.lineSeparator());
+    }
+
+    /**
+     * Use a program.
+     *
+     * @param program Program.
+     */
+    public void useProgram(int program) {
+        if (mProgram == program) {
+            mElidedCount++;
+            return;
+        }
+        mProgram = program;
+        mIssuedCount++;
+        mGl.glUseProgram(program);
+    }
+
+    /**
+     * Bind a buffer.
+     *
+     * @param target Target, such as {@link GLES20#GL_ARRAY_BUFFER}.
+     * @param buffer Buffer; 0 unbinds the target.
+     */
+    public void bindBuffer(int target, int buffer) {
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            if (mArrayBuffer == buffer) {
+                mElidedCount++;
+                return;
+            }
+            mArrayBuffer = buffer;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            if (mElementArrayBuffer == buffer) {
+                mElidedCount++;
+                return;
+            }
+            mElementArrayBuffer = buffer;
+        }
+        mIssuedCount++;
+        mGl.glBindBuffer(target, buffer);
+    }
+
+    /**
+     * Select the active texture unit.
+     *
+     * @param texture Unit, such as {@link GLES20#GL_TEXTURE0}.
+     */
+    public void activeTexture(int texture) {
+        if (mActiveTexture == texture) {
+            mElidedCount++;
+            return;
+        }
+        mActiveTexture = texture;
+        mIssuedCount++;
+        mGl.glActiveTexture(texture);
+    }
+
+    /**
+     * Bind a texture to the active texture unit.
+     *
+     * @param target Target, such as {@link GLES20#GL_TEXTURE_2D}.
+     * @param texture Texture; 0 unbinds the target.
+     */
+    public void bindTexture(int target, int texture) {
+        int[] textures = null;
+        if (target == GLES20.GL_TEXTURE_2D) {
+            textures = mTextures2d;
+        } else if (target == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            textures = mTexturesExternal;
+        }
+
+        // The bindings of an unknown unit are not shadowed.
+        int unit = mActiveTexture - GLES20.GL_TEXTURE0;
+        if (textures != null && unit >= 0 && unit < MAX_TEXTURE_UNITS) {
+            if (textures[unit] == texture) {
+                mElidedCount++;
+                return;
+            }
+            textures[unit] = texture;
+        }
+        mIssuedCount++;
+        mGl.glBindTexture(target, texture);
+    }
+
+    /**
+     * Enable a capability.
+     *
+     * @param cap Capability, such as {@link GLES20#GL_BLEND}.
+     */
+    public void enable(int cap) {
+        int bit = getCapabilityBit(cap);
+        if ((mEnabledCapabilities & bit) != 0) {
+            mElidedCount++;
+            return;
+        }
+        mEnabledCapabilities |= bit;
+        mDisabledCapabilities &= ~bit;
+        mIssuedCount++;
+        mGl.glEnable(cap);
+    }
+
+    /**
+     * Disable a capability.
+     *
+     * @param cap Capability, such as {@link GLES20#GL_BLEND}.
+     */
+    public void disable(int cap) {
+        int bit = getCapabilityBit(cap);
+        if ((mDisabledCapabilities & bit) != 0) {
+            mElidedCount++;
+            return;
+        }
+        mDisabledCapabilities |= bit;
+        mEnabledCapabilities &= ~bit;
+        mIssuedCount++;
+        mGl.glDisable(cap);
+    }
+
+    /**
+     * Enable or disable writing into the depth buffer.
+     *
+     * @param flag true to write depth.
+     */
+    public void depthMask(boolean flag) {
+        int depthMask = flag ? 1 : 0;
+        if (mDepthMask == depthMask) {
+            mElidedCount++;
+            return;
+        }
+        mDepthMask = depthMask;
+        mIssuedCount++;
+        mGl.glDepthMask(flag);
+    }
+
+    /**
+     * Set the blend factors of the color and the alpha channels.
+     *
+     * @param srcRgb Source factor of the color.
+     * @param dstRgb Destination factor of the color.
+     * @param srcAlpha Source factor of the alpha.
+     * @param dstAlpha Destination factor of the alpha.
+     */
+    public void blendFuncSeparate(int srcRgb, int dstRgb, int srcAlpha, int dstAlpha) {
+        if (mBlendSrcRgb == srcRgb && mBlendDstRgb == dstRgb && mBlendSrcAlpha == srcAlpha
+                && mBlendDstAlpha == dstAlpha) {
+            mElidedCount++;
+            return;
+        }
+        mBlendSrcRgb = srcRgb;
+        mBlendDstRgb = dstRgb;
+        mBlendSrcAlpha = srcAlpha;
+        mBlendDstAlpha = dstAlpha;
+        mIssuedCount++;
+        mGl.glBlendFuncSeparate(srcRgb, dstRgb, srcAlpha, dstAlpha);
+    }
+
+    /**
+     * Set the width of lines.
+     *
+     * @param width Width in pixels.
+     */
+    public void lineWidth(float width) {
+        if (mLineWidth == width) {
+            mElidedCount++;
+            return;
+        }
+        mLineWidth = width;
+        mIssuedCount++;
+        mGl.glLineWidth(width);
+    }
+
+    /**
+     * Enable exactly the given vertex attribute arrays. The arrays that an earlier call
+     * enabled and that are not given are disabled.
+     *
+     * @param attribs Bits of the attributes, combined from {@link #getAttribBit(int)}.
+     */
+    public void setVertexAttribArrays(int attribs) {
+        int toEnable = attribs & ~mEnabledAttribs;
+        int toDisable = mUsedAttribs & ~attribs & ~mDisabledAttribs;
+        mElidedCount += Integer.bitCount(attribs & mEnabledAttribs)
+                + Integer.bitCount(mUsedAttribs & ~attribs & mDisabledAttribs);
+        int changed = toEnable | toDisable;
+        while (changed != 0) {
+            int index = Integer.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            mIssuedCount++;
+            if ((toEnable & (1 << index)) != 0) {
+                mGl.glEnableVertexAttribArray(index);
+            } else {
+                mGl.glDisableVertexAttribArray(index);
+            }
+        }
+        mUsedAttribs |= attribs;
+        mEnabledAttribs = attribs;
+        mDisabledAttribs = mUsedAttribs & ~attribs;
+    }
+
+    // Returns 0 for a capability that is not shadowed, so that every call is issued.
+    private static int getCapabilityBit(int cap) {
+        for (int i = 0; i < CAPABILITIES.length; i++) {
+            if (CAPABILITIES[i] == cap) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,122 @@
+package com.vsm.myarapplication.common;
+
+/**
+ * Histogram of durations in nanoseconds with logarithmic buckets. Each power of two is split
+ * into {@link #SUB_BUCKET_COUNT} buckets, so a percentile is reported within 12.5% of the
+ * true value, from nanoseconds up to a minute, with a fixed array of counters. Recording does
+ * not allocate. The histogram is not thread-safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of buckets per power of two.
+     */
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // 2^36 ns is about 69 s; longer durations go into the last bucket.
+    private static final int MAX_EXPONENT = 35;
+
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] mCounts = new long[BUCKET_COUNT];
+
+    private long mCount;
+
+    private long mSum;
+
+    private long mMax;
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos Duration in nanoseconds. Negative durations count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        mCounts[getBucket(value)]++;
+        mCount++;
+        mSum += value;
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * Obtain a percentile of the recorded durations.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the bucket that holds the percentile, at most the largest
+     *     recorded duration, in nanoseconds; 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * mCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += mCounts[bucket];
+            if (seen >= rank) {
+                return Math.min(getLowerBound(bucket + 1) - 1, mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Obtain the largest recorded duration.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * Obtain the mean of the recorded durations.
+     *
+     * @return Duration in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMean() {
+        return mCount == 0 ? 0L : mSum / mCount;
+    }
+
+    /**
+     * Forget all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    // Values below SUB_BUCKET_COUNT have a bucket each; above, the bucket is chosen by the
+    // exponent and the next SUB_BUCKET_BITS bits of the value.
+    static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    // Smallest value of a bucket; the bucket after the last one starts at 2^(MAX_EXPONENT + 1).
+    static long getLowerBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int group = bucket / SUB_BUCKET_COUNT;
+        int subBucket = bucket % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (group - 1);
+    }
+}
@@ -71,4 +71,127 @@ public class MatrixUtil {
     public static float[] getOriginalMatrix() {
         return new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
     }
-}
\ No newline at end of file
+
+    /**
+     * Multiply two 4 * 4 column-major matrices (result = lhs * rhs). Unlike
+     * {@link Matrix#multiplyMM}, this is plain Java and can run on a desktop JVM.
+     *
+     * @param result Product, which must not be the same array as lhs or rhs.
+     * @param lhs Left-hand matrix.
+     * @param rhs Right-hand matrix.
+     */
+    public static void multiplyMM(float[] result, float[] lhs, float[] rhs) {
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                result[col * 4 + row] = lhs[row] * rhs[col * 4]
+                        + lhs[4 + row] * rhs[col * 4 + 1]
+                        + lhs[8 + row] * rhs[col * 4 + 2]
+                        + lhs[12 + row] * rhs[col * 4 + 3];
+            }
+        }
+    }
+
+    /**
+     * Invert a 4 * 4 column-major matrix with cofactor expansion.
+     *
+     * @param inverse Inverse matrix, which must not be the same array as matrix.
+     * @param matrix Matrix to invert.
+     * @return false if the matrix is singular, in which case inverse is left unchanged.
+     */
+    public static boolean invertM(float[] inverse, float[] matrix) {
+        float a0 = matrix[0] * matrix[5] - matrix[1] * matrix[4];
+        float a1 = matrix[0] * matrix[6] - matrix[2] * matrix[4];
+        float a2 = matrix[0] * matrix[7] - matrix[3] * matrix[4];
+        float a3 = matrix[1] * matrix[6] - matrix[2] * matrix[5];
+        float a4 = matrix[1] * matrix[7] - matrix[3] * matrix[5];
+        float a5 = matrix[2] * matrix[7] - matrix[3] * matrix[6];
+        float b0 = matrix[8] * matrix[13] - matrix[9] * matrix[12];
+        float b1 = matrix[8] * matrix[14] - matrix[10] * matrix[12];
+        float b2 = matrix[8] * matrix[15] - matrix[11] * matrix[12];
+        float b3 = matrix[9] * matrix[14] - matrix[10] * matrix[13];
+        float b4 = matrix[9] * matrix[15] - matrix[11] * matrix[13];
+        float b5 = matrix[10] * matrix[15] - matrix[11] * matrix[14];
+        float det = a0 * b5 - a1 * b4 + a2 * b3 + a3 * b2 - a4 * b1 + a5 * b0;
+        if (det == 0.0f) {
+            return false;
+        }
+        float invDet = 1.0f / det;
+        inverse[0] = (matrix[5] * b5 - matrix[6] * b4 + matrix[7] * b3) * invDet;
+        inverse[1] = (-matrix[1] * b5 + matrix[2] * b4 - matrix[3] * b3) * invDet;
+        inverse[2] = (matrix[13] * a5 - matrix[14] * a4 + matrix[15] * a3) * invDet;
+        inverse[3] = (-matrix[9] * a5 + matrix[10] * a4 - matrix[11] * a3) * invDet;
+        inverse[4] = (-matrix[4] * b5 + matrix[6] * b2 - matrix[7] * b1) * invDet;
+        inverse[5] = (matrix[0] * b5 - matrix[2] * b2 + matrix[3] * b1) * invDet;
+        inverse[6] = (-matrix[12] * a5 + matrix[14] * a2 - matrix[15] * a1) * invDet;
+        inverse[7] = (matrix[8] * a5 - matrix[10] * a2 + matrix[11] * a1) * invDet;
+        inverse[8] = (matrix[4] * b4 - matrix[5] * b2 + matrix[7] * b0) * invDet;
+        inverse[9] = (-matrix[0] * b4 + matrix[1] * b2 - matrix[3] * b0) * invDet;
+        inverse[10] = (matrix[12] * a4 - matrix[13] * a2 + matrix[15] * a0) * invDet;
+        inverse[11] = (-matrix[8] * a4 + matrix[9] * a2 - matrix[11] * a0) * invDet;
+        inverse[12] = (-matrix[4] * b3 + matrix[5] * b1 - matrix[6] * b0) * invDet;
+        inverse[13] = (matrix[0] * b3 - matrix[1] * b1 + matrix[2] * b0) * invDet;
+        inverse[14] = (-matrix[12] * a3 + matrix[13] * a1 - matrix[14] * a0) * invDet;
+        inverse[15] = (matrix[8] * a3 - matrix[9] * a1 + matrix[10] * a0) * invDet;
+        return true;
+    }
+
+    /**
+     * Transform an axis-aligned bounding box [minX, minY, minZ, maxX, maxY, maxZ] by an
+     * affine column-major matrix and store the axis-aligned box that encloses the result.
+     *
+     * @param result Transformed box, which must not be the same array as box.
+     * @param matrix Affine transformation matrix.
+     * @param box Box to transform.
+     */
+    public static void transformBoundingBox(float[] result, float[] matrix, float[] box) {
+        for (int row = 0; row < 3; row++) {
+            float min = matrix[12 + row];
+            float max = min;
+            for (int axis = 0; axis < 3; axis++) {
+                float lower = matrix[axis * 4 + row] * box[axis];
+                float upper = matrix[axis * 4 + row] * box[axis + 3];
+                min += Math.min(lower, upper);
+                max += Math.max(lower, upper);
+            }
+            result[row] = min;
+            result[row + 3] = max;
+        }
+    }
+
+    /**
+     * Scale a 4 * 4 column-major matrix uniformly in place (matrix = S * matrix), so the
+     * scaling applies after the transformation of the matrix.
+     *
+     * @param matrix Matrix to scale.
+     * @param offset Offset of the matrix in the array.
+     * @param scale Scale factor.
+     */
+    public static void preScaleM(float[] matrix, int offset, float scale) {
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 3; row++) {
+                matrix[offset + col * 4 + row] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Rotate a 4 * 4 column-major matrix around the Y axis in place (matrix = R * matrix), so
+     * the rotation applies after the transformation of the matrix.
+     *
+     * @param matrix Matrix to rotate.
+     * @param offset Offset of the matrix in the array.
+     * @param angle Counterclockwise angle when looking down the Y axis, in degrees.
+     */
+    public static void preRotateYM(float[] matrix, int offset, float angle) {
+        double radians = Math.toRadians(angle);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        for (int col = 0; col < 4; col++) {
+            int index = offset + col * 4;
+            float x = matrix[index];
+            float z = matrix[index + 2];
+            matrix[index] = cos * x + sin * z;
+            matrix[index + 2] = cos * z - sin * x;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.vsm.myarapplication.common;
+
+import android.opengl.EGL14;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Compiles and links the programs of the {@link ProgramRegistry}, and keeps their binaries in
+ * the cache directory when the driver can save them. A binary is only valid for the driver
+ * that saved it, so its file records a hash of the renderer and the GL version, and a binary
+ * that is stale or rejected is deleted and the program is compiled again.
+ * <p>
+ * The program binaries are used through {@link GLES30}, the only Java binding of the
+ * functions; Android has none for the GL_OES_get_program_binary extension of OpenGL ES 2. The
+ * cache is therefore used on OpenGL ES 3 contexts only, which the activities request where the
+ * device supports them; see {@link ProgramRegistry#getEglContextClientVersion}. On an OpenGL ES
+ * 2 context, or when the driver offers no binary format, every program is compiled and linked
+ * from source, as without a cache directory.
+ */
+class ProgramLinker implements ProgramRegistry.Linker {
+    private static final String TAG = ProgramLinker.class.getSimpleName();
+
+    private static final int MAGIC = 0x41525042;
+
+    private static final int VERSION = 1;
+
+    // Larger binaries are not written, as a guard against corrupt length values.
+    private static final int MAX_BINARY_LENGTH = 1 << 20;
+
+    private static final String SUFFIX = ".bin";
+
+    private boolean mIsDriverQueried = false;
+
+    private boolean mIsBinarySupported = false;
+
+    private long mDriverHash;
+
+    private Object mDriverContext;
+
+    @Override
+    public Object getCurrentContext() {
+        return EGL14.eglGetCurrentContext();
+    }
+
+    @Override
+    public int link(long key, String vertexCode, String fragmentCode, File cacheDir) {
+        boolean isCacheUsed = cacheDir != null && isBinarySupported();
+        File file = isCacheUsed ? new File(cacheDir, String.format(Locale.ROOT, "%016x", key) + SUFFIX) : null;
+        if (file != null && file.exists()) {
+            int program = loadBinary(file, key);
+            if (program != 0) {
+                return program;
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete program binary " + file.getName());
+            }
+        }
+        int program = compile(vertexCode, fragmentCode, isCacheUsed);
+        if (program != 0 && file != null) {
+            saveBinary(file, key, program);
+        }
+        return program;
+    }
+
+    @Override
+    public void delete(int program) {
+        GLES20.glDeleteProgram(program);
+    }
+
+    private boolean isBinarySupported() {
+        Object context = getCurrentContext();
+        if (mIsDriverQueried && context != null && context.equals(mDriverContext)) {
+            return mIsBinarySupported;
+        }
+        mIsDriverQueried = true;
+        mDriverContext = context;
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        String renderer = GLES20.glGetString(GLES20.GL_RENDERER);
+        mIsBinarySupported = false;
+        if (version == null || renderer == null || !version.startsWith("OpenGL ES 3")) {
+            return false;
+        }
+        int[] formatCount = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formatCount, 0);
+        mIsBinarySupported = formatCount[0] > 0;
+        mDriverHash = ProgramRegistry.getKey(renderer, version);
+        return mIsBinarySupported;
+    }
+
+    private int loadBinary(File file, long key) {
+        ByteBuffer binary;
+        int format;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != mDriverHash
+                    || in.readLong() != key) {
+                return 0;
+            }
+            format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_BINARY_LENGTH) {
+                return 0;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            binary = ByteBuffer.allocateDirect(length);
+            binary.put(bytes).flip();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read program binary " + file.getName());
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        if (program == 0) {
+            return 0;
+        }
+        GLES30.glProgramBinary(program, format, binary, binary.remaining());
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            // The driver rejects binaries of other builds, for example after an update.
+            Log.w(TAG, "Program binary rejected " + file.getName());
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    private void saveBinary(File file, long key, int program) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0 || length[0] > MAX_BINARY_LENGTH) {
+            return;
+        }
+        ByteBuffer binary = ByteBuffer.allocateDirect(length[0]);
+        int[] format = new int[1];
+        GLES30.glGetProgramBinary(program, length[0], length, 0, format, 0, binary);
+        if (length[0] <= 0) {
+            return;
+        }
+        byte[] bytes = new byte[length[0]];
+        binary.get(bytes);
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create program cache " + directory.getName());
+            return;
+        }
+
+        // A partly written file must never be loaded, so the file is renamed when complete.
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temporary))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(mDriverHash);
+            out.writeLong(key);
+            out.writeInt(format[0]);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write program binary " + file.getName());
+            temporary.delete();
+            return;
+        }
+        if (!temporary.renameTo(file)) {
+            Log.w(TAG, "Could not store program binary " + file.getName());
+            temporary.delete();
+        }
+    }
+
+    private static int compile(String vertexCode, String fragmentCode, boolean isRetrievable) {
+        int vertex = loadShader(GLES20.GL_VERTEX_SHADER, vertexCode);
+        if (vertex == 0) {
+            return 0;
+        }
+        int fragment = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentCode);
+        if (fragment == 0) {
+            GLES20.glDeleteShader(vertex);
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        if (program != 0) {
+            GLES20.glAttachShader(program, vertex);
+            GLES20.glAttachShader(program, fragment);
+            if (isRetrievable) {
+                GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+            }
+            GLES20.glLinkProgram(program);
+            int[] linkStatus = new int[1];
+            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+            if (linkStatus[0] != GLES20.GL_TRUE) {
+                Log.e(TAG, "Could not link program " + GLES20.glGetProgramInfoLog(program));
+                GLES20.glDeleteProgram(program);
+                program = 0;
+            }
+        }
+
+        // The program keeps what it needs; the shaders are deleted with it.
+        GLES20.glDeleteShader(vertex);
+        GLES20.glDeleteShader(fragment);
+        return program;
+    }
+
+    private static int loadShader(int shaderType, String source) {
+        int shader = GLES20.glCreateShader(shaderType);
+        if (0 != shader) {
+            GLES20.glShaderSource(shader, source);
+            GLES20.glCompileShader(shader);
+            int[] compiled = new int[1];
+            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+            if (compiled[0] == 0) {
+                Log.e(TAG, "glError: Could not compile shader " + shaderType);
+                Log.e(TAG, "glError: " + GLES20.glGetShaderInfoLog(shader));
+                GLES20.glDeleteShader(shader);
+                shader = 0;
+            }
+        }
+        return shader;
+    }
+}
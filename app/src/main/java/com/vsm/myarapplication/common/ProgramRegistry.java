@@ -0,0 +1,259 @@
+package com.vsm.myarapplication.common;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares linked shader programs between the displays of a GL context. A program is keyed by a
+ * hash of its vertex and fragment source, so displays that use the same shaders get the same
+ * program, and it is deleted when the last of them releases it. When the GL context changes,
+ * for example because the surface was recreated, the programs of the previous context are
+ * forgotten, because they were destroyed with it. The renderers therefore release the programs
+ * of their displays when the surface is created again, before the displays acquire new ones, so
+ * that a program of the lost context is never taken for a program of the current one.
+ * <p>
+ * With a cache directory, linked programs are stored as program binaries where the driver
+ * supports them, so later launches skip the compilation; see {@link ProgramLinker}.
+ * <p>
+ * Only the GL thread may use the registry.
+ */
+public class ProgramRegistry {
+    /**
+     * Name of the directory of the program binaries within the cache directory of the app.
+     */
+    public static final String CACHE_DIR_NAME = "programs";
+
+    private static final String TAG = ProgramRegistry.class.getSimpleName();
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // OpenGL ES 3.0, as reported in ConfigurationInfo.reqGlEsVersion.
+    private static final int GLES_VERSION_3_0 = 0x30000;
+
+    private static final ProgramRegistry DEFAULT = new ProgramRegistry(new ProgramLinker());
+
+    private final Linker mLinker;
+
+    private final Map<Long, Entry> mEntries = new HashMap<>();
+
+    // Programs that are not shared because of a key collision.
+    private final Set<Integer> mUnsharedPrograms = new HashSet<>();
+
+    private Object mContext;
+
+    private File mCacheDir;
+
+    ProgramRegistry(Linker linker) {
+        mLinker = linker;
+    }
+
+    /**
+     * Obtain the registry shared by all displays.
+     *
+     * @return The registry.
+     */
+    public static ProgramRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Obtain the OpenGL ES version of the GL contexts that the surface views create: 3 where
+     * the device supports it, because program binaries are only cached on OpenGL ES 3
+     * contexts, and 2 otherwise, where the programs are compiled at every launch. The shaders
+     * are written for OpenGL ES 2, and run unchanged on both.
+     *
+     * @param context Context.
+     * @return Version for {@link android.opengl.GLSurfaceView#setEGLContextClientVersion(int)}.
+     */
+    public static int getEglContextClientVersion(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null
+                && activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= GLES_VERSION_3_0) {
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * Set the directory of the program binaries. This method is called before the displays
+     * are initialized, in {@link android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}.
+     *
+     * @param cacheDir Cache directory, or null to always compile.
+     */
+    public void setCacheDir(File cacheDir) {
+        mCacheDir = cacheDir;
+    }
+
+    /**
+     * Obtain the program of the given shaders, linking it if no display of the current GL
+     * context uses it yet. Every successful call must be matched by {@link #release(int)}.
+     *
+     * @param vertexCode Source of the vertex shader.
+     * @param fragmentCode Source of the fragment shader.
+     * @return Program, or 0 if the shaders could not be compiled or linked.
+     */
+    public int acquire(String vertexCode, String fragmentCode) {
+        forgetLostContext();
+        long key = getKey(vertexCode, fragmentCode);
+        Entry entry = mEntries.get(key);
+        if (entry != null && entry.isFor(vertexCode, fragmentCode)) {
+            entry.referenceCount++;
+            return entry.program;
+        }
+        if (entry != null) {
+            // A hash collision; the program is linked, but not shared.
+            Log.w(TAG, "Program key collision " + Long.toHexString(key));
+            int program = mLinker.link(key, vertexCode, fragmentCode, null);
+            if (program != 0) {
+                mUnsharedPrograms.add(program);
+            }
+            return program;
+        }
+        int program = mLinker.link(key, vertexCode, fragmentCode, mCacheDir);
+        if (program != 0) {
+            mEntries.put(key, new Entry(vertexCode, fragmentCode, program));
+        }
+        return program;
+    }
+
+    /**
+     * Release a program obtained by {@link #acquire}. It is deleted when no display uses it.
+     * A program of a lost GL context is ignored.
+     *
+     * @param program Program, or 0.
+     */
+    public void release(int program) {
+        if (program == 0 || forgetLostContext()) {
+            return;
+        }
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.program != program) {
+                continue;
+            }
+            entry.referenceCount--;
+            if (entry.referenceCount == 0) {
+                iterator.remove();
+                mLinker.delete(program);
+            }
+            return;
+        }
+
+        if (mUnsharedPrograms.remove(program)) {
+            mLinker.delete(program);
+        }
+    }
+
+    /**
+     * Obtain the number of displays that use a program of the current GL context.
+     *
+     * @param program Program.
+     * @return Number of unreleased acquisitions.
+     */
+    int getReferenceCount(int program) {
+        for (Entry entry : mEntries.values()) {
+            if (entry.program == program) {
+                return entry.referenceCount;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compute the 64-bit FNV-1a hash of the shader sources.
+     *
+     * @param vertexCode Source of the vertex shader.
+     * @param fragmentCode Source of the fragment shader.
+     * @return Key of the program.
+     */
+    static long getKey(String vertexCode, String fragmentCode) {
+        long hash = hash(FNV_OFFSET_BASIS, vertexCode);
+
+        // A separator keeps "ab" + "c" apart from "a" + "bc".
+        hash = (hash ^ 0xffff) * FNV_PRIME;
+        return hash(hash, fragmentCode);
+    }
+
+    private static long hash(long seed, String text) {
+        long hash = seed;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Returns true if the context changed since the last call.
+    private boolean forgetLostContext() {
+        Object context = mLinker.getCurrentContext();
+        if (context == mContext || (context != null && context.equals(mContext))) {
+            return false;
+        }
+        mContext = context;
+        mEntries.clear();
+        mUnsharedPrograms.clear();
+        return true;
+    }
+
+    /**
+     * Compiles and links programs for the registry.
+     */
+    interface Linker {
+        /**
+         * Obtain the current GL context.
+         *
+         * @return An object that is equal for the same context.
+         */
+        Object getCurrentContext();
+
+        /**
+         * Create a program from its shaders.
+         *
+         * @param key Key of the program.
+         * @param vertexCode Source of the vertex shader.
+         * @param fragmentCode Source of the fragment shader.
+         * @param cacheDir Directory of the program binaries, or null.
+         * @return Program, or 0 on failure.
+         */
+        int link(long key, String vertexCode, String fragmentCode, File cacheDir);
+
+        /**
+         * Delete a program.
+         *
+         * @param program Program.
+         */
+        void delete(int program);
+    }
+
+    private static class Entry {
+        final String vertexCode;
+
+        final String fragmentCode;
+
+        final int program;
+
+        int referenceCount = 1;
+
+        Entry(String vertexCode, String fragmentCode, int program) {
+            this.vertexCode = vertexCode;
+            this.fragmentCode = fragmentCode;
+            this.program = program;
+        }
+
+        boolean isFor(String vertex, String fragment) {
+            return vertexCode.equals(vertex) && fragmentCode.equals(fragment);
+        }
+    }
+}
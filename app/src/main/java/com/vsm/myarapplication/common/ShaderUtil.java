@@ -21,32 +21,183 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.vsm.myarapplication.BuildConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class is used to read shader code and compile links.
+ * <p>
+ * Each glGetError may stall the pipeline, so {@link #checkGlError} follows a policy. Outside
+ * a frame, for example while a display is initialized, every check runs. Inside a frame,
+ * which the renderers mark with {@link #beginGlFrame()} and {@link #endGlFrame(String)}, the
+ * checks run on every frame with {@link #GL_CHECK_ALWAYS}, the default of debug builds; on
+ * every Nth frame with {@link #GL_CHECK_SAMPLED}; or not at all with
+ * {@link #GL_CHECK_FRAME_END}, the default of release builds. In every policy the end of a
+ * frame collects the errors that no check saw. Detected errors are counted per call site; the
+ * errors collected at the end of a frame count for the last call site that the frame passed,
+ * checked or not, or for the frame end of the renderer if it passed none.
  *
  * @author HW
  * @since 2020-04-05
  */
 public class ShaderUtil {
+    /**
+     * Check at every call site in every frame.
+     */
+    public static final int GL_CHECK_ALWAYS = 0;
+
+    /**
+     * Check at every call site in one frame out of the sample interval, and at the end of the
+     * other frames.
+     */
+    public static final int GL_CHECK_SAMPLED = 1;
+
+    /**
+     * Check only at the end of each frame.
+     */
+    public static final int GL_CHECK_FRAME_END = 2;
+
+    /**
+     * Sample interval in frames, unless set by {@link #setGlCheckPolicy(int, int)}.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 60;
+
+    private static final String FRAME_END_LABEL = "Frame end.";
+
+    private static volatile int sGlCheckPolicy = BuildConfig.DEBUG ? GL_CHECK_ALWAYS : GL_CHECK_FRAME_END;
+
+    private static volatile int sSampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    // The fields below are only used by the GL thread.
+    private static GlApi sGl = new Gles20Api();
+
+    private static boolean sIsInFrame = false;
+
+    private static boolean sIsFrameChecked = true;
+
+    private static long sFrameIndex;
+
+    // Last call site of checkGlError in the current frame, or null before the first.
+    private static String sLastCheckTag;
+
+    private static String sLastCheckLabel;
+
+    // Detected errors per call site, keyed by tag and label. Only changed when an error occurs.
+    private static final Map<String, Integer> ERROR_COUNTS = new HashMap<>();
+
     private ShaderUtil() {
     }
 
     /**
-     * Check OpenGL ES running exceptions and throw them when necessary.
+     * Set when {@link #checkGlError} calls glGetError inside a frame.
+     *
+     * @param policy {@link #GL_CHECK_ALWAYS}, {@link #GL_CHECK_SAMPLED} or {@link #GL_CHECK_FRAME_END}.
+     * @param sampleInterval Number of frames per checked frame with {@link #GL_CHECK_SAMPLED}.
+     */
+    public static void setGlCheckPolicy(int policy, int sampleInterval) {
+        if (policy < GL_CHECK_ALWAYS || policy > GL_CHECK_FRAME_END || sampleInterval <= 0) {
+            throw new IllegalArgumentException("Invalid GL check policy: " + policy + ", " + sampleInterval);
+        }
+        sGlCheckPolicy = policy;
+        sSampleInterval = sampleInterval;
+    }
+
+    /**
+     * Mark the start of a frame. This method is called first in onDrawFrame.
+     */
+    public static void beginGlFrame() {
+        sIsInFrame = true;
+        sLastCheckTag = null;
+        sLastCheckLabel = null;
+        sFrameIndex++;
+        int policy = sGlCheckPolicy;
+        sIsFrameChecked = policy == GL_CHECK_ALWAYS
+                || (policy == GL_CHECK_SAMPLED && sFrameIndex % sSampleInterval == 0);
+    }
+
+    /**
+     * Mark the end of a frame and collect the errors that were not checked during it. The
+     * errors are logged and counted for the last call site of the frame, but not thrown, so it
+     * can be called in a finally block.
+     *
+     * @param tag Tag of the renderer.
+     */
+    public static void endGlFrame(@NonNull String tag) {
+        sIsInFrame = false;
+        sIsFrameChecked = true;
+        if (sLastCheckTag == null) {
+            drainGlErrors(tag, FRAME_END_LABEL);
+        } else {
+            drainGlErrors(sLastCheckTag, sLastCheckLabel);
+        }
+        sLastCheckTag = null;
+        sLastCheckLabel = null;
+    }
+
+    /**
+     * Check OpenGL ES running exceptions and throw them when necessary. Inside a frame, the
+     * check is skipped unless the policy checks the frame.
      *
      * @param tag Exception information.
      * @param label Program label.
      */
     public static void checkGlError(@NonNull String tag, @NonNull String label) {
+        if (sIsInFrame) {
+            sLastCheckTag = tag;
+            sLastCheckLabel = label;
+            if (!sIsFrameChecked) {
+                return;
+            }
+        }
+        int lastError = drainGlErrors(tag, label);
+        if (lastError != GLES20.GL_NO_ERROR) {
+            throw new ArDemoRuntimeException(label + ": glError " + lastError);
+        }
+    }
+
+    /**
+     * Obtain the number of detected errors per call site.
+     *
+     * @return Copy of the counts, keyed by tag and label.
+     */
+    public static Map<String, Integer> getGlErrorCounts() {
+        synchronized (ERROR_COUNTS) {
+            return new HashMap<>(ERROR_COUNTS);
+        }
+    }
+
+    /**
+     * Forget the detected errors.
+     */
+    public static void resetGlErrorCounts() {
+        synchronized (ERROR_COUNTS) {
+            ERROR_COUNTS.clear();
+        }
+    }
+
+    // Replace the GL commands, so the policy can be tested without a GPU.
+    static void setGlApi(GlApi gl) {
+        sGl = gl;
+    }
+
+    private static int drainGlErrors(String tag, String label) {
         int lastError = GLES20.GL_NO_ERROR;
-        int error = GLES20.glGetError();
+        int error = sGl.glGetError();
         while (error != GLES20.GL_NO_ERROR) {
             Log.e(tag, label + ": glError " + error);
+            countGlError(tag + ": " + label);
             lastError = error;
-            error = GLES20.glGetError();
+            error = sGl.glGetError();
         }
-        if (lastError != GLES20.GL_NO_ERROR) {
-            throw new ArDemoRuntimeException(label + ": glError " + lastError);
+        return lastError;
+    }
+
+    private static void countGlError(String site) {
+        synchronized (ERROR_COUNTS) {
+            Integer count = ERROR_COUNTS.get(site);
+            ERROR_COUNTS.put(site, count == null ? 1 : count + 1);
         }
     }
-}
\ No newline at end of file
+}
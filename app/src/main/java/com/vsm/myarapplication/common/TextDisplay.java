@@ -16,51 +16,183 @@
 
 package com.vsm.myarapplication.common;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.Executor;
+
 /**
  * This class is used to display information on the screen. Before using this function,
  * you need to set listening, where the information is processed. In this sample, a method
  * for displaying information on the screen is created in the UI thread.
+ * <p>
+ * The text is published to the UI thread only when it differs from the text published last,
+ * and at most once per minimum interval; a change that comes too early is published by a
+ * later frame. The text is copied into reused char buffers and handed over by one reused
+ * task, which is posted again only after the UI thread has run it, so a steady overlay
+ * neither allocates nor floods the message queue.
  *
  * @author HW
  * @since 2020-03-16
  */
 public class TextDisplay {
-    private OnTextInfoChangeListener mTextInfoListener;
+    /**
+     * Minimum interval between two publications, unless set by the constructor.
+     */
+    public static final long DEFAULT_MIN_INTERVAL_MS = 200L;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final long mMinIntervalMs;
+
+    private final Executor mUiExecutor;
+
+    private volatile OnTextInfoChangeListener mTextInfoListener;
+
+    // The fields below are only used by the GL thread.
+    private char[] mPublished = new char[INITIAL_CAPACITY];
+
+    private int mPublishedLength;
+
+    private boolean mHasPublished = false;
+
+    private long mLastPublishTime;
+
+    // The fields below are guarded by mLock and hand the text to the UI thread.
+    private final Object mLock = new Object();
+
+    private char[] mPending = new char[INITIAL_CAPACITY];
+
+    private int mPendingLength;
+
+    private boolean mIsPosted = false;
+
+    // Only used by the UI thread. A TextView keeps a reference to the chars it displays, so they
+    // are only changed right before the next call of the listener.
+    private char[] mShown = new char[INITIAL_CAPACITY];
+
+    private final Runnable mShowTask = new Runnable() {
+        @Override
+        public void run() {
+            int length;
+            synchronized (mLock) {
+                length = mPendingLength;
+                if (mShown.length < length) {
+                    mShown = new char[Math.max(length, mShown.length * 2)];
+                }
+                System.arraycopy(mPending, 0, mShown, 0, length);
+                mIsPosted = false;
+            }
+            OnTextInfoChangeListener listener = mTextInfoListener;
+            if (listener != null) {
+                listener.textInfoChanged(mShown, length, 0, 0);
+            }
+        }
+    };
+
+    /**
+     * Create a text display that publishes at most once per {@link #DEFAULT_MIN_INTERVAL_MS}.
+     */
+    public TextDisplay() {
+        this(DEFAULT_MIN_INTERVAL_MS);
+    }
+
+    /**
+     * Create a text display with a limited publication rate.
+     *
+     * @param minIntervalMs Minimum interval between two publications, in milliseconds.
+     */
+    public TextDisplay(long minIntervalMs) {
+        this(minIntervalMs, new Executor() {
+            private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable command) {
+                mHandler.post(command);
+            }
+        });
+    }
+
+    TextDisplay(long minIntervalMs, Executor uiExecutor) {
+        mMinIntervalMs = minIntervalMs;
+        mUiExecutor = uiExecutor;
+    }
 
     /**
      * Display the string information. This method is called in each frame
      * when {@link android.opengl.GLSurfaceView.Renderer#onDrawFrame}.
      *
-     * @param sb String builder.
+     * @param sb String builder, or null to clear the text.
      */
     public void onDrawFrame(StringBuilder sb) {
-        if (sb == null) {
-            showTextInfo();
-            return;
+        onDrawFrame(sb, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Publish the text if it changed and the minimum interval has passed.
+     *
+     * @param sb String builder, or null to clear the text.
+     * @param now Current time in milliseconds.
+     * @return true if the text was published.
+     */
+    boolean onDrawFrame(StringBuilder sb, long now) {
+        int length = sb == null ? 0 : sb.length();
+        if (mHasPublished && isPublished(sb, length)) {
+            return false;
+        }
+        if (mHasPublished && now - mLastPublishTime < mMinIntervalMs) {
+            return false;
+        }
+        if (mPublished.length < length) {
+            mPublished = new char[Math.max(length, mPublished.length * 2)];
+        }
+        if (length > 0) {
+            sb.getChars(0, length, mPublished, 0);
         }
-        showTextInfo(sb.toString());
+        mPublishedLength = length;
+        mHasPublished = true;
+        mLastPublishTime = now;
+        boolean isPostNeeded;
+        synchronized (mLock) {
+            if (mPending.length < length) {
+                mPending = new char[mPublished.length];
+            }
+            System.arraycopy(mPublished, 0, mPending, 0, length);
+            mPendingLength = length;
+            isPostNeeded = !mIsPosted;
+            mIsPosted = true;
+        }
+
+        // A task that is still queued shows the new text when it runs.
+        if (isPostNeeded) {
+            mUiExecutor.execute(mShowTask);
+        }
+        return true;
     }
 
     /**
      * Set the listener to display information in the UI thread. This method is called
-     * when {@link android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}.
+     * when {@link android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}. The next frame
+     * publishes its text even if it did not change.
      *
      * @param listener OnTextInfoChangeListener.
      */
     public void setListener(OnTextInfoChangeListener listener) {
         mTextInfoListener = listener;
+        mHasPublished = false;
     }
 
-    private void showTextInfo(String text) {
-        if (mTextInfoListener != null) {
-            mTextInfoListener.textInfoChanged(text, 0, 0);
+    private boolean isPublished(StringBuilder sb, int length) {
+        if (length != mPublishedLength) {
+            return false;
         }
-    }
-
-    private void showTextInfo() {
-        if (mTextInfoListener != null) {
-            mTextInfoListener.textInfoChanged(null, 0, 0);
+        for (int i = 0; i < length; i++) {
+            if (sb.charAt(i) != mPublished[i]) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -71,12 +203,14 @@ public class TextDisplay {
      */
     public interface OnTextInfoChangeListener {
         /**
-         * Display the given text.
+         * Display the given text. This method is called in the UI thread.
          *
-         * @param text Text to be displayed.
+         * @param text Chars of the text, which stay unchanged until the next call, so they
+         *     can be passed to {@link android.widget.TextView#setText(char[], int, int)}.
+         * @param length Number of chars of the text; 0 clears the text.
          * @param positionX X-coordinates of points
          * @param positionY Y-coordinates of points
          */
-        void textInfoChanged(String text, float positionX, float positionY);
+        void textInfoChanged(char[] text, int length, float positionX, float positionY);
     }
 }
@@ -18,7 +18,6 @@ package com.vsm.myarapplication.common;
 
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
-import android.util.Log;
 
 import com.huawei.hiar.ARFrame;
 
@@ -83,6 +82,12 @@ public class TextureDisplay {
 
     private int mCoordMatrix;
 
+    private int mAttribs;
+
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private FloatBuffer mVerBuffer;
 
     private FloatBuffer mTexTransformedBuffer;
@@ -97,54 +102,19 @@ public class TextureDisplay {
      * The constructor is a texture rendering utility class, used to create a texture rendering object.
      */
     public TextureDisplay() {
-        coordMatrixs = MatrixUtil.getOriginalMatrix();
-        initBuffers();
-    }
-
-    private static int createGlProgram() {
-        int vertex = loadShader(GLES20.GL_VERTEX_SHADER, BASE_VERTEX);
-        if (vertex == 0) {
-            return 0;
-        }
-        int fragment = loadShader(GLES20.GL_FRAGMENT_SHADER, BASE_FRAGMENT);
-        if (fragment == 0) {
-            return 0;
-        }
-        int program = GLES20.glCreateProgram();
-        if (program != 0) {
-            GLES20.glAttachShader(program, vertex);
-            GLES20.glAttachShader(program, fragment);
-            GLES20.glLinkProgram(program);
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                glError("Could not link program:" + GLES20.glGetProgramInfoLog(program));
-                GLES20.glDeleteProgram(program);
-                program = 0;
-            }
-        }
-        return program;
-    }
-
-    private static int loadShader(int shaderType, String source) {
-        int shader = GLES20.glCreateShader(shaderType);
-        if (0 != shader) {
-            GLES20.glShaderSource(shader, source);
-            GLES20.glCompileShader(shader);
-            int[] compiled = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-            if (compiled[0] == 0) {
-                glError("Could not compile shader:" + shaderType);
-                glError("GLES20 Error:" + GLES20.glGetShaderInfoLog(shader));
-                GLES20.glDeleteShader(shader);
-                shader = 0;
-            }
-        }
-        return shader;
+        this(new GlStateCache(new Gles20Api()));
     }
 
-    private static void glError(Object index) {
-        Log.e(TAG, "glError: " + index);
+    /**
+     * Create a texture rendering object that issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    public TextureDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
+        coordMatrixs = MatrixUtil.getOriginalMatrix();
+        initBuffers();
     }
 
     /**
@@ -164,7 +134,7 @@ public class TextureDisplay {
      */
     public void init() {
         int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
+        mGl.glGenTextures(1, textures, 0);
         mExternalTextureId = textures[0];
         generateExternalTexture();
         createProgram();
@@ -182,6 +152,15 @@ public class TextureDisplay {
         createProgram();
     }
 
+    /**
+     * Release the shader program. This method is called when
+     * {@link android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}, before {@link #init()}.
+     */
+    public void releaseProgram() {
+        ProgramRegistry.getDefault().release(mProgram);
+        mProgram = 0;
+    }
+
     /**
      * Obtain the texture ID.
      *
@@ -206,52 +185,53 @@ public class TextureDisplay {
         }
         clear();
 
-        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-        GLES20.glDepthMask(false);
+        // The camera image is drawn behind everything, without depth.
+        mGlState.disable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(false);
+        mGlState.disable(GLES20.GL_BLEND);
 
-        GLES20.glUseProgram(mProgram);
+        mGlState.useProgram(mProgram);
 
         // Set the texture ID.
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mExternalTextureId);
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mExternalTextureId);
 
         // Set the projection matrix.
-        GLES20.glUniformMatrix4fv(mMatrix, 1, false, mProjectionMatrix, 0);
+        mGl.glUniformMatrix4fv(mMatrix, 1, false, mProjectionMatrix, 0);
+
+        mGl.glUniformMatrix4fv(mCoordMatrix, 1, false, coordMatrixs, 0);
 
-        GLES20.glUniformMatrix4fv(mCoordMatrix, 1, false, coordMatrixs, 0);
+        // The vertices are read from client memory, so no buffer may be bound.
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGlState.setVertexAttribArrays(mAttribs);
 
         // Set the vertex.
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glVertexAttribPointer(mPosition, 2, GLES20.GL_FLOAT, false, 0, mVerBuffer);
+        mGl.glVertexAttribPointer(mPosition, 2, GLES20.GL_FLOAT, false, 0, mVerBuffer);
 
         // Set the texture coordinates.
-        GLES20.glEnableVertexAttribArray(mCoord);
-        GLES20.glVertexAttribPointer(mCoord, 2, GLES20.GL_FLOAT, false, 0, mTexTransformedBuffer);
+        mGl.glVertexAttribPointer(mCoord, 2, GLES20.GL_FLOAT, false, 0, mTexTransformedBuffer);
 
         // Number of vertices.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glDisableVertexAttribArray(mCoord);
-
-        GLES20.glDepthMask(true);
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        mGl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
         ShaderUtil.checkGlError(TAG, "On draw frame end.");
     }
 
     private void generateExternalTexture() {
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mExternalTextureId);
-        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
-        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_NEAREST);
+        mGlState.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mExternalTextureId);
+        mGl.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+        mGl.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+        mGl.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
+        mGl.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_NEAREST);
     }
 
     private void createProgram() {
-        mProgram = createGlProgram();
-        mPosition = GLES20.glGetAttribLocation(mProgram, "vPosition");
-        mCoord = GLES20.glGetAttribLocation(mProgram, "vCoord");
-        mMatrix = GLES20.glGetUniformLocation(mProgram, "vMatrix");
-        mTexture = GLES20.glGetUniformLocation(mProgram, "vTexture");
-        mCoordMatrix = GLES20.glGetUniformLocation(mProgram, "vCoordMatrix");
+        mProgram = ProgramRegistry.getDefault().acquire(BASE_VERTEX, BASE_FRAGMENT);
+        mPosition = mGl.glGetAttribLocation(mProgram, "vPosition");
+        mCoord = mGl.glGetAttribLocation(mProgram, "vCoord");
+        mAttribs = GlStateCache.getAttribBit(mPosition) | GlStateCache.getAttribBit(mCoord);
+        mMatrix = mGl.glGetUniformLocation(mProgram, "vMatrix");
+        mTexture = mGl.glGetUniformLocation(mProgram, "vTexture");
+        mCoordMatrix = mGl.glGetUniformLocation(mProgram, "vCoordMatrix");
     }
 
     private void initBuffers() {
@@ -279,7 +259,7 @@ public class TextureDisplay {
      * Clear canvas.
      */
     private void clear() {
-        GLES20.glClearColor(RGB_CLEAR_VALUE, RGB_CLEAR_VALUE, RGB_CLEAR_VALUE, 1.0f);
-        GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT);
+        mGl.glClearColor(RGB_CLEAR_VALUE, RGB_CLEAR_VALUE, RGB_CLEAR_VALUE, 1.0f);
+        mGl.glClear(GLES20.GL_DEPTH_BUFFER_BIT);
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.huawei.hiar.exceptions.ARUnavailableServiceNotInstalledException;
 import com.vsm.myarapplication.R;
 import com.vsm.myarapplication.common.ConnectAppMarketActivity;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.ProgramRegistry;
 import com.vsm.myarapplication.hand.rendering.HandRenderManager;
 
 public class HandActivity extends AppCompatActivity {
@@ -56,7 +57,7 @@ public class HandActivity extends AppCompatActivity {
         mSurfaceView.setPreserveEGLContextOnPause(true);
 
         // Set the OpenGLES version.
-        mSurfaceView.setEGLContextClientVersion(2);
+        mSurfaceView.setEGLContextClientVersion(ProgramRegistry.getEglContextClientVersion(this));
 
         // Set the EGL configuration chooser, including for the
         // number of bits of the color buffer and the number of depth bits.
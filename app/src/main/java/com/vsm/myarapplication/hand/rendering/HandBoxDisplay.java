@@ -20,6 +20,9 @@ import android.util.Log;
 
 import com.huawei.hiar.ARHand;
 import com.huawei.hiar.ARTrackable;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.MatrixUtil;
 import com.vsm.myarapplication.common.ShaderUtil;
 
@@ -47,10 +50,16 @@ class HandBoxDisplay implements HandRelatedDisplay {
 
     private int mVboSize = INITIAL_BUFFER_POINTS * BYTES_PER_POINT;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private int mProgram;
 
     private int mPosition;
 
+    private int mAttribs;
+
     private int mColor;
 
     private int mModelViewProjectionMatrix;
@@ -61,6 +70,23 @@ class HandBoxDisplay implements HandRelatedDisplay {
 
     private float[] mMVPMatrix;
 
+    /**
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    HandBoxDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    HandBoxDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
+    }
+
     /**
      * Create and build a shader for the hand gestures on the OpenGL thread,
      * which is called when {@link HandRenderManager#onSurfaceCreated}.
@@ -70,23 +96,33 @@ class HandBoxDisplay implements HandRelatedDisplay {
         ShaderUtil.checkGlError(TAG, "Init start.");
         mMVPMatrix = MatrixUtil.getOriginalMatrix();
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        mGl.glGenBuffers(1, buffers, 0);
         mVbo = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         createProgram();
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Release the shader program. This method is called when {@link HandRenderManager#onSurfaceCreated},
+     * before {@link #init()}.
+     */
+    @Override
+    public void releaseProgram() {
+        HandShaderUtil.releaseGlProgram(mProgram);
+        mProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create program start.");
         mProgram = HandShaderUtil.createGlProgram();
-        mPosition = GLES20.glGetAttribLocation(mProgram, "inPosition");
-        mColor = GLES20.glGetUniformLocation(mProgram, "inColor");
-        mPointSize = GLES20.glGetUniformLocation(mProgram, "inPointSize");
-        mModelViewProjectionMatrix = GLES20.glGetUniformLocation(mProgram, "inMVPMatrix");
+        mPosition = mGl.glGetAttribLocation(mProgram, "inPosition");
+        mAttribs = GlStateCache.getAttribBit(mPosition);
+        mColor = mGl.glGetUniformLocation(mProgram, "inColor");
+        mPointSize = mGl.glGetUniformLocation(mProgram, "inPointSize");
+        mModelViewProjectionMatrix = mGl.glGetUniformLocation(mProgram, "inMVPMatrix");
         ShaderUtil.checkGlError(TAG, "Create program start.");
     }
 
@@ -130,7 +166,7 @@ class HandBoxDisplay implements HandRelatedDisplay {
         };
         int gesturePointsNum = glGesturePoints.length / COORDINATE_DIMENSION;
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         mNumPoints = gesturePointsNum;
         if (mVboSize < mNumPoints * BYTES_PER_POINT) {
@@ -138,13 +174,12 @@ class HandBoxDisplay implements HandRelatedDisplay {
                 // If the size of VBO is insufficient to accommodate the new point cloud, resize the VBO.
                 mVboSize *= 2;
             }
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
+            mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         }
         Log.d(TAG, "gesture.getGestureHandPointsNum()" + mNumPoints);
         FloatBuffer mVertices = FloatBuffer.wrap(glGesturePoints);
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT,
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT,
                 mVertices);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         ShaderUtil.checkGlError(TAG, "Update hand box data end.");
     }
 
@@ -153,25 +188,23 @@ class HandBoxDisplay implements HandRelatedDisplay {
      */
     private void drawHandBox() {
         ShaderUtil.checkGlError(TAG, "Draw hand box start.");
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glEnableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
-        GLES20.glVertexAttribPointer(
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.useProgram(mProgram);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGl.glVertexAttribPointer(
                 mPosition, COORDINATE_DIMENSION, GLES20.GL_FLOAT, false, BYTES_PER_POINT, 0);
-        GLES20.glUniform4f(mColor, 1.0f, 0.0f, 0.0f, 1.0f);
+        mGl.glUniform4f(mColor, 1.0f, 0.0f, 0.0f, 1.0f);
 
-        GLES20.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, mMVPMatrix, 0);
+        mGl.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, mMVPMatrix, 0);
 
         // Set the size of the rendering vertex.
-        GLES20.glUniform1f(mPointSize, 50.0f);
+        mGl.glUniform1f(mPointSize, 50.0f);
 
         // Set the width of a rendering stroke.
-        GLES20.glLineWidth(18.0f);
-        GLES20.glDrawArrays(GLES20.GL_LINE_LOOP, 0, mNumPoints);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glDisableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGlState.lineWidth(18.0f);
+        mGl.glDrawArrays(GLES20.GL_LINE_LOOP, 0, mNumPoints);
 
         ShaderUtil.checkGlError(TAG, "Draw hand box end.");
     }
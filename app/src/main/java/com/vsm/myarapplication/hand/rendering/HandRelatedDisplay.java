@@ -31,6 +31,11 @@ interface HandRelatedDisplay {
      */
     void init();
 
+    /**
+     * Release the shader program, before init when the surface is created again.
+     */
+    void releaseProgram();
+
     /**
      * Render objects, call per frame
      *
@@ -28,9 +28,16 @@ import com.huawei.hiar.ARHand;
 import com.huawei.hiar.ARSession;
 import com.vsm.myarapplication.common.ArDemoRuntimeException;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.FrameProfiler;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.ProgramRegistry;
+import com.vsm.myarapplication.common.ShaderUtil;
 import com.vsm.myarapplication.common.TextDisplay;
 import com.vsm.myarapplication.common.TextureDisplay;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -52,34 +59,62 @@ public class HandRenderManager implements GLSurfaceView.Renderer {
 
     private static final float PROJECTION_MATRIX_FAR = 100.0f;
 
-    private static final float UPDATE_INTERVAL = 0.5f;
+    // Stages of a frame, in the order of the profiler stage names.
+    private static final int STAGE_UPDATE = 0;
 
-    private int frames = 0;
+    private static final int STAGE_BACKGROUND = 1;
 
-    private long lastInterval;
+    private static final int STAGE_TRACKABLES = 2;
+
+    private static final int STAGE_UI = 3;
+
+    private static final int STAGE_DISPLAYS = 4;
+
+    // Number of hand records kept for the overlay and the dump.
+    private static final int TELEMETRY_CAPACITY = 256;
+
+    // The text is formatted at most as often as the text display publishes it.
+    private static final long MESSAGE_INTERVAL_NS = TextDisplay.DEFAULT_MIN_INTERVAL_MS * 1_000_000L;
 
     private ARSession mSession;
 
-    private float fps;
+    private FrameProfiler mProfiler = new FrameProfiler("update", "background", "trackables", "ui", "displays");
 
     private Activity mActivity;
 
     private TextView mTextView;
 
-    private TextureDisplay mTextureDisplay = new TextureDisplay();
+    private TextureDisplay mTextureDisplay;
+
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
 
     private TextDisplay mTextDisplay = new TextDisplay();
 
+    // Reused for the text of each frame, which is only published when it changes.
+    private StringBuilder mMessageBuilder = new StringBuilder();
+
+    private HandTelemetry mTelemetry = new HandTelemetry(TELEMETRY_CAPACITY);
+
+    private volatile boolean mIsOverlayVisible = true;
+
+    private long mLastMessageTime;
+
     private ArrayList<HandRelatedDisplay> mHandRelatedDisplays = new ArrayList<>();
 
     private DisplayRotationManager mDisplayRotationManager;
 
 
     public HandRenderManager(Activity activity) {
+        GlStateCache glState = new GlStateCache(new Gles20Api());
         mActivity = activity;
-        HandRelatedDisplay handBoxDisplay = new HandBoxDisplay();
-        HandRelatedDisplay mHandSkeletonDisplay = new HandSkeletonDisplay();
-        HandRelatedDisplay mHandSkeletonLineDisplay = new HandSkeletonLineDisplay();
+        mGl = glState.getGlApi();
+        mGlState = glState;
+        mTextureDisplay = new TextureDisplay(glState);
+        HandRelatedDisplay handBoxDisplay = new HandBoxDisplay(glState);
+        HandRelatedDisplay mHandSkeletonDisplay = new HandSkeletonDisplay(glState);
+        HandRelatedDisplay mHandSkeletonLineDisplay = new HandSkeletonLineDisplay(glState);
         mHandRelatedDisplays.add(handBoxDisplay);
         mHandRelatedDisplays.add(mHandSkeletonDisplay);
         mHandRelatedDisplays.add(mHandSkeletonLineDisplay);
@@ -124,58 +159,86 @@ public class HandRenderManager implements GLSurfaceView.Renderer {
         mTextView = textView;
     }
 
+    /**
+     * Set whether the text overlay is shown. The hand data is only formatted to text while it is.
+     *
+     * @param isVisible true if the overlay is shown.
+     */
+    public void setOverlayVisible(boolean isVisible) {
+        mIsOverlayVisible = isVisible;
+    }
+
+    /**
+     * Start dumping the hand data of each frame to a binary file for offline analysis. This
+     * method must be called in the GL thread, for example through
+     * {@link android.opengl.GLSurfaceView#queueEvent}.
+     *
+     * @param file Dump file, which is replaced.
+     */
+    public void startTelemetryDump(File file) {
+        mTelemetry.startDump(file);
+    }
+
+    /**
+     * Finish the dump started by {@link #startTelemetryDump(File)}. This method must be called
+     * in the GL thread.
+     */
+    public void stopTelemetryDump() {
+        mTelemetry.stopDump();
+    }
+
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         // Clear the original color and set a new color.
-        GLES20.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGl.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGlState.invalidate();
+        ProgramRegistry.getDefault().setCacheDir(new File(mActivity.getCacheDir(), ProgramRegistry.CACHE_DIR_NAME));
+
+        // The programs of the previous surface are released before any display acquires one.
+        mTextureDisplay.releaseProgram();
+        for (HandRelatedDisplay handRelatedDisplay : mHandRelatedDisplays) {
+            handRelatedDisplay.releaseProgram();
+        }
         for (HandRelatedDisplay handRelatedDisplay : mHandRelatedDisplays) {
             handRelatedDisplay.init();
         }
         mTextureDisplay.init();
         mTextDisplay.setListener(new TextDisplay.OnTextInfoChangeListener() {
             @Override
-            public void textInfoChanged(String text, float positionX, float positionY) {
-                showHandTypeTextView(text, positionX, positionY);
+            public void textInfoChanged(char[] text, int length, float positionX, float positionY) {
+                showHandTypeTextView(text, length, positionX, positionY);
             }
         });
     }
 
     /**
-     * Create a text display thread that is used for text update tasks.
+     * Display the text. This method is called back by TextDisplay in the UI thread.
      *
-     * @param text Gesture information displayed on the screen
+     * @param text Chars of the information displayed on the screen.
+     * @param length Number of chars to display.
      * @param positionX The left padding in pixels.
      * @param positionY The right padding in pixels.
      */
-    private void showHandTypeTextView(final String text, final float positionX, final float positionY) {
-        mActivity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mTextView.setTextColor(Color.WHITE);
-
-                // Set the font size.
-                mTextView.setTextSize(10f);
-                if (text != null) {
-                    mTextView.setText(text);
-                    mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
-                } else {
-                    mTextView.setText("");
-                }
-            }
-        });
+    private void showHandTypeTextView(char[] text, int length, float positionX, float positionY) {
+        mTextView.setTextColor(Color.WHITE);
+
+        // Set the font size.
+        mTextView.setTextSize(10f);
+        mTextView.setText(text, 0, length);
+        mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
     }
 
     @Override
     public void onSurfaceChanged(GL10 unused, int width, int height) {
         mTextureDisplay.onSurfaceChanged(width, height);
-        GLES20.glViewport(0, 0, width, height);
+        mGl.glViewport(0, 0, width, height);
         mDisplayRotationManager.updateViewportRotation(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
         // Clear the color buffer and notify the driver not to load the data of the previous frame.
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
         if (mSession == null) {
             return;
@@ -184,9 +247,16 @@ public class HandRenderManager implements GLSurfaceView.Renderer {
             mDisplayRotationManager.updateArSessionDisplayGeometry(mSession);
         }
 
+        mProfiler.beginFrame();
+        ShaderUtil.beginGlFrame();
         try {
+            mProfiler.begin(STAGE_UPDATE);
             mSession.setCameraTextureName(mTextureDisplay.getExternalTextureId());
             ARFrame arFrame = mSession.update();
+
+            // The session binds the camera texture, so the state of the last frame is unknown.
+            mGlState.beginFrame();
+            mProfiler.end(STAGE_UPDATE);
             ARCamera arCamera = arFrame.getCamera();
 
             // The size of the projection matrix is 4 * 4.
@@ -195,124 +265,72 @@ public class HandRenderManager implements GLSurfaceView.Renderer {
             // Obtain the projection matrix through ARCamera.
             arCamera.getProjectionMatrix(projectionMatrix, PROJECTION_MATRIX_OFFSET, PROJECTION_MATRIX_NEAR,
                     PROJECTION_MATRIX_FAR);
+            mProfiler.begin(STAGE_BACKGROUND);
             mTextureDisplay.onDrawFrame(arFrame);
+            mProfiler.end(STAGE_BACKGROUND);
+            mProfiler.begin(STAGE_TRACKABLES);
             Collection<ARHand> hands = mSession.getAllTrackables(ARHand.class);
+            mProfiler.end(STAGE_TRACKABLES);
+            mProfiler.begin(STAGE_UI);
             if (hands.size() == 0) {
                 mTextDisplay.onDrawFrame(null);
+                mProfiler.end(STAGE_UI);
                 return;
             }
+            long now = System.nanoTime();
+            int handCount = 0;
             for (ARHand hand : hands) {
-                // Update the hand recognition information to be displayed on the screen.
-                StringBuilder sb = new StringBuilder();
-                updateMessageData(sb, hand);
+                recordHand(now, hand);
+                handCount++;
+            }
 
-                // Display hand recognition information on the screen.
-                mTextDisplay.onDrawFrame(sb);
+            // Update the hand recognition information to be displayed on the screen.
+            if (mIsOverlayVisible && now - mLastMessageTime >= MESSAGE_INTERVAL_NS) {
+                mLastMessageTime = now;
+                mMessageBuilder.setLength(0);
+                updateMessageData(mMessageBuilder, handCount);
+                mTextDisplay.onDrawFrame(mMessageBuilder);
             }
+            mProfiler.end(STAGE_UI);
+            mProfiler.begin(STAGE_DISPLAYS);
             for (HandRelatedDisplay handRelatedDisplay : mHandRelatedDisplays) {
                 handRelatedDisplay.onDrawFrame(hands, projectionMatrix);
             }
+            mProfiler.end(STAGE_DISPLAYS);
         } catch (ArDemoRuntimeException e) {
             Log.e(TAG, "Exception on the ArDemoRuntimeException!");
         } catch (Throwable t) {
             // This prevents the app from crashing due to unhandled exceptions.
             Log.e(TAG, "Exception on the OpenGL thread", t);
+        } finally {
+            ShaderUtil.endGlFrame(TAG);
+            mProfiler.endFrame();
         }
+        mProfiler.logReportIfDue(TAG);
+    }
+
+    private void recordHand(long now, ARHand hand) {
+        mTelemetry.record(now, hand.getHandId(), hand.getHandtype(), hand.getGestureType(),
+                hand.getGestureCoordinateSystem(), hand.getSkeletonCoordinateSystem(), hand.getGestureOrientation(),
+                hand.getGestureAction(), hand.getGestureCenter(), hand.getGestureHandBox(),
+                hand.getHandskeletonArray().length, hand.getHandSkeletonConnection().length);
     }
 
     /**
      * Update gesture-related information.
      *
      * @param sb String buffer.
-     * @param hand ARHand.
+     * @param handCount Number of hands recorded in this frame.
      */
-    private void updateMessageData(StringBuilder sb, ARHand hand) {
-        float fpsResult = doFpsCalculate();
-        sb.append("FPS=").append(fpsResult).append(System.lineSeparator());
-        addHandNormalStringBuffer(sb, hand);
-        addGestureActionStringBuffer(sb, hand);
-        addGestureCenterStringBuffer(sb, hand);
-        float[] gestureHandBoxPoints = hand.getGestureHandBox();
-
-        sb.append("GestureHandBox length:[").append(gestureHandBoxPoints.length).append("]")
-                .append(System.lineSeparator());
-        for (int i = 0; i < gestureHandBoxPoints.length; i++) {
-            Log.i(TAG, "gesturePoints:" + gestureHandBoxPoints[i]);
-            sb.append("gesturePoints[").append(i).append("]:[").append(gestureHandBoxPoints[i]).append("]")
-                    .append(System.lineSeparator());
-        }
-        addHandSkeletonStringBuffer(sb, hand);
-    }
-
-    private void addHandNormalStringBuffer(StringBuilder sb, ARHand hand) {
-        sb.append("GestureType=").append(hand.getGestureType()).append(System.lineSeparator());
-        sb.append("GestureCoordinateSystem=").append(hand.getGestureCoordinateSystem()).append(System.lineSeparator());
-        float[] gestureOrientation = hand.getGestureOrientation();
-        sb.append("gestureOrientation length:[").append(gestureOrientation.length).append("]")
-                .append(System.lineSeparator());
-        for (int i = 0; i < gestureOrientation.length; i++) {
-            Log.i(TAG, "gestureOrientation:" + gestureOrientation[i]);
-            sb.append("gestureOrientation[").append(i).append("]:[").append(gestureOrientation[i])
-                    .append("]").append(System.lineSeparator());
-        }
-        sb.append(System.lineSeparator());
-    }
-
-    private void addGestureActionStringBuffer(StringBuilder sb, ARHand hand) {
-        int[] gestureAction = hand.getGestureAction();
-        sb.append("gestureAction length:[").append(gestureAction.length).append("]").append(System.lineSeparator());
-        for (int i = 0; i < gestureAction.length; i++) {
-            Log.i(TAG, "GestureAction:" + gestureAction[i]);
-            sb.append("gestureAction[").append(i).append("]:[").append(gestureAction[i])
-                    .append("]").append(System.lineSeparator());
-        }
-        sb.append(System.lineSeparator());
-    }
-
-    private void addGestureCenterStringBuffer(StringBuilder sb, ARHand hand) {
-        float[] gestureCenter = hand.getGestureCenter();
-        sb.append("gestureCenter length:[").append(gestureCenter.length).append("]").append(System.lineSeparator());
-        for (int i = 0; i < gestureCenter.length; i++) {
-            Log.i(TAG, "GestureCenter:" + gestureCenter[i]);
-            sb.append("gestureCenter[").append(i).append("]:[").append(gestureCenter[i])
-                    .append("]").append(System.lineSeparator());
-        }
-        sb.append(System.lineSeparator());
-    }
-
-    private void addHandSkeletonStringBuffer(StringBuilder sb, ARHand hand) {
-        sb.append(System.lineSeparator()).append("Handtype=").append(hand.getHandtype())
-                .append(System.lineSeparator());
-        sb.append("SkeletonCoordinateSystem=").append(hand.getSkeletonCoordinateSystem());
-        sb.append(System.lineSeparator());
-        float[] skeletonArray = hand.getHandskeletonArray();
-        sb.append("HandskeletonArray length:[").append(skeletonArray.length).append("]")
-                .append(System.lineSeparator());
-        Log.i(TAG, "SkeletonArray.length:" + skeletonArray.length);
-        for (int i = 0; i < skeletonArray.length; i++) {
-            Log.i(TAG, "SkeletonArray:" + skeletonArray[i]);
-        }
+    private void updateMessageData(StringBuilder sb, int handCount) {
+        sb.append("FPS=");
+        FrameProfiler.appendFixed(sb, mProfiler.getFps());
         sb.append(System.lineSeparator());
-        int[] handSkeletonConnection = hand.getHandSkeletonConnection();
-        sb.append("HandSkeletonConnection length:[").append(handSkeletonConnection.length)
-                .append("]").append(System.lineSeparator());
-        Log.i(TAG, "handSkeletonConnection.length:" + handSkeletonConnection.length);
-        for (int i = 0; i < handSkeletonConnection.length; i++) {
-            Log.i(TAG, "handSkeletonConnection:" + handSkeletonConnection[i]);
-        }
-        sb.append(System.lineSeparator()).append("-----------------------------------------------------");
-    }
-
-    private float doFpsCalculate() {
-        ++frames;
-        long timeNow = System.currentTimeMillis();
-
-        // Convert millisecond to second.
-        if (((timeNow - lastInterval) / 1000.0f) > UPDATE_INTERVAL) {
-            fps = frames / ((timeNow - lastInterval) / 1000.0f);
-            frames = 0;
-            lastInterval = timeNow;
+        mGlState.appendStats(sb);
+        mProfiler.appendStats(sb);
+        for (int i = handCount - 1; i >= 0; i--) {
+            sb.append(System.lineSeparator());
+            mTelemetry.appendRecord(sb, i);
         }
-        return fps;
     }
 }
@@ -1,8 +1,7 @@
 package com.vsm.myarapplication.hand.rendering;
 
 
-import android.opengl.GLES20;
-import android.util.Log;
+import com.vsm.myarapplication.common.ProgramRegistry;
 
 /**
  * This class provides code and programs for the shader related to hand rendering.
@@ -38,50 +37,15 @@ class HandShaderUtil {
                     + "void main() {" + LS
                     + "    gl_FragColor = varColor;" + LS
                     + "}";
-    private static final String TAG = HandShaderUtil.class.getSimpleName();
 
     private HandShaderUtil() {
     }
 
     static int createGlProgram() {
-        int vertex = loadShader(GLES20.GL_VERTEX_SHADER, HandShaderUtil.HAND_VERTEX);
-        if (vertex == 0) {
-            return 0;
-        }
-        int fragment = loadShader(GLES20.GL_FRAGMENT_SHADER, HandShaderUtil.HAND_FRAGMENT);
-        if (fragment == 0) {
-            return 0;
-        }
-        int program = GLES20.glCreateProgram();
-        if (program != 0) {
-            GLES20.glAttachShader(program, vertex);
-            GLES20.glAttachShader(program, fragment);
-            GLES20.glLinkProgram(program);
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                Log.e(TAG, "Could not link program: " + GLES20.glGetProgramInfoLog(program));
-                GLES20.glDeleteProgram(program);
-                program = 0;
-            }
-        }
-        return program;
+        return ProgramRegistry.getDefault().acquire(HAND_VERTEX, HAND_FRAGMENT);
     }
 
-    private static int loadShader(int shaderType, String source) {
-        int shader = GLES20.glCreateShader(shaderType);
-        if (0 != shader) {
-            GLES20.glShaderSource(shader, source);
-            GLES20.glCompileShader(shader);
-            int[] compiled = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-            if (compiled[0] == 0) {
-                Log.e(TAG, "glError: Could not compile shader " + shaderType);
-                Log.e(TAG, "GLES20 Error: " + GLES20.glGetShaderInfoLog(shader));
-                GLES20.glDeleteShader(shader);
-                shader = 0;
-            }
-        }
-        return shader;
+    static void releaseGlProgram(int program) {
+        ProgramRegistry.getDefault().release(program);
     }
 }
\ No newline at end of file
@@ -19,6 +19,9 @@ import android.opengl.GLES20;
 import android.util.Log;
 
 import com.huawei.hiar.ARHand;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.ShaderUtil;
 
 import java.nio.FloatBuffer;
@@ -43,10 +46,16 @@ class HandSkeletonDisplay implements HandRelatedDisplay {
 
     private int mVboSize;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private int mProgram;
 
     private int mPosition;
 
+    private int mAttribs;
+
     private int mModelViewProjectionMatrix;
 
     private int mColor;
@@ -55,6 +64,23 @@ class HandSkeletonDisplay implements HandRelatedDisplay {
 
     private int mNumPoints = 0;
 
+    /**
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    HandSkeletonDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    HandSkeletonDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
+    }
+
     /**
      * Create and build a shader for the hand skeleton points on the OpenGL thread,
      * which is called when {@link HandRenderManager#onSurfaceCreated}.
@@ -63,24 +89,34 @@ class HandSkeletonDisplay implements HandRelatedDisplay {
     public void init() {
         ShaderUtil.checkGlError(TAG, "Init start.");
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        mGl.glGenBuffers(1, buffers, 0);
         mVbo = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
         mVboSize = INITIAL_POINTS_SIZE * BYTES_PER_POINT;
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         createProgram();
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Release the shader program. This method is called when {@link HandRenderManager#onSurfaceCreated},
+     * before {@link #init()}.
+     */
+    @Override
+    public void releaseProgram() {
+        HandShaderUtil.releaseGlProgram(mProgram);
+        mProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create program start.");
         mProgram = HandShaderUtil.createGlProgram();
         ShaderUtil.checkGlError(TAG, "program");
-        mPosition = GLES20.glGetAttribLocation(mProgram, "inPosition");
-        mColor = GLES20.glGetUniformLocation(mProgram, "inColor");
-        mPointSize = GLES20.glGetUniformLocation(mProgram, "inPointSize");
-        mModelViewProjectionMatrix = GLES20.glGetUniformLocation(mProgram, "inMVPMatrix");
+        mPosition = mGl.glGetAttribLocation(mProgram, "inPosition");
+        mAttribs = GlStateCache.getAttribBit(mPosition);
+        mColor = mGl.glGetUniformLocation(mProgram, "inColor");
+        mPointSize = mGl.glGetUniformLocation(mProgram, "inPointSize");
+        mModelViewProjectionMatrix = mGl.glGetUniformLocation(mProgram, "inMVPMatrix");
         ShaderUtil.checkGlError(TAG, "Create program end.");
     }
 
@@ -118,19 +154,18 @@ class HandSkeletonDisplay implements HandRelatedDisplay {
         // is three times the number of skeleton points.
         int mPointsNum = handSkeletons.length / 3;
         Log.d(TAG, "ARHand HandSkeletonNumber = " + mPointsNum);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
         mNumPoints = mPointsNum;
         if (mVboSize < mNumPoints * BYTES_PER_POINT) {
             while (mVboSize < mNumPoints * BYTES_PER_POINT) {
                 // If the size of VBO is insufficient to accommodate the new point cloud, resize the VBO.
                 mVboSize *= 2;
             }
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
+            mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         }
         FloatBuffer mSkeletonPoints = FloatBuffer.wrap(handSkeletons);
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT,
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mNumPoints * BYTES_PER_POINT,
                 mSkeletonPoints);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
         ShaderUtil.checkGlError(TAG, "Update hand skeletons data end.");
     }
@@ -142,24 +177,24 @@ class HandSkeletonDisplay implements HandRelatedDisplay {
      */
     private void drawHandSkeletons(float[] projectionMatrix) {
         ShaderUtil.checkGlError(TAG, "Draw hand skeletons start.");
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.useProgram(mProgram);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         // The size of the vertex attribute is 4, and each vertex has four coordinate components
-        GLES20.glVertexAttribPointer(
+        mGl.glVertexAttribPointer(
                 mPosition, 4, GLES20.GL_FLOAT, false, BYTES_PER_POINT, 0);
 
         // Set the color of the skeleton points to blue.
-        GLES20.glUniform4f(mColor, 0.0f, 0.0f, 1.0f, 1.0f);
-        GLES20.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, projectionMatrix, 0);
+        mGl.glUniform4f(mColor, 0.0f, 0.0f, 1.0f, 1.0f);
+        mGl.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, projectionMatrix, 0);
 
         // Set the size of the skeleton points.
-        GLES20.glUniform1f(mPointSize, 30.0f);
+        mGl.glUniform1f(mPointSize, 30.0f);
 
-        GLES20.glDrawArrays(GLES20.GL_POINTS, 0, mNumPoints);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glDrawArrays(GLES20.GL_POINTS, 0, mNumPoints);
 
         ShaderUtil.checkGlError(TAG, "Draw hand skeletons end.");
     }
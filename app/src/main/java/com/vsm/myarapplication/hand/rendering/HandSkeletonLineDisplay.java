@@ -19,6 +19,9 @@ import android.opengl.GLES20;
 import android.util.Log;
 
 import com.huawei.hiar.ARHand;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.ShaderUtil;
 
 import java.nio.FloatBuffer;
@@ -45,10 +48,16 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
 
     private int mVboSize = INITIAL_BUFFER_POINTS * BYTES_PER_POINT;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
     private int mProgram;
 
     private int mPosition;
 
+    private int mAttribs;
+
     private int mModelViewProjectionMatrix;
 
     private int mColor;
@@ -57,6 +66,23 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
 
     private int mPointsNum = 0;
 
+    /**
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    HandSkeletonLineDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    HandSkeletonLineDisplay(GlStateCache glState) {
+        mGlState = glState;
+        mGl = glState.getGlApi();
+    }
+
     /**
      * Create and build a shader for the hand skeleton line on the OpenGL thread,
      * which is called when {@link HandRenderManager#onSurfaceCreated}.
@@ -66,24 +92,34 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
         ShaderUtil.checkGlError(TAG, "Init start.");
 
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        mGl.glGenBuffers(1, buffers, 0);
         mVbo = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         createProgram();
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Release the shader program. This method is called when {@link HandRenderManager#onSurfaceCreated},
+     * before {@link #init()}.
+     */
+    @Override
+    public void releaseProgram() {
+        HandShaderUtil.releaseGlProgram(mProgram);
+        mProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create program start.");
         mProgram = HandShaderUtil.createGlProgram();
         ShaderUtil.checkGlError(TAG, "program");
-        mPosition = GLES20.glGetAttribLocation(mProgram, "inPosition");
-        mColor = GLES20.glGetUniformLocation(mProgram, "inColor");
-        mPointSize = GLES20.glGetUniformLocation(mProgram, "inPointSize");
-        mModelViewProjectionMatrix = GLES20.glGetUniformLocation(mProgram, "inMVPMatrix");
+        mPosition = mGl.glGetAttribLocation(mProgram, "inPosition");
+        mAttribs = GlStateCache.getAttribBit(mPosition);
+        mColor = mGl.glGetUniformLocation(mProgram, "inColor");
+        mPointSize = mGl.glGetUniformLocation(mProgram, "inPointSize");
+        mModelViewProjectionMatrix = mGl.glGetUniformLocation(mProgram, "inMVPMatrix");
         ShaderUtil.checkGlError(TAG, "Create program end.");
     }
 
@@ -139,7 +175,7 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
             linePoint[pointsLineNum * 3 + 5] = handSkeletons[3 * handSkeletonConnection[j + 1] + 2];
             pointsLineNum += 2;
         }
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
         mPointsNum = pointsLineNum;
 
         // If the storage space is insufficient, apply for twice the memory each time.
@@ -147,14 +183,13 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
             while (mVboSize < mPointsNum * BYTES_PER_POINT) {
                 mVboSize *= 2;
             }
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
+            mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVboSize, null, GLES20.GL_DYNAMIC_DRAW);
         }
         FloatBuffer linePoints = FloatBuffer.wrap(linePoint);
         Log.d(TAG, "Skeleton skeleton line points num: " + mPointsNum);
         Log.d(TAG, "Skeleton line points: " + linePoints.toString());
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mPointsNum * BYTES_PER_POINT,
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mPointsNum * BYTES_PER_POINT,
                 linePoints);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         ShaderUtil.checkGlError(TAG, "Update hand skeleton lines data end.");
     }
 
@@ -165,26 +200,24 @@ class HandSkeletonLineDisplay implements HandRelatedDisplay {
      */
     private void drawHandSkeletonLine(float[] projectionMatrix) {
         ShaderUtil.checkGlError(TAG, "Draw hand skeleton line start.");
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(mPosition);
-        GLES20.glEnableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.useProgram(mProgram);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
 
         // Set the width of the drawn line
-        GLES20.glLineWidth(18.0f);
+        mGlState.lineWidth(18.0f);
 
         // Represented each point by 4D coordinates in the shader.
-        GLES20.glVertexAttribPointer(
+        mGl.glVertexAttribPointer(
                 mPosition, 4, GLES20.GL_FLOAT, false, BYTES_PER_POINT, 0);
-        GLES20.glUniform4f(mColor, 0.0f, 0.0f, 0.0f, 1.0f);
-        GLES20.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, projectionMatrix, 0);
+        mGl.glUniform4f(mColor, 0.0f, 0.0f, 0.0f, 1.0f);
+        mGl.glUniformMatrix4fv(mModelViewProjectionMatrix, 1, false, projectionMatrix, 0);
 
-        GLES20.glUniform1f(mPointSize, JOINT_POINT_SIZE);
+        mGl.glUniform1f(mPointSize, JOINT_POINT_SIZE);
 
-        GLES20.glDrawArrays(GLES20.GL_LINES, 0, mPointsNum);
-        GLES20.glDisableVertexAttribArray(mPosition);
-        GLES20.glDisableVertexAttribArray(mColor);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mGl.glDrawArrays(GLES20.GL_LINES, 0, mPointsNum);
 
         ShaderUtil.checkGlError(TAG, "Draw hand skeleton line end.");
     }
@@ -0,0 +1,393 @@
+package com.vsm.myarapplication.hand.rendering;
+
+import android.util.Log;
+
+import com.huawei.hiar.ARCoordinateSystemType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the recognition data of the tracked hands in a preallocated ring of fixed-size binary
+ * records, one per hand and frame. Recording only copies numbers, so it does not allocate;
+ * the records are formatted to text on demand, and the renderer does that only when the
+ * overlay is shown and at the rate of the text display.
+ * <p>
+ * The records can also be dumped to a file for offline analysis. The file is little-endian
+ * and consists of a header (magic, version and record size) followed by the records in the
+ * order they were recorded. The dump is written in batches on a background thread; a batch
+ * that is overwritten before the thread is free is dropped and counted. The telemetry keeps
+ * one executor for its whole life, so the file operations of consecutive dumps run in order:
+ * a dump started right after another was stopped opens its file after the previous one is
+ * closed. The thread ends when it has been idle for {@link #DUMP_IDLE_SECONDS}.
+ * <p>
+ * Record layout: time in nanoseconds (long); hand id, hand type, gesture type, gesture and
+ * skeleton coordinate systems (ints); then length and values of the gesture orientation,
+ * action, center and hand box, each array truncated to its maximum size; then the lengths of
+ * the skeleton array and of the skeleton connection (ints). The lengths are those of the
+ * original arrays.
+ * <p>
+ * Only the GL thread may record, format and start or stop the dump.
+ */
+class HandTelemetry {
+    /**
+     * "ARHT" in little-endian byte order.
+     */
+    static final int MAGIC = 0x54485241;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 3 * 4;
+
+    static final int MAX_ORIENTATION_SIZE = 4;
+
+    static final int MAX_ACTION_SIZE = 4;
+
+    static final int MAX_CENTER_SIZE = 4;
+
+    static final int MAX_BOX_SIZE = 8;
+
+    static final int RECORD_SIZE = 8 + 5 * 4 + (1 + MAX_ORIENTATION_SIZE) * 4 + (1 + MAX_ACTION_SIZE) * 4
+            + (1 + MAX_CENTER_SIZE) * 4 + (1 + MAX_BOX_SIZE) * 4 + 2 * 4;
+
+    /**
+     * Time after which the idle dump thread ends; it is restarted by the next dump.
+     */
+    static final long DUMP_IDLE_SECONDS = 10L;
+
+    private static final String TAG = HandTelemetry.class.getSimpleName();
+
+    // Cached, because values() copies the array on every call.
+    private static final ARCoordinateSystemType[] COORDINATE_SYSTEMS = ARCoordinateSystemType.values();
+
+    private final int mCapacity;
+
+    private final ByteBuffer mRecords;
+
+    // Number of records since creation; the newest is at (mRecordCount - 1) % mCapacity.
+    private long mRecordCount;
+
+    // The fields below are used by the dump. The channel is only used by the background thread.
+    private final ThreadPoolExecutor mDumpExecutor;
+
+    private FileChannel mDumpChannel;
+
+    private final ByteBuffer mDumpBuffer;
+
+    private final AtomicBoolean mIsDumpWriting = new AtomicBoolean();
+
+    private boolean mIsDumping = false;
+
+    private long mDumpedCount;
+
+    private long mDumpDroppedCount;
+
+    /**
+     * Create a telemetry ring.
+     *
+     * @param capacity Number of records kept before the oldest is overwritten.
+     */
+    HandTelemetry(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        mCapacity = capacity;
+        mRecords = ByteBuffer.allocate(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mDumpBuffer = ByteBuffer.allocate(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mDumpExecutor = new ThreadPoolExecutor(1, 1, DUMP_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, TAG);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        mDumpExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Record the data of a hand.
+     *
+     * @param timeNs Time of the frame in nanoseconds.
+     * @param handId Id of the hand.
+     * @param handType Type of the hand.
+     * @param gestureType Type of the gesture.
+     * @param gestureCoordinateSystem Coordinate system of the gesture data.
+     * @param skeletonCoordinateSystem Coordinate system of the skeleton.
+     * @param orientation Gesture orientation.
+     * @param action Gesture actions.
+     * @param center Gesture center.
+     * @param handBox Hand box.
+     * @param skeletonLength Length of the skeleton array.
+     * @param connectionLength Length of the skeleton connection.
+     */
+    void record(long timeNs, int handId, int handType, int gestureType,
+            ARCoordinateSystemType gestureCoordinateSystem, ARCoordinateSystemType skeletonCoordinateSystem,
+            float[] orientation, int[] action, float[] center, float[] handBox, int skeletonLength,
+            int connectionLength) {
+        int offset = (int) (mRecordCount % mCapacity) * RECORD_SIZE;
+        ByteBuffer records = mRecords;
+        records.putLong(offset, timeNs);
+        offset += 8;
+        offset = putInt(records, offset, handId);
+        offset = putInt(records, offset, handType);
+        offset = putInt(records, offset, gestureType);
+        offset = putInt(records, offset, gestureCoordinateSystem == null ? -1 : gestureCoordinateSystem.ordinal());
+        offset = putInt(records, offset, skeletonCoordinateSystem == null ? -1 : skeletonCoordinateSystem.ordinal());
+        offset = putFloats(records, offset, orientation, MAX_ORIENTATION_SIZE);
+        offset = putInts(records, offset, action, MAX_ACTION_SIZE);
+        offset = putFloats(records, offset, center, MAX_CENTER_SIZE);
+        offset = putFloats(records, offset, handBox, MAX_BOX_SIZE);
+        offset = putInt(records, offset, skeletonLength);
+        putInt(records, offset, connectionLength);
+        mRecordCount++;
+        if (mIsDumping && mRecordCount - mDumpedCount >= mCapacity / 2) {
+            flushDump();
+        }
+    }
+
+    /**
+     * Obtain the number of records since creation.
+     *
+     * @return Number of records, including overwritten ones.
+     */
+    long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Append a record as text, one line per field.
+     *
+     * @param sb String buffer.
+     * @param age 0 for the newest record, 1 for the one before, and so on.
+     */
+    void appendRecord(StringBuilder sb, int age) {
+        if (age < 0 || age >= Math.min(mRecordCount, mCapacity)) {
+            return;
+        }
+        ByteBuffer records = mRecords;
+        int offset = (int) ((mRecordCount - 1 - age) % mCapacity) * RECORD_SIZE + 8;
+        sb.append("Hand id=").append(records.getInt(offset))
+                .append(" type=").append(records.getInt(offset + 4)).append(System.lineSeparator());
+        sb.append("GestureType=").append(records.getInt(offset + 8)).append(" coordinates=");
+        appendCoordinateSystem(sb, records.getInt(offset + 12));
+        sb.append(System.lineSeparator());
+        int skeletonCoordinateSystem = records.getInt(offset + 16);
+        offset += 20;
+        sb.append("gestureOrientation=");
+        offset = appendFloats(sb, records, offset, MAX_ORIENTATION_SIZE);
+        sb.append("gestureAction=");
+        offset = appendInts(sb, records, offset, MAX_ACTION_SIZE);
+        sb.append("gestureCenter=");
+        offset = appendFloats(sb, records, offset, MAX_CENTER_SIZE);
+        sb.append("gestureHandBox=");
+        offset = appendFloats(sb, records, offset, MAX_BOX_SIZE);
+        sb.append("Skeleton coordinates=");
+        appendCoordinateSystem(sb, skeletonCoordinateSystem);
+        sb.append(" length=").append(records.getInt(offset))
+                .append(" connections=").append(records.getInt(offset + 4)).append(System.lineSeparator());
+    }
+
+    /**
+     * Start dumping the records that follow to a file, which is replaced.
+     *
+     * @param file Dump file.
+     */
+    void startDump(final File file) {
+        if (mIsDumping) {
+            stopDump();
+        }
+        mIsDumping = true;
+        mDumpedCount = mRecordCount;
+        mDumpExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                openDump(file);
+            }
+        });
+    }
+
+    /**
+     * Write the remaining records and close the dump file on the background thread.
+     *
+     * @return Completion of the dump, or null if no dump was started.
+     */
+    Future<?> stopDump() {
+        if (!mIsDumping) {
+            return null;
+        }
+        int count = getUndumpedCount();
+        final ByteBuffer rest = ByteBuffer.allocate(count * RECORD_SIZE);
+        copyUndumped(rest, count);
+        rest.flip();
+        mIsDumping = false;
+        Future<?> completion = mDumpExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                writeDump(rest);
+                closeDump();
+            }
+        });
+        return completion;
+    }
+
+    /**
+     * Obtain the number of records that were overwritten before they could be dumped.
+     *
+     * @return Number of dropped records.
+     */
+    long getDumpDroppedCount() {
+        return mDumpDroppedCount;
+    }
+
+    // Hand the records that were not dumped yet to the background thread, unless it is busy.
+    private void flushDump() {
+        if (!mIsDumpWriting.compareAndSet(false, true)) {
+            return;
+        }
+        int count = getUndumpedCount();
+        mDumpBuffer.clear();
+        copyUndumped(mDumpBuffer, count);
+        mDumpBuffer.flip();
+        mDumpExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeDump(mDumpBuffer);
+                mIsDumpWriting.set(false);
+            }
+        });
+    }
+
+    // Records that were overwritten since the last batch are counted as dropped.
+    private int getUndumpedCount() {
+        long undumped = mRecordCount - mDumpedCount;
+        if (undumped > mCapacity) {
+            mDumpDroppedCount += undumped - mCapacity;
+            mDumpedCount = mRecordCount - mCapacity;
+            undumped = mCapacity;
+        }
+        return (int) undumped;
+    }
+
+    private void copyUndumped(ByteBuffer target, int count) {
+        for (int i = 0; i < count; i++) {
+            int offset = (int) ((mDumpedCount + i) % mCapacity) * RECORD_SIZE;
+            for (int j = 0; j < RECORD_SIZE; j++) {
+                target.put(mRecords.get(offset + j));
+            }
+        }
+        mDumpedCount += count;
+    }
+
+    private void openDump(File file) {
+        try {
+            mDumpChannel = new FileOutputStream(file).getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).flip();
+            writeDump(header);
+        } catch (IOException e) {
+            Log.w(TAG, "Open telemetry dump failed.");
+        }
+    }
+
+    private void writeDump(ByteBuffer buffer) {
+        if (mDumpChannel == null) {
+            return;
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                mDumpChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Write telemetry dump failed.");
+            closeDump();
+        }
+    }
+
+    private void closeDump() {
+        if (mDumpChannel == null) {
+            return;
+        }
+        try {
+            mDumpChannel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Close telemetry dump failed.");
+        }
+        mDumpChannel = null;
+    }
+
+    private static int putInt(ByteBuffer buffer, int offset, int value) {
+        buffer.putInt(offset, value);
+        return offset + 4;
+    }
+
+    private static int putFloats(ByteBuffer buffer, int offset, float[] values, int maxSize) {
+        int length = values == null ? 0 : values.length;
+        int position = putInt(buffer, offset, length);
+        for (int i = 0; i < maxSize; i++) {
+            buffer.putFloat(position, i < length ? values[i] : 0.0f);
+            position += 4;
+        }
+        return position;
+    }
+
+    private static int putInts(ByteBuffer buffer, int offset, int[] values, int maxSize) {
+        int length = values == null ? 0 : values.length;
+        int position = putInt(buffer, offset, length);
+        for (int i = 0; i < maxSize; i++) {
+            position = putInt(buffer, position, i < length ? values[i] : 0);
+        }
+        return position;
+    }
+
+    private static int appendFloats(StringBuilder sb, ByteBuffer buffer, int offset, int maxSize) {
+        int length = buffer.getInt(offset);
+        sb.append('[');
+        for (int i = 0; i < Math.min(length, maxSize); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(buffer.getFloat(offset + 4 + i * 4));
+        }
+        if (length > maxSize) {
+            sb.append(", ... ").append(length).append(" values");
+        }
+        sb.append(']').append(System.lineSeparator());
+        return offset + 4 + maxSize * 4;
+    }
+
+    private static int appendInts(StringBuilder sb, ByteBuffer buffer, int offset, int maxSize) {
+        int length = buffer.getInt(offset);
+        sb.append('[');
+        for (int i = 0; i < Math.min(length, maxSize); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(buffer.getInt(offset + 4 + i * 4));
+        }
+        if (length > maxSize) {
+            sb.append(", ... ").append(length).append(" values");
+        }
+        sb.append(']').append(System.lineSeparator());
+        return offset + 4 + maxSize * 4;
+    }
+
+    private static void appendCoordinateSystem(StringBuilder sb, int ordinal) {
+        if (ordinal >= 0 && ordinal < COORDINATE_SYSTEMS.length) {
+            sb.append(COORDINATE_SYSTEMS[ordinal]);
+        } else {
+            sb.append("null");
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.huawei.hiar.listener.FaceHealthServiceListener;
 import com.vsm.myarapplication.R;
 import com.vsm.myarapplication.common.ConnectAppMarketActivity;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.ProgramRegistry;
 
 import java.util.EventObject;
 
@@ -71,7 +72,7 @@ public class HealtActivity extends AppCompatActivity {
         mGlSurfaceView.setPreserveEGLContextOnPause(true);
 
         // Set the OpenGLES version.
-        mGlSurfaceView.setEGLContextClientVersion(2);
+        mGlSurfaceView.setEGLContextClientVersion(ProgramRegistry.getEglContextClientVersion(this));
 
         // Set the EGL configuration chooser, including for the
         // number of bits of the color buffer and the number of depth bits.
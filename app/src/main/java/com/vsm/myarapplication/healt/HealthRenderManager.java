@@ -15,8 +15,14 @@ import com.huawei.hiar.ARSession;
 import com.huawei.hiar.ARTrackable;
 import com.vsm.myarapplication.common.ArDemoRuntimeException;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.ProgramRegistry;
+import com.vsm.myarapplication.common.ShaderUtil;
 import com.vsm.myarapplication.common.TextureDisplay;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.HashMap;
 
@@ -32,7 +38,11 @@ public class HealthRenderManager implements GLSurfaceView.Renderer {
 
     private ARSession mArSession;
 
-    private TextureDisplay mTextureDisplay = new TextureDisplay();
+    private TextureDisplay mTextureDisplay;
+
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
 
     private Activity mActivity;
 
@@ -45,34 +55,45 @@ public class HealthRenderManager implements GLSurfaceView.Renderer {
     private int mProgress;
 
     public HealthRenderManager(Activity activity, Context context) {
+        GlStateCache glState = new GlStateCache(new Gles20Api());
         mActivity = activity;
         mContext = context;
+        mGl = glState.getGlApi();
+        mGlState = glState;
+        mTextureDisplay = new TextureDisplay(glState);
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
+        mGlState.invalidate();
+        ProgramRegistry.getDefault().setCacheDir(new File(mActivity.getCacheDir(), ProgramRegistry.CACHE_DIR_NAME));
+        mTextureDisplay.releaseProgram();
         mTextureDisplay.init();
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
         mTextureDisplay.onSurfaceChanged(width, height);
-        GLES20.glViewport(0, 0, width, height);
+        mGl.glViewport(0, 0, width, height);
         mDisplayRotationManager.updateViewportRotation(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 gl10) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
         if (mArSession == null) {
             return;
         }
         if (mDisplayRotationManager.getDeviceRotation()) {
             mDisplayRotationManager.updateArSessionDisplayGeometry(mArSession);
         }
+        ShaderUtil.beginGlFrame();
         try {
             mArSession.setCameraTextureName(mTextureDisplay.getExternalTextureId());
             ARFrame frame = mArSession.update();
+
+            // The session binds the camera texture, so the state of the last frame is unknown.
+            mGlState.beginFrame();
             mTextureDisplay.onDrawFrame(frame);
             Collection<ARFace> faces = mArSession.getAllTrackables(ARFace.class);
             if (faces.size() == 0) {
@@ -88,6 +109,8 @@ public class HealthRenderManager implements GLSurfaceView.Renderer {
             }
         } catch (ArDemoRuntimeException e) {
             Log.e(TAG, "Exception on the ArDemoRuntimeException!");
+        } finally {
+            ShaderUtil.endGlFrame(TAG);
         }
     }
 
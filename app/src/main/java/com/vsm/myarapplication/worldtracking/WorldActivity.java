@@ -21,19 +21,18 @@ import com.huawei.hiar.exceptions.ARUnavailableClientSdkTooOldException;
 import com.huawei.hiar.exceptions.ARUnavailableServiceApkTooOldException;
 import com.huawei.hiar.exceptions.ARUnavailableServiceNotInstalledException;
 import com.vsm.myarapplication.GestureEvent;
+import com.vsm.myarapplication.GestureForwarder;
+import com.vsm.myarapplication.GestureRing;
 import com.vsm.myarapplication.R;
 import com.vsm.myarapplication.common.ConnectAppMarketActivity;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.ProgramRegistry;
 import com.vsm.myarapplication.worldtracking.rendering.WorldRenderManager;
 
-import java.util.concurrent.ArrayBlockingQueue;
-
 public class WorldActivity extends AppCompatActivity {
     private static final String TAG = WorldActivity.class.getSimpleName();
 
-    private static final int MOTIONEVENT_QUEUE_CAPACITY = 2;
-
-    private static final int OPENGLES_VERSION = 2;
+    private static final int MOTIONEVENT_QUEUE_CAPACITY = 64;
 
     private ARSession mArSession;
 
@@ -45,7 +44,9 @@ public class WorldActivity extends AppCompatActivity {
 
     private DisplayRotationManager mDisplayRotationManager;
 
-    private ArrayBlockingQueue<GestureEvent> mQueuedSingleTaps = new ArrayBlockingQueue<>(MOTIONEVENT_QUEUE_CAPACITY);
+    private GestureRing mGestureRing = new GestureRing(MOTIONEVENT_QUEUE_CAPACITY);
+
+    private GestureForwarder mGestureForwarder = new GestureForwarder(mGestureRing);
 
     private String message = null;
 
@@ -61,7 +62,7 @@ public class WorldActivity extends AppCompatActivity {
         initGestureDetector();
 
         mSurfaceView.setPreserveEGLContextOnPause(true);
-        mSurfaceView.setEGLContextClientVersion(OPENGLES_VERSION);
+        mSurfaceView.setEGLContextClientVersion(ProgramRegistry.getEglContextClientVersion(this));
 
         // Set the EGL configuration chooser, including for the number of
         // bits of the color buffer and the number of depth bits.
@@ -69,7 +70,7 @@ public class WorldActivity extends AppCompatActivity {
 
         mWorldRenderManager = new WorldRenderManager(this, this);
         mWorldRenderManager.setDisplayRotationManage(mDisplayRotationManager);
-        mWorldRenderManager.setQueuedSingleTaps(mQueuedSingleTaps);
+        mWorldRenderManager.setGestureRing(mGestureRing);
 
         mSurfaceView.setRenderer(mWorldRenderManager);
         mSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
@@ -79,39 +80,32 @@ public class WorldActivity extends AppCompatActivity {
         mGestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
             @Override
             public boolean onSingleTapUp(MotionEvent e) {
-                onGestureEvent(GestureEvent.createSingleTapUpEvent(e));
+                mGestureForwarder.offerTap(GestureEvent.GESTURE_EVENT_TYPE_SINGLETAPUP, e);
                 return true;
             }
 
             @Override
             public boolean onDown(MotionEvent e) {
-                onGestureEvent(GestureEvent.createDownEvent(e));
+                mGestureForwarder.offerTap(GestureEvent.GESTURE_EVENT_TYPE_DOWN, e);
                 return true;
             }
 
             @Override
             public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-                onGestureEvent(GestureEvent.createScrollEvent(e1, e2, distanceX, distanceY));
+                mGestureForwarder.offerScroll(e1, e2, distanceX, distanceY);
                 return true;
             }
         });
         mSurfaceView.setOnTouchListener(new View.OnTouchListener() {
             @Override
             public boolean onTouch(View v, MotionEvent event) {
-                return mGestureDetector.onTouchEvent(event);
+                boolean isHandled = mGestureDetector.onTouchEvent(event);
+                mGestureForwarder.onTouchEvent(event);
+                return isHandled;
             }
         });
     }
 
-    private void onGestureEvent(GestureEvent e) {
-        boolean offerResult = mQueuedSingleTaps.offer(e);
-        if (offerResult) {
-            Log.d(TAG, "Successfully joined the queue.");
-        } else {
-            Log.d(TAG, "Failed to join queue.");
-        }
-    }
-
     @Override
     protected void onResume() {
         Log.d(TAG, "onResume");
@@ -208,6 +202,7 @@ public class WorldActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         Log.i(TAG, "onDestroy start.");
+        mWorldRenderManager.release();
         if (mArSession != null) {
             mArSession.stop();
             mArSession = null;
@@ -0,0 +1,288 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Binary bounding volume hierarchy over axis-aligned boxes [minX, minY, minZ, maxX, maxY, maxZ].
+ * Items are identified by their index in the box array passed to {@link #build}. Each leaf
+ * holds one item, and the tree is split at the median along the longest axis, so its depth
+ * is logarithmic in the number of items. Boxes of items that move are updated with
+ * {@link #refit}, which only touches the path from the leaf to the root. This class does
+ * not depend on Android and does not allocate after {@link #build}.
+ */
+class BoundingVolumeHierarchy {
+    /**
+     * Item returned by {@link #raycast} when nothing is hit.
+     */
+    static final int NO_HIT = -1;
+
+    /**
+     * Number of floats of one bounding box.
+     */
+    static final int BOX_SIZE = 6;
+
+    private static final int NO_NODE = -1;
+
+    private float[] mNodeBoxes = new float[0];
+
+    private int[] mNodeLeft = new int[0];
+
+    private int[] mNodeRight = new int[0];
+
+    private int[] mNodeParent = new int[0];
+
+    // Item of a leaf node, or NO_HIT for an inner node.
+    private int[] mNodeItem = new int[0];
+
+    private int[] mItemNode = new int[0];
+
+    private int[] mItemOrder = new int[0];
+
+    private float[] mCentroids = new float[0];
+
+    private int[] mStack = new int[0];
+
+    private int mItemCount;
+
+    private int mNodeCount;
+
+    private int mRoot = NO_NODE;
+
+    private float mHitDistance = PickingRay.NO_INTERSECTION;
+
+    /**
+     * Rebuild the hierarchy from scratch.
+     *
+     * @param boxes Bounding boxes of all items, BOX_SIZE floats each.
+     * @param itemCount Number of items.
+     */
+    void build(float[] boxes, int itemCount) {
+        ensureCapacity(itemCount);
+        mItemCount = itemCount;
+        mNodeCount = 0;
+        mRoot = NO_NODE;
+        if (itemCount == 0) {
+            return;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            mItemOrder[i] = i;
+            for (int axis = 0; axis < 3; axis++) {
+                mCentroids[i * 3 + axis] = (boxes[i * BOX_SIZE + axis] + boxes[i * BOX_SIZE + axis + 3]) * 0.5f;
+            }
+        }
+        mRoot = buildNode(boxes, 0, itemCount, NO_NODE);
+    }
+
+    private void ensureCapacity(int itemCount) {
+        if (mItemNode.length >= itemCount) {
+            return;
+        }
+        int nodeCapacity = Math.max(1, 2 * itemCount - 1);
+        mNodeBoxes = new float[nodeCapacity * BOX_SIZE];
+        mNodeLeft = new int[nodeCapacity];
+        mNodeRight = new int[nodeCapacity];
+        mNodeParent = new int[nodeCapacity];
+        mNodeItem = new int[nodeCapacity];
+        mItemNode = new int[itemCount];
+        mItemOrder = new int[itemCount];
+        mCentroids = new float[itemCount * 3];
+        mStack = new int[nodeCapacity];
+    }
+
+    private int buildNode(float[] boxes, int start, int end, int parent) {
+        int node = mNodeCount++;
+        mNodeParent[node] = parent;
+        if (end - start == 1) {
+            int item = mItemOrder[start];
+            mNodeLeft[node] = NO_NODE;
+            mNodeRight[node] = NO_NODE;
+            mNodeItem[node] = item;
+            mItemNode[item] = node;
+            System.arraycopy(boxes, item * BOX_SIZE, mNodeBoxes, node * BOX_SIZE, BOX_SIZE);
+            return node;
+        }
+        mNodeItem[node] = NO_HIT;
+        int middle = (start + end) >>> 1;
+        selectMedian(start, end, middle, longestCentroidAxis(start, end));
+        mNodeLeft[node] = buildNode(boxes, start, middle, node);
+        mNodeRight[node] = buildNode(boxes, middle, end, node);
+        unionChildren(node);
+        return node;
+    }
+
+    private int longestCentroidAxis(int start, int end) {
+        int longestAxis = 0;
+        float longestExtent = -1.0f;
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                float value = mCentroids[mItemOrder[i] * 3 + axis];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > longestExtent) {
+                longestExtent = max - min;
+                longestAxis = axis;
+            }
+        }
+        return longestAxis;
+    }
+
+    // Quickselect: partially order mItemOrder[start, end) so that position k holds the median.
+    private void selectMedian(int start, int end, int k, int axis) {
+        int left = start;
+        int right = end - 1;
+        while (left < right) {
+            float pivot = centroid((left + right) >>> 1, axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (centroid(i, axis) < pivot) {
+                    i++;
+                }
+                while (centroid(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = mItemOrder[i];
+                    mItemOrder[i] = mItemOrder[j];
+                    mItemOrder[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private float centroid(int orderIndex, int axis) {
+        return mCentroids[mItemOrder[orderIndex] * 3 + axis];
+    }
+
+    // Set the box of an inner node to the union of its children, and report whether it changed.
+    private boolean unionChildren(int node) {
+        int base = node * BOX_SIZE;
+        int left = mNodeLeft[node] * BOX_SIZE;
+        int right = mNodeRight[node] * BOX_SIZE;
+        boolean isChanged = false;
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Math.min(mNodeBoxes[left + axis], mNodeBoxes[right + axis]);
+            float max = Math.max(mNodeBoxes[left + axis + 3], mNodeBoxes[right + axis + 3]);
+            if (mNodeBoxes[base + axis] != min || mNodeBoxes[base + axis + 3] != max) {
+                mNodeBoxes[base + axis] = min;
+                mNodeBoxes[base + axis + 3] = max;
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    /**
+     * Update the box of one item and the boxes of its ancestors. The walk towards the root
+     * stops as soon as an ancestor box does not change.
+     *
+     * @param item Index of the item.
+     * @param boxes Array that contains the new box.
+     * @param offset Offset of the new box in boxes.
+     */
+    void refit(int item, float[] boxes, int offset) {
+        if (item < 0 || item >= mItemCount) {
+            throw new IndexOutOfBoundsException("Item " + item + " is not in the hierarchy of " + mItemCount);
+        }
+        int node = mItemNode[item];
+        System.arraycopy(boxes, offset, mNodeBoxes, node * BOX_SIZE, BOX_SIZE);
+        node = mNodeParent[node];
+        while (node != NO_NODE && unionChildren(node)) {
+            node = mNodeParent[node];
+        }
+    }
+
+    /**
+     * Find the item whose box is entered first by the ray.
+     *
+     * @param ray Picking ray.
+     * @return Index of the nearest item, or {@link #NO_HIT}. The distance to it is
+     * available from {@link #getHitDistance}.
+     */
+    int raycast(PickingRay ray) {
+        int nearestItem = NO_HIT;
+        mHitDistance = PickingRay.NO_INTERSECTION;
+        if (mRoot == NO_NODE || ray.intersect(mNodeBoxes, mRoot * BOX_SIZE) == PickingRay.NO_INTERSECTION) {
+            return nearestItem;
+        }
+        int stackSize = 0;
+        mStack[stackSize++] = mRoot;
+        while (stackSize > 0) {
+            int node = mStack[--stackSize];
+            if (ray.intersect(mNodeBoxes, node * BOX_SIZE) >= mHitDistance) {
+                continue;
+            }
+            if (mNodeItem[node] != NO_HIT) {
+                mHitDistance = ray.intersect(mNodeBoxes, node * BOX_SIZE);
+                nearestItem = mNodeItem[node];
+                continue;
+            }
+            int left = mNodeLeft[node];
+            int right = mNodeRight[node];
+            float leftDistance = ray.intersect(mNodeBoxes, left * BOX_SIZE);
+            float rightDistance = ray.intersect(mNodeBoxes, right * BOX_SIZE);
+
+            // Push the farther child first, so the nearer one is visited first and prunes more.
+            if (leftDistance <= rightDistance) {
+                stackSize = push(right, rightDistance, stackSize);
+                stackSize = push(left, leftDistance, stackSize);
+            } else {
+                stackSize = push(left, leftDistance, stackSize);
+                stackSize = push(right, rightDistance, stackSize);
+            }
+        }
+        return nearestItem;
+    }
+
+    private int push(int node, float distance, int stackSize) {
+        if (distance < mHitDistance) {
+            mStack[stackSize++] = node;
+        }
+        return stackSize;
+    }
+
+    /**
+     * Obtain the distance of the hit found by the last {@link #raycast}.
+     *
+     * @return Distance along the ray, or {@link PickingRay#NO_INTERSECTION}.
+     */
+    float getHitDistance() {
+        return mHitDistance;
+    }
+
+    /**
+     * Obtain the number of items in the hierarchy.
+     *
+     * @return Number of items.
+     */
+    int size() {
+        return mItemCount;
+    }
+
+    /**
+     * Obtain the box of the root node, which encloses all items.
+     *
+     * @param box Array with a length of at least BOX_SIZE that receives the box.
+     * @return false if the hierarchy is empty.
+     */
+    boolean getBounds(float[] box) {
+        if (mRoot == NO_NODE) {
+            Arrays.fill(box, 0, BOX_SIZE, 0.0f);
+            return false;
+        }
+        System.arraycopy(mNodeBoxes, mRoot * BOX_SIZE, box, 0, BOX_SIZE);
+        return true;
+    }
+}
@@ -0,0 +1,190 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+/**
+ * Sorts items by a float key in descending order, frame after frame, without allocating.
+ * Items are added to slots in the order they are found. The keys live in a primitive array,
+ * and the result is a permutation of slot indices.
+ * <p>
+ * When equal items arrive in the same slots as in the previous frame, the previous order
+ * seeds an insertion sort. Items are compared with {@link Object#equals(Object)}, because the
+ * AR session returns new trackable objects for the same planes every frame. Camera motion
+ * changes the depth order of a few items at a time, so this takes close to linear time. If the
+ * insertion sort moves too many elements, the remaining work is done by a heap sort instead,
+ * which bounds a frame to O(n log n).
+ *
+ * @param <T> Type of the sorted items.
+ */
+class DepthSorter<T> {
+    /**
+     * The insertion sort gives up after this many moves per element on average.
+     */
+    static final int MAX_MOVES_PER_ELEMENT = 4;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] mItems = new Object[INITIAL_CAPACITY];
+
+    private float[] mKeys = new float[INITIAL_CAPACITY];
+
+    // Slot of the item at each sorted position.
+    private int[] mOrder = new int[INITIAL_CAPACITY];
+
+    private int mCount;
+
+    private int mPreviousCount;
+
+    private boolean mIsCoherent;
+
+    private boolean mIsFullSort;
+
+    /**
+     * Start collecting the items of a new frame.
+     */
+    void begin() {
+        mCount = 0;
+        mIsCoherent = true;
+    }
+
+    /**
+     * Add an item to the next slot.
+     *
+     * @param item Item, not null.
+     * @param key Sort key, such as the distance from the camera.
+     */
+    void add(T item, float key) {
+        if (mCount == mItems.length) {
+            grow();
+        }
+        if (mCount < mPreviousCount && !item.equals(mItems[mCount])) {
+            mIsCoherent = false;
+        }
+        mItems[mCount] = item;
+        mKeys[mCount] = key;
+        mCount++;
+    }
+
+    /**
+     * Sort the items that were added since {@link #begin()} by descending key.
+     */
+    void sort() {
+        // A removed item shifts the slots after it, so last frame's order no longer applies.
+        if (!mIsCoherent || mCount < mPreviousCount) {
+            mPreviousCount = 0;
+        }
+        for (int slot = mPreviousCount; slot < mCount; slot++) {
+            mOrder[slot] = slot;
+        }
+        for (int slot = mCount; slot < mPreviousCount; slot++) {
+            mItems[slot] = null;
+        }
+        mIsFullSort = !insertionSort(MAX_MOVES_PER_ELEMENT * mCount);
+        if (mIsFullSort) {
+            heapSort();
+        }
+        mPreviousCount = mCount;
+    }
+
+    /**
+     * Obtain the number of items.
+     *
+     * @return Number of items added since {@link #begin()}.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * Obtain an item in sorted order.
+     *
+     * @param index Position in the sorted order.
+     * @return The item with the index-th largest key.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) mItems[mOrder[index]];
+    }
+
+    /**
+     * Obtain the key of an item in sorted order.
+     *
+     * @param index Position in the sorted order.
+     * @return The index-th largest key.
+     */
+    float getKey(int index) {
+        return mKeys[mOrder[index]];
+    }
+
+    /**
+     * Check whether the last {@link #sort()} fell back to a heap sort.
+     *
+     * @return true if the insertion sort exceeded its move budget.
+     */
+    boolean isFullSort() {
+        return mIsFullSort;
+    }
+
+    // Returns false when the budget runs out; mOrder is still a permutation of the slots then.
+    private boolean insertionSort(int moveBudget) {
+        int moves = 0;
+        for (int i = 1; i < mCount; i++) {
+            int slot = mOrder[i];
+            float key = mKeys[slot];
+            int j = i - 1;
+            while (j >= 0 && mKeys[mOrder[j]] < key) {
+                mOrder[j + 1] = mOrder[j];
+                j--;
+                moves++;
+            }
+            mOrder[j + 1] = slot;
+            if (moves > moveBudget) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A min-heap on the keys, so that the largest keys end up first.
+    private void heapSort() {
+        for (int i = mCount / 2 - 1; i >= 0; i--) {
+            siftDown(i, mCount);
+        }
+        for (int end = mCount - 1; end > 0; end--) {
+            int first = mOrder[0];
+            mOrder[0] = mOrder[end];
+            mOrder[end] = first;
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int root, int end) {
+        int slot = mOrder[root];
+        float key = mKeys[slot];
+        int parent = root;
+        int child = 2 * parent + 1;
+        while (child < end) {
+            if (child + 1 < end && mKeys[mOrder[child + 1]] < mKeys[mOrder[child]]) {
+                child++;
+            }
+            if (mKeys[mOrder[child]] >= key) {
+                break;
+            }
+            mOrder[parent] = mOrder[child];
+            parent = child;
+            child = 2 * parent + 1;
+        }
+        mOrder[parent] = slot;
+    }
+
+    private void grow() {
+        int capacity = mItems.length * 2;
+        Object[] items = new Object[capacity];
+        System.arraycopy(mItems, 0, items, 0, mItems.length);
+        mItems = items;
+        float[] keys = new float[capacity];
+        System.arraycopy(mKeys, 0, keys, 0, mKeys.length);
+        mKeys = keys;
+        int[] order = new int[capacity];
+        System.arraycopy(mOrder, 0, order, 0, mOrder.length);
+        mOrder = order;
+    }
+}
@@ -0,0 +1,69 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+/**
+ * View frustum of the camera, represented by six planes extracted from the projection * view
+ * matrix (Gribb and Hartmann). Each plane is stored as (a, b, c, d) with a normalized normal
+ * that points into the frustum. This class does not depend on Android.
+ */
+class Frustum {
+    private static final int PLANE_COUNT = 6;
+
+    private static final int PLANE_SIZE = 4;
+
+    private final float[] mPlanes = new float[PLANE_COUNT * PLANE_SIZE];
+
+    /**
+     * Extract the frustum planes from a column-major projection * view matrix.
+     *
+     * @param viewProjection The product of the ProjectionMatrix and the viewMatrix, 4 * 4.
+     */
+    void set(float[] viewProjection) {
+        // The rows of the matrix are (m[i], m[4 + i], m[8 + i], m[12 + i]). A point is inside
+        // when -w <= x, y, z <= w in clip space, which gives w + row and w - row per axis.
+        for (int axis = 0; axis < 3; axis++) {
+            for (int i = 0; i < PLANE_SIZE; i++) {
+                float w = viewProjection[i * 4 + 3];
+                float row = viewProjection[i * 4 + axis];
+                mPlanes[(axis * 2) * PLANE_SIZE + i] = w + row;
+                mPlanes[(axis * 2 + 1) * PLANE_SIZE + i] = w - row;
+            }
+        }
+        for (int plane = 0; plane < PLANE_COUNT; plane++) {
+            int base = plane * PLANE_SIZE;
+            float length = (float) Math.sqrt(mPlanes[base] * mPlanes[base] + mPlanes[base + 1] * mPlanes[base + 1]
+                    + mPlanes[base + 2] * mPlanes[base + 2]);
+            if (length > 0.0f) {
+                for (int i = 0; i < PLANE_SIZE; i++) {
+                    mPlanes[base + i] /= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether an axis-aligned box is at least partly inside the frustum. The test is
+     * conservative: a box near a corner of the frustum may be reported visible although it
+     * is not, but a visible box is never reported invisible.
+     *
+     * @param boxes Array that contains the box.
+     * @param offset Offset of the box [minX, minY, minZ, maxX, maxY, maxZ] in boxes.
+     * @return true if the box may be visible.
+     */
+    boolean isBoxVisible(float[] boxes, int offset) {
+        for (int plane = 0; plane < PLANE_COUNT; plane++) {
+            int base = plane * PLANE_SIZE;
+            float a = mPlanes[base];
+            float b = mPlanes[base + 1];
+            float c = mPlanes[base + 2];
+
+            // The corner that is farthest along the plane normal.
+            float x = a >= 0.0f ? boxes[offset + 3] : boxes[offset];
+            float y = b >= 0.0f ? boxes[offset + 4] : boxes[offset + 1];
+            float z = c >= 0.0f ? boxes[offset + 5] : boxes[offset + 2];
+            if (a * x + b * y + c * z + mPlanes[base + 3] < 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -16,26 +16,24 @@
 
 package com.vsm.myarapplication.worldtracking.rendering;
 
-import android.graphics.Bitmap;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.opengl.Matrix;
 import android.util.Log;
-import android.util.Pair;
 
 import com.huawei.hiar.ARPlane;
 import com.huawei.hiar.ARPose;
 import com.huawei.hiar.ARTrackable;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.MatrixUtil;
 import com.vsm.myarapplication.common.ShaderUtil;
 
-import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 
 /**
  * This class demonstrates how to use ARPlane, including how to obtain the center point of a plane.
@@ -56,13 +54,48 @@ public class LabelDisplay {
 
     private static final float LABEL_HEIGHT = 0.3f;
 
-    private static final int TEXTURES_SIZE = 12;
-
     private static final int MATRIX_SIZE = 16;
 
-    private static final int PLANE_ANGLE_MATRIX_SIZE = 4;
+    private static final int FLOAT_SIZE = 4;
+
+    private static final int SHORT_SIZE = 2;
+
+    /**
+     * A batched vertex holds its world position x, y, z and its texture coordinates u, v.
+     */
+    static final int FLOATS_PER_BATCH_VERTEX = 5;
+
+    static final int VERTICES_PER_LABEL = 4;
+
+    static final int INDICES_PER_LABEL = 6;
+
+    static final int FLOATS_PER_LABEL = VERTICES_PER_LABEL * FLOATS_PER_BATCH_VERTEX;
+
+    // Unsigned short indices address at most 65536 vertices.
+    static final int MAX_BATCH_LABELS = 65536 / VERTICES_PER_LABEL;
 
-    private final int[] textures = new int[TEXTURES_SIZE];
+    private static final int INITIAL_BATCH_LABELS = 16;
+
+    // The label quad in plane coordinates. Each vertex is x, z and an alpha of 1.
+    private static final float[] LABEL_VERTICES = {
+        -LABEL_WIDTH / 2.0f, -LABEL_HEIGHT / 2.0f, 1.0f,
+        -LABEL_WIDTH / 2.0f, LABEL_HEIGHT / 2.0f, 1.0f,
+        LABEL_WIDTH / 2.0f, LABEL_HEIGHT / 2.0f, 1.0f,
+        LABEL_WIDTH / 2.0f, -LABEL_HEIGHT / 2.0f, 1.0f
+    };
+
+    // Two triangles that form the label quad.
+    private static final short[] LABEL_INDICES = {0, 1, 2, 0, 2, 3};
+
+    // One atlas texture holds the labels of all plane types.
+    private final int[] textures = new int[1];
+
+    // Texture coordinates of each plane label in the atlas, TextureAtlas.REGION_SIZE floats per label.
+    private float[] labelRegions = new float[0];
+
+    private final GlApi gl;
+
+    private final GlStateCache glState;
 
     // Allocate a temporary list/matrix here to reduce the number of allocations per frame.
     private final float[] modelMatrix = new float[MATRIX_SIZE];
@@ -71,8 +104,63 @@ public class LabelDisplay {
 
     private final float[] modelViewProjectionMatrix = new float[MATRIX_SIZE];
 
+    private final float[] cameraViewMatrix = new float[MATRIX_SIZE];
+
+    // Store the normal vector of the current plane.
+    private final float[] planeNormalVector = new float[3];
+
+    // Bounds of the label quad around the plane center, in plane coordinates.
+    private final float[] labelBoundingBox = {
+        -LABEL_WIDTH / 2.0f, 0.0f, -LABEL_HEIGHT / 2.0f, LABEL_WIDTH / 2.0f, 0.0f, LABEL_HEIGHT / 2.0f
+    };
+
+    private final float[] planeMatrix = new float[MATRIX_SIZE];
+
+    private final float[] worldBoundingBox = new float[6];
+
+    // Keeps the depth order of the planes between frames.
+    private final DepthSorter<ARPlane> planeSorter = new DepthSorter<>();
+
+    private int drawnCount;
+
+    private int culledCount;
+
+    private boolean isReady = false;
+
     // A 2 * 2 rotation matrix applied to the uv coordinates.
-    private final float[] planeAngleUvMatrix = new float[PLANE_ANGLE_MATRIX_SIZE];
+    private final float[] planeAngleUvMatrix = {1.0f / LABEL_WIDTH, 0.0f, 0.0f, 1.0f / LABEL_HEIGHT};
+
+    private final float[] viewProjectionMatrix = new float[MATRIX_SIZE];
+
+    // Static quad vertices and indices for drawing one label at a time.
+    private int quadVertexBuffer;
+
+    private int quadIndexBuffer;
+
+    // Vertices of all labels of a frame, refilled every frame, and their static indices.
+    private int batchVertexBuffer;
+
+    private int batchIndexBuffer;
+
+    private int batchCapacity;
+
+    private float[] batchVertices;
+
+    private FloatBuffer batchVertexData;
+
+    private boolean isBatchingEnabled = true;
+
+    private int batchProgram;
+
+    private int batchPositionParameter;
+
+    private int batchTexCoordParameter;
+
+    private int batchAttribs;
+
+    private int batchViewProjectionMatrix;
+
+    private int batchTexture;
 
     private int mProgram;
 
@@ -84,49 +172,159 @@ public class LabelDisplay {
 
     private int glPlaneUvMatrix;
 
+    private int glUvRegion;
+
     /**
-     * Create the shader program for label display in the openGL thread.
-     * This method will be called when {@link WorldRenderManager#onSurfaceCreated}.
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    public LabelDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
      *
-     * @param labelBitmaps View data indicating the plane type.
+     * @param glState State cache.
+     */
+    LabelDisplay(GlStateCache glState) {
+        this.glState = glState;
+        this.gl = glState.getGlApi();
+    }
+
+    /**
+     * Create the shader program for label display in the openGL thread. Labels are not drawn
+     * until their atlas is uploaded with {@link #uploadAtlas}.
+     * This method will be called when {@link WorldRenderManager#onSurfaceCreated}.
      */
-    public void init(ArrayList<Bitmap> labelBitmaps) {
+    public void init() {
         ShaderUtil.checkGlError(TAG, "Init start.");
-        if (labelBitmaps.size() == 0) {
-            Log.e(TAG, "No bitmap.");
-        }
+        isReady = false;
         createProgram();
-        int idx = 0;
-        GLES20.glGenTextures(textures.length, textures, 0);
-        for (Bitmap labelBitmap : labelBitmaps) {
-            // for semantic label plane
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + idx);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[idx]);
-
-            GLES20.glTexParameteri(
-                    GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
-            GLES20.glTexParameteri(
-                    GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, labelBitmap, 0);
-            GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-            idx++;
-            ShaderUtil.checkGlError(TAG, "Texture loading");
-        }
+        gl.glGenTextures(textures.length, textures, 0);
+        createBuffers();
         ShaderUtil.checkGlError(TAG, "Init end.");
     }
 
+    /**
+     * Upload the label atlas to the texture created by {@link #init()}. This method must be
+     * called in the openGL thread.
+     *
+     * @param labelAtlas View data indicating the plane type, with one region per plane label.
+     */
+    void uploadAtlas(TextureAtlas labelAtlas) {
+        ShaderUtil.checkGlError(TAG, "Upload atlas start.");
+        if (labelAtlas.regions.length == 0) {
+            Log.e(TAG, "No label in the atlas.");
+            return;
+        }
+        glState.activeTexture(GLES20.GL_TEXTURE0);
+        glState.bindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+        gl.glTexParameteri(
+                GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+        gl.glTexParameteri(
+                GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        labelAtlas.texture.upload(gl);
+        labelRegions = labelAtlas.regions;
+        isReady = true;
+        ShaderUtil.checkGlError(TAG, "Upload atlas end.");
+    }
+
+    /**
+     * Check whether the label textures have been uploaded.
+     *
+     * @return true if labels can be drawn.
+     */
+    boolean isReady() {
+        return isReady;
+    }
+
+    /**
+     * Release the shader programs. This method is called when
+     * {@link WorldRenderManager#onSurfaceCreated}, before {@link #init()}.
+     */
+    void releaseProgram() {
+        WorldShaderUtil.releaseProgram(mProgram);
+        WorldShaderUtil.releaseProgram(batchProgram);
+        mProgram = 0;
+        batchProgram = 0;
+    }
+
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "program start.");
         mProgram = WorldShaderUtil.getLabelProgram();
-        glPositionParameter = GLES20.glGetAttribLocation(mProgram, "inPosXZAlpha");
+        glPositionParameter = gl.glGetAttribLocation(mProgram, "inPosXZAlpha");
         glModelViewProjectionMatrix =
-                GLES20.glGetUniformLocation(mProgram, "inMVPMatrix");
-        glTexture = GLES20.glGetUniformLocation(mProgram, "inTexture");
-        glPlaneUvMatrix = GLES20.glGetUniformLocation(mProgram, "inPlanUVMatrix");
+                gl.glGetUniformLocation(mProgram, "inMVPMatrix");
+        glTexture = gl.glGetUniformLocation(mProgram, "inTexture");
+        glPlaneUvMatrix = gl.glGetUniformLocation(mProgram, "inPlanUVMatrix");
+        glUvRegion = gl.glGetUniformLocation(mProgram, "inUvRegion");
+        batchProgram = WorldShaderUtil.getLabelBatchProgram();
+        batchPositionParameter = gl.glGetAttribLocation(batchProgram, "inWorldPosition");
+        batchTexCoordParameter = gl.glGetAttribLocation(batchProgram, "inTexCoord");
+        batchAttribs = GlStateCache.getAttribBit(batchPositionParameter)
+                | GlStateCache.getAttribBit(batchTexCoordParameter);
+        batchViewProjectionMatrix = gl.glGetUniformLocation(batchProgram, "inVPMatrix");
+        batchTexture = gl.glGetUniformLocation(batchProgram, "inTexture");
         ShaderUtil.checkGlError(TAG, "program end.");
     }
 
+    private void createBuffers() {
+        int[] buffers = new int[4];
+        gl.glGenBuffers(buffers.length, buffers, 0);
+        quadVertexBuffer = buffers[0];
+        quadIndexBuffer = buffers[1];
+        batchVertexBuffer = buffers[2];
+        batchIndexBuffer = buffers[3];
+
+        FloatBuffer vertices = ByteBuffer.allocateDirect(FLOAT_SIZE * LABEL_VERTICES.length)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        vertices.put(LABEL_VERTICES).rewind();
+        glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, quadVertexBuffer);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, FLOAT_SIZE * LABEL_VERTICES.length, vertices,
+                GLES20.GL_STATIC_DRAW);
+
+        ShortBuffer indices = ByteBuffer.allocateDirect(SHORT_SIZE * LABEL_INDICES.length)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        indices.put(LABEL_INDICES).rewind();
+        glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, quadIndexBuffer);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, SHORT_SIZE * LABEL_INDICES.length, indices,
+                GLES20.GL_STATIC_DRAW);
+
+        batchCapacity = 0;
+        ensureBatchCapacity(INITIAL_BATCH_LABELS);
+        ShaderUtil.checkGlError(TAG, "Create buffers end.");
+    }
+
+    // Grow the batch arrays and the static batch indices. This only allocates when more labels
+    // are visible than ever before.
+    private void ensureBatchCapacity(int labelCount) {
+        if (labelCount <= batchCapacity || batchCapacity == MAX_BATCH_LABELS) {
+            return;
+        }
+        batchCapacity = Math.min(MAX_BATCH_LABELS, Math.max(labelCount, batchCapacity * 2));
+        batchVertices = new float[batchCapacity * FLOATS_PER_LABEL];
+        batchVertexData = ByteBuffer.allocateDirect(FLOAT_SIZE * batchVertices.length)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        short[] indices = createBatchIndices(batchCapacity);
+        ShortBuffer indexData = ByteBuffer.allocateDirect(SHORT_SIZE * indices.length)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        indexData.put(indices).rewind();
+        glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, batchIndexBuffer);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, SHORT_SIZE * indices.length, indexData,
+                GLES20.GL_STATIC_DRAW);
+    }
+
+    /**
+     * Choose whether all labels of a frame are drawn from one dynamic vertex buffer, or one
+     * at a time from the static quad. Batching is enabled by default.
+     *
+     * @param isEnabled true to batch the labels.
+     */
+    void setBatchingEnabled(boolean isEnabled) {
+        isBatchingEnabled = isEnabled;
+    }
+
     /**
      * Render the plane type at the center of the currently identified plane.
      * This method will be called when {@link WorldRenderManager#onDrawFrame}.
@@ -136,16 +334,55 @@ public class LabelDisplay {
      * @param cameraProjection Projection matrix of the current camera.
      */
     public void onDrawFrame(Collection<ARPlane> allPlanes, ARPose cameraPose, float[] cameraProjection) {
-        ArrayList<ARPlane> sortedPlanes = getSortedPlanes(allPlanes, cameraPose);
-        float[] cameraViewMatrix = new float[MATRIX_SIZE];
+        onDrawFrame(allPlanes, cameraPose, cameraProjection, null);
+    }
+
+    /**
+     * Render the labels of the planes whose label lies at least partly inside the view frustum.
+     * Nothing is drawn until the label textures are ready.
+     * The numbers of drawn and culled labels are available from {@link #getDrawnCount()} and
+     * {@link #getCulledCount()} until the next call.
+     *
+     * @param allPlanes All identified planes.
+     * @param cameraPose Location and pose of the current camera.
+     * @param cameraProjection Projection matrix of the current camera.
+     * @param frustum View frustum of the camera, or null to draw all labels.
+     */
+    void onDrawFrame(Collection<ARPlane> allPlanes, ARPose cameraPose, float[] cameraProjection, Frustum frustum) {
+        if (!isReady) {
+            drawnCount = 0;
+            culledCount = 0;
+            return;
+        }
+        sortPlanes(allPlanes, cameraPose, frustum);
+        drawnCount = planeSorter.size();
         cameraPose.inverse().toMatrix(cameraViewMatrix, 0);
-        drawSortedPlans(sortedPlanes, cameraViewMatrix, cameraProjection);
+        drawSortedPlans(planeSorter, cameraViewMatrix, cameraProjection);
     }
 
-    private ArrayList<ARPlane> getSortedPlanes(Collection<ARPlane> allPlanes, ARPose cameraPose) {
+    /**
+     * Obtain the number of labels drawn by the last {@link #onDrawFrame}.
+     *
+     * @return Number of drawn labels.
+     */
+    int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * Obtain the number of labels skipped by frustum culling in the last {@link #onDrawFrame}.
+     *
+     * @return Number of culled labels.
+     */
+    int getCulledCount() {
+        return culledCount;
+    }
+
+    private void sortPlanes(Collection<ARPlane> allPlanes, ARPose cameraPose, Frustum frustum) {
+        culledCount = 0;
         // Planes must be sorted by the distance from the camera so that we can
         // first draw the closer planes, and have them block the further planes.
-        ArrayList<Pair<ARPlane, Float>> pairPlanes = new ArrayList<>();
+        planeSorter.begin();
         for (ARPlane plane : allPlanes) {
             if ((plane.getType() == ARPlane.PlaneType.UNKNOWN_FACING)
                     || plane.getTrackingState() != ARTrackable.TrackingState.TRACKING
@@ -153,9 +390,15 @@ public class LabelDisplay {
                 continue;
             }
 
-            // Store the normal vector of the current plane.
-            float[] planeNormalVector = new float[3];
             ARPose planeCenterPose = plane.getCenterPose();
+            if (frustum != null) {
+                planeCenterPose.toMatrix(planeMatrix, 0);
+                MatrixUtil.transformBoundingBox(worldBoundingBox, planeMatrix, labelBoundingBox);
+                if (!frustum.isBoxVisible(worldBoundingBox, 0)) {
+                    culledCount++;
+                    continue;
+                }
+            }
             planeCenterPose.getTransformedAxis(1, 1.0f, planeNormalVector, 0);
 
             // Calculate the distance from the camera to the plane. If the value is negative,
@@ -164,118 +407,146 @@ public class LabelDisplay {
             float distanceBetweenPlaneAndCamera = (cameraPose.tx() - planeCenterPose.tx()) * planeNormalVector[0]
                     + (cameraPose.ty() - planeCenterPose.ty()) * planeNormalVector[1]
                     + (cameraPose.tz() - planeCenterPose.tz()) * planeNormalVector[2];
-            pairPlanes.add(new Pair<>(plane, distanceBetweenPlaneAndCamera));
-        }
-
-        pairPlanes.sort(new PlanCompare());
-
-        ArrayList<ARPlane> sortedPlanes = new ArrayList<>();
-        for (Pair<ARPlane, Float> eachPlane : pairPlanes) {
-            sortedPlanes.add(eachPlane.first);
+            planeSorter.add(plane, distanceBetweenPlaneAndCamera);
         }
-        return sortedPlanes;
+        planeSorter.sort();
     }
 
-    private void drawSortedPlans(ArrayList<ARPlane> sortedPlanes, float[] cameraViews, float[] cameraProjection) {
+    private void drawSortedPlans(DepthSorter<ARPlane> sortedPlanes, float[] cameraViews, float[] cameraProjection) {
         ShaderUtil.checkGlError(TAG, "Draw sorted plans start.");
 
-        GLES20.glDepthMask(false);
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFuncSeparate(
+        glState.enable(GLES20.GL_DEPTH_TEST);
+        glState.depthMask(false);
+        glState.enable(GLES20.GL_BLEND);
+        glState.blendFuncSeparate(
                 GLES20.GL_DST_ALPHA, GLES20.GL_ONE, GLES20.GL_ZERO, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-        GLES20.glUseProgram(mProgram);
-        GLES20.glEnableVertexAttribArray(glPositionParameter);
-
-        for (ARPlane plane : sortedPlanes) {
-            float[] planeMatrix = new float[MATRIX_SIZE];
-            plane.getCenterPose().toMatrix(planeMatrix, 0);
-
-            System.arraycopy(planeMatrix, 0, modelMatrix, 0, MATRIX_SIZE);
-
-            float scaleU = 1.0f / LABEL_WIDTH;
-
-            // Set the value of the plane angle uv matrix.
-            planeAngleUvMatrix[0] = scaleU;
-            planeAngleUvMatrix[1] = 0.0f;
-            planeAngleUvMatrix[2] = 0.0f;
-            float scaleV = 1.0f / LABEL_HEIGHT;
-            planeAngleUvMatrix[3] = scaleV;
 
-            int idx = plane.getLabel().ordinal();
-            Log.d(TAG, "Plane getLabel:" + idx);
-            idx = Math.abs(idx);
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + idx);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[idx]);
-            GLES20.glUniform1i(glTexture, idx);
-            GLES20.glUniformMatrix2fv(glPlaneUvMatrix, 1, false, planeAngleUvMatrix, 0);
+        // All labels sample the atlas, so it is bound once per frame.
+        glState.activeTexture(GLES20.GL_TEXTURE0);
+        glState.bindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+        if (isBatchingEnabled) {
+            drawBatchedPlans(sortedPlanes, cameraViews, cameraProjection);
+        } else {
+            drawEachPlan(sortedPlanes, cameraViews, cameraProjection);
+        }
+        ShaderUtil.checkGlError(TAG, "Draw sorted plans end.");
+    }
 
+    private void drawEachPlan(DepthSorter<ARPlane> sortedPlanes, float[] cameraViews, float[] cameraProjection) {
+        glState.useProgram(mProgram);
+        glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, quadVertexBuffer);
+        glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, quadIndexBuffer);
+        glState.setVertexAttribArrays(GlStateCache.getAttribBit(glPositionParameter));
+        gl.glVertexAttribPointer(glPositionParameter, COORDS_PER_VERTEX, GLES20.GL_FLOAT,
+                false, FLOAT_SIZE * COORDS_PER_VERTEX, 0);
+
+        // The uv matrix only depends on the label size, which is the same for all labels.
+        gl.glUniformMatrix2fv(glPlaneUvMatrix, 1, false, planeAngleUvMatrix, 0);
+        gl.glUniform1i(glTexture, 0);
+        for (int i = 0; i < sortedPlanes.size(); i++) {
+            ARPlane plane = sortedPlanes.get(i);
+            plane.getCenterPose().toMatrix(modelMatrix, 0);
+            int regionOffset = getRegionOffset(labelRegions, plane.getLabel().ordinal());
+            gl.glUniform4fv(glUvRegion, 1, labelRegions, regionOffset);
             drawLabel(cameraViews, cameraProjection);
         }
-
-        GLES20.glDisableVertexAttribArray(glPositionParameter);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        GLES20.glDisable(GLES20.GL_BLEND);
-        GLES20.glDepthMask(true);
-        ShaderUtil.checkGlError(TAG, "Draw sorted plans end.");
     }
 
     private void drawLabel(float[] cameraViews, float[] cameraProjection) {
-        ShaderUtil.checkGlError(TAG, "Draw label start.");
         Matrix.multiplyMM(modelViewMatrix, 0, cameraViews, 0, modelMatrix, 0);
         Matrix.multiplyMM(modelViewProjectionMatrix, 0, cameraProjection, 0, modelViewMatrix, 0);
+        gl.glUniformMatrix4fv(glModelViewProjectionMatrix, 1, false, modelViewProjectionMatrix, 0);
+        gl.glDrawElements(GLES20.GL_TRIANGLES, LABEL_INDICES.length, GLES20.GL_UNSIGNED_SHORT, 0);
+    }
 
-        float halfWidth = LABEL_WIDTH / 2.0f;
-        float halfHeight = LABEL_HEIGHT / 2.0f;
-        float[] vertices = {
-                -halfWidth, -halfHeight, 1,
-                -halfWidth, halfHeight, 1,
-                halfWidth, halfHeight, 1,
-                halfWidth, -halfHeight, 1,
-        };
-
-        // The size of each floating point is 4 bits.
-        FloatBuffer vetBuffer = ByteBuffer.allocateDirect(4 * vertices.length)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        vetBuffer.rewind();
-        for (int i = 0; i < vertices.length; ++i) {
-            vetBuffer.put(vertices[i]);
-        }
-        vetBuffer.rewind();
-
-        // The size of each floating point is 4 bits.
-        GLES20.glVertexAttribPointer(glPositionParameter, COORDS_PER_VERTEX, GLES20.GL_FLOAT,
-                false, 4 * COORDS_PER_VERTEX, vetBuffer);
+    private void drawBatchedPlans(DepthSorter<ARPlane> sortedPlanes, float[] cameraViews, float[] cameraProjection) {
+        ensureBatchCapacity(sortedPlanes.size());
+        Matrix.multiplyMM(viewProjectionMatrix, 0, cameraProjection, 0, cameraViews, 0);
+        glState.useProgram(batchProgram);
+        gl.glUniformMatrix4fv(batchViewProjectionMatrix, 1, false, viewProjectionMatrix, 0);
+        gl.glUniform1i(batchTexture, 0);
+        glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, batchVertexBuffer);
+        glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, batchIndexBuffer);
+        glState.setVertexAttribArrays(batchAttribs);
+        gl.glVertexAttribPointer(batchPositionParameter, 3, GLES20.GL_FLOAT, false,
+                FLOAT_SIZE * FLOATS_PER_BATCH_VERTEX, 0);
+        gl.glVertexAttribPointer(batchTexCoordParameter, 2, GLES20.GL_FLOAT, false,
+                FLOAT_SIZE * FLOATS_PER_BATCH_VERTEX, FLOAT_SIZE * 3);
+
+        // More labels than one batch can index are drawn in several batches.
+        for (int start = 0; start < sortedPlanes.size(); start += batchCapacity) {
+            int count = Math.min(batchCapacity, sortedPlanes.size() - start);
+            for (int i = 0; i < count; i++) {
+                ARPlane plane = sortedPlanes.get(start + i);
+                plane.getCenterPose().toMatrix(modelMatrix, 0);
+                int regionOffset = getRegionOffset(labelRegions, plane.getLabel().ordinal());
+                packLabel(modelMatrix, labelRegions, regionOffset, batchVertices, i * FLOATS_PER_LABEL);
+            }
+            batchVertexData.clear();
+            batchVertexData.put(batchVertices, 0, count * FLOATS_PER_LABEL).flip();
 
-        // Set the sequence of OpenGL drawing points to generate two triangles that form a plane.
-        short[] indices = {0, 1, 2, 0, 2, 3};
+            // Respecify the whole store, so that the driver need not wait for the previous frame.
+            gl.glBufferData(GLES20.GL_ARRAY_BUFFER, FLOAT_SIZE * count * FLOATS_PER_LABEL, batchVertexData,
+                    GLES20.GL_DYNAMIC_DRAW);
 
-        // Size of the allocated buffer.
-        ShortBuffer idxBuffer = ByteBuffer.allocateDirect(2 * indices.length)
-                .order(ByteOrder.nativeOrder()).asShortBuffer();
-        idxBuffer.rewind();
-        for (int i = 0; i < indices.length; ++i) {
-            idxBuffer.put(indices[i]);
+            gl.glDrawElements(GLES20.GL_TRIANGLES, count * INDICES_PER_LABEL, GLES20.GL_UNSIGNED_SHORT, 0);
         }
-        idxBuffer.rewind();
-
-        GLES20.glUniformMatrix4fv(glModelViewProjectionMatrix, 1, false, modelViewProjectionMatrix, 0);
-
-        GLES20.glDrawElements(GLES20.GL_TRIANGLE_STRIP, idxBuffer.limit(), GLES20.GL_UNSIGNED_SHORT, idxBuffer);
-        ShaderUtil.checkGlError(TAG, "Draw label end.");
     }
 
     /**
-     * Sort the planes.
+     * Write the four world space vertices of a label quad with their texture coordinates.
      *
-     * @author HW
-     * @since 2020-04-17
+     * @param modelMatrix Pose of the plane center, column-major 4 * 4.
+     * @param regions Regions of the labels in the atlas.
+     * @param regionOffset Offset of the region [u0, v0, u1, v1] of this label in regions.
+     * @param vertices Destination array.
+     * @param offset Offset of the label in vertices, {@link #FLOATS_PER_LABEL} floats are written.
      */
-    static class PlanCompare implements Comparator<Pair<ARPlane, Float>>, Serializable {
-        private static final long serialVersionUID = -7710923839970415650L;
+    static void packLabel(float[] modelMatrix, float[] regions, int regionOffset, float[] vertices, int offset) {
+        float u0 = regions[regionOffset];
+        float v0 = regions[regionOffset + 1];
+        float uScale = regions[regionOffset + 2] - u0;
+        float vScale = regions[regionOffset + 3] - v0;
+        for (int i = 0; i < VERTICES_PER_LABEL; i++) {
+            float x = LABEL_VERTICES[i * COORDS_PER_VERTEX];
+            float z = LABEL_VERTICES[i * COORDS_PER_VERTEX + 1];
+            int base = offset + i * FLOATS_PER_BATCH_VERTEX;
+            vertices[base] = modelMatrix[0] * x + modelMatrix[8] * z + modelMatrix[12];
+            vertices[base + 1] = modelMatrix[1] * x + modelMatrix[9] * z + modelMatrix[13];
+            vertices[base + 2] = modelMatrix[2] * x + modelMatrix[10] * z + modelMatrix[14];
+
+            // The same mapping as inPlanUVMatrix and inUvRegion in the label vertex shader.
+            vertices[base + 3] = u0 + (x / LABEL_WIDTH + 0.5f) * uScale;
+            vertices[base + 4] = v0 + (z / LABEL_HEIGHT + 0.5f) * vScale;
+        }
+    }
 
-        @Override
-        public int compare(Pair<ARPlane, Float> planA, Pair<ARPlane, Float> planB) {
-            return planB.second.compareTo(planA.second);
+    /**
+     * Create the indices of labelCount label quads stored one after another.
+     *
+     * @param labelCount Number of labels, at most {@link #MAX_BATCH_LABELS}.
+     * @return {@link #INDICES_PER_LABEL} indices per label.
+     */
+    static short[] createBatchIndices(int labelCount) {
+        short[] indices = new short[labelCount * INDICES_PER_LABEL];
+        for (int label = 0; label < labelCount; label++) {
+            for (int i = 0; i < INDICES_PER_LABEL; i++) {
+                indices[label * INDICES_PER_LABEL + i] = (short) (label * VERTICES_PER_LABEL + LABEL_INDICES[i]);
+            }
         }
+        return indices;
+    }
+
+    /**
+     * Find the region of a plane label in the atlas. Labels without a region of their own use
+     * the first one, which is the label for other planes.
+     *
+     * @param regions Regions of the labels in the atlas.
+     * @param label Ordinal of the plane label.
+     * @return Offset of the region in regions.
+     */
+    static int getRegionOffset(float[] regions, int label) {
+        int offset = Math.abs(label) * TextureAtlas.REGION_SIZE;
+        return offset + TextureAtlas.REGION_SIZE <= regions.length ? offset : 0;
     }
-}
\ No newline at end of file
+}
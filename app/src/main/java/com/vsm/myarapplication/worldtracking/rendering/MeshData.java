@@ -0,0 +1,302 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+
+/**
+ * CPU-side mesh of a virtual object, ready to be uploaded to OpenGL ES. Vertices are
+ * interleaved as position (x, y, z), normal vector (x, y, z) and texture coordinate (u, v).
+ * This class does not depend on Android, so it can be used in JVM unit tests.
+ */
+class MeshData {
+    /**
+     * Number of float components of one interleaved vertex.
+     */
+    static final int FLOATS_PER_VERTEX = 8;
+
+    /**
+     * Number of bytes of one interleaved vertex.
+     */
+    static final int VERTEX_STRIDE = FLOATS_PER_VERTEX * 4;
+
+    /**
+     * Byte offset of the position inside one interleaved vertex.
+     */
+    static final int POSITION_OFFSET = 0;
+
+    /**
+     * Byte offset of the normal vector inside one interleaved vertex.
+     */
+    static final int NORMAL_OFFSET = 3 * 4;
+
+    /**
+     * Byte offset of the texture coordinate inside one interleaved vertex.
+     */
+    static final int TEX_COORD_OFFSET = 6 * 4;
+
+    /**
+     * Size of a 16-bit index element in bytes.
+     */
+    static final int INDEX_SIZE_SHORT = 2;
+
+    /**
+     * Size of a 32-bit index element in bytes.
+     */
+    static final int INDEX_SIZE_INT = 4;
+
+    /**
+     * Largest number of vertices that can be addressed by 16-bit indices.
+     */
+    static final int MAX_SHORT_INDEXED_VERTICES = 65536;
+
+    /**
+     * Triangle count of each simplified level of detail, relative to the full mesh.
+     * Level 0 is the full mesh and is not listed.
+     */
+    static final float[] LEVEL_TRIANGLE_RATIOS = {0.5f, 0.2f, 0.05f};
+
+    /**
+     * Largest number of levels of detail of a mesh, including the full mesh.
+     */
+    static final int MAX_LEVEL_COUNT = LEVEL_TRIANGLE_RATIOS.length + 1;
+
+    /**
+     * Smallest screen size, as a fraction of the screen height, at which each level is used.
+     * Objects that are smaller than the last entry use the coarsest level.
+     */
+    static final float[] LEVEL_SCREEN_SIZES = {0.25f, 0.1f, 0.04f};
+
+    // Meshes with fewer triangles than this are not simplified.
+    private static final int MIN_SIMPLIFIED_TRIANGLES = 64;
+
+    // The bounding box is represented by [minX, minY, minZ, maxX, maxY, maxZ].
+    private static final int BOUNDING_BOX_SIZE = 6;
+
+    final FloatBuffer vertices;
+
+    final Buffer indices;
+
+    final int vertexCount;
+
+    final int indexCount;
+
+    final int indexSize;
+
+    final float[] boundingBox;
+
+    /**
+     * Number of indices of each level of detail. The levels are stored one after another in
+     * {@link #indices}, starting with the full mesh, and sum up to {@link #indexCount}.
+     */
+    final int[] levelIndexCounts;
+
+    MeshData(FloatBuffer vertices, Buffer indices, int vertexCount, int indexCount, int indexSize,
+             float[] boundingBox, int[] levelIndexCounts) {
+        this.vertices = vertices;
+        this.indices = indices;
+        this.vertexCount = vertexCount;
+        this.indexCount = indexCount;
+        this.indexSize = indexSize;
+        this.boundingBox = boundingBox;
+        this.levelIndexCounts = levelIndexCounts;
+    }
+
+    /**
+     * Obtain the offset of the first index of a level of detail.
+     *
+     * @param level Level of detail, 0 being the full mesh.
+     * @return Offset in indices, not bytes.
+     */
+    int getLevelIndexOffset(int level) {
+        int offset = 0;
+        for (int i = 0; i < level; i++) {
+            offset += levelIndexCounts[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Build an interleaved mesh from an OBJ that has already been converted by
+     * {@link de.javagl.obj.ObjUtils#convertToRenderable}. 16-bit indices are used whenever
+     * the vertex count allows it, otherwise 32-bit indices are used. Simplified levels of
+     * detail are generated with {@link MeshSimplifier} and appended to the index buffer.
+     *
+     * @param obj Renderable OBJ.
+     * @param isIntIndexSupported Whether 32-bit indices can be drawn (OES_element_index_uint).
+     * @return Interleaved mesh backed by direct buffers.
+     * @throws IllegalArgumentException If the mesh needs 32-bit indices but they are not supported.
+     */
+    static MeshData fromObj(Obj obj, boolean isIntIndexSupported) {
+        // Every surface of an object has three vertices.
+        IntBuffer objIndices = ObjData.getFaceVertexIndices(obj, 3);
+        FloatBuffer positions = ObjData.getVertices(obj);
+
+        // The dimension of the texture coordinate is 2.
+        FloatBuffer texCoords = ObjData.getTexCoords(obj, 2);
+        FloatBuffer normals = ObjData.getNormals(obj);
+
+        int vertexCount = obj.getNumVertices();
+        FloatBuffer vertices = allocateVertices(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            vertices.put(positions.get(3 * i)).put(positions.get(3 * i + 1)).put(positions.get(3 * i + 2));
+            if (normals.limit() >= 3 * (i + 1)) {
+                vertices.put(normals.get(3 * i)).put(normals.get(3 * i + 1)).put(normals.get(3 * i + 2));
+            } else {
+                vertices.put(0.0f).put(1.0f).put(0.0f);
+            }
+            if (texCoords.limit() >= 2 * (i + 1)) {
+                vertices.put(texCoords.get(2 * i)).put(texCoords.get(2 * i + 1));
+            } else {
+                vertices.put(0.0f).put(0.0f);
+            }
+        }
+        vertices.rewind();
+
+        int[] fullIndices = new int[objIndices.limit()];
+        objIndices.get(fullIndices);
+        int[][] levels = createLevels(vertices, vertexCount, fullIndices);
+        int indexCount = 0;
+        int[] levelIndexCounts = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levelIndexCounts[i] = levels[i].length;
+            indexCount += levels[i].length;
+        }
+
+        int indexSize = selectIndexSize(vertexCount, isIntIndexSupported);
+        ByteBuffer indexBytes = ByteBuffer.allocateDirect(indexSize * indexCount).order(ByteOrder.nativeOrder());
+        Buffer indices;
+        if (indexSize == INDEX_SIZE_INT) {
+            IntBuffer intIndices = indexBytes.asIntBuffer();
+            for (int[] level : levels) {
+                intIndices.put(level);
+            }
+            indices = intIndices.rewind();
+        } else {
+            // Values above Short.MAX_VALUE keep their bit pattern and are read back as unsigned by OpenGL.
+            ShortBuffer shortIndices = indexBytes.asShortBuffer();
+            for (int[] level : levels) {
+                for (int index : level) {
+                    shortIndices.put((short) index);
+                }
+            }
+            indices = shortIndices.rewind();
+        }
+        return new MeshData(vertices, indices, vertexCount, indexCount, indexSize,
+                calculateBoundingBox(vertices, vertexCount), levelIndexCounts);
+    }
+
+    /**
+     * Create the index sets of all levels of detail, starting with the full mesh. A level is
+     * only added if it has noticeably fewer triangles than the previous one.
+     *
+     * @param vertices Interleaved vertices.
+     * @param vertexCount Number of vertices.
+     * @param fullIndices Triangle indices of the full mesh.
+     * @return Index sets, at most {@link #MAX_LEVEL_COUNT}.
+     */
+    static int[][] createLevels(FloatBuffer vertices, int vertexCount, int[] fullIndices) {
+        int triangleCount = fullIndices.length / 3;
+        if (triangleCount < MIN_SIMPLIFIED_TRIANGLES) {
+            return new int[][]{fullIndices};
+        }
+        int[][] levels = new int[MAX_LEVEL_COUNT][];
+        levels[0] = fullIndices;
+        int levelCount = 1;
+        MeshSimplifier simplifier = new MeshSimplifier(vertices, vertexCount, fullIndices);
+        for (float ratio : LEVEL_TRIANGLE_RATIOS) {
+            int previousTriangles = levels[levelCount - 1].length / 3;
+            int[] level = simplifier.simplify((int) (triangleCount * ratio));
+
+            // Stop when the simplifier cannot make meaningful progress any more.
+            if (level.length / 3 > previousTriangles * 0.9f) {
+                break;
+            }
+            levels[levelCount++] = level;
+        }
+        return Arrays.copyOf(levels, levelCount);
+    }
+
+    /**
+     * Select the level of detail for an object of the given projected size.
+     *
+     * @param screenSize Projected diameter of the object as a fraction of the screen height.
+     * @param levelCount Number of levels of the mesh.
+     * @return Level of detail, 0 being the full mesh.
+     */
+    static int selectLevel(float screenSize, int levelCount) {
+        int level = 0;
+        while (level < LEVEL_SCREEN_SIZES.length && screenSize < LEVEL_SCREEN_SIZES[level]) {
+            level++;
+        }
+        return Math.max(0, Math.min(level, levelCount - 1));
+    }
+
+    /**
+     * Select the smallest index element size that can address all vertices.
+     *
+     * @param vertexCount Number of vertices of the mesh.
+     * @param isIntIndexSupported Whether 32-bit indices can be drawn.
+     * @return {@link #INDEX_SIZE_SHORT} or {@link #INDEX_SIZE_INT}.
+     * @throws IllegalArgumentException If the mesh needs 32-bit indices but they are not supported.
+     */
+    static int selectIndexSize(int vertexCount, boolean isIntIndexSupported) {
+        if (vertexCount <= MAX_SHORT_INDEXED_VERTICES) {
+            return INDEX_SIZE_SHORT;
+        }
+        if (!isIntIndexSupported) {
+            throw new IllegalArgumentException("Mesh has " + vertexCount + " vertices, but 32-bit indices"
+                    + " are not supported.");
+        }
+        return INDEX_SIZE_INT;
+    }
+
+    /**
+     * Allocate a direct buffer in native order for the given number of interleaved vertices.
+     *
+     * @param vertexCount Number of vertices.
+     * @return Vertex buffer.
+     */
+    static FloatBuffer allocateVertices(int vertexCount) {
+        return ByteBuffer.allocateDirect(VERTEX_STRIDE * vertexCount)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Calculate the bounding box [minX, minY, minZ, maxX, maxY, maxZ] of interleaved vertices.
+     *
+     * @param vertices Interleaved vertices.
+     * @param vertexCount Number of vertices.
+     * @return Bounding box, all zero if there is no vertex.
+     */
+    static float[] calculateBoundingBox(FloatBuffer vertices, int vertexCount) {
+        float[] boundingBox = new float[BOUNDING_BOX_SIZE];
+        if (vertexCount == 0) {
+            return boundingBox;
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            boundingBox[axis] = vertices.get(axis);
+            boundingBox[axis + 3] = vertices.get(axis);
+        }
+        for (int i = 1; i < vertexCount; i++) {
+            int base = i * FLOATS_PER_VERTEX;
+            for (int axis = 0; axis < 3; axis++) {
+                float value = vertices.get(base + axis);
+                if (value < boundingBox[axis]) {
+                    boundingBox[axis] = value;
+                }
+                if (value > boundingBox[axis + 3]) {
+                    boundingBox[axis + 3] = value;
+                }
+            }
+        }
+        return boundingBox;
+    }
+}
@@ -0,0 +1,171 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes the precompiled binary mesh format used to cache converted OBJ models.
+ * The file is little-endian and consists of a fixed-size header, an interleaved vertex
+ * block ({@link MeshData#VERTEX_STRIDE} bytes per vertex) and an index block.
+ * <p>
+ * Header layout: magic, version, source stamp (long), vertex count, index count,
+ * index size in bytes, floats per vertex, the bounding box (six floats), the number of
+ * levels of detail and the index count of each level ({@link MeshData#MAX_LEVEL_COUNT} ints).
+ */
+class MeshFile {
+    /**
+     * "ARMB" in little-endian byte order.
+     */
+    static final int MAGIC = 0x424D5241;
+
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 * 4 + 6 * 4 + 4 + MeshData.MAX_LEVEL_COUNT * 4;
+
+    private MeshFile() {
+    }
+
+    /**
+     * Write the mesh to the file, replacing any existing content. A partly written file must
+     * never be read, so the mesh is written to a temporary file that is renamed when complete.
+     *
+     * @param mesh Mesh to write.
+     * @param sourceStamp Stamp of the source model, checked by {@link #read(File, long)}.
+     * @param file Destination file.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(MeshData mesh, long sourceStamp, File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(sourceStamp)
+                .putInt(mesh.vertexCount).putInt(mesh.indexCount).putInt(mesh.indexSize)
+                .putInt(MeshData.FLOATS_PER_VERTEX);
+        for (float value : mesh.boundingBox) {
+            header.putFloat(value);
+        }
+        header.putInt(mesh.levelIndexCounts.length);
+        for (int i = 0; i < MeshData.MAX_LEVEL_COUNT; i++) {
+            header.putInt(i < mesh.levelIndexCounts.length ? mesh.levelIndexCounts[i] : 0);
+        }
+        header.flip();
+
+        ByteBuffer vertexBlock = ByteBuffer.allocate(mesh.vertexCount * MeshData.VERTEX_STRIDE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer vertices = mesh.vertices.duplicate();
+        vertices.rewind();
+        vertexBlock.asFloatBuffer().put(vertices);
+
+        ByteBuffer indexBlock = ByteBuffer.allocate(mesh.indexCount * mesh.indexSize).order(ByteOrder.LITTLE_ENDIAN);
+        if (mesh.indexSize == MeshData.INDEX_SIZE_INT) {
+            IntBuffer indices = ((IntBuffer) mesh.indices).duplicate();
+            indices.rewind();
+            indexBlock.asIntBuffer().put(indices);
+        } else {
+            ShortBuffer indices = ((ShortBuffer) mesh.indices).duplicate();
+            indices.rewind();
+            indexBlock.asShortBuffer().put(indices);
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(temporary, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer[] blocks = {header, vertexBlock, indexBlock};
+            long total = HEADER_SIZE + vertexBlock.capacity() + indexBlock.capacity();
+            long written = 0;
+            while (written < total) {
+                written += channel.write(blocks);
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Rename " + temporary + " failed.");
+        }
+    }
+
+    /**
+     * Memory-map a mesh file. The returned vertex and index buffers are views of the
+     * mapping and can be passed directly to glBufferData.
+     *
+     * @param file Mesh file.
+     * @param sourceStamp Expected stamp of the source model.
+     * @return The mesh, or null if the file is missing, stale or malformed.
+     * @throws IOException If the file cannot be read.
+     */
+    static MeshData read(File file, long sourceStamp) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION || mapped.getLong() != sourceStamp) {
+            return null;
+        }
+        int vertexCount = mapped.getInt();
+        int indexCount = mapped.getInt();
+        int indexSize = mapped.getInt();
+        int floatsPerVertex = mapped.getInt();
+        float[] boundingBox = new float[6];
+        for (int i = 0; i < boundingBox.length; i++) {
+            boundingBox[i] = mapped.getFloat();
+        }
+        int levelCount = mapped.getInt();
+        if (levelCount < 1 || levelCount > MeshData.MAX_LEVEL_COUNT) {
+            return null;
+        }
+        int[] levelIndexCounts = new int[levelCount];
+        long levelIndexTotal = 0;
+        for (int i = 0; i < levelCount; i++) {
+            levelIndexCounts[i] = mapped.getInt();
+            levelIndexTotal += levelIndexCounts[i];
+        }
+        long vertexBytes = (long) vertexCount * MeshData.VERTEX_STRIDE;
+        long indexBytes = (long) indexCount * indexSize;
+        boolean isValidIndexSize = indexSize == MeshData.INDEX_SIZE_SHORT || indexSize == MeshData.INDEX_SIZE_INT;
+        if (floatsPerVertex != MeshData.FLOATS_PER_VERTEX || !isValidIndexSize || vertexCount < 0
+                || indexCount < 0 || levelIndexTotal != indexCount
+                || HEADER_SIZE + vertexBytes + indexBytes > mapped.capacity()) {
+            return null;
+        }
+
+        mapped.position(HEADER_SIZE);
+        mapped.limit(HEADER_SIZE + (int) vertexBytes);
+        FloatBuffer vertices = nativeBlock(mapped.slice(), 4).asFloatBuffer();
+        mapped.limit(HEADER_SIZE + (int) (vertexBytes + indexBytes));
+        mapped.position(HEADER_SIZE + (int) vertexBytes);
+        ByteBuffer indexBlock = nativeBlock(mapped.slice(), indexSize);
+        Buffer indices = indexSize == MeshData.INDEX_SIZE_INT ? indexBlock.asIntBuffer() : indexBlock.asShortBuffer();
+        return new MeshData(vertices, indices, vertexCount, indexCount, indexSize, boundingBox,
+                levelIndexCounts);
+    }
+
+    // The file is little-endian. On such hosts the mapping is used as is, otherwise it is copied once.
+    private static ByteBuffer nativeBlock(ByteBuffer block, int elementSize) {
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return block.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer copy = ByteBuffer.allocateDirect(block.remaining()).order(ByteOrder.nativeOrder());
+        if (elementSize == 4) {
+            copy.asIntBuffer().put(block.asIntBuffer());
+        } else {
+            copy.asShortBuffer().put(block.asShortBuffer());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,456 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Simplifies a triangle mesh by quadric error edge collapse (Garland and Heckbert).
+ * Collapses are half-edge collapses: one endpoint of the edge is moved onto the other,
+ * which is kept as is. The simplified triangles therefore only reference vertices of the
+ * original mesh, so every level of detail can share one vertex buffer and only needs
+ * its own index set.
+ * <p>
+ * Edges that belong to a single triangle, which includes the texture and normal seams
+ * created by {@link de.javagl.obj.ObjUtils#convertToRenderable}, get an extra penalty
+ * plane so that the outline of the mesh and its seams are kept. Collapses that would flip
+ * a triangle are rejected. Simplification is progressive: every call of
+ * {@link #simplify(int)} continues from the result of the previous one. This class does
+ * not depend on Android.
+ */
+class MeshSimplifier {
+    // Weight of the planes that keep boundary and seam edges in place.
+    private static final double BOUNDARY_WEIGHT = 1000.0;
+
+    // Smallest cosine between the normals of a triangle before and after a collapse.
+    private static final double MIN_NORMAL_COSINE = 0.2;
+
+    // Weight of the squared edge length added to each cost. It only breaks ties between
+    // collapses of equal quadric error, such as in flat regions, in favour of short edges,
+    // so that no vertex collects a large fan of triangles.
+    private static final double EDGE_LENGTH_WEIGHT = 1e-6;
+
+    private static final int QUADRIC_SIZE = 10;
+
+    private static final int INITIAL_HEAP_CAPACITY = 16;
+
+    private final float[] mPositions;
+
+    private final int[] mTriangles;
+
+    private final boolean[] mIsTriangleRemoved;
+
+    private final double[] mQuadrics;
+
+    private final boolean[] mIsVertexRemoved;
+
+    private final int[] mVersions;
+
+    // Triangles around each vertex. Lists may still contain triangles that were removed since.
+    private final int[][] mVertexTriangles;
+
+    private final int[] mVertexTriangleCounts;
+
+    // Marks the vertices that were already handled in the current collapse.
+    private final int[] mMarks;
+
+    private int mMark;
+
+    // Binary min-heap of collapse candidates, stored as parallel arrays ordered by cost.
+    private double[] mHeapCosts = new double[INITIAL_HEAP_CAPACITY];
+
+    private int[] mHeapFrom = new int[INITIAL_HEAP_CAPACITY];
+
+    private int[] mHeapTo = new int[INITIAL_HEAP_CAPACITY];
+
+    private int[] mHeapFromVersions = new int[INITIAL_HEAP_CAPACITY];
+
+    private int[] mHeapToVersions = new int[INITIAL_HEAP_CAPACITY];
+
+    private int mHeapSize;
+
+    private final double[] mNormalBefore = new double[3];
+
+    private final double[] mNormalAfter = new double[3];
+
+    private int mTriangleCount;
+
+    /**
+     * Prepare a mesh for simplification.
+     *
+     * @param vertices Interleaved vertices, {@link MeshData#FLOATS_PER_VERTEX} floats each.
+     * @param vertexCount Number of vertices.
+     * @param indices Triangle list indices.
+     */
+    MeshSimplifier(FloatBuffer vertices, int vertexCount, int[] indices) {
+        mPositions = new float[vertexCount * 3];
+        for (int i = 0; i < vertexCount; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                mPositions[i * 3 + axis] = vertices.get(i * MeshData.FLOATS_PER_VERTEX + axis);
+            }
+        }
+        mTriangles = Arrays.copyOf(indices, indices.length - indices.length % 3);
+        mTriangleCount = mTriangles.length / 3;
+        mIsTriangleRemoved = new boolean[mTriangleCount];
+        mQuadrics = new double[vertexCount * QUADRIC_SIZE];
+        mIsVertexRemoved = new boolean[vertexCount];
+        mVersions = new int[vertexCount];
+        mMarks = new int[vertexCount];
+        mVertexTriangleCounts = new int[vertexCount];
+        for (int index : mTriangles) {
+            mVertexTriangleCounts[index]++;
+        }
+        mVertexTriangles = new int[vertexCount][];
+        for (int i = 0; i < vertexCount; i++) {
+            mVertexTriangles[i] = new int[Math.max(mVertexTriangleCounts[i], 1)];
+            mVertexTriangleCounts[i] = 0;
+        }
+        for (int triangle = 0; triangle < mTriangleCount; triangle++) {
+            for (int corner = 0; corner < 3; corner++) {
+                addVertexTriangle(mTriangles[triangle * 3 + corner], triangle);
+            }
+        }
+        initQuadrics();
+        for (int triangle = 0; triangle < mTriangleCount; triangle++) {
+            for (int corner = 0; corner < 3; corner++) {
+                pushCollapse(mTriangles[triangle * 3 + corner], mTriangles[triangle * 3 + (corner + 1) % 3]);
+            }
+        }
+    }
+
+    private void initQuadrics() {
+        double[] plane = new double[4];
+        long[] edges = new long[mTriangles.length];
+        for (int triangle = 0; triangle < mTriangleCount; triangle++) {
+            for (int corner = 0; corner < 3; corner++) {
+                edges[triangle * 3 + corner] = edgeKey(mTriangles[triangle * 3 + corner],
+                        mTriangles[triangle * 3 + (corner + 1) % 3]);
+            }
+            if (!calculatePlane(triangle, plane)) {
+                continue;
+            }
+            for (int corner = 0; corner < 3; corner++) {
+                addPlane(mTriangles[triangle * 3 + corner], plane, 1.0);
+            }
+        }
+        Arrays.sort(edges);
+
+        // Add a plane through each boundary edge that is perpendicular to its triangle.
+        double[] edgePlane = new double[4];
+        for (int triangle = 0; triangle < mTriangleCount; triangle++) {
+            if (!calculatePlane(triangle, plane)) {
+                continue;
+            }
+            for (int corner = 0; corner < 3; corner++) {
+                int first = mTriangles[triangle * 3 + corner];
+                int second = mTriangles[triangle * 3 + (corner + 1) % 3];
+                if (!isBoundaryEdge(edges, edgeKey(first, second))
+                        || !calculateEdgePlane(first, second, plane, edgePlane)) {
+                    continue;
+                }
+                addPlane(first, edgePlane, BOUNDARY_WEIGHT);
+                addPlane(second, edgePlane, BOUNDARY_WEIGHT);
+            }
+        }
+    }
+
+    // An edge is on the boundary if exactly one triangle uses it.
+    private static boolean isBoundaryEdge(long[] sortedEdges, long edge) {
+        int index = Arrays.binarySearch(sortedEdges, edge);
+        if (index < 0) {
+            return false;
+        }
+        boolean hasPrevious = index > 0 && sortedEdges[index - 1] == edge;
+        boolean hasNext = index + 1 < sortedEdges.length && sortedEdges[index + 1] == edge;
+        return !hasPrevious && !hasNext;
+    }
+
+    private static long edgeKey(int first, int second) {
+        return first < second ? ((long) first << 32) | second : ((long) second << 32) | first;
+    }
+
+    /**
+     * Obtain the number of triangles that are left.
+     *
+     * @return Number of triangles.
+     */
+    int getTriangleCount() {
+        return mTriangleCount;
+    }
+
+    /**
+     * Collapse edges, cheapest first, until at most the given number of triangles are left
+     * or no valid collapse remains.
+     *
+     * @param targetTriangleCount Number of triangles to reduce the mesh to.
+     * @return Indices of the remaining triangles, which reference the original vertices.
+     */
+    int[] simplify(int targetTriangleCount) {
+        while (mTriangleCount > targetTriangleCount && mHeapSize > 0) {
+            int from = mHeapFrom[0];
+            int to = mHeapTo[0];
+            boolean isStale = mIsVertexRemoved[from] || mIsVertexRemoved[to]
+                    || mVersions[from] != mHeapFromVersions[0] || mVersions[to] != mHeapToVersions[0];
+            popHeap();
+            if (isStale || isFlipping(from, to)) {
+                continue;
+            }
+            collapse(from, to);
+        }
+        int[] indices = new int[mTriangleCount * 3];
+        int count = 0;
+        for (int triangle = 0; triangle < mIsTriangleRemoved.length; triangle++) {
+            if (!mIsTriangleRemoved[triangle]) {
+                System.arraycopy(mTriangles, triangle * 3, indices, count, 3);
+                count += 3;
+            }
+        }
+        return indices;
+    }
+
+    private void collapse(int from, int to) {
+        for (int i = 0; i < mVertexTriangleCounts[from]; i++) {
+            int triangle = mVertexTriangles[from][i];
+            if (mIsTriangleRemoved[triangle]) {
+                continue;
+            }
+            if (hasCorner(triangle, to)) {
+                mIsTriangleRemoved[triangle] = true;
+                mTriangleCount--;
+                continue;
+            }
+            for (int corner = 0; corner < 3; corner++) {
+                if (mTriangles[triangle * 3 + corner] == from) {
+                    mTriangles[triangle * 3 + corner] = to;
+                }
+            }
+            addVertexTriangle(to, triangle);
+        }
+        mIsVertexRemoved[from] = true;
+        for (int i = 0; i < QUADRIC_SIZE; i++) {
+            mQuadrics[to * QUADRIC_SIZE + i] += mQuadrics[from * QUADRIC_SIZE + i];
+        }
+
+        // The quadric of the kept vertex changed, so the costs of all its edges are recalculated.
+        // Edges between other vertices keep their cost, and the edges of "from" become stale.
+        // Removed triangles are dropped from the list of the kept vertex on the way.
+        mVersions[to]++;
+        mMark++;
+        mMarks[to] = mMark;
+        int liveCount = 0;
+        for (int i = 0; i < mVertexTriangleCounts[to]; i++) {
+            int triangle = mVertexTriangles[to][i];
+            if (mIsTriangleRemoved[triangle]) {
+                continue;
+            }
+            mVertexTriangles[to][liveCount++] = triangle;
+            for (int corner = 0; corner < 3; corner++) {
+                int other = mTriangles[triangle * 3 + corner];
+                if (mMarks[other] != mMark) {
+                    mMarks[other] = mMark;
+                    pushCollapse(to, other);
+                }
+            }
+        }
+        mVertexTriangleCounts[to] = liveCount;
+    }
+
+    // Check whether moving "from" onto "to" would turn any remaining triangle around "from" over.
+    private boolean isFlipping(int from, int to) {
+        for (int i = 0; i < mVertexTriangleCounts[from]; i++) {
+            int triangle = mVertexTriangles[from][i];
+            if (mIsTriangleRemoved[triangle] || hasCorner(triangle, to)) {
+                continue;
+            }
+            int base = triangle * 3;
+            int a = mTriangles[base];
+            int b = mTriangles[base + 1];
+            int c = mTriangles[base + 2];
+            if (!calculateNormal(a, b, c, -1, -1, mNormalBefore)) {
+                continue;
+            }
+            if (!calculateNormal(a, b, c, from, to, mNormalAfter)) {
+                return true;
+            }
+            double cosine = mNormalBefore[0] * mNormalAfter[0] + mNormalBefore[1] * mNormalAfter[1]
+                    + mNormalBefore[2] * mNormalAfter[2];
+            if (cosine < MIN_NORMAL_COSINE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasCorner(int triangle, int vertex) {
+        return mTriangles[triangle * 3] == vertex || mTriangles[triangle * 3 + 1] == vertex
+                || mTriangles[triangle * 3 + 2] == vertex;
+    }
+
+    private void pushCollapse(int first, int second) {
+        if (first == second) {
+            return;
+        }
+        double dx = mPositions[first * 3] - mPositions[second * 3];
+        double dy = mPositions[first * 3 + 1] - mPositions[second * 3 + 1];
+        double dz = mPositions[first * 3 + 2] - mPositions[second * 3 + 2];
+        double lengthCost = EDGE_LENGTH_WEIGHT * (dx * dx + dy * dy + dz * dz);
+        double firstIntoSecond = evaluate(first, second, second);
+        double secondIntoFirst = evaluate(first, second, first);
+        if (firstIntoSecond <= secondIntoFirst) {
+            pushHeap(first, second, firstIntoSecond + lengthCost);
+        } else {
+            pushHeap(second, first, secondIntoFirst + lengthCost);
+        }
+    }
+
+    private void pushHeap(int from, int to, double cost) {
+        if (mHeapSize == mHeapCosts.length) {
+            int capacity = mHeapSize * 2;
+            mHeapCosts = Arrays.copyOf(mHeapCosts, capacity);
+            mHeapFrom = Arrays.copyOf(mHeapFrom, capacity);
+            mHeapTo = Arrays.copyOf(mHeapTo, capacity);
+            mHeapFromVersions = Arrays.copyOf(mHeapFromVersions, capacity);
+            mHeapToVersions = Arrays.copyOf(mHeapToVersions, capacity);
+        }
+        int child = mHeapSize++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (mHeapCosts[parent] <= cost) {
+                break;
+            }
+            moveHeapEntry(parent, child);
+            child = parent;
+        }
+        mHeapCosts[child] = cost;
+        mHeapFrom[child] = from;
+        mHeapTo[child] = to;
+        mHeapFromVersions[child] = mVersions[from];
+        mHeapToVersions[child] = mVersions[to];
+    }
+
+    private void popHeap() {
+        int last = --mHeapSize;
+        if (last == 0) {
+            return;
+        }
+        double cost = mHeapCosts[last];
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && mHeapCosts[child + 1] < mHeapCosts[child]) {
+                child++;
+            }
+            if (cost <= mHeapCosts[child]) {
+                break;
+            }
+            moveHeapEntry(child, parent);
+            parent = child;
+        }
+        moveHeapEntry(last, parent);
+    }
+
+    private void moveHeapEntry(int source, int target) {
+        mHeapCosts[target] = mHeapCosts[source];
+        mHeapFrom[target] = mHeapFrom[source];
+        mHeapTo[target] = mHeapTo[source];
+        mHeapFromVersions[target] = mHeapFromVersions[source];
+        mHeapToVersions[target] = mHeapToVersions[source];
+    }
+
+    // Error of the summed quadrics of two vertices at the position of a third one.
+    private double evaluate(int first, int second, int at) {
+        double x = mPositions[at * 3];
+        double y = mPositions[at * 3 + 1];
+        double z = mPositions[at * 3 + 2];
+        int p = first * QUADRIC_SIZE;
+        int q = second * QUADRIC_SIZE;
+        double[] m = mQuadrics;
+        return (m[p] + m[q]) * x * x + 2 * (m[p + 1] + m[q + 1]) * x * y + 2 * (m[p + 2] + m[q + 2]) * x * z
+                + 2 * (m[p + 3] + m[q + 3]) * x + (m[p + 4] + m[q + 4]) * y * y + 2 * (m[p + 5] + m[q + 5]) * y * z
+                + 2 * (m[p + 6] + m[q + 6]) * y + (m[p + 7] + m[q + 7]) * z * z + 2 * (m[p + 8] + m[q + 8]) * z
+                + (m[p + 9] + m[q + 9]);
+    }
+
+    private void addPlane(int vertex, double[] plane, double weight) {
+        double a = plane[0];
+        double b = plane[1];
+        double c = plane[2];
+        double d = plane[3];
+        int base = vertex * QUADRIC_SIZE;
+        mQuadrics[base] += weight * a * a;
+        mQuadrics[base + 1] += weight * a * b;
+        mQuadrics[base + 2] += weight * a * c;
+        mQuadrics[base + 3] += weight * a * d;
+        mQuadrics[base + 4] += weight * b * b;
+        mQuadrics[base + 5] += weight * b * c;
+        mQuadrics[base + 6] += weight * b * d;
+        mQuadrics[base + 7] += weight * c * c;
+        mQuadrics[base + 8] += weight * c * d;
+        mQuadrics[base + 9] += weight * d * d;
+    }
+
+    private boolean calculatePlane(int triangle, double[] plane) {
+        int a = mTriangles[triangle * 3];
+        if (!calculateNormal(a, mTriangles[triangle * 3 + 1], mTriangles[triangle * 3 + 2], -1, -1, plane)) {
+            return false;
+        }
+        plane[3] = -(plane[0] * mPositions[a * 3] + plane[1] * mPositions[a * 3 + 1]
+                + plane[2] * mPositions[a * 3 + 2]);
+        return true;
+    }
+
+    // Plane that contains the edge and is perpendicular to the triangle plane.
+    private boolean calculateEdgePlane(int first, int second, double[] trianglePlane, double[] plane) {
+        double ex = mPositions[second * 3] - mPositions[first * 3];
+        double ey = mPositions[second * 3 + 1] - mPositions[first * 3 + 1];
+        double ez = mPositions[second * 3 + 2] - mPositions[first * 3 + 2];
+        double nx = ey * trianglePlane[2] - ez * trianglePlane[1];
+        double ny = ez * trianglePlane[0] - ex * trianglePlane[2];
+        double nz = ex * trianglePlane[1] - ey * trianglePlane[0];
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0.0) {
+            return false;
+        }
+        plane[0] = nx / length;
+        plane[1] = ny / length;
+        plane[2] = nz / length;
+        plane[3] = -(plane[0] * mPositions[first * 3] + plane[1] * mPositions[first * 3 + 1]
+                + plane[2] * mPositions[first * 3 + 2]);
+        return true;
+    }
+
+    // Unit normal of triangle (a, b, c), where the vertex "replaced" is read from "by" instead.
+    private boolean calculateNormal(int a, int b, int c, int replaced, int by, double[] normal) {
+        int pa = (a == replaced ? by : a) * 3;
+        int pb = (b == replaced ? by : b) * 3;
+        int pc = (c == replaced ? by : c) * 3;
+        double ux = mPositions[pb] - mPositions[pa];
+        double uy = mPositions[pb + 1] - mPositions[pa + 1];
+        double uz = mPositions[pb + 2] - mPositions[pa + 2];
+        double vx = mPositions[pc] - mPositions[pa];
+        double vy = mPositions[pc + 1] - mPositions[pa + 1];
+        double vz = mPositions[pc + 2] - mPositions[pa + 2];
+        double nx = uy * vz - uz * vy;
+        double ny = uz * vx - ux * vz;
+        double nz = ux * vy - uy * vx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0.0) {
+            return false;
+        }
+        normal[0] = nx / length;
+        normal[1] = ny / length;
+        normal[2] = nz / length;
+        return true;
+    }
+
+    private void addVertexTriangle(int vertex, int triangle) {
+        int count = mVertexTriangleCounts[vertex];
+        if (count == mVertexTriangles[vertex].length) {
+            mVertexTriangles[vertex] = Arrays.copyOf(mVertexTriangles[vertex], count * 2);
+        }
+        mVertexTriangles[vertex][count] = triangle;
+        mVertexTriangleCounts[vertex] = count + 1;
+    }
+}
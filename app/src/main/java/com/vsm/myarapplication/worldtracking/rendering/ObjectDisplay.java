@@ -20,26 +20,24 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.opengl.Matrix;
 import android.util.Log;
-import android.view.MotionEvent;
 
 import com.vsm.myarapplication.VirtualObject;
+import com.vsm.myarapplication.common.AssetLoader;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
 import com.vsm.myarapplication.common.MatrixUtil;
 import com.vsm.myarapplication.common.ShaderUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
 import de.javagl.obj.Obj;
-import de.javagl.obj.ObjData;
 import de.javagl.obj.ObjReader;
 import de.javagl.obj.ObjUtils;
 
@@ -55,23 +53,41 @@ public class ObjectDisplay {
     // Set the default light direction.
     private static final float[] LIGHT_DIRECTIONS = new float[]{0.0f, 1.0f, 0.0f, 0.0f};
 
-    private static final int FLOAT_BYTE_SIZE = 4;
+    private static final String OBJECT_ASSET_NAME = "AR_logo.obj";
 
-    private static final int INDEX_COUNT_RATIO = 2;
+    private static final String TEXTURE_ASSET_NAME = "AR_logo.png";
+
+    // Precompiled binary mesh of the OBJ asset, stored in the cache directory.
+    private static final String OBJECT_CACHE_NAME = "AR_logo.mesh";
+
+    // Mip chain of the texture asset, stored in the cache directory.
+    private static final String TEXTURE_CACHE_NAME = "AR_logo";
+
+    private static final String INDEX_UINT_EXTENSION = "GL_OES_element_index_uint";
+
+    private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
 
     private static final int MATRIX_SIZE = 16;
 
     // Light direction (x, y, z, w).
     private float[] mViewLightDirections = new float[4];
 
-    private int mTexCoordsBaseAddress;
-
-    private int mNormalsBaseAddress;
-
     private int mVertexBufferId;
 
     private int mIndexCount;
 
+    // Index count and byte offset of each level of detail in the index buffer.
+    private int[] mLevelIndexCounts = new int[MeshData.MAX_LEVEL_COUNT];
+
+    private int[] mLevelIndexOffsets = new int[MeshData.MAX_LEVEL_COUNT];
+
+    private int mLevelCount;
+
+    private boolean mIsMeshReady = false;
+
+    // Either GL_UNSIGNED_SHORT or GL_UNSIGNED_INT, selected per mesh.
+    private int mIndexType = GLES20.GL_UNSIGNED_SHORT;
+
     private int mGlProgram;
 
     private int mIndexBufferId;
@@ -88,6 +104,8 @@ public class ObjectDisplay {
 
     private int mTexCoordAttribute;
 
+    private int mAttribs;
+
     private int mTextureUniform;
 
     private int mLightingParametersUniform;
@@ -103,10 +121,54 @@ public class ObjectDisplay {
     // The largest bounding box of a virtual object, represented by two diagonals of a cube.
     private float[] mBoundingBoxs = new float[6];
 
+    // Scratch storage reused by every frame, so that drawing does not allocate.
+    private float[] mObjectColors = new float[4];
+
+    // World-space bounding box of the object that is being culled.
+    private float[] mWorldBoundingBoxs = new float[6];
+
+    private int mDrawnCount;
+
+    private int mCulledCount;
+
     private float mWidth;
 
     private float mHeight;
 
+    private final GlApi mGl;
+
+    private final GlStateCache mGlState;
+
+    private final ObjectPicker mObjectPicker = new ObjectPicker();
+
+    /**
+     * Create an object display that draws through {@link android.opengl.GLES20}.
+     */
+    public ObjectDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create an object display that issues its OpenGL ES commands through the given API, with
+     * its own state cache.
+     *
+     * @param gl OpenGL ES command interface.
+     */
+    ObjectDisplay(GlApi gl) {
+        this(new GlStateCache(gl));
+    }
+
+    /**
+     * Create an object display that issues its OpenGL ES commands through the API of the
+     * given state cache.
+     *
+     * @param glState State cache.
+     */
+    ObjectDisplay(GlStateCache glState) {
+        mGl = glState.getGlApi();
+        mGlState = glState;
+    }
+
     /**
      * If the surface size is changed, update the changed size of the record synchronously.
      * This method is called when {@link WorldRenderManager#onSurfaceChanged}.
@@ -120,122 +182,188 @@ public class ObjectDisplay {
     }
 
     /**
-     * Create a shader program to read the data of the virtual object.
+     * Create a shader program to read the data of the virtual object, and start loading the
+     * texture and the mesh on the asset loader. The display reports {@link #isReady()} as
+     * false and draws nothing until the mesh has been uploaded.
      * This method is called when {@link WorldRenderManager#onSurfaceCreated}
      *
      * @param context Context.
+     * @param assetLoader Loader that decodes and parses the assets off the GL thread.
      */
-    void init(Context context) {
+    void init(final Context context, AssetLoader assetLoader) {
         ShaderUtil.checkGlError(TAG, "Init start.");
+        mIsMeshReady = false;
         createProgram();
 
         // Coordinate and index.
         int[] buffers = new int[2];
-        GLES20.glGenBuffers(2, buffers, 0);
+        mGl.glGenBuffers(2, buffers, 0);
         mVertexBufferId = buffers[0];
         mIndexBufferId = buffers[1];
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glGenTextures(mTextures.length, mTextures, 0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[0]);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
-        initGlTextureData(context);
-        initializeGlObjectData(context);
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGl.glGenTextures(mTextures.length, mTextures, 0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, mTextures[0]);
+        mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
         ShaderUtil.checkGlError(TAG, "Init end.");
+
+        // The extension string can only be queried on the GL thread.
+        final boolean isIntIndexSupported = isExtensionSupported(INDEX_UINT_EXTENSION);
+        final boolean isEtc1Supported = isExtensionSupported(ETC1_EXTENSION);
+        assetLoader.load(new Callable<TextureData>() {
+            @Override
+            public TextureData call() throws IOException {
+                return readTexture(context, isEtc1Supported);
+            }
+        }, new AssetLoader.Upload<TextureData>() {
+            @Override
+            public void upload(TextureData texture) {
+                uploadTexture(texture);
+            }
+        });
+        assetLoader.load(new Callable<MeshData>() {
+            @Override
+            public MeshData call() {
+                return readObject(context, isIntIndexSupported).orElse(null);
+            }
+        }, new AssetLoader.Upload<MeshData>() {
+            @Override
+            public void upload(MeshData meshData) {
+                uploadMesh(meshData);
+            }
+        });
+    }
+
+    /**
+     * Check whether the mesh has been uploaded, so that objects can be drawn. The texture only
+     * contributes the alpha channel, which is not blended, so objects are drawn as soon as
+     * the mesh is ready, even if the texture is still loading.
+     *
+     * @return true if the display can draw.
+     */
+    boolean isReady() {
+        return mIsMeshReady;
+    }
+
+    /**
+     * Release the shader program. This method is called when
+     * {@link WorldRenderManager#onSurfaceCreated}, before {@link #init}.
+     */
+    void releaseProgram() {
+        WorldShaderUtil.releaseProgram(mGlProgram);
+        mGlProgram = 0;
     }
 
     private void createProgram() {
         ShaderUtil.checkGlError(TAG, "Create program start.");
         mGlProgram = WorldShaderUtil.getObjectProgram();
-        mModelViewUniform = GLES20.glGetUniformLocation(mGlProgram, "inViewMatrix");
-        mModelViewProjectionUniform = GLES20.glGetUniformLocation(mGlProgram, "inMVPMatrix");
-        mPositionAttribute = GLES20.glGetAttribLocation(mGlProgram, "inObjectPosition");
-        mNormalAttribute = GLES20.glGetAttribLocation(mGlProgram, "inObjectNormalVector");
-        mTexCoordAttribute = GLES20.glGetAttribLocation(mGlProgram, "inTexCoordinate");
-        mTextureUniform = GLES20.glGetUniformLocation(mGlProgram, "inObjectTexture");
-        mLightingParametersUniform = GLES20.glGetUniformLocation(mGlProgram, "inLight");
-        mColorUniform = GLES20.glGetUniformLocation(mGlProgram, "inObjectColor");
+        mModelViewUniform = mGl.glGetUniformLocation(mGlProgram, "inViewMatrix");
+        mModelViewProjectionUniform = mGl.glGetUniformLocation(mGlProgram, "inMVPMatrix");
+        mPositionAttribute = mGl.glGetAttribLocation(mGlProgram, "inObjectPosition");
+        mNormalAttribute = mGl.glGetAttribLocation(mGlProgram, "inObjectNormalVector");
+        mTexCoordAttribute = mGl.glGetAttribLocation(mGlProgram, "inTexCoordinate");
+        mAttribs = GlStateCache.getAttribBit(mPositionAttribute) | GlStateCache.getAttribBit(mNormalAttribute)
+                | GlStateCache.getAttribBit(mTexCoordAttribute);
+        mTextureUniform = mGl.glGetUniformLocation(mGlProgram, "inObjectTexture");
+        mLightingParametersUniform = mGl.glGetUniformLocation(mGlProgram, "inLight");
+        mColorUniform = mGl.glGetUniformLocation(mGlProgram, "inObjectColor");
         Matrix.setIdentityM(mModelMatrixs, 0);
         ShaderUtil.checkGlError(TAG, "Create program end.");
     }
 
-    private void initGlTextureData(Context context) {
+    private void uploadTexture(TextureData texture) {
         ShaderUtil.checkGlError(TAG, "Init gl texture data start.");
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, mTextures[0]);
+        texture.upload(mGl);
+        ShaderUtil.checkGlError(TAG, "Init gl texture data end.");
+    }
+
+    // Runs on the asset loader thread, so it must not use OpenGL.
+    private static TextureData readTexture(Context context, boolean isEtc1Supported) throws IOException {
+        long key = TextureFile.createKey(AssetLoader.getSourceStamp(context),
+                TEXTURE_ASSET_NAME + (isEtc1Supported ? " ETC1" : " RGB565"));
+        TextureData cachedTexture = TextureCache.read(context.getCacheDir(), TEXTURE_CACHE_NAME, key);
+        if (cachedTexture != null) {
+            return cachedTexture;
+        }
         Bitmap textureBitmap;
-        try (InputStream inputStream = context.getAssets().open("AR_logo.png")) {
+        try (InputStream inputStream = context.getAssets().open(TEXTURE_ASSET_NAME)) {
             textureBitmap = BitmapFactory.decodeStream(inputStream);
-        } catch (IllegalArgumentException | IOException e) {
-            Log.e(TAG, "Get data error!");
-            return;
         }
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, textureBitmap, 0);
-        GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        if (textureBitmap == null) {
+            Log.e(TAG, "Decode texture failed!");
+            return null;
+        }
+        TextureData texture = TextureCache.create(context.getCacheDir(), TEXTURE_CACHE_NAME, key, textureBitmap,
+                isEtc1Supported);
         textureBitmap.recycle();
-        ShaderUtil.checkGlError(TAG, "Init gl texture data end.");
+        return texture;
     }
 
-    private void initializeGlObjectData(Context context) {
-        ObjectData objectData = null;
-        Optional<ObjectData> objectDataOptional = readObject(context);
-        if (objectDataOptional.isPresent()) {
-            objectData = objectDataOptional.get();
-        } else {
-            Log.e(TAG, "Read object error.");
-            return;
+    /**
+     * Upload a loaded mesh to the vertex and index buffers. This method must be called on
+     * the GL thread, after {@link #init}.
+     *
+     * @param meshData Loaded mesh.
+     */
+    void uploadMesh(MeshData meshData) {
+        System.arraycopy(meshData.boundingBox, 0, mBoundingBoxs, 0, mBoundingBoxs.length);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, MeshData.VERTEX_STRIDE * meshData.vertexCount,
+                meshData.vertices, GLES20.GL_STATIC_DRAW);
+        mGlState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
+        mIndexCount = meshData.indexCount;
+        mLevelCount = meshData.levelIndexCounts.length;
+        for (int level = 0; level < mLevelCount; level++) {
+            mLevelIndexCounts[level] = meshData.levelIndexCounts[level];
+            mLevelIndexOffsets[level] = meshData.getLevelIndexOffset(level) * meshData.indexSize;
         }
-        mTexCoordsBaseAddress = FLOAT_BYTE_SIZE * objectData.objectIndices.limit();
-        mNormalsBaseAddress = mTexCoordsBaseAddress + FLOAT_BYTE_SIZE * objectData.texCoords.limit();
-        final int totalBytes = mNormalsBaseAddress + FLOAT_BYTE_SIZE * objectData.normals.limit();
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, totalBytes, null, GLES20.GL_STATIC_DRAW);
-        GLES20.glBufferSubData(
-                GLES20.GL_ARRAY_BUFFER, 0, FLOAT_BYTE_SIZE * objectData.objectVertices.limit(), objectData.objectVertices);
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, mTexCoordsBaseAddress,
-                FLOAT_BYTE_SIZE * objectData.texCoords.limit(), objectData.texCoords);
-        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, mNormalsBaseAddress,
-                FLOAT_BYTE_SIZE * objectData.normals.limit(), objectData.normals);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
-        mIndexCount = objectData.indices.limit();
-        GLES20.glBufferData(
-                GLES20.GL_ELEMENT_ARRAY_BUFFER, INDEX_COUNT_RATIO * mIndexCount, objectData.indices, GLES20.GL_STATIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        mIndexType = meshData.indexSize == MeshData.INDEX_SIZE_INT ? GLES20.GL_UNSIGNED_INT : GLES20.GL_UNSIGNED_SHORT;
+        mGl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, meshData.indexSize * mIndexCount, meshData.indices,
+                GLES20.GL_STATIC_DRAW);
         ShaderUtil.checkGlError(TAG, "obj buffer load");
+        mIsMeshReady = true;
     }
 
-    private Optional<ObjectData> readObject(Context context) {
-        Obj obj;
-        try (InputStream objInputStream = context.getAssets().open("AR_logo.obj")) {
-            obj = ObjReader.read(objInputStream);
+    // Runs on the asset loader thread, so it must not use OpenGL.
+    private static Optional<MeshData> readObject(Context context, boolean isIntIndexSupported) {
+        // The cache is tied to the installed APK, so an app update regenerates it.
+        long sourceStamp = AssetLoader.getSourceStamp(context);
+        File cacheFile = new File(context.getCacheDir(), OBJECT_CACHE_NAME);
+        try {
+            MeshData cachedMesh = MeshFile.read(cacheFile, sourceStamp);
+            if (cachedMesh != null && (cachedMesh.indexSize == MeshData.INDEX_SIZE_SHORT || isIntIndexSupported)) {
+                return Optional.of(cachedMesh);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Read mesh cache failed, parse the OBJ instead.");
+        }
+
+        MeshData meshData;
+        try (InputStream objInputStream = context.getAssets().open(OBJECT_ASSET_NAME)) {
+            Obj obj = ObjReader.read(objInputStream);
             obj = ObjUtils.convertToRenderable(obj);
+            meshData = MeshData.fromObj(obj, isIntIndexSupported);
         } catch (IllegalArgumentException | IOException e) {
             Log.e(TAG, "Get data failed!");
             return Optional.empty();
         }
-
-        // Every surface of an object has three vertices.
-        IntBuffer objectIndices = ObjData.getFaceVertexIndices(obj, 3);
-        FloatBuffer objectVertices = ObjData.getVertices(obj);
-
-        calculateBoundingBox(objectVertices);
-
-        // Size of the allocated buffer.
-        ShortBuffer indices = ByteBuffer.allocateDirect(2 * objectIndices.limit())
-                .order(ByteOrder.nativeOrder()).asShortBuffer();
-        while (objectIndices.hasRemaining()) {
-            indices.put((short) objectIndices.get());
+        try {
+            MeshFile.write(meshData, sourceStamp, cacheFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Write mesh cache failed.");
         }
-        indices.rewind();
+        return Optional.of(meshData);
+    }
 
-        // The dimension of the texture coordinate is 2.
-        FloatBuffer texCoordinates = ObjData.getTexCoords(obj, 2);
-        FloatBuffer normals = ObjData.getNormals(obj);
-        return Optional.of(new ObjectData(objectIndices, objectVertices, indices, texCoordinates, normals));
+    private boolean isExtensionSupported(String extension) {
+        String extensions = mGl.glGetString(GLES20.GL_EXTENSIONS);
+        return extensions != null && extensions.contains(extension);
     }
 
+
     /**
      * Draw a virtual object at a specific location on a specified plane.
-     * This method is called when {@link WorldRenderManager#onDrawFrame}.
      *
      * @param cameraView The viewMatrix is a 4 * 4 matrix.
      * @param cameraProjection The ProjectionMatrix is a 4 * 4 matrix.
@@ -243,257 +371,200 @@ public class ObjectDisplay {
      * @param obj The virtual object.
      */
     public void onDrawFrame(float[] cameraView, float[] cameraProjection, float lightIntensity, VirtualObject obj) {
+        if (!mIsMeshReady) {
+            return;
+        }
         ShaderUtil.checkGlError(TAG, "onDrawFrame start.");
-        mModelMatrixs = obj.getModelAnchorMatrix();
-        Matrix.multiplyMM(mModelViewMatrixs, 0, cameraView, 0, mModelMatrixs, 0);
-        Matrix.multiplyMM(mModelViewProjectionMatrixs, 0, cameraProjection, 0, mModelViewMatrixs, 0);
-        GLES20.glUseProgram(mGlProgram);
-        Matrix.multiplyMV(mViewLightDirections, 0, mModelViewMatrixs, 0, LIGHT_DIRECTIONS, 0);
-        MatrixUtil.normalizeVec3(mViewLightDirections);
-
-        // Light direction.
-        GLES20.glUniform4f(mLightingParametersUniform,
-                mViewLightDirections[0], mViewLightDirections[1], mViewLightDirections[2], lightIntensity);
-        float[] objColors = obj.getColor();
-
-        GLES20.glUniform4fv(mColorUniform, 1, objColors, 0);
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[0]);
-        GLES20.glUniform1i(mTextureUniform, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
-
-        // The coordinate dimension of the read virtual object is 3.
-        GLES20.glVertexAttribPointer(
-                mPositionAttribute, 3, GLES20.GL_FLOAT, false, 0, 0);
-
-        // The dimension of the normal vector is 3.
-        GLES20.glVertexAttribPointer(
-                mNormalAttribute, 3, GLES20.GL_FLOAT, false, 0, mNormalsBaseAddress);
-
-        // The dimension of the texture coordinate is 2.
-        GLES20.glVertexAttribPointer(
-                mTexCoordAttribute, 2, GLES20.GL_FLOAT, false, 0, mTexCoordsBaseAddress);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-        GLES20.glUniformMatrix4fv(
-                mModelViewUniform, 1, false, mModelViewMatrixs, 0);
-        GLES20.glUniformMatrix4fv(
-                mModelViewProjectionUniform, 1, false, mModelViewProjectionMatrixs, 0);
-        GLES20.glEnableVertexAttribArray(mPositionAttribute);
-        GLES20.glEnableVertexAttribArray(mNormalAttribute);
-        GLES20.glEnableVertexAttribArray(mTexCoordAttribute);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mIndexCount, GLES20.GL_UNSIGNED_SHORT, 0);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glDisableVertexAttribArray(mPositionAttribute);
-        GLES20.glDisableVertexAttribArray(mNormalAttribute);
-        GLES20.glDisableVertexAttribArray(mTexCoordAttribute);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        beginDraw();
+        obj.getModelAnchorMatrix(mModelMatrixs);
+        obj.getColor(mObjectColors);
+        drawObject(cameraView, cameraProjection, lightIntensity);
         ShaderUtil.checkGlError(TAG, "onDrawFrame end.");
     }
 
     /**
-     * Check whether the virtual object is clicked.
+     * Draw all virtual objects in one batch. The program, texture and vertex state is set up
+     * once, and only the per-object uniforms are updated before each draw call. All objects
+     * share the mesh and texture of this display, so they are already grouped by both.
+     * This method is called when {@link WorldRenderManager#onDrawFrame}.
      *
-     * @param cameraView The viewMatrix 4 * 4.
-     * @param cameraPerspective The ProjectionMatrix 4 * 4.
-     * @param obj The virtual object data.
-     * @param event The gesture event.
-     * @return Return the click result for determining whether the input virtual object is clicked
+     * @param cameraView The viewMatrix is a 4 * 4 matrix.
+     * @param cameraProjection The ProjectionMatrix is a 4 * 4 matrix.
+     * @param lightIntensity The lighting intensity.
+     * @param objects The virtual objects to draw.
      */
-    boolean hitTest(float[] cameraView, float[] cameraPerspective, VirtualObject obj, MotionEvent event) {
-        mModelMatrixs = obj.getModelAnchorMatrix();
-        Matrix.multiplyMM(mModelViewMatrixs, 0, cameraView, 0, mModelMatrixs, 0);
-        Matrix.multiplyMM(mModelViewProjectionMatrixs, 0, cameraPerspective, 0, mModelViewMatrixs, 0);
-
-        // Calculate the coordinates of the smallest bounding box in the coordinate system of the device screen.
-        float[] screenPos = calculateScreenPos(mBoundingBoxs[0], mBoundingBoxs[1], mBoundingBoxs[2]);
-
-        // Record the largest bounding rectangle of an object (minX/minY/maxX/maxY).
-        float[] boundarys = new float[4];
-        boundarys[0] = screenPos[0];
-        boundarys[1] = screenPos[0];
-        boundarys[2] = screenPos[1];
-        boundarys[3] = screenPos[1];
-
-        // Determine whether a screen position corresponding to (maxX, maxY, maxZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{3, 4, 5});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
-        }
+    void onDrawFrame(float[] cameraView, float[] cameraProjection, float lightIntensity, ObjectStore<?> objects) {
+        onDrawFrame(cameraView, cameraProjection, lightIntensity, objects, null);
+    }
 
-        // Determine whether a screen position corresponding to (minX, minY, maxZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{0, 1, 5});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
+    /**
+     * Draw the visible virtual objects that intersect the view frustum in one batch, and skip
+     * the others. The model matrices and colors are read from the arrays of the store. The
+     * numbers of drawn and culled objects are available from {@link #getDrawnCount()} and
+     * {@link #getCulledCount()} until the next call. Nothing is drawn until the display
+     * {@link #isReady()}.
+     *
+     * @param cameraView The viewMatrix is a 4 * 4 matrix.
+     * @param cameraProjection The ProjectionMatrix is a 4 * 4 matrix.
+     * @param lightIntensity The lighting intensity.
+     * @param objects The virtual objects to draw.
+     * @param frustum View frustum of the camera, or null to draw all objects.
+     */
+    void onDrawFrame(float[] cameraView, float[] cameraProjection, float lightIntensity,
+            ObjectStore<?> objects, Frustum frustum) {
+        mDrawnCount = 0;
+        mCulledCount = 0;
+        if (!mIsMeshReady) {
+            return;
         }
+        boolean isDrawing = false;
 
-        // Determine whether a screen position corresponding to (minX, maxY, minZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{0, 4, 2});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
-        }
+        float[] modelMatrices = objects.getModelMatrices();
+        for (int i = 0; i < objects.size(); i++) {
+            if (!objects.isVisible(i)) {
+                continue;
+            }
+            System.arraycopy(modelMatrices, i * ObjectStore.MATRIX_SIZE, mModelMatrixs, 0, MATRIX_SIZE);
+            if (frustum != null) {
+                MatrixUtil.transformBoundingBox(mWorldBoundingBoxs, mModelMatrixs, mBoundingBoxs);
+                if (!frustum.isBoxVisible(mWorldBoundingBoxs, 0)) {
+                    mCulledCount++;
+                    continue;
+                }
+            }
 
-        // Determine whether a screen position corresponding to (minX, maxY, maxZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{0, 4, 5});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
+            // The shared state is only set up once an object is known to be visible.
+            if (!isDrawing) {
+                ShaderUtil.checkGlError(TAG, "onDrawFrame start.");
+                beginDraw();
+                isDrawing = true;
+            }
+            objects.getColor(i, mObjectColors);
+            drawObject(cameraView, cameraProjection, lightIntensity);
+            mDrawnCount++;
         }
-
-        // Determine whether a screen position corresponding to (maxX, minY, minZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{3, 1, 2});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
+        if (isDrawing) {
+            ShaderUtil.checkGlError(TAG, "onDrawFrame end.");
         }
+    }
 
-        // Determine whether a screen position corresponding to (maxX, minY, maxZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{3, 1, 5});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
-        }
+    /**
+     * Obtain the state cache that the display draws through.
+     *
+     * @return State cache.
+     */
+    GlStateCache getGlState() {
+        return mGlState;
+    }
 
-        // Determine whether a screen position corresponding to (maxX, maxY, maxZ) is clicked.
-        boundarys = findMaximum(boundarys, new int[]{3, 4, 2});
-        if (((event.getX() > boundarys[0]) && (event.getX() < boundarys[1]))
-                && ((event.getY() > boundarys[2]) && (event.getY() < boundarys[3]))) {
-            return true;
-        }
-        return false;
+    /**
+     * Obtain the number of objects drawn by the last batched {@link #onDrawFrame}.
+     *
+     * @return Number of drawn objects.
+     */
+    int getDrawnCount() {
+        return mDrawnCount;
     }
 
-    // The size of minXmaxXminYmaxY is 4, and the size of index is 3.
-    private float[] findMaximum(float[] minXmaxXminYmaxY, int[] index) {
-        float[] screenPos = calculateScreenPos(mBoundingBoxs[index[0]],
-                mBoundingBoxs[index[1]], mBoundingBoxs[index[2]]);
-        if (screenPos[0] < minXmaxXminYmaxY[0]) {
-            minXmaxXminYmaxY[0] = screenPos[0];
-        }
-        if (screenPos[0] > minXmaxXminYmaxY[1]) {
-            minXmaxXminYmaxY[1] = screenPos[0];
-        }
-        if (screenPos[1] < minXmaxXminYmaxY[2]) {
-            minXmaxXminYmaxY[2] = screenPos[1];
-        }
-        if (screenPos[1] > minXmaxXminYmaxY[3]) {
-            minXmaxXminYmaxY[3] = screenPos[1];
-        }
-        return minXmaxXminYmaxY;
+    /**
+     * Obtain the number of objects skipped by frustum culling in the last batched {@link #onDrawFrame}.
+     *
+     * @return Number of culled objects.
+     */
+    int getCulledCount() {
+        return mCulledCount;
     }
 
-    // Convert the input coordinates to the plane coordinate system.
-    private float[] calculateScreenPos(float coordinateX, float coordinateY, float coordinateZ) {
-        // The coordinates of the point are four-dimensional (x, y, z, w).
-        float[] vecs = new float[4];
-        vecs[0] = coordinateX;
-        vecs[1] = coordinateY;
-        vecs[2] = coordinateZ;
-        vecs[3] = 1.0f;
-
-        // Store the coordinate values in the clip coordinate system.
-        float[] rets = new float[4];
-        Matrix.multiplyMV(rets, 0, mModelViewProjectionMatrixs, 0, vecs, 0);
-
-        // Divide by the w component of the coordinates.
-        rets[0] /= rets[3];
-        rets[1] /= rets[3];
-        rets[2] /= rets[3];
-
-        // In the current coordinate system, left is negative, right is positive, downward
-        // is positive, and upward is negative.Adding 1 to the left of the X coordinate is
-        // equivalent to moving the coordinate system leftwards. Such an operation on the Y
-        // axis is equivalent to moving the coordinate system upwards.
-        rets[0] += 1.0f;
-        rets[1] = 1.0f - rets[1];
-
-        // Convert to pixel coordinates.
-        rets[0] *= mWidth;
-        rets[1] *= mHeight;
-
-        // When the w component is set to 1, the xy component caused by coordinate system
-        // movement is eliminated and doubled.
-        rets[3] = 1.0f;
-        rets[0] /= 2.0f;
-        rets[1] /= 2.0f;
-        return rets;
+    private void beginDraw() {
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.depthMask(true);
+        mGlState.disable(GLES20.GL_BLEND);
+        mGlState.useProgram(mGlProgram);
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, mTextures[0]);
+        mGl.glUniform1i(mTextureUniform, 0);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
+
+        // The coordinate dimension of the read virtual object is 3.
+        mGl.glVertexAttribPointer(mPositionAttribute, 3, GLES20.GL_FLOAT, false,
+                MeshData.VERTEX_STRIDE, MeshData.POSITION_OFFSET);
+
+        // The dimension of the normal vector is 3.
+        mGl.glVertexAttribPointer(mNormalAttribute, 3, GLES20.GL_FLOAT, false,
+                MeshData.VERTEX_STRIDE, MeshData.NORMAL_OFFSET);
+
+        // The dimension of the texture coordinate is 2.
+        mGl.glVertexAttribPointer(mTexCoordAttribute, 2, GLES20.GL_FLOAT, false,
+                MeshData.VERTEX_STRIDE, MeshData.TEX_COORD_OFFSET);
+        mGlState.setVertexAttribArrays(mAttribs);
+        mGlState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
     }
 
-    // Bounding box [minX, minY, minZ, maxX, maxY, maxZ].
-    private void calculateBoundingBox(FloatBuffer vertices) {
-        if (vertices.limit() < 3) {
-            mBoundingBoxs[0] = 0.0f;
-            mBoundingBoxs[1] = 0.0f;
-            mBoundingBoxs[2] = 0.0f;
-            mBoundingBoxs[3] = 0.0f;
-            mBoundingBoxs[4] = 0.0f;
-            mBoundingBoxs[5] = 0.0f;
-            return;
-        } else {
-            mBoundingBoxs[0] = vertices.get(0);
-            mBoundingBoxs[1] = vertices.get(1);
-            mBoundingBoxs[2] = vertices.get(2);
-            mBoundingBoxs[3] = vertices.get(0);
-            mBoundingBoxs[4] = vertices.get(1);
-            mBoundingBoxs[5] = vertices.get(2);
-        }
+    // The model matrix and color of the object must already be in mModelMatrixs and mObjectColors.
+    private void drawObject(float[] cameraView, float[] cameraProjection, float lightIntensity) {
+        Matrix.multiplyMM(mModelViewMatrixs, 0, cameraView, 0, mModelMatrixs, 0);
+        Matrix.multiplyMM(mModelViewProjectionMatrixs, 0, cameraProjection, 0, mModelViewMatrixs, 0);
+        Matrix.multiplyMV(mViewLightDirections, 0, mModelViewMatrixs, 0, LIGHT_DIRECTIONS, 0);
+        MatrixUtil.normalizeVec3(mViewLightDirections);
 
-        // Use the first three pairs as the initial variables and get the three
-        // maximum values and three minimum values.
-        int index = 3;
-        while (index < vertices.limit() - 2) {
-            if (vertices.get(index) < mBoundingBoxs[0]) {
-                mBoundingBoxs[0] = vertices.get(index);
-            }
-            if (vertices.get(index) > mBoundingBoxs[3]) {
-                mBoundingBoxs[3] = vertices.get(index);
-            }
-            index++;
+        // Light direction.
+        mGl.glUniform4f(mLightingParametersUniform,
+                mViewLightDirections[0], mViewLightDirections[1], mViewLightDirections[2], lightIntensity);
+        mGl.glUniform4fv(mColorUniform, 1, mObjectColors, 0);
+        mGl.glUniformMatrix4fv(mModelViewUniform, 1, false, mModelViewMatrixs, 0);
+        mGl.glUniformMatrix4fv(mModelViewProjectionUniform, 1, false, mModelViewProjectionMatrixs, 0);
+        int level = MeshData.selectLevel(calculateScreenSize(mModelViewMatrixs, cameraProjection), mLevelCount);
+        mGl.glDrawElements(GLES20.GL_TRIANGLES, mLevelIndexCounts[level], mIndexType, mLevelIndexOffsets[level]);
+    }
 
-            if (vertices.get(index) < mBoundingBoxs[1]) {
-                mBoundingBoxs[1] = vertices.get(index);
-            }
-            if (vertices.get(index) > mBoundingBoxs[4]) {
-                mBoundingBoxs[4] = vertices.get(index);
-            }
-            index++;
+    /**
+     * Calculate the projected diameter of the bounding sphere of the object, as a fraction of
+     * the screen height.
+     *
+     * @param modelView The model view matrix 4 * 4 of the object.
+     * @param cameraProjection The ProjectionMatrix 4 * 4.
+     * @return Screen size, or Float.POSITIVE_INFINITY if the camera is inside the sphere.
+     */
+    private float calculateScreenSize(float[] modelView, float[] cameraProjection) {
+        float centerX = (mBoundingBoxs[0] + mBoundingBoxs[3]) * 0.5f;
+        float centerY = (mBoundingBoxs[1] + mBoundingBoxs[4]) * 0.5f;
+        float centerZ = (mBoundingBoxs[2] + mBoundingBoxs[5]) * 0.5f;
+        float halfX = (mBoundingBoxs[3] - mBoundingBoxs[0]) * 0.5f;
+        float halfY = (mBoundingBoxs[4] - mBoundingBoxs[1]) * 0.5f;
+        float halfZ = (mBoundingBoxs[5] - mBoundingBoxs[2]) * 0.5f;
+
+        // The view matrix is rigid, so the largest column length is the scale of the model matrix.
+        float scale = 0.0f;
+        for (int col = 0; col < 3; col++) {
+            float x = modelView[col * 4];
+            float y = modelView[col * 4 + 1];
+            float z = modelView[col * 4 + 2];
+            scale = Math.max(scale, x * x + y * y + z * z);
+        }
+        float radius = (float) Math.sqrt(scale * (halfX * halfX + halfY * halfY + halfZ * halfZ));
 
-            if (vertices.get(index) < mBoundingBoxs[2]) {
-                mBoundingBoxs[2] = vertices.get(index);
-            }
-            if (vertices.get(index) > mBoundingBoxs[5]) {
-                mBoundingBoxs[5] = vertices.get(index);
-            }
-            index++;
+        // The camera looks along -Z in view space.
+        float distance = -(modelView[2] * centerX + modelView[6] * centerY + modelView[10] * centerZ + modelView[14]);
+        if (distance <= radius) {
+            return Float.POSITIVE_INFINITY;
         }
+        return radius * cameraProjection[5] / distance;
     }
 
     /**
-     * The virtual object data class.
+     * Select the virtual object under a tap. The tap is unprojected into a world-space ray,
+     * which is tested against the world bounding boxes of all objects, and the object that
+     * the ray enters first is returned.
      *
-     * @author HW
-     * @since 2020-04-11
+     * @param cameraView The viewMatrix 4 * 4.
+     * @param cameraPerspective The ProjectionMatrix 4 * 4.
+     * @param objects All virtual objects.
+     * @param tapX X coordinate of the tap in pixels.
+     * @param tapY Y coordinate of the tap in pixels.
+     * @return Handle of the nearest virtual object under the tap, or {@link ObjectStore#NO_HANDLE}.
      */
-    private static class ObjectData {
-        IntBuffer objectIndices;
-        FloatBuffer objectVertices;
-        ShortBuffer indices;
-        FloatBuffer texCoords;
-        FloatBuffer normals;
-
-        ObjectData(IntBuffer objectIndices,
-                   FloatBuffer objectVertices,
-                   ShortBuffer indices,
-                   FloatBuffer texCoords,
-                   FloatBuffer normals) {
-            this.objectIndices = objectIndices;
-            this.objectVertices = objectVertices;
-            this.indices = indices;
-            this.texCoords = texCoords;
-            this.normals = normals;
-        }
+    int pick(float[] cameraView, float[] cameraPerspective, ObjectStore<?> objects, float tapX, float tapY) {
+        return mObjectPicker.pick(objects, mBoundingBoxs, cameraView, cameraPerspective, tapX, tapY,
+                (int) mWidth, (int) mHeight);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.common.MatrixUtil;
+
+/**
+ * Selects the virtual object under a tap. The world-space bounding boxes of the visible
+ * objects are kept in a {@link BoundingVolumeHierarchy}; hidden objects, whose anchor is not
+ * tracked, cannot be picked. The hierarchy is rebuilt when objects are added, removed, shown
+ * or hidden, or when the bounding box of the model changes, as when the model finishes
+ * loading after the first pick. Otherwise it is refitted only for the objects that the store
+ * marked dirty since the last pick, so a pick in a static scene takes logarithmic time.
+ */
+class ObjectPicker {
+    private static final int MATRIX_SIZE = 16;
+
+    private static final int NO_ITEM = -1;
+
+    private final BoundingVolumeHierarchy mHierarchy = new BoundingVolumeHierarchy();
+
+    private final PickingRay mRay = new PickingRay();
+
+    // Handles of the objects in the order of the items of the hierarchy.
+    private int[] mIndexedHandles = new int[0];
+
+    // Item of the object at each index of the store, or NO_ITEM for a hidden object.
+    private int[] mIndexedItems = new int[0];
+
+    // Store, versions and model bounding box from which the hierarchy was built.
+    private ObjectStore<?> mIndexedObjects;
+
+    private int mIndexedVersion;
+
+    private int mIndexedVisibilityVersion;
+
+    private final float[] mIndexedBoundingBox = new float[BoundingVolumeHierarchy.BOX_SIZE];
+
+    private final float[] mModelMatrix = new float[MATRIX_SIZE];
+
+    private final float[] mWorldBox = new float[BoundingVolumeHierarchy.BOX_SIZE];
+
+    private float[] mWorldBoxes = new float[0];
+
+    /**
+     * Obtain the object that the tap ray enters first.
+     *
+     * @param objects Candidate virtual objects, with up-to-date model matrices.
+     * @param boundingBox Bounding box of the object model in model space.
+     * @param cameraView The viewMatrix 4 * 4.
+     * @param cameraProjection The ProjectionMatrix 4 * 4.
+     * @param tapX X coordinate of the tap in pixels.
+     * @param tapY Y coordinate of the tap in pixels.
+     * @param width Width of the viewport in pixels.
+     * @param height Height of the viewport in pixels.
+     * @return Handle of the nearest object under the tap, or {@link ObjectStore#NO_HANDLE}.
+     */
+    int pick(ObjectStore<?> objects, float[] boundingBox, float[] cameraView,
+            float[] cameraProjection, float tapX, float tapY, int width, int height) {
+        updateHierarchy(objects, boundingBox);
+        if (!mRay.setFromScreen(tapX, tapY, width, height, cameraView, cameraProjection)) {
+            return ObjectStore.NO_HANDLE;
+        }
+        int item = mHierarchy.raycast(mRay);
+        return item == BoundingVolumeHierarchy.NO_HIT ? ObjectStore.NO_HANDLE : mIndexedHandles[item];
+    }
+
+    private void updateHierarchy(ObjectStore<?> objects, float[] boundingBox) {
+        if (objects != mIndexedObjects || objects.getVersion() != mIndexedVersion
+                || objects.getVisibilityVersion() != mIndexedVisibilityVersion
+                || !isBoundingBoxIndexed(boundingBox)) {
+            buildHierarchy(objects, boundingBox);
+            return;
+        }
+
+        // Anchors are refined by AR Engine over time, so refit only the objects that moved.
+        for (int i = 0; i < objects.getDirtyCount(); i++) {
+            int index = objects.getDirtyIndex(i);
+            int item = mIndexedItems[index];
+            if (item == NO_ITEM) {
+                continue;
+            }
+            calculateWorldBox(objects, index, boundingBox);
+            if (isBoxChanged(item)) {
+                System.arraycopy(mWorldBox, 0, mWorldBoxes, item * BoundingVolumeHierarchy.BOX_SIZE,
+                        BoundingVolumeHierarchy.BOX_SIZE);
+                mHierarchy.refit(item, mWorldBoxes, item * BoundingVolumeHierarchy.BOX_SIZE);
+            }
+        }
+        objects.clearDirty();
+    }
+
+    private void buildHierarchy(ObjectStore<?> objects, float[] boundingBox) {
+        int count = objects.size();
+        if (mIndexedItems.length < count) {
+            mWorldBoxes = new float[count * BoundingVolumeHierarchy.BOX_SIZE];
+            mIndexedHandles = new int[count];
+            mIndexedItems = new int[count];
+        }
+        int itemCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!objects.isVisible(i)) {
+                mIndexedItems[i] = NO_ITEM;
+                continue;
+            }
+            mIndexedItems[i] = itemCount;
+            mIndexedHandles[itemCount] = objects.getHandle(i);
+            calculateWorldBox(objects, i, boundingBox);
+            System.arraycopy(mWorldBox, 0, mWorldBoxes, itemCount * BoundingVolumeHierarchy.BOX_SIZE,
+                    BoundingVolumeHierarchy.BOX_SIZE);
+            itemCount++;
+        }
+        mHierarchy.build(mWorldBoxes, itemCount);
+        mIndexedObjects = objects;
+        mIndexedVersion = objects.getVersion();
+        mIndexedVisibilityVersion = objects.getVisibilityVersion();
+        System.arraycopy(boundingBox, 0, mIndexedBoundingBox, 0, BoundingVolumeHierarchy.BOX_SIZE);
+        objects.clearDirty();
+    }
+
+    private boolean isBoundingBoxIndexed(float[] boundingBox) {
+        for (int i = 0; i < BoundingVolumeHierarchy.BOX_SIZE; i++) {
+            if (mIndexedBoundingBox[i] != boundingBox[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void calculateWorldBox(ObjectStore<?> objects, int index, float[] boundingBox) {
+        System.arraycopy(objects.getModelMatrices(), index * ObjectStore.MATRIX_SIZE, mModelMatrix, 0, MATRIX_SIZE);
+        MatrixUtil.transformBoundingBox(mWorldBox, mModelMatrix, boundingBox);
+    }
+
+    private boolean isBoxChanged(int item) {
+        int offset = item * BoundingVolumeHierarchy.BOX_SIZE;
+        for (int i = 0; i < BoundingVolumeHierarchy.BOX_SIZE; i++) {
+            if (mWorldBoxes[offset + i] != mWorldBox[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,559 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.common.MatrixUtil;
+
+/**
+ * Stores the placed objects of a scene in structure-of-arrays form, so that the render and
+ * pick loops walk contiguous arrays of model matrices and colors. The live objects are packed
+ * at indexes 0 to {@link #size()} - 1; removing an object moves the last one into its place.
+ * Indexes therefore change, while the integer handle returned by {@link #add} stays valid
+ * until the object is removed. A handle combines a slot with a generation, so a stale handle
+ * is never mistaken for a newer object in the same slot.
+ * <p>
+ * When the store is full, {@link #add} evicts the oldest object. The insertion order is kept
+ * in a ring of handles; removed objects leave stale handles in it, which eviction skips and
+ * which are compacted away when the ring fills up. Adding, removing and evicting take
+ * amortized constant time and do not allocate. This class does not depend on Android.
+ * <p>
+ * Each object has a local matrix, its transformation relative to its anchor. It starts as the
+ * local matrix of the store and is scaled and rotated in place by the two-finger gestures.
+ * <p>
+ * The store tracks which objects may have moved since {@link #clearDirty()}, so that a
+ * consumer such as the pick hierarchy updates only those. Adding or removing an object
+ * changes the indexes, increments {@link #getVersion()} and clears the dirty objects.
+ *
+ * @param <T> Type of the anchor of an object.
+ */
+class ObjectStore<T> {
+    /**
+     * A handle that never refers to an object.
+     */
+    static final int NO_HANDLE = -1;
+
+    static final int MATRIX_SIZE = 16;
+
+    static final int COLOR_SIZE = 4;
+
+    private static final int SLOT_BITS = 20;
+
+    /**
+     * Largest supported capacity.
+     */
+    static final int MAX_CAPACITY = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = MAX_CAPACITY - 1;
+
+    // Handles stay non-negative, so 11 bits are left for the generation.
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    private static final float MAX_COLOR_VALUE = 255.0f;
+
+    /**
+     * Smallest scale of an object relative to its initial size.
+     */
+    static final float MIN_SCALE = 0.25f;
+
+    /**
+     * Largest scale of an object relative to its initial size.
+     */
+    static final float MAX_SCALE = 4.0f;
+
+    private final int mCapacity;
+
+    private final float[] mLocalMatrix = new float[MATRIX_SIZE];
+
+    // Dense arrays, indexed by the position of the object.
+    private final float[] mModelMatrices;
+
+    private final float[] mLocalMatrices;
+
+    private final float[] mScales;
+
+    private final float[] mYaws;
+
+    private final float[] mColors;
+
+    private final boolean[] mSelectedFlags;
+
+    private final boolean[] mVisibleFlags;
+
+    private final Object[] mAnchors;
+
+    private final int[] mHandles;
+
+    // Sparse arrays, indexed by slot.
+    private final int[] mIndexes;
+
+    private final int[] mGenerations;
+
+    private final int[] mFreeSlots;
+
+    private int mFreeSlotCount;
+
+    // Handles in insertion order, oldest at the head.
+    private final int[] mOrder;
+
+    private int mOrderHead;
+
+    private int mOrderSize;
+
+    private int mCount;
+
+    // Objects whose model matrix may have changed, by index and as a list.
+    private final boolean[] mDirtyFlags;
+
+    private final int[] mDirtyIndexes;
+
+    private int mDirtyCount;
+
+    private int mVersion;
+
+    private int mVisibilityVersion;
+
+    /**
+     * Create an empty store.
+     *
+     * @param capacity Maximum number of objects, at most {@link #MAX_CAPACITY}.
+     * @param localMatrix Initial transformation of the model relative to its anchor.
+     */
+    ObjectStore(int capacity, float[] localMatrix) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        mCapacity = capacity;
+        System.arraycopy(localMatrix, 0, mLocalMatrix, 0, MATRIX_SIZE);
+        mModelMatrices = new float[capacity * MATRIX_SIZE];
+        mLocalMatrices = new float[capacity * MATRIX_SIZE];
+        mScales = new float[capacity];
+        mYaws = new float[capacity];
+        mColors = new float[capacity * COLOR_SIZE];
+        mSelectedFlags = new boolean[capacity];
+        mVisibleFlags = new boolean[capacity];
+        mAnchors = new Object[capacity];
+        mHandles = new int[capacity];
+        mIndexes = new int[capacity];
+        mGenerations = new int[capacity];
+        mFreeSlots = new int[capacity];
+        mOrder = new int[capacity];
+        mDirtyFlags = new boolean[capacity];
+        mDirtyIndexes = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            mIndexes[slot] = -1;
+            mFreeSlots[slot] = capacity - 1 - slot;
+        }
+        mFreeSlotCount = capacity;
+    }
+
+    /**
+     * Add an object. If the store is full, the oldest object is evicted first; use
+     * {@link #evictOldest()} beforehand to obtain its anchor.
+     *
+     * @param anchor Anchor of the object.
+     * @param color Color of the object, {@link #COLOR_SIZE} floats.
+     * @return Handle of the object.
+     */
+    int add(T anchor, float[] color) {
+        if (mCount == mCapacity) {
+            evictOldest();
+        }
+        int slot = mFreeSlots[--mFreeSlotCount];
+        int handle = (mGenerations[slot] << SLOT_BITS) | slot;
+        int index = mCount++;
+        mIndexes[slot] = index;
+        mHandles[index] = handle;
+        mAnchors[index] = anchor;
+        System.arraycopy(color, 0, mColors, index * COLOR_SIZE, COLOR_SIZE);
+        System.arraycopy(mLocalMatrix, 0, mModelMatrices, index * MATRIX_SIZE, MATRIX_SIZE);
+        System.arraycopy(mLocalMatrix, 0, mLocalMatrices, index * MATRIX_SIZE, MATRIX_SIZE);
+        mScales[index] = 1.0f;
+        mYaws[index] = 0.0f;
+        mSelectedFlags[index] = false;
+        mVisibleFlags[index] = true;
+
+        if (mOrderSize == mCapacity) {
+            compactOrder();
+        }
+        mOrder[(mOrderHead + mOrderSize) % mCapacity] = handle;
+        mOrderSize++;
+        changeVersion();
+        return handle;
+    }
+
+    /**
+     * Remove the oldest object.
+     *
+     * @return Anchor of the removed object, or null if the store is empty.
+     */
+    T evictOldest() {
+        int handle = getOldestHandle();
+        if (handle == NO_HANDLE) {
+            return null;
+        }
+        mOrderHead = (mOrderHead + 1) % mCapacity;
+        mOrderSize--;
+        return remove(handle);
+    }
+
+    /**
+     * Obtain the handle of the object that {@link #evictOldest()} removes next.
+     *
+     * @return Handle of the oldest object, or {@link #NO_HANDLE} if the store is empty.
+     */
+    int getOldestHandle() {
+        // Stale handles of removed objects are dropped from the ring on the way.
+        while (mOrderSize > 0) {
+            int handle = mOrder[mOrderHead];
+            if (indexOf(handle) >= 0) {
+                return handle;
+            }
+            mOrderHead = (mOrderHead + 1) % mCapacity;
+            mOrderSize--;
+        }
+        return NO_HANDLE;
+    }
+
+    /**
+     * Remove an object.
+     *
+     * @param handle Handle of the object.
+     * @return Anchor of the removed object, or null if the handle is stale.
+     */
+    T remove(int handle) {
+        int index = indexOf(handle);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    /**
+     * Remove the object at an index. The last object moves to this index.
+     *
+     * @param index Index of the object.
+     * @return Anchor of the removed object.
+     */
+    @SuppressWarnings("unchecked")
+    T removeAt(int index) {
+        T anchor = (T) mAnchors[index];
+        int slot = mHandles[index] & SLOT_MASK;
+        int last = mCount - 1;
+        if (index != last) {
+            System.arraycopy(mModelMatrices, last * MATRIX_SIZE, mModelMatrices, index * MATRIX_SIZE, MATRIX_SIZE);
+            System.arraycopy(mLocalMatrices, last * MATRIX_SIZE, mLocalMatrices, index * MATRIX_SIZE, MATRIX_SIZE);
+            mScales[index] = mScales[last];
+            mYaws[index] = mYaws[last];
+            System.arraycopy(mColors, last * COLOR_SIZE, mColors, index * COLOR_SIZE, COLOR_SIZE);
+            mSelectedFlags[index] = mSelectedFlags[last];
+            mVisibleFlags[index] = mVisibleFlags[last];
+            mAnchors[index] = mAnchors[last];
+            mHandles[index] = mHandles[last];
+            mIndexes[mHandles[index] & SLOT_MASK] = index;
+        }
+        mAnchors[last] = null;
+        mIndexes[slot] = -1;
+        mGenerations[slot] = (mGenerations[slot] + 1) & GENERATION_MASK;
+        mFreeSlots[mFreeSlotCount++] = slot;
+        mCount--;
+        changeVersion();
+        return anchor;
+    }
+
+    /**
+     * Find the index of an object.
+     *
+     * @param handle Handle of the object.
+     * @return Index of the object, or -1 if the handle is stale or {@link #NO_HANDLE}.
+     */
+    int indexOf(int handle) {
+        if (handle < 0) {
+            return -1;
+        }
+        int slot = handle & SLOT_MASK;
+        if (slot >= mCapacity || mIndexes[slot] < 0 || mHandles[mIndexes[slot]] != handle) {
+            return -1;
+        }
+        return mIndexes[slot];
+    }
+
+    /**
+     * Obtain the handle of the object at an index.
+     *
+     * @param index Index of the object.
+     * @return Handle of the object.
+     */
+    int getHandle(int index) {
+        return mHandles[index];
+    }
+
+    /**
+     * Obtain the number of objects.
+     *
+     * @return Number of objects.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * Obtain the capacity of the store.
+     *
+     * @return Maximum number of objects.
+     */
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Check whether the next {@link #add} evicts an object.
+     *
+     * @return true if the store is full.
+     */
+    boolean isFull() {
+        return mCount == mCapacity;
+    }
+
+    /**
+     * Obtain the anchor of an object.
+     *
+     * @param index Index of the object.
+     * @return Anchor of the object.
+     */
+    @SuppressWarnings("unchecked")
+    T getAnchor(int index) {
+        return (T) mAnchors[index];
+    }
+
+    /**
+     * Replace the anchor of an object.
+     *
+     * @param index Index of the object.
+     * @param anchor New anchor.
+     * @return The previous anchor.
+     */
+    T setAnchor(int index, T anchor) {
+        T previous = getAnchor(index);
+        mAnchors[index] = anchor;
+        return previous;
+    }
+
+    /**
+     * Obtain the model matrices of all objects, {@link #MATRIX_SIZE} floats per index.
+     *
+     * @return The model matrices, column-major.
+     */
+    float[] getModelMatrices() {
+        return mModelMatrices;
+    }
+
+    /**
+     * Set the model matrix of an object from the pose of its anchor and its local matrix. The
+     * object becomes dirty if its model matrix changes.
+     *
+     * @param index Index of the object.
+     * @param anchorMatrix Pose of the anchor, column-major 4 * 4.
+     */
+    void setAnchorMatrix(int index, float[] anchorMatrix) {
+        int offset = index * MATRIX_SIZE;
+        boolean isChanged = false;
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                int local = offset + col * 4;
+                float value = anchorMatrix[row] * mLocalMatrices[local]
+                        + anchorMatrix[4 + row] * mLocalMatrices[local + 1]
+                        + anchorMatrix[8 + row] * mLocalMatrices[local + 2]
+                        + anchorMatrix[12 + row] * mLocalMatrices[local + 3];
+                if (mModelMatrices[offset + col * 4 + row] != value) {
+                    mModelMatrices[offset + col * 4 + row] = value;
+                    isChanged = true;
+                }
+            }
+        }
+        if (isChanged) {
+            markDirty(index);
+        }
+    }
+
+    /**
+     * Scale an object about its anchor. The scale relative to the initial size is kept between
+     * {@link #MIN_SCALE} and {@link #MAX_SCALE}. The model matrix follows with the next
+     * {@link #setAnchorMatrix}.
+     *
+     * @param index Index of the object.
+     * @param factor Scale factor relative to the current size.
+     */
+    void scaleBy(int index, float factor) {
+        float scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, mScales[index] * factor));
+        MatrixUtil.preScaleM(mLocalMatrices, index * MATRIX_SIZE, scale / mScales[index]);
+        mScales[index] = scale;
+        markDirty(index);
+    }
+
+    /**
+     * Rotate an object around the up axis of its anchor. The model matrix follows with the
+     * next {@link #setAnchorMatrix}.
+     *
+     * @param index Index of the object.
+     * @param angle Counterclockwise angle when seen from above, in degrees.
+     */
+    void rotateBy(int index, float angle) {
+        MatrixUtil.preRotateYM(mLocalMatrices, index * MATRIX_SIZE, angle);
+        float yaw = (mYaws[index] + angle) % 360.0f;
+        if (yaw > 180.0f) {
+            yaw -= 360.0f;
+        } else if (yaw <= -180.0f) {
+            yaw += 360.0f;
+        }
+        mYaws[index] = yaw;
+        markDirty(index);
+    }
+
+    /**
+     * Obtain the rotation of an object around the up axis of its anchor, relative to its
+     * initial orientation.
+     *
+     * @param index Index of the object.
+     * @return Counterclockwise angle when seen from above, in degrees, greater than -180 and at
+     *     most 180.
+     */
+    float getYaw(int index) {
+        return mYaws[index];
+    }
+
+    /**
+     * Obtain the scale of an object relative to its initial size.
+     *
+     * @param index Index of the object.
+     * @return The scale.
+     */
+    float getScale(int index) {
+        return mScales[index];
+    }
+
+    /**
+     * Obtain the colors of all objects, {@link #COLOR_SIZE} floats per index, without the
+     * selection highlight.
+     *
+     * @return The colors.
+     */
+    float[] getColors() {
+        return mColors;
+    }
+
+    /**
+     * Obtain the displayed color of an object. A selected object shows the inverted color.
+     *
+     * @param index Index of the object.
+     * @param rets Array with a length of at least 4 that receives the color.
+     */
+    void getColor(int index, float[] rets) {
+        int offset = index * COLOR_SIZE;
+        if (mSelectedFlags[index]) {
+            rets[0] = MAX_COLOR_VALUE - mColors[offset];
+            rets[1] = MAX_COLOR_VALUE - mColors[offset + 1];
+            rets[2] = MAX_COLOR_VALUE - mColors[offset + 2];
+        } else {
+            rets[0] = mColors[offset];
+            rets[1] = mColors[offset + 1];
+            rets[2] = mColors[offset + 2];
+        }
+        rets[3] = mColors[offset + 3];
+    }
+
+    boolean isSelected(int index) {
+        return mSelectedFlags[index];
+    }
+
+    void setSelected(int index, boolean isSelected) {
+        mSelectedFlags[index] = isSelected;
+    }
+
+    /**
+     * Check whether an object is drawn, which is the case while its anchor is tracked.
+     *
+     * @param index Index of the object.
+     * @return true if the object is drawn.
+     */
+    boolean isVisible(int index) {
+        return mVisibleFlags[index];
+    }
+
+    void setVisible(int index, boolean isVisible) {
+        if (mVisibleFlags[index] != isVisible) {
+            mVisibleFlags[index] = isVisible;
+            mVisibilityVersion++;
+        }
+    }
+
+    /**
+     * Obtain the version of the visibility, which changes whenever an object is shown or
+     * hidden. Adding or removing an object changes {@link #getVersion()} instead.
+     *
+     * @return The version.
+     */
+    int getVisibilityVersion() {
+        return mVisibilityVersion;
+    }
+
+    /**
+     * Obtain the version of the indexes, which changes whenever an object is added or removed.
+     *
+     * @return The version.
+     */
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Obtain the number of objects whose model matrix may have changed since the last
+     * {@link #clearDirty()}.
+     *
+     * @return Number of dirty objects.
+     */
+    int getDirtyCount() {
+        return mDirtyCount;
+    }
+
+    /**
+     * Obtain the index of a dirty object.
+     *
+     * @param dirty Position in the dirty objects, from 0 to {@link #getDirtyCount()} - 1.
+     * @return Index of the object.
+     */
+    int getDirtyIndex(int dirty) {
+        return mDirtyIndexes[dirty];
+    }
+
+    /**
+     * Mark all objects as clean.
+     */
+    void clearDirty() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            mDirtyFlags[mDirtyIndexes[i]] = false;
+        }
+        mDirtyCount = 0;
+    }
+
+    private void markDirty(int index) {
+        if (!mDirtyFlags[index]) {
+            mDirtyFlags[index] = true;
+            mDirtyIndexes[mDirtyCount++] = index;
+        }
+    }
+
+    // The indexes changed, so the dirty indexes are void; consumers rebuild from the version.
+    private void changeVersion() {
+        clearDirty();
+        mVersion++;
+    }
+
+    // Drop the stale handles from the ring, keeping the order. A handle only moves towards the
+    // head, so no unread handle is overwritten.
+    private void compactOrder() {
+        int kept = 0;
+        for (int i = 0; i < mOrderSize; i++) {
+            int handle = mOrder[(mOrderHead + i) % mCapacity];
+            if (indexOf(handle) >= 0) {
+                mOrder[(mOrderHead + kept) % mCapacity] = handle;
+                kept++;
+            }
+        }
+        mOrderSize = kept;
+    }
+}
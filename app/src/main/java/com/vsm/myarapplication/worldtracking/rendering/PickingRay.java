@@ -0,0 +1,137 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.common.MatrixUtil;
+
+/**
+ * World-space ray used for picking virtual objects. A tap is unprojected from the near to
+ * the far clipping plane, and the ray is then tested against axis-aligned bounding boxes
+ * [minX, minY, minZ, maxX, maxY, maxZ]. This class does not depend on Android.
+ */
+class PickingRay {
+    /**
+     * Distance returned by {@link #intersect} when the ray misses the box.
+     */
+    static final float NO_INTERSECTION = Float.POSITIVE_INFINITY;
+
+    private static final int MATRIX_SIZE = 16;
+
+    private final float[] mOrigin = new float[3];
+
+    private final float[] mDirection = new float[3];
+
+    private final float[] mViewProjectionMatrix = new float[MATRIX_SIZE];
+
+    private final float[] mInverseMatrix = new float[MATRIX_SIZE];
+
+    private final float[] mNearPoint = new float[3];
+
+    private final float[] mFarPoint = new float[3];
+
+    /**
+     * Set the ray from an origin and a direction. The direction is normalized, so the
+     * distances returned by {@link #intersect} are in world units.
+     *
+     * @param originX X coordinate of the origin.
+     * @param originY Y coordinate of the origin.
+     * @param originZ Z coordinate of the origin.
+     * @param directionX X component of the direction.
+     * @param directionY Y component of the direction.
+     * @param directionZ Z component of the direction.
+     * @return false if the direction has zero length.
+     */
+    boolean set(float originX, float originY, float originZ, float directionX, float directionY, float directionZ) {
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY
+                + directionZ * directionZ);
+        if (length == 0.0f || Float.isNaN(length)) {
+            return false;
+        }
+        mOrigin[0] = originX;
+        mOrigin[1] = originY;
+        mOrigin[2] = originZ;
+        mDirection[0] = directionX / length;
+        mDirection[1] = directionY / length;
+        mDirection[2] = directionZ / length;
+        return true;
+    }
+
+    /**
+     * Set the ray that passes through a screen position, starting on the near clipping plane.
+     *
+     * @param screenX X coordinate in pixels, growing to the right.
+     * @param screenY Y coordinate in pixels, growing downwards.
+     * @param width Width of the viewport in pixels.
+     * @param height Height of the viewport in pixels.
+     * @param cameraView The viewMatrix 4 * 4.
+     * @param cameraProjection The ProjectionMatrix 4 * 4.
+     * @return false if the viewport is empty or the matrices cannot be inverted.
+     */
+    boolean setFromScreen(float screenX, float screenY, int width, int height, float[] cameraView,
+            float[] cameraProjection) {
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        MatrixUtil.multiplyMM(mViewProjectionMatrix, cameraProjection, cameraView);
+        if (!MatrixUtil.invertM(mInverseMatrix, mViewProjectionMatrix)) {
+            return false;
+        }
+
+        // Normalized device coordinates: left is -1, right is 1, bottom is -1 and top is 1.
+        float ndcX = 2.0f * screenX / width - 1.0f;
+        float ndcY = 1.0f - 2.0f * screenY / height;
+        if (!unproject(ndcX, ndcY, -1.0f, mNearPoint) || !unproject(ndcX, ndcY, 1.0f, mFarPoint)) {
+            return false;
+        }
+        return set(mNearPoint[0], mNearPoint[1], mNearPoint[2], mFarPoint[0] - mNearPoint[0],
+                mFarPoint[1] - mNearPoint[1], mFarPoint[2] - mNearPoint[2]);
+    }
+
+    private boolean unproject(float ndcX, float ndcY, float ndcZ, float[] point) {
+        float[] m = mInverseMatrix;
+        float w = m[3] * ndcX + m[7] * ndcY + m[11] * ndcZ + m[15];
+        if (w == 0.0f) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            point[i] = (m[i] * ndcX + m[4 + i] * ndcY + m[8 + i] * ndcZ + m[12 + i]) / w;
+        }
+        return true;
+    }
+
+    /**
+     * Calculate where the ray enters a box, using the slab method.
+     *
+     * @param boxes Array that contains the box.
+     * @param offset Offset of the box [minX, minY, minZ, maxX, maxY, maxZ] in boxes.
+     * @return Distance from the origin to the entry point, 0 if the origin is inside the
+     * box, or {@link #NO_INTERSECTION} if the ray misses it.
+     */
+    float intersect(float[] boxes, int offset) {
+        float near = 0.0f;
+        float far = Float.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            float min = boxes[offset + axis];
+            float max = boxes[offset + axis + 3];
+            if (mDirection[axis] == 0.0f) {
+                // The ray is parallel to this slab, so it has to start between its planes.
+                if (mOrigin[axis] < min || mOrigin[axis] > max) {
+                    return NO_INTERSECTION;
+                }
+                continue;
+            }
+            float inverse = 1.0f / mDirection[axis];
+            float entry = (min - mOrigin[axis]) * inverse;
+            float exit = (max - mOrigin[axis]) * inverse;
+            if (entry > exit) {
+                float temp = entry;
+                entry = exit;
+                exit = temp;
+            }
+            near = Math.max(near, entry);
+            far = Math.min(far, exit);
+            if (near > far) {
+                return NO_INTERSECTION;
+            }
+        }
+        return near;
+    }
+}
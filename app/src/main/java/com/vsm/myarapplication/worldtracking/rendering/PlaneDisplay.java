@@ -0,0 +1,267 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+import com.huawei.hiar.ARPlane;
+import com.huawei.hiar.ARPose;
+import com.huawei.hiar.ARTrackable;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.MatrixUtil;
+import com.vsm.myarapplication.common.ShaderUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Draws the detected extent of each plane, which is the polygon from
+ * {@link ARPlane#getPlanePolygon()}, as a translucent area tinted by the plane label.
+ * The triangulated polygons are cached by {@link PlaneMeshCache}, and only the polygons that
+ * changed are streamed into the shared dynamic vertex buffer.
+ */
+class PlaneDisplay {
+    private static final String TAG = PlaneDisplay.class.getSimpleName();
+
+    private static final int MATRIX_SIZE = 16;
+
+    private static final int FLOAT_SIZE = 4;
+
+    private static final int BYTES_PER_VERTEX = FLOAT_SIZE * PlaneMeshCache.FLOATS_PER_VERTEX;
+
+    private static final float PLANE_ALPHA = 0.3f;
+
+    // RGB tint of each plane label, in the order of the label ordinals. Others use the first one.
+    private static final float[] LABEL_COLORS = {
+        1.0f, 1.0f, 1.0f,
+        0.4f, 0.6f, 1.0f,
+        1.0f, 0.8f, 0.3f,
+        0.5f, 1.0f, 0.5f,
+        1.0f, 0.5f, 0.5f,
+        0.8f, 0.5f, 1.0f
+    };
+
+    private final PlaneMeshCache<ARPlane> meshCache = new PlaneMeshCache<>();
+
+    // The tracked planes of the current frame and their meshes, reused to avoid per-frame allocation.
+    private final ArrayList<ARPlane> trackedPlanes = new ArrayList<>();
+
+    private final ArrayList<PlaneMeshCache.Mesh> trackedMeshes = new ArrayList<>();
+
+    private final float[] modelMatrix = new float[MATRIX_SIZE];
+
+    private final float[] viewProjectionMatrix = new float[MATRIX_SIZE];
+
+    private final float[] modelViewProjectionMatrix = new float[MATRIX_SIZE];
+
+    private final float[] planeBoundingBox = new float[6];
+
+    private final float[] worldBoundingBox = new float[6];
+
+    private final float[] color = new float[4];
+
+    private final GlApi gl;
+
+    private final GlStateCache glState;
+
+    private FloatBuffer vertexData;
+
+    private int vertexBuffer;
+
+    private int program;
+
+    private int glPositionParameter;
+
+    private int glModelViewProjectionMatrix;
+
+    private int glColor;
+
+    private int drawnCount;
+
+    private int updatedCount;
+
+    /**
+     * Create the display with a state cache of its own, which issues its calls through GLES20.
+     */
+    PlaneDisplay() {
+        this(new GlStateCache(new Gles20Api()));
+    }
+
+    /**
+     * Create the display, which issues its commands through the API of the given state cache.
+     *
+     * @param glState State cache.
+     */
+    PlaneDisplay(GlStateCache glState) {
+        this.glState = glState;
+        this.gl = glState.getGlApi();
+    }
+
+    /**
+     * Release the shader program. This method is called when
+     * {@link WorldRenderManager#onSurfaceCreated}, before {@link #init()}.
+     */
+    void releaseProgram() {
+        WorldShaderUtil.releaseProgram(program);
+        program = 0;
+    }
+
+    /**
+     * Create the shader program and the vertex buffer in the openGL thread.
+     * This method will be called when {@link WorldRenderManager#onSurfaceCreated}.
+     */
+    void init() {
+        ShaderUtil.checkGlError(TAG, "Init start.");
+        program = WorldShaderUtil.getPlaneProgram();
+        glPositionParameter = gl.glGetAttribLocation(program, "inPosXZ");
+        glModelViewProjectionMatrix = gl.glGetUniformLocation(program, "inMVPMatrix");
+        glColor = gl.glGetUniformLocation(program, "inColor");
+        int[] buffers = new int[1];
+        gl.glGenBuffers(buffers.length, buffers, 0);
+        vertexBuffer = buffers[0];
+
+        // The new buffer is empty, so the cached meshes are uploaded again.
+        meshCache.requestFullUpload();
+        ShaderUtil.checkGlError(TAG, "Init end.");
+    }
+
+    /**
+     * Draw the polygons of the tracked planes that lie at least partly inside the view frustum.
+     *
+     * @param allPlanes All identified planes.
+     * @param cameraView View matrix of the current camera.
+     * @param cameraProjection Projection matrix of the current camera.
+     * @param frustum View frustum of the camera, or null to draw all planes.
+     */
+    void onDrawFrame(Collection<ARPlane> allPlanes, float[] cameraView, float[] cameraProjection, Frustum frustum) {
+        ShaderUtil.checkGlError(TAG, "Draw start.");
+        trackedPlanes.clear();
+        trackedMeshes.clear();
+        meshCache.begin();
+        for (ARPlane plane : allPlanes) {
+            if (plane.getType() == ARPlane.PlaneType.UNKNOWN_FACING
+                    || plane.getTrackingState() != ARTrackable.TrackingState.TRACKING
+                    || plane.getSubsumedBy() != null) {
+                continue;
+            }
+            FloatBuffer polygon = plane.getPlanePolygon();
+            if (polygon == null) {
+                continue;
+            }
+            trackedPlanes.add(plane);
+            trackedMeshes.add(meshCache.update(plane, polygon));
+        }
+
+        // Meshes may move while others are updated, so they are drawn after all updates.
+        meshCache.end();
+        updatedCount = meshCache.getRetessellatedCount();
+
+        glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBuffer);
+        upload();
+
+        glState.enable(GLES20.GL_DEPTH_TEST);
+        glState.depthMask(false);
+        glState.enable(GLES20.GL_BLEND);
+
+        // The destination alpha is kept, because the labels blend with it.
+        glState.blendFuncSeparate(
+                GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA, GLES20.GL_ZERO, GLES20.GL_ONE);
+        glState.useProgram(program);
+        glState.setVertexAttribArrays(GlStateCache.getAttribBit(glPositionParameter));
+        gl.glVertexAttribPointer(glPositionParameter, PlaneMeshCache.FLOATS_PER_VERTEX, GLES20.GL_FLOAT,
+                false, BYTES_PER_VERTEX, 0);
+        Matrix.multiplyMM(viewProjectionMatrix, 0, cameraProjection, 0, cameraView, 0);
+        drawnCount = 0;
+        for (int i = 0; i < trackedPlanes.size(); i++) {
+            drawPlane(trackedPlanes.get(i), trackedMeshes.get(i), frustum);
+        }
+        ShaderUtil.checkGlError(TAG, "Draw end.");
+    }
+
+    /**
+     * Obtain the number of planes drawn by the last {@link #onDrawFrame}.
+     *
+     * @return Number of drawn planes.
+     */
+    int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * Obtain the number of plane polygons triangulated again in the last {@link #onDrawFrame}.
+     *
+     * @return Number of updated planes.
+     */
+    int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    private void upload() {
+        if (meshCache.isFullUploadNeeded()) {
+            int floatCount = meshCache.getVertexCapacity() * PlaneMeshCache.FLOATS_PER_VERTEX;
+            if (vertexData == null || vertexData.capacity() < floatCount) {
+                vertexData = ByteBuffer.allocateDirect(FLOAT_SIZE * floatCount)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+            vertexData.clear();
+            vertexData.put(meshCache.getVertices(), 0, floatCount).flip();
+            gl.glBufferData(GLES20.GL_ARRAY_BUFFER, FLOAT_SIZE * floatCount, vertexData,
+                    GLES20.GL_DYNAMIC_DRAW);
+        } else {
+            float[] vertices = meshCache.getVertices();
+            for (int i = 0; i < meshCache.getDirtyCount(); i++) {
+                PlaneMeshCache.Mesh mesh = meshCache.getDirtyMesh(i);
+                if (mesh.vertexCount == 0) {
+                    continue;
+                }
+                int offset = mesh.first * PlaneMeshCache.FLOATS_PER_VERTEX;
+                int floatCount = mesh.vertexCount * PlaneMeshCache.FLOATS_PER_VERTEX;
+                vertexData.clear();
+                vertexData.position(offset);
+                vertexData.put(vertices, offset, floatCount);
+                vertexData.position(offset);
+                gl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, FLOAT_SIZE * offset, FLOAT_SIZE * floatCount,
+                        vertexData);
+            }
+        }
+        meshCache.markUploaded();
+    }
+
+    private void drawPlane(ARPlane plane, PlaneMeshCache.Mesh mesh, Frustum frustum) {
+        if (mesh.vertexCount == 0) {
+            return;
+        }
+        ARPose centerPose = plane.getCenterPose();
+        centerPose.toMatrix(modelMatrix, 0);
+        if (frustum != null) {
+            float halfExtentX = plane.getExtentX() / 2.0f;
+            float halfExtentZ = plane.getExtentZ() / 2.0f;
+            planeBoundingBox[0] = -halfExtentX;
+            planeBoundingBox[2] = -halfExtentZ;
+            planeBoundingBox[3] = halfExtentX;
+            planeBoundingBox[5] = halfExtentZ;
+            MatrixUtil.transformBoundingBox(worldBoundingBox, modelMatrix, planeBoundingBox);
+            if (!frustum.isBoxVisible(worldBoundingBox, 0)) {
+                return;
+            }
+        }
+        Matrix.multiplyMM(modelViewProjectionMatrix, 0, viewProjectionMatrix, 0, modelMatrix, 0);
+        gl.glUniformMatrix4fv(glModelViewProjectionMatrix, 1, false, modelViewProjectionMatrix, 0);
+        getLabelColor(plane.getLabel() == null ? 0 : plane.getLabel().ordinal(), color);
+        gl.glUniform4fv(glColor, 1, color, 0);
+        gl.glDrawArrays(GLES20.GL_TRIANGLES, mesh.first, mesh.vertexCount);
+        drawnCount++;
+    }
+
+    private static void getLabelColor(int label, float[] color) {
+        int offset = label * 3 + 3 <= LABEL_COLORS.length ? label * 3 : 0;
+        color[0] = LABEL_COLORS[offset];
+        color[1] = LABEL_COLORS[offset + 1];
+        color[2] = LABEL_COLORS[offset + 2];
+        color[3] = PLANE_ALPHA;
+    }
+}
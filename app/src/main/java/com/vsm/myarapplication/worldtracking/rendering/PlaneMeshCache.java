@@ -0,0 +1,308 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps the triangulated polygons of the tracked planes in one shared vertex array, which
+ * mirrors a dynamic vertex buffer. Each plane owns a range of the array, with room for a
+ * power-of-two number of vertices. A polygon is triangulated again only when its length or
+ * the hash of its coordinates changes, so the work per frame follows the number of changed
+ * planes. The ranges that were written since the last upload are listed, so that only they
+ * are streamed to the vertex buffer. When the array runs out of room, the ranges are compacted
+ * and the array grows if needed, which requires a full upload.
+ * <p>
+ * A frame consists of {@link #begin()}, one {@link #update} per visible plane and {@link #end()},
+ * which drops the planes that were not updated. This class does not depend on Android.
+ *
+ * @param <K> Type of the plane identity.
+ */
+class PlaneMeshCache<K> {
+    /**
+     * A vertex holds the x and z coordinates in plane space.
+     */
+    static final int FLOATS_PER_VERTEX = 2;
+
+    private static final int INITIAL_VERTEX_CAPACITY = 1024;
+
+    private static final int INITIAL_POLYGON_CAPACITY = 64;
+
+    /**
+     * The triangles of one plane polygon, as a range of the shared vertex array.
+     */
+    static final class Mesh {
+        /**
+         * First vertex of the range.
+         */
+        int first;
+
+        /**
+         * Number of triangle vertices, three per triangle.
+         */
+        int vertexCount;
+
+        // Number of vertices reserved for the mesh.
+        private int capacity;
+
+        private int polygonLength = -1;
+
+        private int polygonHash;
+
+        private int frame;
+
+        private final Object key;
+
+        private Mesh(Object key) {
+            this.key = key;
+        }
+    }
+
+    private final HashMap<K, Mesh> mMeshesByKey = new HashMap<>();
+
+    private final ArrayList<Mesh> mMeshes = new ArrayList<>();
+
+    private final ArrayList<Mesh> mDirtyMeshes = new ArrayList<>();
+
+    private final PolygonTriangulator mTriangulator = new PolygonTriangulator();
+
+    private float[] mPolygon = new float[INITIAL_POLYGON_CAPACITY];
+
+    private int[] mTriangles = new int[INITIAL_POLYGON_CAPACITY * 3];
+
+    private float[] mVertices = new float[INITIAL_VERTEX_CAPACITY * FLOATS_PER_VERTEX];
+
+    // Vertices up to this one are allocated, including the ranges of dropped meshes.
+    private int mUsedVertexCount;
+
+    private boolean mIsFullUploadNeeded = true;
+
+    private int mFrame;
+
+    private int mRetessellatedCount;
+
+    /**
+     * Start a frame.
+     */
+    void begin() {
+        mFrame++;
+        mRetessellatedCount = 0;
+    }
+
+    /**
+     * Obtain the mesh of a plane, and triangulate its polygon again if it changed.
+     *
+     * @param key Identity of the plane.
+     * @param polygon Polygon of the plane as x, z pairs, from its position to its limit.
+     *     Its position is not changed.
+     * @return The mesh of the plane. Its vertex count is 0 for a polygon with less than three vertices.
+     */
+    Mesh update(K key, FloatBuffer polygon) {
+        Mesh mesh = mMeshesByKey.get(key);
+        if (mesh == null) {
+            mesh = new Mesh(key);
+            mMeshesByKey.put(key, mesh);
+            mMeshes.add(mesh);
+        }
+        mesh.frame = mFrame;
+
+        int length = polygon.remaining();
+        int hash = hashPolygon(polygon);
+        if (length == mesh.polygonLength && hash == mesh.polygonHash) {
+            return mesh;
+        }
+        mesh.polygonLength = length;
+        mesh.polygonHash = hash;
+        retessellate(mesh, polygon);
+        mRetessellatedCount++;
+        return mesh;
+    }
+
+    /**
+     * Finish a frame, and drop the meshes of the planes that were not updated in it.
+     */
+    void end() {
+        for (int i = mMeshes.size() - 1; i >= 0; i--) {
+            Mesh mesh = mMeshes.get(i);
+            if (mesh.frame == mFrame) {
+                continue;
+            }
+            mMeshesByKey.remove(mesh.key);
+            int last = mMeshes.size() - 1;
+            mMeshes.set(i, mMeshes.get(last));
+            mMeshes.remove(last);
+        }
+    }
+
+    /**
+     * Obtain the shared vertex array. It is replaced when it grows.
+     *
+     * @return {@link #FLOATS_PER_VERTEX} floats per vertex.
+     */
+    float[] getVertices() {
+        return mVertices;
+    }
+
+    /**
+     * Obtain the number of vertices that the vertex buffer must hold.
+     *
+     * @return Capacity of the shared vertex array in vertices.
+     */
+    int getVertexCapacity() {
+        return mVertices.length / FLOATS_PER_VERTEX;
+    }
+
+    /**
+     * Check whether the whole vertex array must be uploaded, because it was compacted or
+     * replaced, or because {@link #requestFullUpload()} was called.
+     *
+     * @return true if the dirty meshes are not enough.
+     */
+    boolean isFullUploadNeeded() {
+        return mIsFullUploadNeeded;
+    }
+
+    /**
+     * Upload the whole vertex array next time, for example to a newly created vertex buffer.
+     */
+    void requestFullUpload() {
+        mIsFullUploadNeeded = true;
+    }
+
+    /**
+     * Obtain the number of meshes written since {@link #markUploaded()}.
+     *
+     * @return Number of dirty meshes.
+     */
+    int getDirtyCount() {
+        return mDirtyMeshes.size();
+    }
+
+    /**
+     * Obtain a mesh written since {@link #markUploaded()}.
+     *
+     * @param index Index of the dirty mesh.
+     * @return The mesh.
+     */
+    Mesh getDirtyMesh(int index) {
+        return mDirtyMeshes.get(index);
+    }
+
+    /**
+     * Forget the dirty meshes after they were uploaded.
+     */
+    void markUploaded() {
+        mDirtyMeshes.clear();
+        mIsFullUploadNeeded = false;
+    }
+
+    /**
+     * Obtain the number of meshes that were triangulated since {@link #begin()}.
+     *
+     * @return Number of triangulated meshes.
+     */
+    int getRetessellatedCount() {
+        return mRetessellatedCount;
+    }
+
+    /**
+     * Obtain the number of cached meshes.
+     *
+     * @return Number of meshes.
+     */
+    int size() {
+        return mMeshes.size();
+    }
+
+    private void retessellate(Mesh mesh, FloatBuffer polygon) {
+        int pointCount = polygon.remaining() / FLOATS_PER_VERTEX;
+        if (mPolygon.length < pointCount * FLOATS_PER_VERTEX) {
+            mPolygon = new float[pointCount * FLOATS_PER_VERTEX * 2];
+            mTriangles = new int[pointCount * 3 * 2];
+        }
+        int position = polygon.position();
+        for (int i = 0; i < pointCount * FLOATS_PER_VERTEX; i++) {
+            mPolygon[i] = polygon.get(position + i);
+        }
+        int vertexCount = mTriangulator.triangulate(mPolygon, pointCount, mTriangles);
+        if (vertexCount > mesh.capacity) {
+            allocate(mesh, nextPowerOfTwo(vertexCount));
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            int target = (mesh.first + i) * FLOATS_PER_VERTEX;
+            int source = mTriangles[i] * FLOATS_PER_VERTEX;
+            mVertices[target] = mPolygon[source];
+            mVertices[target + 1] = mPolygon[source + 1];
+        }
+        mesh.vertexCount = vertexCount;
+        mDirtyMeshes.add(mesh);
+    }
+
+    // Move a mesh to a new range at the end of the array. The old range becomes a hole.
+    private void allocate(Mesh mesh, int capacity) {
+        mesh.capacity = 0;
+        mesh.vertexCount = 0;
+        if (mUsedVertexCount + capacity > getVertexCapacity()) {
+            compact();
+            int required = mUsedVertexCount + capacity;
+            if (required > getVertexCapacity()) {
+                int vertexCapacity = nextPowerOfTwo(Math.max(required, getVertexCapacity() * 2));
+                float[] vertices = new float[vertexCapacity * FLOATS_PER_VERTEX];
+                System.arraycopy(mVertices, 0, vertices, 0, mUsedVertexCount * FLOATS_PER_VERTEX);
+                mVertices = vertices;
+            }
+            mIsFullUploadNeeded = true;
+        }
+        mesh.first = mUsedVertexCount;
+        mesh.capacity = capacity;
+        mUsedVertexCount += capacity;
+    }
+
+    // Close the holes, keeping each mesh's data. Meshes only move towards the start.
+    private void compact() {
+        sortMeshesByFirst();
+        int used = 0;
+        for (int i = 0; i < mMeshes.size(); i++) {
+            Mesh mesh = mMeshes.get(i);
+            if (mesh.capacity == 0) {
+                continue;
+            }
+            if (mesh.first != used) {
+                System.arraycopy(mVertices, mesh.first * FLOATS_PER_VERTEX, mVertices, used * FLOATS_PER_VERTEX,
+                        mesh.vertexCount * FLOATS_PER_VERTEX);
+                mesh.first = used;
+            }
+            used += mesh.capacity;
+        }
+        mUsedVertexCount = used;
+    }
+
+    // Insertion sort, because the meshes are mostly in order already and this does not allocate.
+    private void sortMeshesByFirst() {
+        for (int i = 1; i < mMeshes.size(); i++) {
+            Mesh mesh = mMeshes.get(i);
+            int j = i - 1;
+            while (j >= 0 && mMeshes.get(j).first > mesh.first) {
+                mMeshes.set(j + 1, mMeshes.get(j));
+                j--;
+            }
+            mMeshes.set(j + 1, mesh);
+        }
+    }
+
+    private static int hashPolygon(FloatBuffer polygon) {
+        int hash = 1;
+        for (int i = polygon.position(); i < polygon.limit(); i++) {
+            hash = 31 * hash + Float.floatToIntBits(polygon.get(i));
+        }
+        return hash;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int result = 1;
+        while (result < value) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
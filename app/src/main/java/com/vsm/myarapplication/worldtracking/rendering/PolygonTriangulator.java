@@ -0,0 +1,115 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+/**
+ * Triangulates simple 2D polygons by ear clipping. Either winding order is accepted, and the
+ * triangles keep the winding of the polygon. A polygon with n vertices yields n - 2 triangles.
+ * Degenerate input, such as collinear or self-intersecting vertices, still produces n - 2
+ * triangles, although some of them may overlap. The scratch arrays are reused between calls.
+ * This class does not depend on Android.
+ */
+class PolygonTriangulator {
+    private static final int INITIAL_CAPACITY = 32;
+
+    // Circular doubly linked list of the vertices that are not clipped yet.
+    private int[] mPrevious = new int[INITIAL_CAPACITY];
+
+    private int[] mNext = new int[INITIAL_CAPACITY];
+
+    /**
+     * Triangulate a polygon.
+     *
+     * @param points Vertices of the polygon as x, y pairs, in order along the outline.
+     * @param vertexCount Number of vertices.
+     * @param triangles Receives three vertex indices per triangle, at least 3 * (vertexCount - 2) ints.
+     * @return Number of indices written, 3 * (vertexCount - 2), or 0 for fewer than three vertices.
+     */
+    int triangulate(float[] points, int vertexCount, int[] triangles) {
+        if (vertexCount < 3) {
+            return 0;
+        }
+        if (mPrevious.length < vertexCount) {
+            mPrevious = new int[Math.max(vertexCount, mPrevious.length * 2)];
+            mNext = new int[mPrevious.length];
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            mPrevious[i] = i == 0 ? vertexCount - 1 : i - 1;
+            mNext[i] = i == vertexCount - 1 ? 0 : i + 1;
+        }
+        float orientation = getSignedArea(points, vertexCount) >= 0.0f ? 1.0f : -1.0f;
+
+        int count = 0;
+        int remaining = vertexCount;
+        int current = 0;
+        int failures = 0;
+        while (remaining > 3) {
+            int previous = mPrevious[current];
+            int next = mNext[current];
+
+            // Without any ear left in a full pass, the polygon is degenerate, so the current
+            // vertex is clipped anyway to guarantee progress.
+            if (failures >= remaining || isEar(points, previous, current, next, orientation)) {
+                triangles[count++] = previous;
+                triangles[count++] = current;
+                triangles[count++] = next;
+                mNext[previous] = next;
+                mPrevious[next] = previous;
+                remaining--;
+                failures = 0;
+                current = next;
+            } else {
+                failures++;
+                current = next;
+            }
+        }
+        triangles[count++] = mPrevious[current];
+        triangles[count++] = current;
+        triangles[count++] = mNext[current];
+        return count;
+    }
+
+    /**
+     * Calculate the signed area of a polygon. It is positive for counterclockwise vertices in
+     * a coordinate system whose y axis points up.
+     *
+     * @param points Vertices of the polygon as x, y pairs.
+     * @param vertexCount Number of vertices.
+     * @return The signed area.
+     */
+    static float getSignedArea(float[] points, int vertexCount) {
+        float area = 0.0f;
+        for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+            area += points[j * 2] * points[i * 2 + 1] - points[i * 2] * points[j * 2 + 1];
+        }
+        return area * 0.5f;
+    }
+
+    private boolean isEar(float[] points, int previous, int current, int next, float orientation) {
+        float ax = points[previous * 2];
+        float ay = points[previous * 2 + 1];
+        float bx = points[current * 2];
+        float by = points[current * 2 + 1];
+        float cx = points[next * 2];
+        float cy = points[next * 2 + 1];
+
+        // A reflex or flat corner is not an ear.
+        if (cross(ax, ay, bx, by, cx, cy) * orientation <= 0.0f) {
+            return false;
+        }
+
+        // No other remaining vertex may lie inside the triangle.
+        for (int i = mNext[next]; i != previous; i = mNext[i]) {
+            float px = points[i * 2];
+            float py = points[i * 2 + 1];
+            if (cross(ax, ay, bx, by, px, py) * orientation >= 0.0f
+                    && cross(bx, by, cx, cy, px, py) * orientation >= 0.0f
+                    && cross(cx, cy, ax, ay, px, py) * orientation >= 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+}
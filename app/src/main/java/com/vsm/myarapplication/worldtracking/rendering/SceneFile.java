@@ -0,0 +1,344 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes the file that keeps the placed objects between sessions. The file is
+ * little-endian and consists of a fixed-size header followed by fixed-size records, one per
+ * placed object, oldest first. The file may be longer than its records, because the writer
+ * maps it in chunks; only the record count in the header is authoritative.
+ * <p>
+ * Header layout: magic, version, record size in bytes and record count.
+ * Record layout: the id of the record (int), the pose relative to the reference anchor as
+ * translation and rotation quaternion ({@link #POSE_SIZE} floats), the scale and the yaw of
+ * the object relative to its anchor (float each), the color ({@link #COLOR_SIZE} floats) and
+ * the model id (int). The id stays the same while the
+ * record is in the file, so that the record of an object can be updated and removed with the
+ * object.
+ */
+class SceneFile {
+    /**
+     * "ARSC" in little-endian byte order.
+     */
+    static final int MAGIC = 0x43535241;
+
+    static final int VERSION = 3;
+
+    static final int HEADER_SIZE = 4 * 4;
+
+    /**
+     * A pose is tx, ty, tz, qx, qy, qz, qw.
+     */
+    static final int POSE_SIZE = 7;
+
+    static final int COLOR_SIZE = 4;
+
+    static final int RECORD_SIZE = 4 + (POSE_SIZE + 2 + COLOR_SIZE) * 4 + 4;
+
+    /**
+     * An id that never refers to a record.
+     */
+    static final int NO_RECORD = -1;
+
+    private static final int COUNT_OFFSET = 12;
+
+    private static final int INITIAL_RECORD_CAPACITY = 64;
+
+    private SceneFile() {
+    }
+
+    /**
+     * Read all records of a scene file with one sequential pass over a read-only mapping.
+     *
+     * @param file Scene file.
+     * @return The records, or null if the file is missing or malformed.
+     * @throws IOException If the file cannot be read.
+     */
+    static Records read(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION || mapped.getInt() != RECORD_SIZE) {
+            return null;
+        }
+        int count = mapped.getInt();
+        if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > mapped.capacity()) {
+            return null;
+        }
+        Records records = new Records(count);
+        for (int i = 0; i < count; i++) {
+            records.ids[i] = mapped.getInt();
+            for (int j = 0; j < POSE_SIZE; j++) {
+                records.poses[i * POSE_SIZE + j] = mapped.getFloat();
+            }
+            records.scales[i] = mapped.getFloat();
+            records.yaws[i] = mapped.getFloat();
+            for (int j = 0; j < COLOR_SIZE; j++) {
+                records.colors[i * COLOR_SIZE + j] = mapped.getFloat();
+            }
+            records.modelIds[i] = mapped.getInt();
+        }
+        return records;
+    }
+
+    /**
+     * Records of a scene file, stored in parallel arrays.
+     */
+    static final class Records {
+        /**
+         * Number of records.
+         */
+        final int count;
+
+        final int[] ids;
+
+        /**
+         * {@link #POSE_SIZE} floats per record.
+         */
+        final float[] poses;
+
+        /**
+         * Scale of each object relative to its initial size.
+         */
+        final float[] scales;
+
+        /**
+         * Counterclockwise rotation of each object around the up axis of its anchor, in degrees.
+         */
+        final float[] yaws;
+
+        /**
+         * {@link #COLOR_SIZE} floats per record.
+         */
+        final float[] colors;
+
+        final int[] modelIds;
+
+        Records(int count) {
+            this.count = count;
+            ids = new int[count];
+            poses = new float[count * POSE_SIZE];
+            scales = new float[count];
+            yaws = new float[count];
+            colors = new float[count * COLOR_SIZE];
+            modelIds = new int[count];
+        }
+
+        /**
+         * Obtain the newest records.
+         *
+         * @param maxCount Maximum number of records.
+         * @return These records if there are at most maxCount, otherwise a copy of the last maxCount.
+         */
+        Records getNewest(int maxCount) {
+            if (count <= maxCount) {
+                return this;
+            }
+            int first = count - maxCount;
+            Records newest = new Records(maxCount);
+            System.arraycopy(ids, first, newest.ids, 0, maxCount);
+            System.arraycopy(poses, first * POSE_SIZE, newest.poses, 0, maxCount * POSE_SIZE);
+            System.arraycopy(scales, first, newest.scales, 0, maxCount);
+            System.arraycopy(yaws, first, newest.yaws, 0, maxCount);
+            System.arraycopy(colors, first * COLOR_SIZE, newest.colors, 0, maxCount * COLOR_SIZE);
+            System.arraycopy(modelIds, first, newest.modelIds, 0, maxCount);
+            return newest;
+        }
+    }
+
+    /**
+     * Appends, updates and removes records of a scene file through a read-write mapping. A record is
+     * complete before the count in the header includes it, so a process that dies while
+     * appending leaves a valid file. Removing a record moves the newer ones down; a process
+     * that dies meanwhile may leave one of them twice. Writes to the mapping reach the file
+     * even if the process is killed. The writer is not thread-safe.
+     */
+    static final class Writer implements Closeable {
+        private final RandomAccessFile mFile;
+
+        private final FileChannel mChannel;
+
+        private MappedByteBuffer mMapped;
+
+        private int mCount;
+
+        private int mNextId;
+
+        /**
+         * Open a scene file for appending. A missing or malformed file is started anew.
+         *
+         * @param file Scene file.
+         * @throws IOException If the file cannot be opened.
+         */
+        Writer(File file) throws IOException {
+            mFile = new RandomAccessFile(file, "rw");
+            mChannel = mFile.getChannel();
+            try {
+                long size = mChannel.size();
+                map(Math.max(size, HEADER_SIZE + (long) INITIAL_RECORD_CAPACITY * RECORD_SIZE));
+                if (size >= HEADER_SIZE && mMapped.getInt(0) == MAGIC && mMapped.getInt(4) == VERSION
+                        && mMapped.getInt(8) == RECORD_SIZE) {
+                    mCount = mMapped.getInt(COUNT_OFFSET);
+                }
+                if (mCount < 0 || HEADER_SIZE + (long) mCount * RECORD_SIZE > size) {
+                    mCount = 0;
+                }
+                mMapped.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(COUNT_OFFSET, mCount);
+                for (int i = 0; i < mCount; i++) {
+                    mNextId = Math.max(mNextId, mMapped.getInt(getOffset(i)) + 1);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Obtain the number of records in the file.
+         *
+         * @return Number of records.
+         */
+        int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Append a record.
+         *
+         * @param pose Pose relative to the reference anchor, {@link #POSE_SIZE} floats.
+         * @param scale Scale of the object relative to its initial size.
+         * @param yaw Rotation of the object around the up axis of its anchor, in degrees.
+         * @param color Color, {@link #COLOR_SIZE} floats.
+         * @param modelId Id of the model.
+         * @return Id of the record.
+         * @throws IOException If the file cannot grow.
+         */
+        int append(float[] pose, float scale, float yaw, float[] color, int modelId) throws IOException {
+            long end = HEADER_SIZE + (long) (mCount + 1) * RECORD_SIZE;
+            if (end > mMapped.capacity()) {
+                map(Math.max(end, 2L * mMapped.capacity()));
+            }
+            int id = mNextId++;
+            mMapped.position(getOffset(mCount));
+            mMapped.putInt(id);
+            for (int i = 0; i < POSE_SIZE; i++) {
+                mMapped.putFloat(pose[i]);
+            }
+            mMapped.putFloat(scale).putFloat(yaw);
+            for (int i = 0; i < COLOR_SIZE; i++) {
+                mMapped.putFloat(color[i]);
+            }
+            mMapped.putInt(modelId);
+            mCount++;
+            mMapped.putInt(COUNT_OFFSET, mCount);
+            return id;
+        }
+
+        /**
+         * Replace the pose, the scale and the yaw of a record, as when its object was moved,
+         * scaled or rotated.
+         *
+         * @param id Id of the record.
+         * @param pose Pose relative to the reference anchor, {@link #POSE_SIZE} floats.
+         * @param scale Scale of the object relative to its initial size.
+         * @param yaw Rotation of the object around the up axis of its anchor, in degrees.
+         * @return false if no record has this id.
+         */
+        boolean update(int id, float[] pose, float scale, float yaw) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            mMapped.position(getOffset(index) + 4);
+            for (int i = 0; i < POSE_SIZE; i++) {
+                mMapped.putFloat(pose[i]);
+            }
+            mMapped.putFloat(scale).putFloat(yaw);
+            return true;
+        }
+
+        /**
+         * Remove a record. The newer records keep their order.
+         *
+         * @param id Id of the record.
+         * @return false if no record has this id.
+         */
+        boolean remove(int id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            moveRecords(index + 1, index, mCount - index - 1);
+            mCount--;
+            mMapped.putInt(COUNT_OFFSET, mCount);
+            return true;
+        }
+
+        /**
+         * Keep only the newest records and drop the older ones.
+         *
+         * @param count Number of records to keep.
+         */
+        void retainNewest(int count) {
+            if (count >= mCount) {
+                return;
+            }
+            int dropped = mCount - Math.max(count, 0);
+            moveRecords(dropped, 0, mCount - dropped);
+            mCount -= dropped;
+            mMapped.putInt(COUNT_OFFSET, mCount);
+        }
+
+        /**
+         * Flush the mapping to the storage device and close the file.
+         *
+         * @throws IOException If the file cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (mMapped != null) {
+                mMapped.force();
+            }
+            mChannel.close();
+            mFile.close();
+        }
+
+        // Records are only scanned when a gesture ends or an object is removed, which is rare.
+        private int indexOf(int id) {
+            for (int i = 0; i < mCount; i++) {
+                if (mMapped.getInt(getOffset(i)) == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Move records to a lower index, copying the first one first.
+        private void moveRecords(int from, int to, int count) {
+            for (int j = 0; j < count * RECORD_SIZE; j += 4) {
+                mMapped.putInt(getOffset(to) + j, mMapped.getInt(getOffset(from) + j));
+            }
+        }
+
+        private static int getOffset(int index) {
+            return HEADER_SIZE + index * RECORD_SIZE;
+        }
+
+        private void map(long size) throws IOException {
+            mMapped = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mMapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Saves the placed objects to a {@link SceneFile} and restores them on the next launch. All
+ * file access runs on one background thread in submission order, so saving never blocks the
+ * GL thread, and a save that is requested during a restore is applied after it.
+ * <p>
+ * The GL thread refers to the objects by their handles in the {@link ObjectStore}. The store
+ * keeps the id of the record of each handle on the background thread, so that the record is
+ * updated and removed with the object.
+ */
+class SceneStore {
+    private static final String TAG = SceneStore.class.getSimpleName();
+
+    private final File mFile;
+
+    private final ExecutorService mExecutor;
+
+    // Only used on the background thread.
+    private SceneFile.Writer mWriter;
+
+    private boolean mIsWriterFailed;
+
+    // Record ids by object handle, only used on the background thread.
+    private final Map<Integer, Integer> mRecordIds = new HashMap<>();
+
+    /**
+     * Create a scene store with a single background thread.
+     *
+     * @param file Scene file.
+     */
+    SceneStore(File file) {
+        mFile = file;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Obtain the background thread of the store. {@link #restore(int)} must run on it.
+     *
+     * @return Executor of the store.
+     */
+    Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Read the saved objects, and drop all but the newest from the file. This method must
+     * run on {@link #getExecutor()}.
+     *
+     * @param maxCount Maximum number of objects to restore.
+     * @return The newest saved objects, possibly none.
+     */
+    SceneFile.Records restore(int maxCount) {
+        SceneFile.Records records = null;
+        try {
+            records = SceneFile.read(mFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Read scene failed.");
+        }
+        SceneFile.Writer writer = getWriter();
+        if (writer != null) {
+            writer.retainNewest(maxCount);
+        }
+        return records == null ? new SceneFile.Records(0) : records.getNewest(maxCount);
+    }
+
+    /**
+     * Append a placed object to the file in the background.
+     *
+     * @param handle Handle of the object.
+     * @param pose Pose relative to the reference anchor, {@link SceneFile#POSE_SIZE} floats.
+     * @param scale Scale of the object relative to its initial size.
+     * @param yaw Rotation of the object around the up axis of its anchor, in degrees.
+     * @param color Color, {@link SceneFile#COLOR_SIZE} floats.
+     * @param modelId Id of the model.
+     */
+    void save(final int handle, float[] pose, final float scale, final float yaw, float[] color,
+            final int modelId) {
+        final float[] poseCopy = pose.clone();
+        final float[] colorCopy = color.clone();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SceneFile.Writer writer = getWriter();
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    mRecordIds.put(handle, writer.append(poseCopy, scale, yaw, colorCopy, modelId));
+                } catch (IOException e) {
+                    Log.w(TAG, "Save object failed.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Tie a restored object to its record, so that the record is removed with the object.
+     *
+     * @param handle Handle of the object.
+     * @param recordId Id of the record, from {@link SceneFile.Records#ids}.
+     */
+    void keep(final int handle, final int recordId) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRecordIds.put(handle, recordId);
+            }
+        });
+    }
+
+    /**
+     * Replace the saved pose, scale and yaw of an object in the background.
+     *
+     * @param handle Handle of the object; a handle without a record is ignored.
+     * @param pose Pose relative to the reference anchor, {@link SceneFile#POSE_SIZE} floats.
+     * @param scale Scale of the object relative to its initial size.
+     * @param yaw Rotation of the object around the up axis of its anchor, in degrees.
+     */
+    void update(final int handle, float[] pose, final float scale, final float yaw) {
+        final float[] poseCopy = pose.clone();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Integer recordId = mRecordIds.get(handle);
+                SceneFile.Writer writer = getWriter();
+                if (recordId != null && writer != null) {
+                    writer.update(recordId, poseCopy, scale, yaw);
+                }
+            }
+        });
+    }
+
+    /**
+     * Remove the record of an object from the file in the background.
+     *
+     * @param handle Handle of the object; a handle without a record is ignored.
+     */
+    void remove(final int handle) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Integer recordId = mRecordIds.remove(handle);
+                SceneFile.Writer writer = getWriter();
+                if (recordId != null && writer != null) {
+                    writer.remove(recordId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finish the queued saves, close the file and stop the background thread.
+     */
+    void close() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mWriter == null) {
+                    return;
+                }
+                try {
+                    mWriter.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Close scene failed.");
+                }
+                mWriter = null;
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    private SceneFile.Writer getWriter() {
+        if (mWriter == null && !mIsWriterFailed) {
+            try {
+                mWriter = new SceneFile.Writer(mFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Open scene failed.");
+                mIsWriterFailed = true;
+            }
+        }
+        return mWriter;
+    }
+}
@@ -0,0 +1,162 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Several images packed into one mipmapped texture, with the texture coordinates of each
+ * image. Images are placed left to right on shelves, in the given order, and surrounded by
+ * a border that repeats their edge pixels, so that filtering and the first mip levels do not
+ * bleed neighboring images in. The atlas size is a power of two in both directions, which
+ * OpenGL ES 2.0 requires for mipmapping.
+ * <p>
+ * The region table is stored next to the cached texture, in a file that consists of a magic,
+ * the key (long), the region count and four floats per region, big-endian.
+ */
+class TextureAtlas {
+    /**
+     * Border around each image, in pixels.
+     */
+    static final int PADDING = 8;
+
+    /**
+     * Each region is stored as u0, v0, u1, v1.
+     */
+    static final int REGION_SIZE = 4;
+
+    private static final int REGIONS_MAGIC = 0x41524D52;
+
+    final TextureData texture;
+
+    final float[] regions;
+
+    TextureAtlas(TextureData texture, float[] regions) {
+        this.texture = texture;
+        this.regions = regions;
+    }
+
+    /**
+     * Pack images into an atlas.
+     *
+     * @param images ARGB pixels of each image.
+     * @param widths Width of each image.
+     * @param heights Height of each image.
+     * @return The atlas, with one region per image in the same order.
+     */
+    static TextureAtlas pack(int[][] images, int[] widths, int[] heights) {
+        int count = images.length;
+        int maxWidth = 1;
+        long area = 0;
+        for (int i = 0; i < count; i++) {
+            maxWidth = Math.max(maxWidth, widths[i] + 2 * PADDING);
+            area += (long) (widths[i] + 2 * PADDING) * (heights[i] + 2 * PADDING);
+        }
+        int atlasWidth = nextPowerOfTwo(Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area))));
+
+        // Place the images on shelves.
+        int[] lefts = new int[count];
+        int[] tops = new int[count];
+        int x = 0;
+        int shelfTop = 0;
+        int shelfHeight = 0;
+        for (int i = 0; i < count; i++) {
+            int paddedWidth = widths[i] + 2 * PADDING;
+            if (x + paddedWidth > atlasWidth) {
+                x = 0;
+                shelfTop += shelfHeight;
+                shelfHeight = 0;
+            }
+            lefts[i] = x;
+            tops[i] = shelfTop;
+            x += paddedWidth;
+            shelfHeight = Math.max(shelfHeight, heights[i] + 2 * PADDING);
+        }
+        int atlasHeight = nextPowerOfTwo(shelfTop + shelfHeight);
+
+        int[] pixels = new int[atlasWidth * atlasHeight];
+        float[] regions = new float[count * REGION_SIZE];
+        for (int i = 0; i < count; i++) {
+            copyPadded(images[i], widths[i], heights[i], pixels, atlasWidth, lefts[i], tops[i]);
+            regions[i * REGION_SIZE] = (float) (lefts[i] + PADDING) / atlasWidth;
+            regions[i * REGION_SIZE + 1] = (float) (tops[i] + PADDING) / atlasHeight;
+            regions[i * REGION_SIZE + 2] = (float) (lefts[i] + PADDING + widths[i]) / atlasWidth;
+            regions[i * REGION_SIZE + 3] = (float) (tops[i] + PADDING + heights[i]) / atlasHeight;
+        }
+        return new TextureAtlas(TextureData.fromArgb(pixels, atlasWidth, atlasHeight), regions);
+    }
+
+    /**
+     * Write the region table.
+     *
+     * @param regions Regions of the atlas.
+     * @param key Key of the atlas texture, checked by {@link #readRegions(File, long)}.
+     * @param file Destination file.
+     * @throws IOException If the file cannot be written.
+     */
+    static void writeRegions(float[] regions, long key, File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(REGIONS_MAGIC);
+            output.writeLong(key);
+            output.writeInt(regions.length / REGION_SIZE);
+            for (float value : regions) {
+                output.writeFloat(value);
+            }
+        }
+    }
+
+    /**
+     * Read a region table.
+     *
+     * @param file Region file.
+     * @param key Expected key of the atlas texture.
+     * @return The regions, or null if the file is missing, stale or malformed.
+     * @throws IOException If the file cannot be read.
+     */
+    static float[] readRegions(File file, long key) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < 16 || input.readInt() != REGIONS_MAGIC || input.readLong() != key) {
+                return null;
+            }
+            int count = input.readInt();
+            if (count < 0 || file.length() != 16 + (long) count * REGION_SIZE * 4) {
+                return null;
+            }
+            float[] regions = new float[count * REGION_SIZE];
+            for (int i = 0; i < regions.length; i++) {
+                regions[i] = input.readFloat();
+            }
+            return regions;
+        }
+    }
+
+    private static void copyPadded(int[] image, int width, int height, int[] atlas, int atlasWidth, int left,
+                                   int top) {
+        int paddedWidth = width + 2 * PADDING;
+        int paddedHeight = height + 2 * PADDING;
+        for (int y = 0; y < paddedHeight; y++) {
+            int sourceY = Math.min(Math.max(y - PADDING, 0), height - 1);
+            int row = (top + y) * atlasWidth + left;
+            for (int x = 0; x < paddedWidth; x++) {
+                int sourceX = Math.min(Math.max(x - PADDING, 0), width - 1);
+                atlas[row + x] = image[sourceY * width + sourceX];
+            }
+        }
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int result = 1;
+        while (result < value) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import android.graphics.Bitmap;
+import android.opengl.ETC1;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Caches the mip chains of textures in the app cache directory, so that later launches
+ * memory-map the levels instead of decoding the source and generating mipmaps again.
+ * These methods do file I/O and must not be called on the GL thread.
+ */
+class TextureCache {
+    private static final String TAG = TextureCache.class.getSimpleName();
+
+    private static final String FILE_EXTENSION = ".tex";
+
+    private static final String REGIONS_FILE_EXTENSION = ".uv";
+
+    private static final int RGB565_PIXEL_SIZE = 2;
+
+    private TextureCache() {
+    }
+
+    /**
+     * Read a cached texture.
+     *
+     * @param cacheDir Cache directory of the app.
+     * @param name Name of the cached texture.
+     * @param key Key of the source, see {@link TextureFile#createKey(long, String)}.
+     * @return The texture, or null if it is not cached or the cache is stale.
+     */
+    static TextureData read(File cacheDir, String name, long key) {
+        try {
+            return TextureFile.read(new File(cacheDir, name + FILE_EXTENSION), key);
+        } catch (IOException e) {
+            Log.w(TAG, "Read texture cache failed.");
+            return null;
+        }
+    }
+
+    /**
+     * Build the mip chain of a bitmap and store it in the cache.
+     *
+     * @param cacheDir Cache directory of the app.
+     * @param name Name of the cached texture.
+     * @param key Key of the source, see {@link TextureFile#createKey(long, String)}.
+     * @param bitmap Source bitmap. It is not recycled.
+     * @param isEtc1Supported Whether the levels are compressed to ETC1.
+     * @return The texture.
+     */
+    static TextureData create(File cacheDir, String name, long key, Bitmap bitmap, boolean isEtc1Supported) {
+        TextureData texture = TextureData.fromArgb(getPixels(bitmap), bitmap.getWidth(), bitmap.getHeight());
+        if (isEtc1Supported) {
+            texture = compressEtc1(texture);
+        }
+        try {
+            TextureFile.write(texture, key, new File(cacheDir, name + FILE_EXTENSION));
+        } catch (IOException e) {
+            Log.w(TAG, "Write texture cache failed.");
+        }
+        return texture;
+    }
+
+    /**
+     * Read a cached texture atlas and its region table.
+     *
+     * @param cacheDir Cache directory of the app.
+     * @param name Name of the cached atlas.
+     * @param key Key of the sources, see {@link TextureFile#createKey(long, String)}.
+     * @return The atlas, or null if it is not cached or the cache is stale.
+     */
+    static TextureAtlas readAtlas(File cacheDir, String name, long key) {
+        try {
+            float[] regions = TextureAtlas.readRegions(new File(cacheDir, name + REGIONS_FILE_EXTENSION), key);
+            if (regions == null) {
+                return null;
+            }
+            TextureData texture = TextureFile.read(new File(cacheDir, name + FILE_EXTENSION), key);
+            return texture == null ? null : new TextureAtlas(texture, regions);
+        } catch (IOException e) {
+            Log.w(TAG, "Read texture atlas cache failed.");
+            return null;
+        }
+    }
+
+    /**
+     * Pack bitmaps into an atlas and store it in the cache.
+     *
+     * @param cacheDir Cache directory of the app.
+     * @param name Name of the cached atlas.
+     * @param key Key of the sources, see {@link TextureFile#createKey(long, String)}.
+     * @param bitmaps Source bitmaps. They are not recycled.
+     * @return The atlas, with one region per bitmap.
+     */
+    static TextureAtlas createAtlas(File cacheDir, String name, long key, List<Bitmap> bitmaps) {
+        int[][] images = new int[bitmaps.size()][];
+        int[] widths = new int[bitmaps.size()];
+        int[] heights = new int[bitmaps.size()];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = getPixels(bitmaps.get(i));
+            widths[i] = bitmaps.get(i).getWidth();
+            heights[i] = bitmaps.get(i).getHeight();
+        }
+        TextureAtlas atlas = TextureAtlas.pack(images, widths, heights);
+        try {
+            TextureFile.write(atlas.texture, key, new File(cacheDir, name + FILE_EXTENSION));
+            TextureAtlas.writeRegions(atlas.regions, key, new File(cacheDir, name + REGIONS_FILE_EXTENSION));
+        } catch (IOException e) {
+            Log.w(TAG, "Write texture atlas cache failed.");
+        }
+        return atlas;
+    }
+
+    private static int[] getPixels(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        return pixels;
+    }
+
+    private static TextureData compressEtc1(TextureData texture) {
+        ByteBuffer[] levels = new ByteBuffer[texture.levels.length];
+        for (int level = 0; level < levels.length; level++) {
+            int width = TextureData.getLevelSize(texture.width, level);
+            int height = TextureData.getLevelSize(texture.height, level);
+            levels[level] = ByteBuffer.allocateDirect(ETC1.getEncodedDataSize(width, height))
+                    .order(ByteOrder.nativeOrder());
+            ETC1.encodeImage(texture.levels[level], width, height, RGB565_PIXEL_SIZE, width * RGB565_PIXEL_SIZE,
+                    levels[level]);
+        }
+        return new TextureData(texture.width, texture.height, TextureData.FORMAT_ETC1, levels);
+    }
+}
@@ -0,0 +1,205 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import android.opengl.GLES20;
+
+import com.vsm.myarapplication.common.GlApi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A texture with its complete mip chain, ready to be uploaded level by level. The levels are
+ * either RGB565 pixels in native byte order or ETC1 blocks, which both take less GPU
+ * memory than the RGBA8888 textures that GLUtils.texImage2D creates. The alpha channel is
+ * dropped: the label shader ignores it, and objects are drawn without blending.
+ */
+class TextureData {
+    /**
+     * Uncompressed 16-bit RGB565 pixels.
+     */
+    static final int FORMAT_RGB565 = 1;
+
+    /**
+     * ETC1 compressed blocks, 8 bytes per 4 * 4 pixels.
+     */
+    static final int FORMAT_ETC1 = 2;
+
+    /**
+     * Enough levels for a texture of 32768 * 32768 pixels.
+     */
+    static final int MAX_LEVEL_COUNT = 16;
+
+    /**
+     * GL_ETC1_RGB8_OES of the OES_compressed_ETC1_RGB8_texture extension.
+     */
+    static final int GL_ETC1_RGB8_OES = 0x8D64;
+
+    private static final int RGB565_PIXEL_SIZE = 2;
+
+    private static final int ETC1_BLOCK_SIZE = 8;
+
+    private static final int DEFAULT_UNPACK_ALIGNMENT = 4;
+
+    final int width;
+
+    final int height;
+
+    final int format;
+
+    final ByteBuffer[] levels;
+
+    TextureData(int width, int height, int format, ByteBuffer[] levels) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.levels = levels;
+    }
+
+    /**
+     * Build the RGB565 mip chain of an image. Each level is a 2 * 2 box filter of the level
+     * above it, down to 1 * 1 pixel.
+     *
+     * @param pixels ARGB pixels of the image, as returned by Bitmap.getPixels.
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @return The texture.
+     */
+    static TextureData fromArgb(int[] pixels, int width, int height) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Invalid image size " + width + " * " + height);
+        }
+        int levelCount = getLevelCount(width, height);
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        int[] level = pixels;
+        levels[0] = toRgb565(level, width, height);
+        for (int i = 1; i < levelCount; i++) {
+            level = downsample(level, getLevelSize(width, i - 1), getLevelSize(height, i - 1));
+            levels[i] = toRgb565(level, getLevelSize(width, i), getLevelSize(height, i));
+        }
+        return new TextureData(width, height, FORMAT_RGB565, levels);
+    }
+
+    /**
+     * Get the number of levels of a complete mip chain.
+     *
+     * @param width Width of the base level.
+     * @param height Height of the base level.
+     * @return Number of levels, including the base level.
+     */
+    static int getLevelCount(int width, int height) {
+        int size = Math.max(width, height);
+        int count = 1;
+        while (size > 1) {
+            size >>= 1;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the width or height of a mip level.
+     *
+     * @param baseSize Width or height of the base level.
+     * @param level Mip level.
+     * @return Size of the level, at least 1.
+     */
+    static int getLevelSize(int baseSize, int level) {
+        return Math.max(1, baseSize >> level);
+    }
+
+    /**
+     * Get the number of bytes of one level.
+     *
+     * @param format {@link #FORMAT_RGB565} or {@link #FORMAT_ETC1}.
+     * @param width Width of the level.
+     * @param height Height of the level.
+     * @return Size of the level in bytes, or -1 for an unknown format.
+     */
+    static int getLevelByteCount(int format, int width, int height) {
+        switch (format) {
+            case FORMAT_RGB565:
+                return width * height * RGB565_PIXEL_SIZE;
+            case FORMAT_ETC1:
+                return ((width + 3) / 4) * ((height + 3) / 4) * ETC1_BLOCK_SIZE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Get the GPU memory used by all levels.
+     *
+     * @return Size in bytes.
+     */
+    int getByteCount() {
+        int count = 0;
+        for (ByteBuffer level : levels) {
+            count += level.remaining();
+        }
+        return count;
+    }
+
+    /**
+     * Upload all levels to the texture bound to GL_TEXTURE_2D. This method must be called on
+     * the GL thread.
+     *
+     * @param gl OpenGL commands.
+     */
+    void upload(GlApi gl) {
+        // RGB565 rows of odd width are not 4-byte aligned.
+        gl.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, RGB565_PIXEL_SIZE);
+        for (int level = 0; level < levels.length; level++) {
+            int levelWidth = getLevelSize(width, level);
+            int levelHeight = getLevelSize(height, level);
+            if (format == FORMAT_ETC1) {
+                gl.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, GL_ETC1_RGB8_OES, levelWidth, levelHeight, 0,
+                        levels[level].remaining(), levels[level]);
+            } else {
+                gl.glTexImage2D(GLES20.GL_TEXTURE_2D, level, GLES20.GL_RGB, levelWidth, levelHeight, 0,
+                        GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, levels[level]);
+            }
+        }
+        gl.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, DEFAULT_UNPACK_ALIGNMENT);
+    }
+
+    private static int[] downsample(int[] pixels, int width, int height) {
+        int levelWidth = Math.max(1, width >> 1);
+        int levelHeight = Math.max(1, height >> 1);
+        int[] level = new int[levelWidth * levelHeight];
+        for (int y = 0; y < levelHeight; y++) {
+            int top = Math.min(y * 2, height - 1) * width;
+            int bottom = Math.min(y * 2 + 1, height - 1) * width;
+            for (int x = 0; x < levelWidth; x++) {
+                int left = Math.min(x * 2, width - 1);
+                int right = Math.min(x * 2 + 1, width - 1);
+                level[y * levelWidth + x] = average(pixels[top + left], pixels[top + right],
+                        pixels[bottom + left], pixels[bottom + right]);
+            }
+        }
+        return level;
+    }
+
+    private static int average(int first, int second, int third, int fourth) {
+        int result = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int sum = ((first >> shift) & 0xFF) + ((second >> shift) & 0xFF) + ((third >> shift) & 0xFF)
+                    + ((fourth >> shift) & 0xFF);
+            result |= ((sum + 2) >> 2) << shift;
+        }
+        return result;
+    }
+
+    private static ByteBuffer toRgb565(int[] pixels, int width, int height) {
+        ByteBuffer level = ByteBuffer.allocateDirect(width * height * RGB565_PIXEL_SIZE)
+                .order(ByteOrder.nativeOrder());
+        for (int i = 0; i < width * height; i++) {
+            int pixel = pixels[i];
+            int red = ((pixel >> 16) & 0xFF) * 31 + 127;
+            int green = ((pixel >> 8) & 0xFF) * 63 + 127;
+            int blue = (pixel & 0xFF) * 31 + 127;
+            level.putShort((short) (((red / 255) << 11) | ((green / 255) << 5) | (blue / 255)));
+        }
+        level.flip();
+        return level;
+    }
+}
@@ -0,0 +1,169 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes the container format used to cache mipmapped textures. The file is
+ * little-endian and consists of a fixed-size header followed by the levels of the mip chain,
+ * largest first, without padding.
+ * <p>
+ * Header layout: magic, version, key (long), format, width, height, the number of levels and
+ * the byte count of each level ({@link TextureData#MAX_LEVEL_COUNT} ints).
+ */
+class TextureFile {
+    /**
+     * "ARMT" in little-endian byte order.
+     */
+    static final int MAGIC = 0x544D5241;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 * 4 + TextureData.MAX_LEVEL_COUNT * 4;
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private TextureFile() {
+    }
+
+    /**
+     * Create the key of a cached texture from everything its pixels depend on.
+     *
+     * @param sourceStamp Stamp of the installed package, which contains the source assets.
+     * @param source Description of the source, such as the asset name and the output format.
+     * @return 64-bit FNV-1a hash of the stamp and the description.
+     */
+    static long createKey(long sourceStamp, String source) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((sourceStamp >>> shift) & 0xFF)) * FNV_PRIME;
+        }
+        for (byte value : source.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Write the texture to the file, replacing any existing content.
+     *
+     * @param texture Texture to write.
+     * @param key Key of the texture, checked by {@link #read(File, long)}.
+     * @param file Destination file.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(TextureData texture, long key, File file) throws IOException {
+        if (texture.levels.length > TextureData.MAX_LEVEL_COUNT) {
+            throw new IOException("Too many levels: " + texture.levels.length);
+        }
+        ByteBuffer[] blocks = new ByteBuffer[texture.levels.length + 1];
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(key)
+                .putInt(texture.format).putInt(texture.width).putInt(texture.height).putInt(texture.levels.length);
+        long total = HEADER_SIZE;
+        for (int i = 0; i < TextureData.MAX_LEVEL_COUNT; i++) {
+            int byteCount = i < texture.levels.length ? texture.levels[i].remaining() : 0;
+            header.putInt(byteCount);
+            total += byteCount;
+        }
+        header.flip();
+        blocks[0] = header;
+        for (int i = 0; i < texture.levels.length; i++) {
+            blocks[i + 1] = littleEndianBlock(texture.levels[i].duplicate(), texture.format);
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            channel.truncate(0);
+            long written = 0;
+            while (written < total) {
+                written += channel.write(blocks);
+            }
+        }
+    }
+
+    /**
+     * Memory-map a texture file. The returned levels are views of the mapping and can be
+     * passed directly to glTexImage2D or glCompressedTexImage2D.
+     *
+     * @param file Texture file.
+     * @param key Expected key of the texture.
+     * @return The texture, or null if the file is missing, stale or malformed.
+     * @throws IOException If the file cannot be read.
+     */
+    static TextureData read(File file, long key) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION || mapped.getLong() != key) {
+            return null;
+        }
+        int format = mapped.getInt();
+        int width = mapped.getInt();
+        int height = mapped.getInt();
+        int levelCount = mapped.getInt();
+        if (width <= 0 || height <= 0 || levelCount != TextureData.getLevelCount(width, height)
+                || levelCount > TextureData.MAX_LEVEL_COUNT) {
+            return null;
+        }
+        int[] byteCounts = new int[levelCount];
+        long total = HEADER_SIZE;
+        for (int i = 0; i < levelCount; i++) {
+            byteCounts[i] = mapped.getInt();
+            int expected = TextureData.getLevelByteCount(format,
+                    TextureData.getLevelSize(width, i), TextureData.getLevelSize(height, i));
+            if (expected < 0 || byteCounts[i] != expected) {
+                return null;
+            }
+            total += byteCounts[i];
+        }
+        if (total > mapped.capacity()) {
+            return null;
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < levelCount; i++) {
+            mapped.limit(offset + byteCounts[i]);
+            mapped.position(offset);
+            levels[i] = nativeBlock(mapped.slice(), format);
+            offset += byteCounts[i];
+        }
+        return new TextureData(width, height, format, levels);
+    }
+
+    // RGB565 pixels are 16-bit values in native order; ETC1 blocks are bytes and never swapped.
+    private static ByteBuffer littleEndianBlock(ByteBuffer level, int format) {
+        if (format != TextureData.FORMAT_RGB565 || ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return level;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(level.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        copy.asShortBuffer().put(level.order(ByteOrder.nativeOrder()).asShortBuffer());
+        return copy;
+    }
+
+    // The file is little-endian. On such hosts the mapping is used as is, otherwise it is copied once.
+    private static ByteBuffer nativeBlock(ByteBuffer block, int format) {
+        if (format != TextureData.FORMAT_RGB565 || ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return block.order(ByteOrder.nativeOrder());
+        }
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer copy = ByteBuffer.allocateDirect(block.remaining()).order(ByteOrder.nativeOrder());
+        copy.asShortBuffer().put(block.asShortBuffer());
+        return copy;
+    }
+}
@@ -6,11 +6,12 @@ import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.MotionEvent;
 import android.view.View;
 import android.widget.TextView;
 
+import com.huawei.hiar.ARAnchor;
 import com.huawei.hiar.ARCamera;
 import com.huawei.hiar.ARFrame;
 import com.huawei.hiar.ARHitResult;
@@ -21,21 +22,43 @@ import com.huawei.hiar.ARPose;
 import com.huawei.hiar.ARSession;
 import com.huawei.hiar.ARTrackable;
 import com.vsm.myarapplication.GestureEvent;
+import com.vsm.myarapplication.GestureRing;
 import com.vsm.myarapplication.R;
 import com.vsm.myarapplication.VirtualObject;
 import com.vsm.myarapplication.common.ArDemoRuntimeException;
+import com.vsm.myarapplication.common.AssetLoader;
 import com.vsm.myarapplication.common.DisplayRotationManager;
+import com.vsm.myarapplication.common.FrameProfiler;
+import com.vsm.myarapplication.common.GlApi;
+import com.vsm.myarapplication.common.GlStateCache;
+import com.vsm.myarapplication.common.Gles20Api;
+import com.vsm.myarapplication.common.MatrixUtil;
+import com.vsm.myarapplication.common.ProgramRegistry;
+import com.vsm.myarapplication.common.ShaderUtil;
 import com.vsm.myarapplication.common.TextDisplay;
 import com.vsm.myarapplication.common.TextureDisplay;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
+/**
+ * This class renders the world tracking scene: the camera background, the planes with their
+ * labels and the placed objects, which are moved, scaled and rotated by gestures.
+ * <p>
+ * The placed objects are saved with their poses relative to a reference anchor at the world
+ * origin of the session, which is where the device was when tracking started. A new session
+ * is not relocalized in the previous one, so restored objects are only at their previous
+ * places when the app starts from the same spot with the same orientation.
+ */
 public class WorldRenderManager implements GLSurfaceView.Renderer {
     private static final String TAG = WorldRenderManager.class.getSimpleName();
 
@@ -49,6 +72,40 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
 
     private static final float MATRIX_SCALE_SY = -1.0f;
 
+    // Label views in the order of the plane labels, which is the order of the atlas regions.
+    private static final int[] PLANE_LABEL_IDS = {
+        R.id.plane_other, R.id.plane_wall, R.id.plane_floor, R.id.plane_seat, R.id.plane_table, R.id.plane_ceiling
+    };
+
+    // Atlas of the label views, stored in the cache directory.
+    private static final String PLANE_LABEL_CACHE_NAME = "plane_labels";
+
+    // Placed objects, stored in the files directory so that they are restored on the next launch.
+    private static final String SCENE_FILE_NAME = "scene.bin";
+
+    // Id of the only object model in the scene file.
+    private static final int OBJECT_MODEL_ID = 0;
+
+    // Number of placed objects kept before the oldest is evicted, unless set by the constructor.
+    private static final int DEFAULT_MAX_OBJECTS = 1024;
+
+    // Stages of a frame, in the order of the profiler stage names.
+    private static final int STAGE_UPDATE = 0;
+
+    private static final int STAGE_BACKGROUND = 1;
+
+    private static final int STAGE_TRACKABLES = 2;
+
+    private static final int STAGE_PLANES = 3;
+
+    private static final int STAGE_LABELS = 4;
+
+    private static final int STAGE_GESTURES = 5;
+
+    private static final int STAGE_OBJECTS = 6;
+
+    private static final int STAGE_UI = 7;
+
     private static final float[] BLUE_COLORS = new float[]{66.0f, 133.0f, 244.0f, 255.0f};
 
     private static final float[] GREEN_COLORS = new float[]{66.0f, 133.0f, 244.0f, 255.0f};
@@ -63,34 +120,109 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
 
     private TextView mSearchingTextView;
 
-    private int frames = 0;
+    // Set by the GL thread once the searching message is hidden, so it is not posted every frame.
+    private boolean mIsLoadingMessageHidden = false;
+
+    private FrameProfiler mProfiler = new FrameProfiler("update", "background", "trackables", "planes", "labels",
+            "gestures", "objects", "ui");
 
-    private long lastInterval;
+    private TextureDisplay mTextureDisplay;
 
-    private float fps;
+    private final GlApi mGl;
 
-    private TextureDisplay mTextureDisplay = new TextureDisplay();
+    private final GlStateCache mGlState;
 
     private TextDisplay mTextDisplay = new TextDisplay();
 
-    private LabelDisplay mLabelDisplay = new LabelDisplay();
+    private PlaneDisplay mPlaneDisplay;
 
-    private ObjectDisplay mObjectDisplay = new ObjectDisplay();
+    private LabelDisplay mLabelDisplay;
+
+    private ObjectDisplay mObjectDisplay;
 
     private DisplayRotationManager mDisplayRotationManager;
 
-    private ArrayBlockingQueue<GestureEvent> mQueuedSingleTaps;
+    private GestureRing mGestureRing;
+
+    private ObjectStore<ARAnchor> mObjects;
+
+    private int mSelectedHandle = ObjectStore.NO_HANDLE;
+
+    // Scratch matrix for the anchor poses, reused to avoid per-frame allocation.
+    private float[] mAnchorMatrix = new float[16];
+
+    // Latest hit of the drag of the selected object. Its anchor is created when the drag ends.
+    private ARHitResult mDragHitResult;
+
+    // Pose of the dragged object relative to its anchor, which stays in place during the drag.
+    private float[] mDragOffsetMatrix = new float[16];
+
+    private float[] mDragMatrix = new float[16];
+
+    // Whether the selected object was scaled or rotated since its record was last saved.
+    private boolean mIsTransformChanged = false;
+
+    private AssetLoader mAssetLoader = new AssetLoader();
+
+    // The label atlas outlives the GL context, so a recreated surface only uploads it again.
+    private volatile TextureAtlas mPlaneLabelAtlas;
+
+    private SceneStore mSceneStore;
+
+    // Saved poses are relative to this anchor, which is created at the world origin of the session,
+    // so they only match the room when the next session starts from the same spot.
+    private ARAnchor mReferenceAnchor;
+
+    // Objects read from the scene file, placed once the camera is tracking.
+    private SceneFile.Records mRestoredScene;
+
+    private boolean mIsSceneRestored = false;
+
+    // Scratch array for saving an object, reused to avoid allocation on the GL thread.
+    private float[] mScenePose = new float[SceneFile.POSE_SIZE];
+
+    // The size of the projection matrix is 4 * 4.
+    private float[] mProjectionMatrix = new float[16];
+
+    // The size of ViewMatrix is 4 * 4.
+    private float[] mViewMatrix = new float[16];
+
+    private float[] mViewProjectionMatrix = new float[16];
 
-    private ArrayList<VirtualObject> mVirtualObjects = new ArrayList<>();
+    private Frustum mFrustum = new Frustum();
 
-    private VirtualObject mSelectedObj = null;
+    // Reused by updateMessageData, so the frame loop does not allocate a builder per frame.
+    private StringBuilder mMessageBuilder = new StringBuilder();
 
 
     public WorldRenderManager(Activity activity, Context context) {
+        this(activity, context, DEFAULT_MAX_OBJECTS);
+    }
+
+    /**
+     * Create a render manager that keeps a given number of placed objects. When more are
+     * placed, the oldest is removed.
+     *
+     * @param activity Activity that shows the scene.
+     * @param context Context.
+     * @param maxObjectCount Maximum number of placed objects.
+     */
+    public WorldRenderManager(Activity activity, Context context, int maxObjectCount) {
+        GlStateCache glState = new GlStateCache(new Gles20Api());
+        mGl = glState.getGlApi();
+        mGlState = glState;
+        mTextureDisplay = new TextureDisplay(glState);
+        mPlaneDisplay = new PlaneDisplay(glState);
+        mLabelDisplay = new LabelDisplay(glState);
+        mObjectDisplay = new ObjectDisplay(glState);
+        float[] localMatrix = new float[16];
+        VirtualObject.getLocalModelMatrix(localMatrix);
+        mObjects = new ObjectStore<>(maxObjectCount, localMatrix);
         mActivity = activity;
         mContext = context;
         mTextView = activity.findViewById(R.id.wordTextView);
         mSearchingTextView = activity.findViewById(R.id.searchingTextView);
+        mSceneStore = new SceneStore(new File(context.getFilesDir(), SCENE_FILE_NAME));
     }
 
     /**
@@ -128,16 +260,16 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
     }
 
     /**
-     * Set a gesture type queue.
+     * Set the ring that delivers the gestures. All pending gestures are handled in each frame.
      *
-     * @param queuedSingleTaps Gesture type queue.
+     * @param gestureRing Gesture ring, fed by the UI thread.
      */
-    public void setQueuedSingleTaps(ArrayBlockingQueue<GestureEvent> queuedSingleTaps) {
-        if (queuedSingleTaps == null) {
-            Log.e(TAG, "setSession error, arSession is null!");
+    public void setGestureRing(GestureRing gestureRing) {
+        if (gestureRing == null) {
+            Log.e(TAG, "setGestureRing error, gestureRing is null!");
             return;
         }
-        mQueuedSingleTaps = queuedSingleTaps;
+        mGestureRing = gestureRing;
     }
 
     /**
@@ -156,57 +288,103 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         // Set the window color.
-        GLES20.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGl.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
 
+        mGlState.invalidate();
+        ProgramRegistry.getDefault().setCacheDir(new File(mActivity.getCacheDir(), ProgramRegistry.CACHE_DIR_NAME));
+
+        // The programs of the previous surface are released before any display acquires one.
+        mTextureDisplay.releaseProgram();
+        mPlaneDisplay.releaseProgram();
+        mLabelDisplay.releaseProgram();
+        mObjectDisplay.releaseProgram();
         mTextureDisplay.init();
         mTextDisplay.setListener(new TextDisplay.OnTextInfoChangeListener() {
             @Override
-            public void textInfoChanged(String text, float positionX, float positionY) {
-                showWorldTypeTextView(text, positionX, positionY);
+            public void textInfoChanged(char[] text, int length, float positionX, float positionY) {
+                showWorldTypeTextView(text, length, positionX, positionY);
             }
         });
 
-        mLabelDisplay.init(getPlaneBitmaps());
+        // Assets are decoded off the GL thread, so the first camera frame does not wait for them.
+        mAssetLoader.reset();
+        mPlaneDisplay.init();
+        mLabelDisplay.init();
+        if (mPlaneLabelAtlas != null) {
+            mLabelDisplay.uploadAtlas(mPlaneLabelAtlas);
+        } else {
+            mAssetLoader.load(new Callable<TextureAtlas>() {
+                @Override
+                public TextureAtlas call() throws Exception {
+                    return getPlaneLabelAtlas();
+                }
+            }, new AssetLoader.Upload<TextureAtlas>() {
+                @Override
+                public void upload(TextureAtlas atlas) {
+                    mPlaneLabelAtlas = atlas;
+                    mLabelDisplay.uploadAtlas(atlas);
+                }
+            });
+        }
+
+        mObjectDisplay.init(mContext, mAssetLoader);
 
-        mObjectDisplay.init(mContext);
+        // A restore that was dropped by a recreated surface is started again.
+        if (!mIsSceneRestored) {
+            mAssetLoader.load(mSceneStore.getExecutor(), new Callable<SceneFile.Records>() {
+                @Override
+                public SceneFile.Records call() {
+                    return mSceneStore.restore(mObjects.getCapacity());
+                }
+            }, new AssetLoader.Upload<SceneFile.Records>() {
+                @Override
+                public void upload(SceneFile.Records records) {
+                    mRestoredScene = records;
+                    mIsSceneRestored = true;
+                }
+            });
+        }
     }
 
     /**
-     * Create a thread for text display in the UI thread. This thread will be called back in TextureDisplay.
+     * Stop loading assets and close the scene file after the pending saves. This method is
+     * called when the activity is destroyed, on the UI thread, so the shader programs are not
+     * released here; they are destroyed with the GL context of the surface.
+     */
+    public void release() {
+        mAssetLoader.shutdown();
+        mSceneStore.close();
+    }
+
+    /**
+     * Display the text. This method is called back by TextDisplay in the UI thread.
      *
-     * @param text      Gesture information displayed on the screen
+     * @param text Chars of the information displayed on the screen.
+     * @param length Number of chars to display.
      * @param positionX The left padding in pixels.
      * @param positionY The right padding in pixels.
      */
-    private void showWorldTypeTextView(final String text, final float positionX, final float positionY) {
-        mActivity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mTextView.setTextColor(Color.WHITE);
+    private void showWorldTypeTextView(char[] text, int length, float positionX, float positionY) {
+        mTextView.setTextColor(Color.WHITE);
 
-                // Set the font size to be displayed on the screen.
-                mTextView.setTextSize(10f);
-                if (text != null) {
-                    mTextView.setText(text);
-                    mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
-                } else {
-                    mTextView.setText("");
-                }
-            }
-        });
+        // Set the font size to be displayed on the screen.
+        mTextView.setTextSize(10f);
+        mTextView.setText(text, 0, length);
+        mTextView.setPadding((int) positionX, (int) positionY, 0, 0);
     }
 
     @Override
     public void onSurfaceChanged(GL10 unused, int width, int height) {
         mTextureDisplay.onSurfaceChanged(width, height);
-        GLES20.glViewport(0, 0, width, height);
+        mGl.glViewport(0, 0, width, height);
         mDisplayRotationManager.updateViewportRotation(width, height);
         mObjectDisplay.setSize(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mAssetLoader.processUploads();
 
         if (mSession == null) {
             return;
@@ -215,69 +393,141 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
             mDisplayRotationManager.updateArSessionDisplayGeometry(mSession);
         }
 
+        mProfiler.beginFrame();
+        ShaderUtil.beginGlFrame();
         try {
+            mProfiler.begin(STAGE_UPDATE);
             mSession.setCameraTextureName(mTextureDisplay.getExternalTextureId());
             ARFrame arFrame = mSession.update();
-            ARCamera arCamera = arFrame.getCamera();
 
-            // The size of the projection matrix is 4 * 4.
-            float[] projectionMatrix = new float[16];
+            // The session binds the camera texture, so the state of the last frame is unknown.
+            mGlState.beginFrame();
+            mProfiler.end(STAGE_UPDATE);
+            ARCamera arCamera = arFrame.getCamera();
 
+            float[] projectionMatrix = mProjectionMatrix;
             arCamera.getProjectionMatrix(projectionMatrix, PROJ_MATRIX_OFFSET, PROJ_MATRIX_NEAR, PROJ_MATRIX_FAR);
+            mProfiler.begin(STAGE_BACKGROUND);
             mTextureDisplay.onDrawFrame(arFrame);
-            StringBuilder sb = new StringBuilder();
-            updateMessageData(sb);
-            mTextDisplay.onDrawFrame(sb);
+            mProfiler.end(STAGE_BACKGROUND);
 
-            // The size of ViewMatrix is 4 * 4.
-            float[] viewMatrix = new float[16];
+            mProfiler.begin(STAGE_TRACKABLES);
+            float[] viewMatrix = mViewMatrix;
             arCamera.getViewMatrix(viewMatrix, 0);
-            for (ARPlane plane : mSession.getAllTrackables(ARPlane.class)) {
-                if (plane.getType() != ARPlane.PlaneType.UNKNOWN_FACING
-                        && plane.getTrackingState() == ARTrackable.TrackingState.TRACKING) {
-                    hideLoadingMessage();
-                    break;
+            MatrixUtil.multiplyMM(mViewProjectionMatrix, projectionMatrix, viewMatrix);
+            mFrustum.set(mViewProjectionMatrix);
+            Collection<ARPlane> allPlanes = mSession.getAllTrackables(ARPlane.class);
+            if (!mIsLoadingMessageHidden) {
+                for (ARPlane plane : allPlanes) {
+                    if (plane.getType() != ARPlane.PlaneType.UNKNOWN_FACING
+                            && plane.getTrackingState() == ARTrackable.TrackingState.TRACKING) {
+                        hideLoadingMessage();
+                        break;
+                    }
                 }
             }
-            mLabelDisplay.onDrawFrame(mSession.getAllTrackables(ARPlane.class), arCamera.getDisplayOrientedPose(),
-                    projectionMatrix);
-            handleGestureEvent(arFrame, arCamera, projectionMatrix, viewMatrix);
+            mProfiler.end(STAGE_TRACKABLES);
+            mProfiler.begin(STAGE_PLANES);
+            mPlaneDisplay.onDrawFrame(allPlanes, viewMatrix, projectionMatrix, mFrustum);
+            mProfiler.end(STAGE_PLANES);
+            mProfiler.begin(STAGE_LABELS);
+            mLabelDisplay.onDrawFrame(allPlanes, arCamera.getDisplayOrientedPose(), projectionMatrix, mFrustum);
+            mProfiler.end(STAGE_LABELS);
+            mProfiler.begin(STAGE_GESTURES);
+            if (arCamera.getTrackingState() == ARTrackable.TrackingState.TRACKING) {
+                placeRestoredObjects();
+            }
+            handleGestureEvents(arFrame, arCamera, projectionMatrix, viewMatrix);
             ARLightEstimate lightEstimate = arFrame.getLightEstimate();
             float lightPixelIntensity = 1;
             if (lightEstimate.getState() != ARLightEstimate.State.NOT_VALID) {
                 lightPixelIntensity = lightEstimate.getPixelIntensity();
             }
+            mProfiler.end(STAGE_GESTURES);
+            mProfiler.begin(STAGE_OBJECTS);
             drawAllObjects(projectionMatrix, viewMatrix, lightPixelIntensity);
+            mProfiler.end(STAGE_OBJECTS);
+            mGestureRing.onFrameSubmitted(SystemClock.uptimeMillis());
+
+            // Updated after drawing, so that the culling counters belong to this frame.
+            mProfiler.begin(STAGE_UI);
+            mMessageBuilder.setLength(0);
+            updateMessageData(mMessageBuilder);
+            mTextDisplay.onDrawFrame(mMessageBuilder);
+            mProfiler.end(STAGE_UI);
         } catch (ArDemoRuntimeException e) {
             Log.e(TAG, "Exception on the ArDemoRuntimeException!");
         } catch (Throwable t) {
             // This prevents the app from crashing due to unhandled exceptions.
             Log.e(TAG, "Exception on the OpenGL thread: ", t);
+        } finally {
+            ShaderUtil.endGlFrame(TAG);
+            mProfiler.endFrame();
         }
+        mProfiler.logReportIfDue(TAG);
     }
 
     private void drawAllObjects(float[] projectionMatrix, float[] viewMatrix, float lightPixelIntensity) {
-        Iterator<VirtualObject> ite = mVirtualObjects.iterator();
-        while (ite.hasNext()) {
-            VirtualObject obj = ite.next();
-            if (obj.getAnchor().getTrackingState() == ARTrackable.TrackingState.STOPPED) {
-                ite.remove();
+        // Walk backwards, so an object removed from the store is replaced by one already visited.
+        for (int i = mObjects.size() - 1; i >= 0; i--) {
+            ARAnchor anchor = mObjects.getAnchor(i);
+            ARTrackable.TrackingState trackingState = anchor.getTrackingState();
+            if (trackingState == ARTrackable.TrackingState.STOPPED) {
+                mSceneStore.remove(mObjects.getHandle(i));
+                mObjects.removeAt(i);
+                anchor.detach();
+                continue;
             }
-            if (obj.getAnchor().getTrackingState() == ARTrackable.TrackingState.TRACKING) {
-                mObjectDisplay.onDrawFrame(viewMatrix, projectionMatrix, lightPixelIntensity, obj);
+            boolean isTracking = trackingState == ARTrackable.TrackingState.TRACKING;
+            if (isTracking) {
+                anchor.getPose().toMatrix(mAnchorMatrix, 0);
+                if (mDragHitResult != null && mObjects.getHandle(i) == mSelectedHandle) {
+                    MatrixUtil.multiplyMM(mDragMatrix, mAnchorMatrix, mDragOffsetMatrix);
+                    mObjects.setAnchorMatrix(i, mDragMatrix);
+                } else {
+                    mObjects.setAnchorMatrix(i, mAnchorMatrix);
+                }
+            }
+            mObjects.setVisible(i, isTracking);
+        }
+        mObjectDisplay.onDrawFrame(viewMatrix, projectionMatrix, lightPixelIntensity, mObjects, mFrustum);
+    }
+
+    // Runs on the asset loader thread. The views are only drawn when the cached atlas is stale.
+    private TextureAtlas getPlaneLabelAtlas() throws ExecutionException, InterruptedException {
+        // The label views are laid out from package resources, so their pixels only change
+        // with the package, the locale, the screen density or the font scale.
+        String labelConfig = Locale.getDefault().toLanguageTag() + " "
+                + mContext.getResources().getDisplayMetrics().densityDpi + " "
+                + mContext.getResources().getConfiguration().fontScale;
+        long key = TextureFile.createKey(AssetLoader.getSourceStamp(mContext),
+                PLANE_LABEL_CACHE_NAME + " " + labelConfig);
+        TextureAtlas atlas = TextureCache.readAtlas(mContext.getCacheDir(), PLANE_LABEL_CACHE_NAME, key);
+        if (atlas != null) {
+            return atlas;
+        }
+        List<Bitmap> bitmaps = new ArrayList<>(PLANE_LABEL_IDS.length);
+        for (int id : PLANE_LABEL_IDS) {
+            Bitmap bitmap = getPlaneBitmapOnUiThread(id);
+            if (bitmap == null) {
+                Log.e(TAG, "Draw plane label failed!");
+                return null;
             }
+            bitmaps.add(bitmap);
         }
+        return TextureCache.createAtlas(mContext.getCacheDir(), PLANE_LABEL_CACHE_NAME, key, bitmaps);
     }
 
-    private ArrayList<Bitmap> getPlaneBitmaps() {
-        ArrayList<Bitmap> bitmaps = new ArrayList<>();
-        bitmaps.add(getPlaneBitmap(R.id.plane_other));
-        bitmaps.add(getPlaneBitmap(R.id.plane_wall));
-        bitmaps.add(getPlaneBitmap(R.id.plane_floor));
-        bitmaps.add(getPlaneBitmap(R.id.plane_seat));
-        bitmaps.add(getPlaneBitmap(R.id.plane_table));
-        bitmaps.add(getPlaneBitmap(R.id.plane_ceiling));
-        return bitmaps;
+    private Bitmap getPlaneBitmapOnUiThread(final int id) throws ExecutionException, InterruptedException {
+        // Views may only be drawn on the UI thread.
+        FutureTask<Bitmap> task = new FutureTask<>(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return getPlaneBitmap(id);
+            }
+        });
+        mActivity.runOnUiThread(task);
+        return task.get();
     }
 
     private Bitmap getPlaneBitmap(int id) {
@@ -301,24 +551,29 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
      * @param sb String buffer.
      */
     private void updateMessageData(StringBuilder sb) {
-        float fpsResult = doFpsCalculate();
-        sb.append("FPS=").append(fpsResult).append(System.lineSeparator());
-    }
-
-    private float doFpsCalculate() {
-        ++frames;
-        long timeNow = System.currentTimeMillis();
-
-        // Convert millisecond to second.
-        if (((timeNow - lastInterval) / 1000.0f) > 0.5f) {
-            fps = frames / ((timeNow - lastInterval) / 1000.0f);
-            frames = 0;
-            lastInterval = timeNow;
-        }
-        return fps;
+        sb.append("FPS=");
+        FrameProfiler.appendFixed(sb, mProfiler.getFps());
+        sb.append(System.lineSeparator());
+        sb.append("Objects drawn=").append(mObjectDisplay.getDrawnCount())
+                .append(" culled=").append(mObjectDisplay.getCulledCount()).append(System.lineSeparator());
+        sb.append("Planes drawn=").append(mPlaneDisplay.getDrawnCount())
+                .append(" updated=").append(mPlaneDisplay.getUpdatedCount()).append(System.lineSeparator());
+        sb.append("Labels drawn=").append(mLabelDisplay.getDrawnCount())
+                .append(" culled=").append(mLabelDisplay.getCulledCount()).append(System.lineSeparator());
+        sb.append("Gestures latency=");
+        FrameProfiler.appendFixed(sb, mGestureRing.getAverageLatency());
+        sb.append(" max=").append(mGestureRing.getMaxLatency())
+                .append(" ms merged=").append(mGestureRing.getCoalescedCount())
+                .append(" dropped=").append(mGestureRing.getDroppedCount()).append(System.lineSeparator());
+        mGlState.appendStats(sb);
+        mProfiler.appendStats(sb);
     }
 
     private void hideLoadingMessage() {
+        if (mIsLoadingMessageHidden) {
+            return;
+        }
+        mIsLoadingMessageHidden = true;
         mActivity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
@@ -330,17 +585,18 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
         });
     }
 
-    private void handleGestureEvent(ARFrame arFrame, ARCamera arCamera, float[] projectionMatrix, float[] viewMatrix) {
-        GestureEvent event = mQueuedSingleTaps.poll();
-        if (event == null) {
-            return;
-        }
-
-        // Do not perform anything when the object is not tracked.
-        if (arCamera.getTrackingState() != ARTrackable.TrackingState.TRACKING) {
-            return;
+    private void handleGestureEvents(ARFrame arFrame, ARCamera arCamera, float[] projectionMatrix, float[] viewMatrix) {
+        GestureEvent event;
+        while ((event = mGestureRing.poll()) != null) {
+            // Do not perform anything when the object is not tracked.
+            if (arCamera.getTrackingState() == ARTrackable.TrackingState.TRACKING) {
+                handleGestureEvent(arFrame, arCamera, projectionMatrix, viewMatrix, event);
+            }
         }
+    }
 
+    private void handleGestureEvent(ARFrame arFrame, ARCamera arCamera, float[] projectionMatrix, float[] viewMatrix,
+            GestureEvent event) {
         int eventType = event.getType();
         switch (eventType) {
             case GestureEvent.GESTURE_EVENT_TYPE_DOUBLETAP: {
@@ -348,26 +604,43 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
                 break;
             }
             case GestureEvent.GESTURE_EVENT_TYPE_SCROLL: {
-                if (mSelectedObj == null) {
+                int selectedIndex = mObjects.indexOf(mSelectedHandle);
+                if (selectedIndex < 0) {
                     break;
                 }
-                ARHitResult hitResult = hitTest4Result(arFrame, arCamera, event.getEventSecond());
+                ARHitResult hitResult = hitTest4Result(arFrame, arCamera, event.getSecondX(), event.getSecondY());
                 if (hitResult != null) {
-                    mSelectedObj.setAnchor(hitResult.createAnchor());
+                    dragObject(selectedIndex, hitResult);
                 }
                 break;
             }
-            case GestureEvent.GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED: {
-                // Do not perform anything when an object is selected.
-                if (mSelectedObj != null) {
-                    mSelectedObj.setIsSelected(false);
-                    mSelectedObj = null;
+            case GestureEvent.GESTURE_EVENT_TYPE_SCROLLEND: {
+                finishGesture();
+                break;
+            }
+            case GestureEvent.GESTURE_EVENT_TYPE_SCALE: {
+                int selectedIndex = mObjects.indexOf(mSelectedHandle);
+                if (selectedIndex >= 0) {
+                    mObjects.scaleBy(selectedIndex, event.getScaleFactor());
+                    mIsTransformChanged = true;
                 }
+                break;
+            }
+            case GestureEvent.GESTURE_EVENT_TYPE_ROTATE: {
+                int selectedIndex = mObjects.indexOf(mSelectedHandle);
 
-                MotionEvent tap = event.getEventFirst();
-                ARHitResult hitResult = null;
+                // A clockwise twist on the screen turns the object clockwise when seen from above.
+                if (selectedIndex >= 0) {
+                    mObjects.rotateBy(selectedIndex, -event.getRotation());
+                    mIsTransformChanged = true;
+                }
+                break;
+            }
+            case GestureEvent.GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED: {
+                // Do not perform anything when an object is selected.
+                clearSelection();
 
-                hitResult = hitTest4Result(arFrame, arCamera, tap);
+                ARHitResult hitResult = hitTest4Result(arFrame, arCamera, event.getFirstX(), event.getFirstY());
 
                 if (hitResult == null) {
                     break;
@@ -382,40 +655,132 @@ public class WorldRenderManager implements GLSurfaceView.Renderer {
     }
 
     private void doWhenEventTypeDoubleTap(float[] viewMatrix, float[] projectionMatrix, GestureEvent event) {
-        if (mSelectedObj != null) {
-            mSelectedObj.setIsSelected(false);
-            mSelectedObj = null;
+        clearSelection();
+        int handle = mObjectDisplay.pick(viewMatrix, projectionMatrix, mObjects, event.getFirstX(), event.getFirstY());
+        if (handle != ObjectStore.NO_HANDLE) {
+            mObjects.setSelected(mObjects.indexOf(handle), true);
+            mSelectedHandle = handle;
         }
-        for (VirtualObject obj : mVirtualObjects) {
-            if (mObjectDisplay.hitTest(viewMatrix, projectionMatrix, obj, event.getEventFirst())) {
-                obj.setIsSelected(true);
-                mSelectedObj = obj;
-                break;
+    }
+
+    // Move the object relative to its anchor, so that a drag does not create an anchor per scroll.
+    private void dragObject(int index, ARHitResult hitResult) {
+        ARPose offset = mObjects.getAnchor(index).getPose().inverse().compose(hitResult.getHitPose());
+        offset.toMatrix(mDragOffsetMatrix, 0);
+        mDragHitResult = hitResult;
+    }
+
+    // Anchor a dragged object at the latest hit and release its previous anchor, then save the
+    // pose, scale and yaw of the selected object if a gesture changed them.
+    private void finishGesture() {
+        int selectedIndex = mObjects.indexOf(mSelectedHandle);
+        if (selectedIndex >= 0 && (mDragHitResult != null || mIsTransformChanged)) {
+            if (mDragHitResult != null) {
+                mObjects.setAnchor(selectedIndex, mDragHitResult.createAnchor()).detach();
             }
+            mSceneStore.update(mSelectedHandle, getScenePose(mObjects.getAnchor(selectedIndex)),
+                    mObjects.getScale(selectedIndex), mObjects.getYaw(selectedIndex));
         }
+        mDragHitResult = null;
+        mIsTransformChanged = false;
     }
 
-    private void doWhenEventTypeSingleTap(ARHitResult hitResult) {
-        // The hit results are sorted by distance. Only the nearest hit point is valid.
-        // Set the number of stored objects to 10 to avoid the overload of rendering and AR Engine.
-        if (mVirtualObjects.size() >= 16) {
-            mVirtualObjects.get(0).getAnchor().detach();
-            mVirtualObjects.remove(0);
+    private void clearSelection() {
+        finishGesture();
+        int selectedIndex = mObjects.indexOf(mSelectedHandle);
+        if (selectedIndex >= 0) {
+            mObjects.setSelected(selectedIndex, false);
         }
+        mSelectedHandle = ObjectStore.NO_HANDLE;
+    }
 
+    private void doWhenEventTypeSingleTap(ARHitResult hitResult) {
+        // The hit results are sorted by distance. Only the nearest hit point is valid.
         ARTrackable currentTrackable = hitResult.getTrackable();
+        float[] color;
         if (currentTrackable instanceof ARPoint) {
-            mVirtualObjects.add(new VirtualObject(hitResult.createAnchor(), BLUE_COLORS));
+            color = BLUE_COLORS;
         } else if (currentTrackable instanceof ARPlane) {
-            mVirtualObjects.add(new VirtualObject(hitResult.createAnchor(), GREEN_COLORS));
+            color = GREEN_COLORS;
         } else {
             Log.i(TAG, "Hit result is not plane or point.");
+            return;
+        }
+        ARAnchor anchor = hitResult.createAnchor();
+        int handle = addObject(anchor, color);
+        saveObject(handle, anchor, color);
+    }
+
+    // Add an object. When the store is full, the oldest object is evicted with its record and anchor.
+    private int addObject(ARAnchor anchor, float[] color) {
+        if (mObjects.isFull()) {
+            mSceneStore.remove(mObjects.getOldestHandle());
+            mObjects.evictOldest().detach();
+        }
+        int handle = mObjects.add(anchor, color);
+        anchor.getPose().toMatrix(mAnchorMatrix, 0);
+        mObjects.setAnchorMatrix(mObjects.indexOf(handle), mAnchorMatrix);
+        return handle;
+    }
+
+    // Queue the pose of a new object relative to the reference anchor for saving, at its initial
+    // scale and yaw.
+    private void saveObject(int handle, ARAnchor anchor, float[] color) {
+        mSceneStore.save(handle, getScenePose(anchor), 1.0f, 0.0f, color, OBJECT_MODEL_ID);
+    }
+
+    // Obtain the pose of an anchor relative to the reference anchor, in the scratch array.
+    private float[] getScenePose(ARAnchor anchor) {
+        ARPose relativePose = getReferenceAnchor().getPose().inverse().compose(anchor.getPose());
+        relativePose.getTranslation(mScenePose, 0);
+        relativePose.getRotationQuaternion(mScenePose, 3);
+        return mScenePose;
+    }
+
+    // Place the objects of the previous session relative to the reference anchor of this one.
+    private void placeRestoredObjects() {
+        SceneFile.Records records = mRestoredScene;
+        if (records == null) {
+            return;
+        }
+        mRestoredScene = null;
+        ARPose referencePose = getReferenceAnchor().getPose();
+        float[] translation = new float[3];
+        float[] rotation = new float[4];
+        float[] color = new float[SceneFile.COLOR_SIZE];
+        for (int i = 0; i < records.count; i++) {
+            if (records.modelIds[i] != OBJECT_MODEL_ID) {
+                Log.w(TAG, "Unknown model in the scene file: " + records.modelIds[i]);
+                continue;
+            }
+            // Objects placed before the restore are newer, so the records that do not fit are
+            // the oldest ones, which the next restore drops.
+            if (mObjects.isFull()) {
+                break;
+            }
+            System.arraycopy(records.poses, i * SceneFile.POSE_SIZE, translation, 0, translation.length);
+            System.arraycopy(records.poses, i * SceneFile.POSE_SIZE + 3, rotation, 0, rotation.length);
+            System.arraycopy(records.colors, i * SceneFile.COLOR_SIZE, color, 0, color.length);
+            ARPose pose = referencePose.compose(new ARPose(translation, rotation));
+            int handle = addObject(mSession.createAnchor(pose), color);
+            int index = mObjects.indexOf(handle);
+            mObjects.scaleBy(index, records.scales[i]);
+            mObjects.rotateBy(index, records.yaws[i]);
+            mSceneStore.keep(handle, records.ids[i]);
+        }
+    }
+
+    // The reference anchor is created when it is first needed, which is when the camera is tracking.
+    private ARAnchor getReferenceAnchor() {
+        if (mReferenceAnchor == null) {
+            mReferenceAnchor = mSession.createAnchor(ARPose.IDENTITY);
         }
+        return mReferenceAnchor;
     }
 
-    private ARHitResult hitTest4Result(ARFrame frame, ARCamera camera, MotionEvent event) {
+    private ARHitResult hitTest4Result(ARFrame frame, ARCamera camera, float tapX, float tapY) {
         ARHitResult hitResult = null;
-        List<ARHitResult> hitTestResults = frame.hitTest(event);
+        List<ARHitResult> hitTestResults = frame.hitTest(tapX, tapY);
 
         for (int i = 0; i < hitTestResults.size(); i++) {
             // Determine whether the hit point is within the plane polygon.
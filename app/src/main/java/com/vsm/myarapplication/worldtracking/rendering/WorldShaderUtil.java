@@ -16,8 +16,7 @@
 
 package com.vsm.myarapplication.worldtracking.rendering;
 
-import android.opengl.GLES20;
-import android.util.Log;
+import com.vsm.myarapplication.common.ProgramRegistry;
 
 /**
  * This class provides code and program for the rendering shader related to the world scene.
@@ -26,8 +25,6 @@ import android.util.Log;
  * @since 2020-04-11
  */
 class WorldShaderUtil {
-    private static final String TAG = WorldShaderUtil.class.getSimpleName();
-
     private static final String LS = System.lineSeparator();
 
     /**
@@ -35,16 +32,31 @@ class WorldShaderUtil {
      */
     private static final String LABEL_VERTEX =
             "uniform mat2 inPlanUVMatrix;" + LS
+                    + "uniform vec4 inUvRegion;" + LS
                     + "uniform mat4 inMVPMatrix;" + LS
                     + "attribute vec3 inPosXZAlpha;" + LS
                     + "varying vec3 varTexCoordAlpha;" + LS
                     + "void main() {" + LS
                     + "    vec4 tempPosition = vec4(inPosXZAlpha.x, 0.0, inPosXZAlpha.y, 1.0);" + LS
-                    + "    vec2 tempUV = inPlanUVMatrix * inPosXZAlpha.xy;" + LS
-                    + "    varTexCoordAlpha = vec3(tempUV.x + 0.5, tempUV.y + 0.5, inPosXZAlpha.z);" + LS
+                    + "    vec2 tempUV = inPlanUVMatrix * inPosXZAlpha.xy + 0.5;" + LS
+                    + "    varTexCoordAlpha = vec3(mix(inUvRegion.xy, inUvRegion.zw, tempUV), inPosXZAlpha.z);" + LS
                     + "    gl_Position = inMVPMatrix * tempPosition;" + LS
                     + "}";
 
+    /**
+     * Vertex shader for batched label rendering. The vertices are already in world space and
+     * carry their texture coordinates, so all labels share one view-projection matrix.
+     */
+    private static final String LABEL_BATCH_VERTEX =
+            "uniform mat4 inVPMatrix;" + LS
+                    + "attribute vec4 inWorldPosition;" + LS
+                    + "attribute vec2 inTexCoord;" + LS
+                    + "varying vec3 varTexCoordAlpha;" + LS
+                    + "void main() {" + LS
+                    + "    varTexCoordAlpha = vec3(inTexCoord, 1.0);" + LS
+                    + "    gl_Position = inVPMatrix * inWorldPosition;" + LS
+                    + "}";
+
     /**
      * Fragment shader for label rendering.
      */
@@ -57,6 +69,26 @@ class WorldShaderUtil {
                     + "    gl_FragColor = vec4(control.rgb, 1.0);" + LS
                     + "}";
 
+    /**
+     * Vertex shader for plane polygons, whose vertices are x, z pairs in plane space.
+     */
+    private static final String PLANE_VERTEX =
+            "uniform mat4 inMVPMatrix;" + LS
+                    + "attribute vec2 inPosXZ;" + LS
+                    + "void main() {" + LS
+                    + "    gl_Position = inMVPMatrix * vec4(inPosXZ.x, 0.0, inPosXZ.y, 1.0);" + LS
+                    + "}";
+
+    /**
+     * Fragment shader for plane polygons.
+     */
+    private static final String PLANE_FRAGMENT =
+            "precision mediump float;" + LS
+                    + "uniform vec4 inColor;" + LS
+                    + "void main() {" + LS
+                    + "    gl_FragColor = inColor;" + LS
+                    + "}";
+
     private static final String OBJECT_VERTEX =
             "uniform mat4 inMVPMatrix;" + LS
                     + "uniform mat4 inViewMatrix;" + LS
@@ -103,49 +135,23 @@ class WorldShaderUtil {
         return createGlProgram(LABEL_VERTEX, LABEL_FRAGMENT);
     }
 
+    static int getLabelBatchProgram() {
+        return createGlProgram(LABEL_BATCH_VERTEX, LABEL_FRAGMENT);
+    }
+
+    static int getPlaneProgram() {
+        return createGlProgram(PLANE_VERTEX, PLANE_FRAGMENT);
+    }
+
     static int getObjectProgram() {
         return createGlProgram(OBJECT_VERTEX, OBJECT_FRAGMENT);
     }
 
-    private static int createGlProgram(String vertexCode, String fragmentCode) {
-        int vertex = loadShader(GLES20.GL_VERTEX_SHADER, vertexCode);
-        if (vertex == 0) {
-            return 0;
-        }
-        int fragment = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentCode);
-        if (fragment == 0) {
-            return 0;
-        }
-        int program = GLES20.glCreateProgram();
-        if (program != 0) {
-            GLES20.glAttachShader(program, vertex);
-            GLES20.glAttachShader(program, fragment);
-            GLES20.glLinkProgram(program);
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                Log.e(TAG, "Could not link program " + GLES20.glGetProgramInfoLog(program));
-                GLES20.glDeleteProgram(program);
-                program = 0;
-            }
-        }
-        return program;
+    static void releaseProgram(int program) {
+        ProgramRegistry.getDefault().release(program);
     }
 
-    private static int loadShader(int shaderType, String source) {
-        int shader = GLES20.glCreateShader(shaderType);
-        if (0 != shader) {
-            GLES20.glShaderSource(shader, source);
-            GLES20.glCompileShader(shader);
-            int[] compiled = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-            if (compiled[0] == 0) {
-                Log.e(TAG, "glError: Could not compile shader " + shaderType);
-                Log.e(TAG, "GLES20 Error: " + GLES20.glGetShaderInfoLog(shader));
-                GLES20.glDeleteShader(shader);
-                shader = 0;
-            }
-        }
-        return shader;
+    private static int createGlProgram(String vertexCode, String fragmentCode) {
+        return ProgramRegistry.getDefault().acquire(vertexCode, fragmentCode);
     }
 }
\ No newline at end of file
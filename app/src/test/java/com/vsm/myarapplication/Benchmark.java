@@ -0,0 +1,8 @@
+package com.vsm.myarapplication;
+
+/**
+ * JUnit category of the timing loops that print their results. They are left out of the
+ * default test task and run with {@code ./gradlew testDebugUnitTest -Pbenchmark}.
+ */
+public interface Benchmark {
+}
@@ -0,0 +1,83 @@
+package com.vsm.myarapplication;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * JVM tests of the gestures that the forwarder adds to those of the gesture detector.
+ */
+public class GestureForwarderTest {
+    private final GestureRing mRing = new GestureRing(16);
+
+    private final GestureForwarder mForwarder = new GestureForwarder(mRing);
+
+    @Test
+    public void tapDoesNotEndAScroll() {
+        mForwarder.onTouchEvent(MotionEvent.ACTION_DOWN, 1, 10.0f, 20.0f, 0.0f, 0.0f, 100L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_UP, 1, 10.0f, 20.0f, 0.0f, 0.0f, 150L);
+
+        assertNull(mRing.poll());
+    }
+
+    @Test
+    public void scrollIsEndedOnceWhenTheFingerIsLifted() {
+        mForwarder.onTouchEvent(MotionEvent.ACTION_DOWN, 1, 10.0f, 20.0f, 0.0f, 0.0f, 100L);
+        mForwarder.offerScroll(10.0f, 20.0f, 30.0f, 20.0f, -20.0f, 0.0f, 100L, 120L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_UP, 1, 30.0f, 20.0f, 0.0f, 0.0f, 150L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_CANCEL, 1, 30.0f, 20.0f, 0.0f, 0.0f, 160L);
+
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCROLL, mRing.poll().getType());
+        GestureEvent end = mRing.poll();
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCROLLEND, end.getType());
+        assertEquals(30.0f, end.getFirstX(), 0.0f);
+        assertEquals(150L, end.getEventTime());
+        assertNull(mRing.poll());
+    }
+
+    @Test
+    public void newDownForgetsAnUnfinishedScroll() {
+        mForwarder.offerScroll(10.0f, 20.0f, 30.0f, 20.0f, -20.0f, 0.0f, 100L, 120L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_DOWN, 1, 10.0f, 20.0f, 0.0f, 0.0f, 200L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_UP, 1, 10.0f, 20.0f, 0.0f, 0.0f, 250L);
+
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCROLL, mRing.poll().getType());
+        assertNull(mRing.poll());
+    }
+
+    @Test
+    public void twoFingerMovesOfferScaleAndRotation() {
+        mForwarder.onTouchEvent(MotionEvent.ACTION_MOVE, 2, 0.0f, 0.0f, 100.0f, 0.0f, 100L);
+        assertNull(mRing.poll());
+
+        mForwarder.onTouchEvent(MotionEvent.ACTION_MOVE, 2, -50.0f, 0.0f, 150.0f, 0.0f, 110L);
+        GestureEvent scale = mRing.poll();
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCALE, scale.getType());
+        assertEquals(2.0f, scale.getScaleFactor(), 1e-6f);
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_ROTATE, mRing.poll().getType());
+
+        // Lifting a finger starts the next pinch anew.
+        mForwarder.onTouchEvent(MotionEvent.ACTION_POINTER_UP, 2, -50.0f, 0.0f, 150.0f, 0.0f, 120L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_MOVE, 2, 0.0f, 0.0f, 100.0f, 0.0f, 130L);
+        assertNull(mRing.poll());
+    }
+
+    @Test
+    public void twoFingerGestureIsEndedWhenTheLastFingerIsLifted() {
+        mForwarder.onTouchEvent(MotionEvent.ACTION_DOWN, 1, 0.0f, 0.0f, 0.0f, 0.0f, 90L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_MOVE, 2, 0.0f, 0.0f, 100.0f, 0.0f, 100L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_MOVE, 2, 0.0f, 0.0f, 0.0f, 100.0f, 110L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_POINTER_UP, 2, 0.0f, 0.0f, 0.0f, 100.0f, 120L);
+        mForwarder.onTouchEvent(MotionEvent.ACTION_UP, 1, 0.0f, 0.0f, 0.0f, 0.0f, 130L);
+
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCALE, mRing.poll().getType());
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_ROTATE, mRing.poll().getType());
+        GestureEvent end = mRing.poll();
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCROLLEND, end.getType());
+        assertEquals(130L, end.getEventTime());
+        assertNull(mRing.poll());
+    }
+}
@@ -0,0 +1,170 @@
+package com.vsm.myarapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the gesture ring.
+ */
+public class GestureRingTest {
+    private static final int TAP = GestureEvent.GESTURE_EVENT_TYPE_SINGLETAPCONFIRMED;
+
+    private static final int SCROLL = GestureEvent.GESTURE_EVENT_TYPE_SCROLL;
+
+    @Test
+    public void eventsArePolledInOrder() {
+        GestureRing ring = new GestureRing(4);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ring.offer(TAP, i, i + 0.5f, 0.0f, 0.0f, 0.0f, 0.0f, i));
+        }
+        for (int i = 0; i < 3; i++) {
+            GestureEvent event = ring.poll();
+            assertEquals(TAP, event.getType());
+            assertEquals(i, event.getFirstX(), 0.0f);
+            assertEquals(i + 0.5f, event.getFirstY(), 0.0f);
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void fullRingDropsAndCounts() {
+        GestureRing ring = new GestureRing(3);
+
+        // The capacity is rounded up to a power of two.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(TAP, i, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, i));
+        }
+        assertFalse(ring.offer(TAP, 4, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 4));
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(0.0f, ring.poll().getFirstX(), 0.0f);
+        assertTrue(ring.offer(TAP, 5, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 5));
+        assertEquals(1, ring.getDroppedCount());
+    }
+
+    @Test
+    public void consecutiveScrollsAreMerged() {
+        GestureRing ring = new GestureRing(16);
+        ring.offerScroll(10.0f, 20.0f, 11.0f, 20.0f, -1.0f, 0.0f, 90L, 100L);
+        ring.offerScroll(10.0f, 20.0f, 13.0f, 21.0f, -2.0f, -1.0f, 90L, 110L);
+        ring.offerScroll(10.0f, 20.0f, 16.0f, 23.0f, -3.0f, -2.0f, 90L, 120L);
+        ring.offer(TAP, 5.0f, 5.0f, 0.0f, 0.0f, 0.0f, 0.0f, 130L);
+        ring.offerScroll(10.0f, 20.0f, 17.0f, 23.0f, -1.0f, 0.0f, 90L, 140L);
+
+        GestureEvent scroll = ring.poll();
+        assertEquals(SCROLL, scroll.getType());
+        assertEquals(10.0f, scroll.getFirstX(), 0.0f);
+        assertEquals(16.0f, scroll.getSecondX(), 0.0f);
+        assertEquals(23.0f, scroll.getSecondY(), 0.0f);
+        assertEquals(-6.0f, scroll.getDistanceX(), 0.0f);
+        assertEquals(-3.0f, scroll.getDistanceY(), 0.0f);
+        assertEquals(100L, scroll.getEventTime());
+        assertEquals(2, ring.getCoalescedCount());
+
+        // A tap in between keeps the scrolls apart.
+        assertEquals(TAP, ring.poll().getType());
+        assertEquals(17.0f, ring.poll().getSecondX(), 0.0f);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void scrollsOfDifferentGesturesAreNotMerged() {
+        GestureRing ring = new GestureRing(4);
+        ring.offerScroll(10.0f, 20.0f, 11.0f, 20.0f, -1.0f, 0.0f, 90L, 100L);
+        ring.offerScroll(50.0f, 60.0f, 52.0f, 60.0f, -2.0f, 0.0f, 190L, 200L);
+        assertEquals(-1.0f, ring.poll().getDistanceX(), 0.0f);
+        assertEquals(-2.0f, ring.poll().getDistanceX(), 0.0f);
+        assertEquals(0, ring.getCoalescedCount());
+    }
+
+    @Test
+    public void dragsThatStartAtTheSamePixelAreNotMerged() {
+        GestureRing ring = new GestureRing(4);
+        ring.offerScroll(10.0f, 20.0f, 11.0f, 20.0f, -1.0f, 0.0f, 90L, 100L);
+        ring.offerScroll(10.0f, 20.0f, 12.0f, 20.0f, -2.0f, 0.0f, 190L, 200L);
+
+        GestureEvent first = ring.poll();
+        assertEquals(90L, first.getDownTime());
+        assertEquals(-1.0f, first.getDistanceX(), 0.0f);
+        GestureEvent second = ring.poll();
+        assertEquals(190L, second.getDownTime());
+        assertEquals(-2.0f, second.getDistanceX(), 0.0f);
+        assertEquals(0, ring.getCoalescedCount());
+    }
+
+    @Test
+    public void twoFingerDeltasArePrimitives() {
+        GestureRing ring = new GestureRing(4);
+        ring.offerTwoFinger(GestureEvent.GESTURE_EVENT_TYPE_SCALE, 100.0f, 200.0f, 1.25f, 0.0f, 10L);
+        ring.offerTwoFinger(GestureEvent.GESTURE_EVENT_TYPE_ROTATE, 100.0f, 200.0f, 1.0f, -15.0f, 10L);
+        ring.offer(TAP, 5.0f, 5.0f, 0.0f, 0.0f, 0.0f, 0.0f, 20L);
+
+        GestureEvent scale = ring.poll();
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_SCALE, scale.getType());
+        assertEquals(1.25f, scale.getScaleFactor(), 0.0f);
+        assertEquals(100.0f, scale.getFirstX(), 0.0f);
+        GestureEvent rotate = ring.poll();
+        assertEquals(GestureEvent.GESTURE_EVENT_TYPE_ROTATE, rotate.getType());
+        assertEquals(-15.0f, rotate.getRotation(), 0.0f);
+
+        // A reused record does not keep the deltas of a previous gesture.
+        GestureEvent tap = ring.poll();
+        assertEquals(1.0f, tap.getScaleFactor(), 0.0f);
+        assertEquals(0.0f, tap.getRotation(), 0.0f);
+    }
+
+    @Test
+    public void latencyIsMeasuredFromTheOldestEventOfAFrame() {
+        GestureRing ring = new GestureRing(4);
+        ring.onFrameSubmitted(50L);
+        assertEquals(0.0f, ring.getAverageLatency(), 0.0f);
+
+        ring.offer(TAP, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 100L);
+        ring.offer(TAP, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 110L);
+        while (ring.poll() != null) {
+            continue;
+        }
+        ring.onFrameSubmitted(130L);
+        ring.offer(TAP, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 140L);
+        ring.poll();
+        ring.onFrameSubmitted(150L);
+
+        // A frame without gestures does not count.
+        ring.onFrameSubmitted(160L);
+        assertEquals(30L, ring.getMaxLatency());
+        assertEquals(20.0f, ring.getAverageLatency(), 0.0f);
+    }
+
+    @Test
+    public void producerThreadDeliversEveryEventOnce() throws InterruptedException {
+        final GestureRing ring = new GestureRing(8);
+        final int count = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    while (!ring.offer(TAP, i, -i, 0.0f, 0.0f, 0.0f, 0.0f, i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        while (expected < count) {
+            GestureEvent event = ring.poll();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected, event.getFirstX(), 0.0f);
+            assertEquals(-expected, event.getFirstY(), 0.0f);
+            expected++;
+        }
+        producer.join();
+        assertNull(ring.poll());
+    }
+}
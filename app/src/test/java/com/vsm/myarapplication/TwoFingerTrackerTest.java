@@ -0,0 +1,62 @@
+package com.vsm.myarapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the two-finger pinch and twist tracker.
+ */
+public class TwoFingerTrackerTest {
+    @Test
+    public void firstUpdateOnlyStartsTheGesture() {
+        TwoFingerTracker tracker = new TwoFingerTracker();
+        assertFalse(tracker.update(0.0f, 0.0f, 100.0f, 0.0f));
+        assertEquals(1.0f, tracker.getScaleFactor(), 0.0f);
+        assertEquals(0.0f, tracker.getRotation(), 0.0f);
+        assertEquals(50.0f, tracker.getFocusX(), 0.0f);
+    }
+
+    @Test
+    public void pinchReportsTheRatioOfTheDistances() {
+        TwoFingerTracker tracker = new TwoFingerTracker();
+        tracker.update(0.0f, 0.0f, 100.0f, 0.0f);
+        assertTrue(tracker.update(-50.0f, 0.0f, 150.0f, 0.0f));
+        assertEquals(2.0f, tracker.getScaleFactor(), 1e-6f);
+        assertEquals(0.0f, tracker.getRotation(), 1e-6f);
+        assertTrue(tracker.update(0.0f, 0.0f, 100.0f, 0.0f));
+        assertEquals(0.5f, tracker.getScaleFactor(), 1e-6f);
+    }
+
+    @Test
+    public void twistReportsTheClockwiseAngle() {
+        TwoFingerTracker tracker = new TwoFingerTracker();
+        tracker.update(0.0f, 0.0f, 100.0f, 0.0f);
+
+        // The screen Y axis points down, so moving the second finger down is clockwise.
+        assertTrue(tracker.update(0.0f, 0.0f, 0.0f, 100.0f));
+        assertEquals(90.0f, tracker.getRotation(), 1e-4f);
+        assertEquals(1.0f, tracker.getScaleFactor(), 1e-6f);
+    }
+
+    @Test
+    public void rotationWrapsAcrossTheNegativeXAxis() {
+        TwoFingerTracker tracker = new TwoFingerTracker();
+        tracker.update(0.0f, 0.0f, -100.0f, 1.0f);
+        tracker.update(0.0f, 0.0f, -100.0f, -1.0f);
+        assertEquals(1.146f, tracker.getRotation(), 1e-3f);
+    }
+
+    @Test
+    public void resetAndCloseFingersRestartTheGesture() {
+        TwoFingerTracker tracker = new TwoFingerTracker();
+        tracker.update(0.0f, 0.0f, 100.0f, 0.0f);
+        tracker.reset();
+        assertFalse(tracker.update(0.0f, 0.0f, 200.0f, 0.0f));
+        assertFalse(tracker.update(0.0f, 0.0f, 1.0f, 0.0f));
+        assertFalse(tracker.update(0.0f, 0.0f, 100.0f, 0.0f));
+        assertTrue(tracker.update(0.0f, 0.0f, 100.0f, 10.0f));
+    }
+}
@@ -0,0 +1,104 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the hand-off between load tasks and GL thread uploads.
+ */
+public class AssetLoaderTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final AssetLoader assetLoader = new AssetLoader();
+
+    private final List<String> uploaded = new ArrayList<>();
+
+    private final AssetLoader.Upload<String> upload = new AssetLoader.Upload<String>() {
+        @Override
+        public void upload(String data) {
+            uploaded.add(data);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        assetLoader.shutdown();
+    }
+
+    @Test
+    public void uploadRunsOnlyWhenProcessed() {
+        assetLoader.load(DIRECT_EXECUTOR, createTask("mesh"), upload);
+        assertTrue(uploaded.isEmpty());
+        assertEquals(1, assetLoader.processUploads());
+        assertEquals(1, uploaded.size());
+        assertEquals("mesh", uploaded.get(0));
+        assertEquals(0, assetLoader.processUploads());
+    }
+
+    @Test
+    public void backgroundLoadIsUploaded() throws InterruptedException {
+        assetLoader.load(createTask("texture"), upload);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (uploaded.isEmpty() && System.currentTimeMillis() < deadline) {
+            assetLoader.processUploads();
+            Thread.sleep(1L);
+        }
+        assertEquals(1, uploaded.size());
+        assertEquals("texture", uploaded.get(0));
+    }
+
+    @Test
+    public void resetDropsStaleResults() {
+        assetLoader.load(DIRECT_EXECUTOR, createTask("old"), upload);
+        assetLoader.reset();
+        assertEquals(0, assetLoader.processUploads());
+
+        // A load that finishes after the reset belongs to the old context as well.
+        final List<Runnable> deferred = new ArrayList<>();
+        assetLoader.load(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                deferred.add(command);
+            }
+        }, createTask("late"), upload);
+        assetLoader.reset();
+        deferred.get(0).run();
+        assertEquals(0, assetLoader.processUploads());
+        assertTrue(uploaded.isEmpty());
+    }
+
+    @Test
+    public void failedOrEmptyLoadIsNotQueued() {
+        assetLoader.load(DIRECT_EXECUTOR, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new Exception("Missing asset.");
+            }
+        }, upload);
+        assetLoader.load(DIRECT_EXECUTOR, createTask(null), upload);
+        assertEquals(0, assetLoader.processUploads());
+        assertTrue(uploaded.isEmpty());
+    }
+
+    private static Callable<String> createTask(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package com.vsm.myarapplication.common;
+
+import java.nio.Buffer;
+import java.util.ArrayDeque;
+
+/**
+ * {@link GlApi} that only counts the commands issued through it. glGetError reports the
+ * errors added by the test.
+ */
+public class CountingGlApi implements GlApi {
+    private int mCallCount;
+
+    private final ArrayDeque<Integer> mErrors = new ArrayDeque<>();
+
+    public int getCallCount() {
+        return mCallCount;
+    }
+
+    public void reset() {
+        mCallCount = 0;
+    }
+
+    public void addError(int error) {
+        mErrors.add(error);
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height,
+                                       int border, int imageSize, Buffer data) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        mCallCount++;
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        mCallCount++;
+        return 0;
+    }
+
+    @Override
+    public int glGetError() {
+        mCallCount++;
+        return mErrors.isEmpty() ? 0 : mErrors.poll();
+    }
+
+    @Override
+    public String glGetString(int name) {
+        mCallCount++;
+        return "";
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        mCallCount++;
+        return 0;
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                             int format, int type, Buffer pixels) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        mCallCount++;
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        mCallCount++;
+    }
+}
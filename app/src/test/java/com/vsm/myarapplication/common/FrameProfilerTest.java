@@ -0,0 +1,99 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the {@link FrameProfiler}, driven by explicit timestamps.
+ */
+public class FrameProfilerTest {
+    private static final long FRAME_NS = 16_000_000L;
+
+    @Test
+    public void stagesFramesAndIntervalsAreRecorded() {
+        FrameProfiler profiler = new FrameProfiler("update", "draw");
+        for (int i = 0; i < 10; i++) {
+            long start = i * FRAME_NS;
+            profiler.beginFrame(start);
+            profiler.begin(0, start);
+            profiler.end(0, start + 2_000_000L);
+            profiler.begin(1, start + 2_000_000L);
+            profiler.end(1, start + 5_000_000L);
+            profiler.endFrame(start + 6_000_000L);
+        }
+        assertEquals(10, profiler.getHistogram(0).getCount());
+        assertEquals(2_000_000L, profiler.getHistogram(0).getMax());
+        assertEquals(3_000_000L, profiler.getHistogram(1).getMax());
+        assertEquals(6_000_000L, profiler.getFrameHistogram().getMax());
+        assertEquals(9, profiler.getIntervalHistogram().getCount());
+        assertEquals(FRAME_NS, profiler.getIntervalHistogram().getMax());
+    }
+
+    @Test
+    public void endWithoutBeginIsIgnored() {
+        FrameProfiler profiler = new FrameProfiler("update");
+        profiler.end(0, 100L);
+        profiler.begin(0, 100L);
+        profiler.end(0, 300L);
+        profiler.end(0, 500L);
+        assertEquals(1, profiler.getHistogram(0).getCount());
+        assertEquals(200L, profiler.getHistogram(0).getMax());
+    }
+
+    @Test
+    public void fpsIsUpdatedTwicePerSecond() {
+        FrameProfiler profiler = new FrameProfiler();
+        assertEquals(0.0f, profiler.getFps(), 0.0f);
+        for (int i = 0; i <= 40; i++) {
+            profiler.beginFrame(i * FRAME_NS);
+        }
+        assertEquals(62.5f, profiler.getFps(), 0.5f);
+    }
+
+    @Test
+    public void reportIsDueAfterTheInterval() {
+        FrameProfiler profiler = new FrameProfiler("update");
+        assertFalse(profiler.isReportDue(FrameProfiler.REPORT_INTERVAL_NS));
+        profiler.beginFrame(1000L);
+        assertFalse(profiler.isReportDue(FrameProfiler.REPORT_INTERVAL_NS));
+        assertTrue(profiler.isReportDue(FrameProfiler.REPORT_INTERVAL_NS + 1000L));
+        profiler.reset();
+        assertFalse(profiler.isReportDue(2 * FrameProfiler.REPORT_INTERVAL_NS));
+    }
+
+    @Test
+    public void statsArePrintedInMilliseconds() {
+        FrameProfiler profiler = new FrameProfiler("update");
+        profiler.beginFrame(0L);
+        profiler.begin(0, 0L);
+        profiler.end(0, 1_500_000L);
+        profiler.endFrame(20_000_000L);
+        StringBuilder sb = new StringBuilder();
+        profiler.appendStats(sb);
+        String[] lines = sb.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertEquals("update p50=1.50 p95=1.50 p99=1.50 max=1.50 ms", lines[0]);
+        assertEquals("frame p50=20.00 p95=20.00 p99=20.00 max=20.00 ms", lines[1]);
+        assertEquals("interval p50=0.00 p95=0.00 p99=0.00 max=0.00 ms", lines[2]);
+
+        sb.setLength(0);
+        FrameProfiler.appendMillis(sb, 16_666_667L);
+        assertEquals("16.67", sb.toString());
+    }
+
+    @Test
+    public void appendFixed_roundsToTwoDecimals() {
+        StringBuilder sb = new StringBuilder();
+        FrameProfiler.appendFixed(sb, 59.996f);
+        sb.append(' ');
+        FrameProfiler.appendFixed(sb, 0.05f);
+        sb.append(' ');
+        FrameProfiler.appendFixed(sb, -1.5f);
+        sb.append(' ');
+        FrameProfiler.appendFixed(sb, Float.NaN);
+        assertEquals("60.00 0.05 -1.50 0.00", sb.toString());
+    }
+}
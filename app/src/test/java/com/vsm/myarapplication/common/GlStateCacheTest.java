@@ -0,0 +1,146 @@
+package com.vsm.myarapplication.common;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * JVM tests of the calls issued and elided by {@link GlStateCache}.
+ */
+public class GlStateCacheTest {
+    private final CountingGlApi mGl = new CountingGlApi();
+
+    private final GlStateCache mGlState = new GlStateCache(mGl);
+
+    @Test
+    public void repeatedState_isElided() {
+        mGlState.useProgram(3);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 4);
+        mGlState.enable(GLES20.GL_BLEND);
+        mGlState.depthMask(false);
+        mGlState.lineWidth(18.0f);
+        assertEquals(5, mGl.getCallCount());
+
+        mGlState.useProgram(3);
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 4);
+        mGlState.enable(GLES20.GL_BLEND);
+        mGlState.depthMask(false);
+        mGlState.lineWidth(18.0f);
+        assertEquals(5, mGl.getCallCount());
+
+        mGlState.beginFrame();
+        assertEquals(5, mGlState.getIssuedCount());
+        assertEquals(5, mGlState.getElidedCount());
+    }
+
+    @Test
+    public void changedState_isIssued() {
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.disable(GLES20.GL_DEPTH_TEST);
+        mGlState.enable(GLES20.GL_DEPTH_TEST);
+        mGlState.blendFuncSeparate(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA, GLES20.GL_ZERO, GLES20.GL_ONE);
+        mGlState.blendFuncSeparate(GLES20.GL_DST_ALPHA, GLES20.GL_ONE, GLES20.GL_ZERO, GLES20.GL_ONE);
+
+        assertEquals(5, mGl.getCallCount());
+    }
+
+    @Test
+    public void buffersAreShadowedPerTarget() {
+        mGlState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 1);
+        mGlState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 1);
+        mGlState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 1);
+
+        assertEquals(2, mGl.getCallCount());
+    }
+
+    @Test
+    public void texturesAreShadowedPerUnit() {
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mGlState.activeTexture(GLES20.GL_TEXTURE1);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+
+        assertEquals(5, mGl.getCallCount());
+    }
+
+    @Test
+    public void bindTexture_unknownUnit_isIssued() {
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+
+        assertEquals(2, mGl.getCallCount());
+    }
+
+    @Test
+    public void setVertexAttribArrays_changesOnlyTheDifference() {
+        int position = GlStateCache.getAttribBit(0);
+        int normal = GlStateCache.getAttribBit(1);
+        int texCoord = GlStateCache.getAttribBit(2);
+        mGlState.setVertexAttribArrays(position | normal | texCoord);
+        assertEquals(3, mGl.getCallCount());
+
+        // Disables the texture coordinates only.
+        mGlState.setVertexAttribArrays(position | normal);
+        assertEquals(4, mGl.getCallCount());
+
+        mGlState.setVertexAttribArrays(position | normal);
+        assertEquals(4, mGl.getCallCount());
+    }
+
+    @Test
+    public void setVertexAttribArrays_afterInvalidate_disablesUsedArrays() {
+        mGlState.setVertexAttribArrays(GlStateCache.getAttribBit(0) | GlStateCache.getAttribBit(1));
+        mGlState.invalidate();
+        mGl.reset();
+
+        // Enables 0 again and disables 1, whose state is unknown.
+        mGlState.setVertexAttribArrays(GlStateCache.getAttribBit(0));
+
+        assertEquals(2, mGl.getCallCount());
+    }
+
+    @Test
+    public void getAttribBit_unusedLocation_isZero() {
+        assertEquals(0, GlStateCache.getAttribBit(-1));
+        assertEquals(0, GlStateCache.getAttribBit(GlStateCache.MAX_VERTEX_ATTRIBS));
+        assertEquals(4, GlStateCache.getAttribBit(2));
+    }
+
+    @Test
+    public void beginFrame_keepsStateAndCounts() {
+        mGlState.useProgram(3);
+        mGlState.useProgram(3);
+        mGlState.beginFrame();
+        assertEquals(1, mGlState.getIssuedCount());
+        assertEquals(1, mGlState.getElidedCount());
+
+        // The program of the previous frame is still in use.
+        mGl.reset();
+        mGlState.useProgram(3);
+        assertEquals(0, mGl.getCallCount());
+
+        StringBuilder sb = new StringBuilder();
+        mGlState.appendStats(sb);
+        assertEquals("GL state calls=1 elided=1" + System.lineSeparator(), sb.toString());
+    }
+
+    @Test
+    public void beginFrame_forgetsOnlyTheExternalTextures() {
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 5);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mGlState.beginFrame();
+        mGl.reset();
+
+        // The AR session bound the camera texture while updating the frame.
+        mGlState.activeTexture(GLES20.GL_TEXTURE0);
+        mGlState.bindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mGlState.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 5);
+        assertEquals(1, mGl.getCallCount());
+    }
+}
@@ -0,0 +1,58 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the log-bucketed {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        long[] values = {0L, 7L, 8L, 9L, 15L, 16L, 1000L, 16_666_667L, 1L << 35, (1L << 36) - 1};
+        for (long value : values) {
+            int bucket = LatencyHistogram.getBucket(value);
+            assertTrue(LatencyHistogram.getLowerBound(bucket) <= value);
+            assertTrue(value < LatencyHistogram.getLowerBound(bucket + 1));
+        }
+
+        // Longer durations share the last bucket.
+        assertEquals(LatencyHistogram.getBucket((1L << 36) - 1), LatencyHistogram.getBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_500_000L, histogram.getMean());
+        assertWithinBucket(50_000_000L, histogram.getPercentile(50.0));
+        assertWithinBucket(95_000_000L, histogram.getPercentile(95.0));
+        assertWithinBucket(99_000_000L, histogram.getPercentile(99.0));
+
+        // The top percentile does not exceed the largest duration.
+        assertEquals(100_000_000L, histogram.getPercentile(100.0));
+    }
+
+    @Test
+    public void resetForgetsDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        assertEquals(0L, histogram.getMax());
+        histogram.record(42L);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0L, histogram.getPercentile(50.0));
+        assertEquals(0L, histogram.getMean());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected);
+        assertTrue(actual - expected <= expected / LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+}
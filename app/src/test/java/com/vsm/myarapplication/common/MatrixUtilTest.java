@@ -0,0 +1,70 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the plain Java matrix helpers in {@link MatrixUtil}.
+ */
+public class MatrixUtilTest {
+    // Rotation of 90 degrees around Y, followed by a translation of (1, 2, 3), column-major.
+    private static final float[] TRANSFORM = new float[]{0, 0, -1, 0, 0, 1, 0, 0, 1, 0, 0, 0, 1, 2, 3, 1};
+
+    @Test
+    public void invertTimesMatrixIsIdentity() {
+        float[] inverse = new float[16];
+        assertTrue(MatrixUtil.invertM(inverse, TRANSFORM));
+        float[] product = new float[16];
+        MatrixUtil.multiplyMM(product, TRANSFORM, inverse);
+        assertArrayEquals(MatrixUtil.getOriginalMatrix(), product, 1e-6f);
+    }
+
+    @Test
+    public void invertRejectsSingularMatrix() {
+        assertFalse(MatrixUtil.invertM(new float[16], new float[16]));
+    }
+
+    @Test
+    public void transformBoundingBox() {
+        float[] box = new float[]{0, 0, 0, 2, 1, 1};
+        float[] result = new float[6];
+        MatrixUtil.transformBoundingBox(result, TRANSFORM, box);
+
+        // x' = z + 1, y' = y + 2, z' = -x + 3.
+        assertArrayEquals(new float[]{1, 2, 1, 2, 3, 3}, result, 1e-6f);
+    }
+
+    @Test
+    public void preScaleAppliesAfterTheMatrix() {
+        float[] matrix = new float[20];
+        System.arraycopy(TRANSFORM, 0, matrix, 4, 16);
+        MatrixUtil.preScaleM(matrix, 4, 2.0f);
+        float[] scale = new float[]{2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 1};
+        float[] expected = new float[16];
+        MatrixUtil.multiplyMM(expected, scale, TRANSFORM);
+        float[] result = new float[16];
+        System.arraycopy(matrix, 4, result, 0, 16);
+        assertArrayEquals(expected, result, 1e-6f);
+    }
+
+    @Test
+    public void preRotateYAppliesAfterTheMatrix() {
+        float[] matrix = TRANSFORM.clone();
+        MatrixUtil.preRotateYM(matrix, 0, 90.0f);
+
+        // Rotating by 90 degrees around Y maps x to -z and z to x.
+        float[] rotation = new float[]{0, 0, -1, 0, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 1};
+        float[] expected = new float[16];
+        MatrixUtil.multiplyMM(expected, rotation, TRANSFORM);
+        assertArrayEquals(expected, matrix, 1e-6f);
+
+        // Four quarter turns add up to the original matrix.
+        for (int i = 0; i < 3; i++) {
+            MatrixUtil.preRotateYM(matrix, 0, 90.0f);
+        }
+        assertArrayEquals(TRANSFORM, matrix, 1e-5f);
+    }
+}
@@ -0,0 +1,167 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the sharing and reference counting of {@link ProgramRegistry}.
+ */
+public class ProgramRegistryTest {
+    private static final String VERTEX = "void main() { gl_Position = vec4(0.0); }";
+
+    private static final String FRAGMENT = "void main() { gl_FragColor = vec4(1.0); }";
+
+    private static final String OTHER_FRAGMENT = "void main() { gl_FragColor = vec4(0.5); }";
+
+    private final FakeLinker mLinker = new FakeLinker();
+
+    private final ProgramRegistry mRegistry = new ProgramRegistry(mLinker);
+
+    @Test
+    public void acquire_sameSources_linksOnce() {
+        int first = mRegistry.acquire(VERTEX, FRAGMENT);
+        int second = mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertEquals(first, second);
+        assertEquals(1, mLinker.mLinkCount);
+        assertEquals(2, mRegistry.getReferenceCount(first));
+    }
+
+    @Test
+    public void acquire_otherSources_linksAnotherProgram() {
+        int first = mRegistry.acquire(VERTEX, FRAGMENT);
+        int second = mRegistry.acquire(VERTEX, OTHER_FRAGMENT);
+
+        assertNotEquals(first, second);
+        assertEquals(2, mLinker.mLinkCount);
+    }
+
+    @Test
+    public void acquire_passesCacheDirAndKey() {
+        File cacheDir = new File("programs");
+        mRegistry.setCacheDir(cacheDir);
+
+        mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertSame(cacheDir, mLinker.mLastCacheDir);
+        assertEquals(ProgramRegistry.getKey(VERTEX, FRAGMENT), mLinker.mLastKey);
+    }
+
+    @Test
+    public void acquire_failedLink_isNotShared() {
+        mLinker.mIsFailing = true;
+        assertEquals(0, mRegistry.acquire(VERTEX, FRAGMENT));
+
+        mLinker.mIsFailing = false;
+        int program = mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertNotEquals(0, program);
+        assertEquals(1, mRegistry.getReferenceCount(program));
+    }
+
+    @Test
+    public void release_deletesWithLastReference() {
+        int program = mRegistry.acquire(VERTEX, FRAGMENT);
+        mRegistry.acquire(VERTEX, FRAGMENT);
+
+        mRegistry.release(program);
+        assertTrue(mLinker.mDeleted.isEmpty());
+
+        mRegistry.release(program);
+        assertEquals(1, mLinker.mDeleted.size());
+        assertEquals(program, (int) mLinker.mDeleted.get(0));
+
+        // The next acquisition links again.
+        mRegistry.acquire(VERTEX, FRAGMENT);
+        assertEquals(2, mLinker.mLinkCount);
+    }
+
+    @Test
+    public void acquire_newContext_forgetsProgramsWithoutDeleting() {
+        int program = mRegistry.acquire(VERTEX, FRAGMENT);
+
+        mLinker.mContext = new Object();
+        mRegistry.release(program);
+        mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertTrue(mLinker.mDeleted.isEmpty());
+        assertEquals(2, mLinker.mLinkCount);
+    }
+
+    @Test
+    public void release_programOfLostContext_keepsNewPrograms() {
+        int oldProgram = mRegistry.acquire(VERTEX, FRAGMENT);
+        mLinker.mNextProgram = 1;
+        mLinker.mContext = new Object();
+
+        // The displays release the old programs before they acquire new ones.
+        mRegistry.release(oldProgram);
+        mRegistry.release(oldProgram);
+        int program = mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertEquals(oldProgram, program);
+        assertEquals(1, mRegistry.getReferenceCount(program));
+        assertTrue(mLinker.mDeleted.isEmpty());
+    }
+
+    @Test
+    public void getKey_separatesVertexAndFragment() {
+        assertNotEquals(ProgramRegistry.getKey("ab", "c"), ProgramRegistry.getKey("a", "bc"));
+        assertEquals(ProgramRegistry.getKey(VERTEX, FRAGMENT), ProgramRegistry.getKey(VERTEX, FRAGMENT));
+    }
+
+    @Test
+    public void setCacheDir_null_compilesWithoutCache() {
+        mRegistry.setCacheDir(null);
+
+        mRegistry.acquire(VERTEX, FRAGMENT);
+
+        assertNull(mLinker.mLastCacheDir);
+    }
+
+    private static class FakeLinker implements ProgramRegistry.Linker {
+        private final List<Integer> mDeleted = new ArrayList<>();
+
+        private Object mContext = new Object();
+
+        private int mNextProgram = 1;
+
+        private int mLinkCount;
+
+        private long mLastKey;
+
+        private File mLastCacheDir;
+
+        private boolean mIsFailing = false;
+
+        @Override
+        public Object getCurrentContext() {
+            return mContext;
+        }
+
+        @Override
+        public int link(long key, String vertexCode, String fragmentCode, File cacheDir) {
+            mLastKey = key;
+            mLastCacheDir = cacheDir;
+            if (mIsFailing) {
+                return 0;
+            }
+            mLinkCount++;
+            return mNextProgram++;
+        }
+
+        @Override
+        public void delete(int program) {
+            mDeleted.add(program);
+        }
+    }
+}
@@ -0,0 +1,747 @@
+package com.vsm.myarapplication.common;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link GlApi} that records the commands into a compact command buffer instead of issuing
+ * them, so the render path can run and be measured without a GPU. Each command is an
+ * opcode, such as {@link #OP_DRAW_ELEMENTS}, with its int and float arguments in two
+ * growing arrays; booleans are stored as 0 or 1. Float arrays, such as matrices, are copied.
+ * Buffers and strings are kept by reference, so a replay reads their current contents.
+ * <p>
+ * Queries return fixed results: names from glGen* count up from 1, each attribute and
+ * uniform name has its own location, glGetError reports no error, and glGetString returns
+ * the value set with {@link #setString(int, String)}, or an empty string.
+ * <p>
+ * {@link #clear()} keeps the capacity, so recording the same frame again does not allocate.
+ * Only one thread may use the recorder.
+ */
+public class RecordingGlApi implements GlApi {
+    public static final int OP_ACTIVE_TEXTURE = 0;
+
+    public static final int OP_BIND_BUFFER = 1;
+
+    public static final int OP_BIND_TEXTURE = 2;
+
+    public static final int OP_BLEND_FUNC_SEPARATE = 3;
+
+    public static final int OP_BUFFER_DATA = 4;
+
+    public static final int OP_BUFFER_SUB_DATA = 5;
+
+    public static final int OP_CLEAR = 6;
+
+    public static final int OP_CLEAR_COLOR = 7;
+
+    public static final int OP_COMPRESSED_TEX_IMAGE_2D = 8;
+
+    public static final int OP_DEPTH_MASK = 9;
+
+    public static final int OP_DISABLE = 10;
+
+    public static final int OP_DISABLE_VERTEX_ATTRIB_ARRAY = 11;
+
+    public static final int OP_DRAW_ARRAYS = 12;
+
+    public static final int OP_DRAW_ELEMENTS = 13;
+
+    public static final int OP_ENABLE = 14;
+
+    public static final int OP_ENABLE_VERTEX_ATTRIB_ARRAY = 15;
+
+    public static final int OP_GEN_BUFFERS = 16;
+
+    public static final int OP_GEN_TEXTURES = 17;
+
+    public static final int OP_GENERATE_MIPMAP = 18;
+
+    public static final int OP_GET_ATTRIB_LOCATION = 19;
+
+    public static final int OP_GET_ERROR = 20;
+
+    public static final int OP_GET_STRING = 21;
+
+    public static final int OP_GET_UNIFORM_LOCATION = 22;
+
+    public static final int OP_LINE_WIDTH = 23;
+
+    public static final int OP_PIXEL_STOREI = 24;
+
+    public static final int OP_TEX_IMAGE_2D = 25;
+
+    public static final int OP_TEX_PARAMETERF = 26;
+
+    public static final int OP_TEX_PARAMETERI = 27;
+
+    public static final int OP_UNIFORM_1F = 28;
+
+    public static final int OP_UNIFORM_1I = 29;
+
+    public static final int OP_UNIFORM_4F = 30;
+
+    public static final int OP_UNIFORM_4FV = 31;
+
+    public static final int OP_UNIFORM_MATRIX_2FV = 32;
+
+    public static final int OP_UNIFORM_MATRIX_4FV = 33;
+
+    public static final int OP_USE_PROGRAM = 34;
+
+    public static final int OP_VERTEX_ATTRIB_POINTER = 35;
+
+    public static final int OP_VERTEX_ATTRIB_POINTER_BUFFER = 36;
+
+    public static final int OP_VIEWPORT = 37;
+
+    /**
+     * Number of opcodes.
+     */
+    public static final int OP_COUNT = 38;
+
+    private static final int INITIAL_COMMANDS = 256;
+
+    private static final int INITIAL_ARGS = 1024;
+
+    private static final int VEC4_SIZE = 4;
+
+    private static final int MAT2_SIZE = 4;
+
+    private static final int MAT4_SIZE = 16;
+
+    private final int[] mOpCounts = new int[OP_COUNT];
+
+    private final ArrayList<Object> mObjects = new ArrayList<>();
+
+    private final Map<String, Integer> mAttribLocations = new HashMap<>();
+
+    private final Map<String, Integer> mUniformLocations = new HashMap<>();
+
+    private final Map<Integer, String> mStrings = new HashMap<>();
+
+    // Per command: the opcode and the index of its first int, float and object argument.
+    private int[] mOps = new int[INITIAL_COMMANDS];
+
+    private int[] mIntStarts = new int[INITIAL_COMMANDS];
+
+    private int[] mFloatStarts = new int[INITIAL_COMMANDS];
+
+    private int[] mObjectStarts = new int[INITIAL_COMMANDS];
+
+    private int[] mInts = new int[INITIAL_ARGS];
+
+    private float[] mFloats = new float[INITIAL_ARGS];
+
+    private int mCommandCount;
+
+    private int mIntCount;
+
+    private int mFloatCount;
+
+    private int mNextName = 1;
+
+    // Names generated by a replay, which are not used.
+    private int[] mReplayNames = new int[1];
+
+    /**
+     * Set the result of glGetString.
+     *
+     * @param name Name, such as {@link android.opengl.GLES20#GL_EXTENSIONS}.
+     * @param value Result.
+     */
+    public void setString(int name, String value) {
+        mStrings.put(name, value);
+    }
+
+    /**
+     * Remove the recorded commands and keep the capacity. The generated names and the
+     * locations are kept, so the names used by the recorded displays stay valid.
+     */
+    public void clear() {
+        mCommandCount = 0;
+        mIntCount = 0;
+        mFloatCount = 0;
+        mObjects.clear();
+        for (int i = 0; i < OP_COUNT; i++) {
+            mOpCounts[i] = 0;
+        }
+    }
+
+    /**
+     * Obtain the number of recorded commands.
+     *
+     * @return Number of commands.
+     */
+    public int getCommandCount() {
+        return mCommandCount;
+    }
+
+    /**
+     * Obtain the number of recorded commands with an opcode.
+     *
+     * @param op Opcode.
+     * @return Number of commands.
+     */
+    public int getCount(int op) {
+        return mOpCounts[op];
+    }
+
+    /**
+     * Obtain the opcode of a command.
+     *
+     * @param command Index of the command.
+     * @return Opcode.
+     */
+    public int getOp(int command) {
+        return mOps[command];
+    }
+
+    /**
+     * Obtain an int argument of a command, in the order of the parameters.
+     *
+     * @param command Index of the command.
+     * @param index Index among the int and boolean arguments.
+     * @return Argument.
+     */
+    public int getInt(int command, int index) {
+        return mInts[mIntStarts[command] + index];
+    }
+
+    /**
+     * Obtain a float argument of a command, in the order of the parameters. The values of a
+     * float array follow the float arguments before it.
+     *
+     * @param command Index of the command.
+     * @param index Index among the float arguments.
+     * @return Argument.
+     */
+    public float getFloat(int command, int index) {
+        return mFloats[mFloatStarts[command] + index];
+    }
+
+    /**
+     * Obtain a buffer or string argument of a command.
+     *
+     * @param command Index of the command.
+     * @param index Index among the buffer and string arguments.
+     * @return Argument.
+     */
+    public Object getObject(int command, int index) {
+        return mObjects.get(mObjectStarts[command] + index);
+    }
+
+    /**
+     * Issue the recorded commands through another API. Queries are issued and their results
+     * are ignored, so the replay is faithful if the target generates the same names.
+     *
+     * @param target API that receives the commands.
+     */
+    public void replay(GlApi target) {
+        for (int i = 0; i < mCommandCount; i++) {
+            replay(target, i);
+        }
+    }
+
+    private void replay(GlApi target, int command) {
+        int in = mIntStarts[command];
+        int fl = mFloatStarts[command];
+        int ob = mObjectStarts[command];
+        int[] ints = mInts;
+        float[] floats = mFloats;
+        switch (mOps[command]) {
+            case OP_ACTIVE_TEXTURE:
+                target.glActiveTexture(ints[in]);
+                break;
+            case OP_BIND_BUFFER:
+                target.glBindBuffer(ints[in], ints[in + 1]);
+                break;
+            case OP_BIND_TEXTURE:
+                target.glBindTexture(ints[in], ints[in + 1]);
+                break;
+            case OP_BLEND_FUNC_SEPARATE:
+                target.glBlendFuncSeparate(ints[in], ints[in + 1], ints[in + 2], ints[in + 3]);
+                break;
+            case OP_BUFFER_DATA:
+                target.glBufferData(ints[in], ints[in + 1], (Buffer) mObjects.get(ob), ints[in + 2]);
+                break;
+            case OP_BUFFER_SUB_DATA:
+                target.glBufferSubData(ints[in], ints[in + 1], ints[in + 2], (Buffer) mObjects.get(ob));
+                break;
+            case OP_CLEAR:
+                target.glClear(ints[in]);
+                break;
+            case OP_CLEAR_COLOR:
+                target.glClearColor(floats[fl], floats[fl + 1], floats[fl + 2], floats[fl + 3]);
+                break;
+            case OP_COMPRESSED_TEX_IMAGE_2D:
+                target.glCompressedTexImage2D(ints[in], ints[in + 1], ints[in + 2], ints[in + 3], ints[in + 4],
+                        ints[in + 5], ints[in + 6], (Buffer) mObjects.get(ob));
+                break;
+            case OP_DEPTH_MASK:
+                target.glDepthMask(ints[in] != 0);
+                break;
+            case OP_DISABLE:
+                target.glDisable(ints[in]);
+                break;
+            case OP_DISABLE_VERTEX_ATTRIB_ARRAY:
+                target.glDisableVertexAttribArray(ints[in]);
+                break;
+            case OP_DRAW_ARRAYS:
+                target.glDrawArrays(ints[in], ints[in + 1], ints[in + 2]);
+                break;
+            case OP_DRAW_ELEMENTS:
+                target.glDrawElements(ints[in], ints[in + 1], ints[in + 2], ints[in + 3]);
+                break;
+            case OP_ENABLE:
+                target.glEnable(ints[in]);
+                break;
+            case OP_ENABLE_VERTEX_ATTRIB_ARRAY:
+                target.glEnableVertexAttribArray(ints[in]);
+                break;
+            case OP_GEN_BUFFERS:
+                target.glGenBuffers(ints[in], getReplayNames(ints[in]), 0);
+                break;
+            case OP_GEN_TEXTURES:
+                target.glGenTextures(ints[in], getReplayNames(ints[in]), 0);
+                break;
+            case OP_GENERATE_MIPMAP:
+                target.glGenerateMipmap(ints[in]);
+                break;
+            case OP_GET_ATTRIB_LOCATION:
+                target.glGetAttribLocation(ints[in], (String) mObjects.get(ob));
+                break;
+            case OP_GET_ERROR:
+                target.glGetError();
+                break;
+            case OP_GET_STRING:
+                target.glGetString(ints[in]);
+                break;
+            case OP_GET_UNIFORM_LOCATION:
+                target.glGetUniformLocation(ints[in], (String) mObjects.get(ob));
+                break;
+            case OP_LINE_WIDTH:
+                target.glLineWidth(floats[fl]);
+                break;
+            case OP_PIXEL_STOREI:
+                target.glPixelStorei(ints[in], ints[in + 1]);
+                break;
+            case OP_TEX_IMAGE_2D:
+                target.glTexImage2D(ints[in], ints[in + 1], ints[in + 2], ints[in + 3], ints[in + 4], ints[in + 5],
+                        ints[in + 6], ints[in + 7], (Buffer) mObjects.get(ob));
+                break;
+            case OP_TEX_PARAMETERF:
+                target.glTexParameterf(ints[in], ints[in + 1], floats[fl]);
+                break;
+            case OP_TEX_PARAMETERI:
+                target.glTexParameteri(ints[in], ints[in + 1], ints[in + 2]);
+                break;
+            case OP_UNIFORM_1F:
+                target.glUniform1f(ints[in], floats[fl]);
+                break;
+            case OP_UNIFORM_1I:
+                target.glUniform1i(ints[in], ints[in + 1]);
+                break;
+            case OP_UNIFORM_4F:
+                target.glUniform4f(ints[in], floats[fl], floats[fl + 1], floats[fl + 2], floats[fl + 3]);
+                break;
+            case OP_UNIFORM_4FV:
+                target.glUniform4fv(ints[in], ints[in + 1], floats, fl);
+                break;
+            case OP_UNIFORM_MATRIX_2FV:
+                target.glUniformMatrix2fv(ints[in], ints[in + 1], ints[in + 2] != 0, floats, fl);
+                break;
+            case OP_UNIFORM_MATRIX_4FV:
+                target.glUniformMatrix4fv(ints[in], ints[in + 1], ints[in + 2] != 0, floats, fl);
+                break;
+            case OP_USE_PROGRAM:
+                target.glUseProgram(ints[in]);
+                break;
+            case OP_VERTEX_ATTRIB_POINTER:
+                target.glVertexAttribPointer(ints[in], ints[in + 1], ints[in + 2], ints[in + 3] != 0, ints[in + 4],
+                        ints[in + 5]);
+                break;
+            case OP_VERTEX_ATTRIB_POINTER_BUFFER:
+                target.glVertexAttribPointer(ints[in], ints[in + 1], ints[in + 2], ints[in + 3] != 0, ints[in + 4],
+                        (Buffer) mObjects.get(ob));
+                break;
+            case OP_VIEWPORT:
+                target.glViewport(ints[in], ints[in + 1], ints[in + 2], ints[in + 3]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown opcode " + mOps[command]);
+        }
+    }
+
+    private int[] getReplayNames(int n) {
+        if (mReplayNames.length < n) {
+            mReplayNames = new int[n];
+        }
+        return mReplayNames;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        begin(OP_ACTIVE_TEXTURE);
+        putInt(texture);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        begin(OP_BIND_BUFFER);
+        putInt(target);
+        putInt(buffer);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        begin(OP_BIND_TEXTURE);
+        putInt(target);
+        putInt(texture);
+    }
+
+    @Override
+    public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+        begin(OP_BLEND_FUNC_SEPARATE);
+        putInt(srcRGB);
+        putInt(dstRGB);
+        putInt(srcAlpha);
+        putInt(dstAlpha);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        begin(OP_BUFFER_DATA);
+        putInt(target);
+        putInt(size);
+        putInt(usage);
+        mObjects.add(data);
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        begin(OP_BUFFER_SUB_DATA);
+        putInt(target);
+        putInt(offset);
+        putInt(size);
+        mObjects.add(data);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        begin(OP_CLEAR);
+        putInt(mask);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        begin(OP_CLEAR_COLOR);
+        putFloat(red);
+        putFloat(green);
+        putFloat(blue);
+        putFloat(alpha);
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                                       int imageSize, Buffer data) {
+        begin(OP_COMPRESSED_TEX_IMAGE_2D);
+        putInt(target);
+        putInt(level);
+        putInt(internalformat);
+        putInt(width);
+        putInt(height);
+        putInt(border);
+        putInt(imageSize);
+        mObjects.add(data);
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        begin(OP_DEPTH_MASK);
+        putInt(flag ? 1 : 0);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        begin(OP_DISABLE);
+        putInt(cap);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        begin(OP_DISABLE_VERTEX_ATTRIB_ARRAY);
+        putInt(index);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        begin(OP_DRAW_ARRAYS);
+        putInt(mode);
+        putInt(first);
+        putInt(count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        begin(OP_DRAW_ELEMENTS);
+        putInt(mode);
+        putInt(count);
+        putInt(type);
+        putInt(offset);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        begin(OP_ENABLE);
+        putInt(cap);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        begin(OP_ENABLE_VERTEX_ATTRIB_ARRAY);
+        putInt(index);
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        begin(OP_GEN_BUFFERS);
+        genNames(n, buffers, offset);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        begin(OP_GEN_TEXTURES);
+        genNames(n, textures, offset);
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        begin(OP_GENERATE_MIPMAP);
+        putInt(target);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        begin(OP_GET_ATTRIB_LOCATION);
+        putInt(program);
+        mObjects.add(name);
+        return getLocation(mAttribLocations, name);
+    }
+
+    @Override
+    public int glGetError() {
+        begin(OP_GET_ERROR);
+        return 0;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        begin(OP_GET_STRING);
+        putInt(name);
+        String value = mStrings.get(name);
+        return value == null ? "" : value;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        begin(OP_GET_UNIFORM_LOCATION);
+        putInt(program);
+        mObjects.add(name);
+        return getLocation(mUniformLocations, name);
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+        begin(OP_LINE_WIDTH);
+        putFloat(width);
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        begin(OP_PIXEL_STOREI);
+        putInt(pname);
+        putInt(param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                             int type, Buffer pixels) {
+        begin(OP_TEX_IMAGE_2D);
+        putInt(target);
+        putInt(level);
+        putInt(internalformat);
+        putInt(width);
+        putInt(height);
+        putInt(border);
+        putInt(format);
+        putInt(type);
+        mObjects.add(pixels);
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        begin(OP_TEX_PARAMETERF);
+        putInt(target);
+        putInt(pname);
+        putFloat(param);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        begin(OP_TEX_PARAMETERI);
+        putInt(target);
+        putInt(pname);
+        putInt(param);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        begin(OP_UNIFORM_1F);
+        putInt(location);
+        putFloat(x);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        begin(OP_UNIFORM_1I);
+        putInt(location);
+        putInt(x);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        begin(OP_UNIFORM_4F);
+        putInt(location);
+        putFloat(x);
+        putFloat(y);
+        putFloat(z);
+        putFloat(w);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        begin(OP_UNIFORM_4FV);
+        putInt(location);
+        putInt(count);
+        putFloats(v, offset, count * VEC4_SIZE);
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        begin(OP_UNIFORM_MATRIX_2FV);
+        putInt(location);
+        putInt(count);
+        putInt(transpose ? 1 : 0);
+        putFloats(value, offset, count * MAT2_SIZE);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        begin(OP_UNIFORM_MATRIX_4FV);
+        putInt(location);
+        putInt(count);
+        putInt(transpose ? 1 : 0);
+        putFloats(value, offset, count * MAT4_SIZE);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        begin(OP_USE_PROGRAM);
+        putInt(program);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        begin(OP_VERTEX_ATTRIB_POINTER);
+        putInt(index);
+        putInt(size);
+        putInt(type);
+        putInt(normalized ? 1 : 0);
+        putInt(stride);
+        putInt(offset);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        begin(OP_VERTEX_ATTRIB_POINTER_BUFFER);
+        putInt(index);
+        putInt(size);
+        putInt(type);
+        putInt(normalized ? 1 : 0);
+        putInt(stride);
+        mObjects.add(ptr);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        begin(OP_VIEWPORT);
+        putInt(x);
+        putInt(y);
+        putInt(width);
+        putInt(height);
+    }
+
+    private void begin(int op) {
+        if (mCommandCount == mOps.length) {
+            int capacity = mCommandCount * 2;
+            mOps = copyOf(mOps, capacity);
+            mIntStarts = copyOf(mIntStarts, capacity);
+            mFloatStarts = copyOf(mFloatStarts, capacity);
+            mObjectStarts = copyOf(mObjectStarts, capacity);
+        }
+        mOps[mCommandCount] = op;
+        mIntStarts[mCommandCount] = mIntCount;
+        mFloatStarts[mCommandCount] = mFloatCount;
+        mObjectStarts[mCommandCount] = mObjects.size();
+        mCommandCount++;
+        mOpCounts[op]++;
+    }
+
+    private void putInt(int value) {
+        if (mIntCount == mInts.length) {
+            mInts = copyOf(mInts, mIntCount * 2);
+        }
+        mInts[mIntCount++] = value;
+    }
+
+    private void putFloat(float value) {
+        if (mFloatCount == mFloats.length) {
+            float[] floats = new float[mFloatCount * 2];
+            System.arraycopy(mFloats, 0, floats, 0, mFloatCount);
+            mFloats = floats;
+        }
+        mFloats[mFloatCount++] = value;
+    }
+
+    private void putFloats(float[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            putFloat(values[offset + i]);
+        }
+    }
+
+    // The generated names are recorded after the count.
+    private void genNames(int n, int[] names, int offset) {
+        putInt(n);
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = mNextName++;
+            putInt(names[offset + i]);
+        }
+    }
+
+    private static int getLocation(Map<String, Integer> locations, String name) {
+        Integer location = locations.get(name);
+        if (location == null) {
+            location = locations.size();
+            locations.put(name, location);
+        }
+        return location;
+    }
+
+    private static int[] copyOf(int[] values, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+        return copy;
+    }
+}
@@ -0,0 +1,130 @@
+package com.vsm.myarapplication.common;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * JVM tests of the command buffer of {@link RecordingGlApi}.
+ */
+public class RecordingGlApiTest {
+    private final RecordingGlApi mGl = new RecordingGlApi();
+
+    @Test
+    public void commandsAreRecordedWithTheirArguments() {
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        mGl.glClearColor(0.1f, 0.2f, 0.3f, 1.0f);
+        mGl.glDepthMask(true);
+
+        assertEquals(3, mGl.getCommandCount());
+        assertEquals(RecordingGlApi.OP_BIND_BUFFER, mGl.getOp(0));
+        assertEquals(GLES20.GL_ARRAY_BUFFER, mGl.getInt(0, 0));
+        assertEquals(5, mGl.getInt(0, 1));
+        assertEquals(RecordingGlApi.OP_CLEAR_COLOR, mGl.getOp(1));
+        assertEquals(0.3f, mGl.getFloat(1, 2), 0.0f);
+        assertEquals(1, mGl.getInt(2, 0));
+    }
+
+    @Test
+    public void floatArraysAreCopied() {
+        float[] matrix = new float[20];
+        matrix[4] = 2.0f;
+        mGl.glUniformMatrix4fv(7, 1, false, matrix, 4);
+        matrix[4] = 3.0f;
+
+        assertEquals(2.0f, mGl.getFloat(0, 0), 0.0f);
+        assertEquals(1, mGl.getInt(0, 1));
+    }
+
+    @Test
+    public void buffersAreKeptByReference() {
+        ByteBuffer data = ByteBuffer.allocate(16);
+        mGl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, 16, data);
+
+        assertSame(data, mGl.getObject(0, 0));
+    }
+
+    @Test
+    public void getCount_countsEachOpcode() {
+        mGl.glDrawArrays(GLES20.GL_POINTS, 0, 3);
+        mGl.glDrawArrays(GLES20.GL_LINES, 0, 4);
+        mGl.glUseProgram(1);
+
+        assertEquals(2, mGl.getCount(RecordingGlApi.OP_DRAW_ARRAYS));
+        assertEquals(1, mGl.getCount(RecordingGlApi.OP_USE_PROGRAM));
+        assertEquals(0, mGl.getCount(RecordingGlApi.OP_DRAW_ELEMENTS));
+    }
+
+    @Test
+    public void queries_returnStableResults() {
+        int[] names = new int[3];
+        mGl.glGenBuffers(2, names, 1);
+        assertEquals(1, names[1]);
+        assertEquals(2, names[2]);
+        assertEquals(2, mGl.getInt(0, 2));
+
+        int position = mGl.glGetAttribLocation(1, "inPosition");
+        int normal = mGl.glGetAttribLocation(1, "inNormal");
+        assertNotEquals(position, normal);
+        assertEquals(position, mGl.glGetAttribLocation(2, "inPosition"));
+
+        assertEquals("", mGl.glGetString(GLES20.GL_EXTENSIONS));
+        mGl.setString(GLES20.GL_EXTENSIONS, "GL_OES_element_index_uint");
+        assertEquals("GL_OES_element_index_uint", mGl.glGetString(GLES20.GL_EXTENSIONS));
+        assertEquals(GLES20.GL_NO_ERROR, mGl.glGetError());
+    }
+
+    @Test
+    public void clear_keepsNames() {
+        int[] names = new int[1];
+        mGl.glGenTextures(1, names, 0);
+        mGl.clear();
+        assertEquals(0, mGl.getCommandCount());
+        assertEquals(0, mGl.getCount(RecordingGlApi.OP_GEN_TEXTURES));
+
+        mGl.glGenTextures(1, names, 0);
+        assertEquals(2, names[0]);
+    }
+
+    @Test
+    public void growingBuffers_keepEarlierCommands() {
+        float[] matrix = new float[16];
+        for (int i = 0; i < 1000; i++) {
+            matrix[0] = i;
+            mGl.glUniformMatrix4fv(i, 1, false, matrix, 0);
+        }
+
+        assertEquals(1000, mGl.getCommandCount());
+        assertEquals(999, mGl.getInt(999, 0));
+        assertEquals(999.0f, mGl.getFloat(999, 0), 0.0f);
+        assertEquals(10.0f, mGl.getFloat(10, 0), 0.0f);
+    }
+
+    @Test
+    public void replay_issuesTheSameCommands() {
+        int[] names = new int[2];
+        mGl.glGenBuffers(2, names, 0);
+        mGl.glUniform4fv(3, 2, new float[]{1, 2, 3, 4, 5, 6, 7, 8}, 0);
+        mGl.glVertexAttribPointer(0, 3, GLES20.GL_FLOAT, false, 12, ByteBuffer.allocate(12));
+        mGl.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_SHORT, 0);
+
+        CountingGlApi counter = new CountingGlApi();
+        mGl.replay(counter);
+        assertEquals(mGl.getCommandCount(), counter.getCallCount());
+
+        RecordingGlApi copy = new RecordingGlApi();
+        mGl.replay(copy);
+        assertEquals(mGl.getCommandCount(), copy.getCommandCount());
+        for (int i = 0; i < mGl.getCommandCount(); i++) {
+            assertEquals(mGl.getOp(i), copy.getOp(i));
+        }
+        assertEquals(8.0f, copy.getFloat(1, 7), 0.0f);
+        assertEquals(6, copy.getInt(3, 1));
+    }
+}
@@ -0,0 +1,117 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JVM tests of the GL error check policy of {@link ShaderUtil}.
+ */
+public class ShaderUtilTest {
+    private static final String TAG = "Test";
+
+    private static final int GL_INVALID_ENUM = 0x0500;
+
+    private final CountingGlApi mGl = new CountingGlApi();
+
+    @Before
+    public void setUp() {
+        ShaderUtil.setGlApi(mGl);
+        ShaderUtil.resetGlErrorCounts();
+    }
+
+    @After
+    public void tearDown() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_ALWAYS, ShaderUtil.DEFAULT_SAMPLE_INTERVAL);
+        ShaderUtil.setGlApi(new Gles20Api());
+        ShaderUtil.resetGlErrorCounts();
+    }
+
+    @Test
+    public void alwaysPolicyChecksEverySite() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_ALWAYS, 1);
+        ShaderUtil.beginGlFrame();
+        ShaderUtil.checkGlError(TAG, "Draw start.");
+        mGl.addError(GL_INVALID_ENUM);
+        try {
+            ShaderUtil.checkGlError(TAG, "Draw end.");
+            fail();
+        } catch (ArDemoRuntimeException e) {
+            assertTrue(e.getMessage().contains("Draw end."));
+        }
+        ShaderUtil.endGlFrame(TAG);
+        assertEquals(Integer.valueOf(1), ShaderUtil.getGlErrorCounts().get(TAG + ": Draw end."));
+    }
+
+    @Test
+    public void frameEndPolicyChecksOncePerFrame() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_FRAME_END, 1);
+        ShaderUtil.beginGlFrame();
+        mGl.addError(GL_INVALID_ENUM);
+        ShaderUtil.checkGlError(TAG, "Draw start.");
+        ShaderUtil.checkGlError(TAG, "Draw end.");
+        assertEquals(0, mGl.getCallCount());
+
+        // The end of the frame collects the error without throwing, for the last call site.
+        ShaderUtil.endGlFrame(TAG);
+        assertEquals(2, mGl.getCallCount());
+        Map<String, Integer> counts = ShaderUtil.getGlErrorCounts();
+        assertEquals(1, counts.size());
+        assertEquals(Integer.valueOf(1), counts.get(TAG + ": Draw end."));
+    }
+
+    @Test
+    public void frameEndErrorsWithoutCallSitesCountForTheRenderer() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_FRAME_END, 1);
+        ShaderUtil.beginGlFrame();
+        ShaderUtil.checkGlError("Display", "Draw end.");
+        ShaderUtil.endGlFrame(TAG);
+
+        // The call site of the previous frame is forgotten.
+        ShaderUtil.beginGlFrame();
+        mGl.addError(GL_INVALID_ENUM);
+        ShaderUtil.endGlFrame(TAG);
+        Map<String, Integer> counts = ShaderUtil.getGlErrorCounts();
+        assertEquals(1, counts.size());
+        assertEquals(Integer.valueOf(1), counts.get(TAG + ": Frame end."));
+    }
+
+    @Test
+    public void sampledPolicyChecksEveryNthFrame() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_SAMPLED, 4);
+        int checkedFrames = 0;
+        for (int i = 0; i < 12; i++) {
+            ShaderUtil.beginGlFrame();
+            mGl.reset();
+            ShaderUtil.checkGlError(TAG, "Draw start.");
+            if (mGl.getCallCount() > 0) {
+                checkedFrames++;
+            }
+            ShaderUtil.endGlFrame(TAG);
+        }
+        assertEquals(3, checkedFrames);
+    }
+
+    @Test
+    public void checksOutsideAFrameAlwaysRun() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_FRAME_END, 1);
+        mGl.addError(GL_INVALID_ENUM);
+        try {
+            ShaderUtil.checkGlError(TAG, "Init end.");
+            fail();
+        } catch (ArDemoRuntimeException e) {
+            assertEquals(Integer.valueOf(1), ShaderUtil.getGlErrorCounts().get(TAG + ": Init end."));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPolicyIsRejected() {
+        ShaderUtil.setGlCheckPolicy(ShaderUtil.GL_CHECK_SAMPLED, 0);
+    }
+}
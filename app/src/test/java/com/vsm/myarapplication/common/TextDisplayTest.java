@@ -0,0 +1,114 @@
+package com.vsm.myarapplication.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the change detection and rate limit of {@link TextDisplay}.
+ */
+public class TextDisplayTest {
+    private static final long INTERVAL_MS = 100L;
+
+    private final List<Runnable> mPosted = new ArrayList<>();
+
+    private final List<String> mShown = new ArrayList<>();
+
+    private final TextDisplay mTextDisplay = new TextDisplay(INTERVAL_MS, new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mPosted.add(command);
+        }
+    });
+
+    public TextDisplayTest() {
+        mTextDisplay.setListener(new TextDisplay.OnTextInfoChangeListener() {
+            @Override
+            public void textInfoChanged(char[] text, int length, float positionX, float positionY) {
+                mShown.add(new String(text, 0, length));
+            }
+        });
+    }
+
+    @Test
+    public void unchangedTextIsNotPublished() {
+        assertTrue(mTextDisplay.onDrawFrame(new StringBuilder("FPS=30"), 0L));
+        assertFalse(mTextDisplay.onDrawFrame(new StringBuilder("FPS=30"), 500L));
+        assertFalse(mTextDisplay.onDrawFrame(new StringBuilder("FPS=30"), 1000L));
+        assertEquals(1, mPosted.size());
+        runPosted();
+        assertEquals("FPS=30", mShown.get(0));
+    }
+
+    @Test
+    public void changesAreRateLimited() {
+        StringBuilder sb = new StringBuilder("FPS=30");
+        assertTrue(mTextDisplay.onDrawFrame(sb, 0L));
+        runPosted();
+        sb.setLength(0);
+        sb.append("FPS=31");
+        assertFalse(mTextDisplay.onDrawFrame(sb, INTERVAL_MS - 1));
+
+        // The change is published by a later frame.
+        assertTrue(mTextDisplay.onDrawFrame(sb, INTERVAL_MS));
+        runPosted();
+        assertEquals(2, mShown.size());
+        assertEquals("FPS=31", mShown.get(1));
+    }
+
+    @Test
+    public void queuedTaskShowsTheLatestText() {
+        mTextDisplay.onDrawFrame(new StringBuilder("first"), 0L);
+        Runnable task = mPosted.get(0);
+        mTextDisplay.onDrawFrame(new StringBuilder("a longer second text"), INTERVAL_MS);
+        assertEquals(1, mPosted.size());
+        runPosted();
+        assertEquals(1, mShown.size());
+        assertEquals("a longer second text", mShown.get(0));
+
+        // The task is posted again for the next change.
+        mTextDisplay.onDrawFrame(new StringBuilder("third"), 2 * INTERVAL_MS);
+        assertSame(task, mPosted.get(0));
+    }
+
+    @Test
+    public void nullClearsTheText() {
+        mTextDisplay.onDrawFrame(new StringBuilder("hand"), 0L);
+        runPosted();
+        assertTrue(mTextDisplay.onDrawFrame(null, INTERVAL_MS));
+        assertFalse(mTextDisplay.onDrawFrame(new StringBuilder(), 2 * INTERVAL_MS));
+        runPosted();
+        assertEquals("", mShown.get(1));
+    }
+
+    @Test
+    public void recreatedSurfacePublishesTheTextAgain() {
+        TextDisplay.OnTextInfoChangeListener listener = new TextDisplay.OnTextInfoChangeListener() {
+            @Override
+            public void textInfoChanged(char[] text, int length, float positionX, float positionY) {
+                mShown.add("again " + new String(text, 0, length));
+            }
+        };
+        mTextDisplay.onDrawFrame(new StringBuilder("FPS=30"), 0L);
+        runPosted();
+        mTextDisplay.setListener(listener);
+        assertTrue(mTextDisplay.onDrawFrame(new StringBuilder("FPS=30"), 1L));
+        runPosted();
+        assertEquals("again FPS=30", mShown.get(1));
+    }
+
+    private void runPosted() {
+        List<Runnable> posted = new ArrayList<>(mPosted);
+        mPosted.clear();
+        for (Runnable runnable : posted) {
+            runnable.run();
+        }
+    }
+}
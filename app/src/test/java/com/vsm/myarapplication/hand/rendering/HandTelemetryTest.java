@@ -0,0 +1,136 @@
+package com.vsm.myarapplication.hand.rendering;
+
+import com.huawei.hiar.ARCoordinateSystemType;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the hand telemetry ring and its binary dump.
+ */
+public class HandTelemetryTest {
+    private static final ARCoordinateSystemType CAMERA = ARCoordinateSystemType.COORDINATE_SYSTEM_TYPE_3D_CAMERA;
+
+    @Test
+    public void newestRecordIsFormatted() {
+        HandTelemetry telemetry = new HandTelemetry(4);
+        record(telemetry, 1L, 7);
+        telemetry.record(2L, 8, 1, 3, CAMERA, null, new float[]{0.5f, 1.5f, 2.5f}, new int[]{4},
+                new float[]{1.0f, 2.0f, 3.0f}, new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 63, 40);
+        StringBuilder sb = new StringBuilder();
+        telemetry.appendRecord(sb, 0);
+        String text = sb.toString();
+        assertTrue(text, text.startsWith("Hand id=8 type=1" + System.lineSeparator()));
+        assertTrue(text, text.contains("GestureType=3 coordinates=" + CAMERA));
+        assertTrue(text, text.contains("gestureOrientation=[0.5, 1.5, 2.5]"));
+        assertTrue(text, text.contains("gestureAction=[4]"));
+
+        // Longer arrays are truncated, but keep their length.
+        assertTrue(text, text.contains("gestureHandBox=[1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, ... 10 values]"));
+        assertTrue(text, text.contains("Skeleton coordinates=null length=63 connections=40"));
+
+        sb.setLength(0);
+        telemetry.appendRecord(sb, 1);
+        assertTrue(sb.toString().startsWith("Hand id=7 "));
+    }
+
+    @Test
+    public void oldRecordsAreOverwritten() {
+        HandTelemetry telemetry = new HandTelemetry(3);
+        for (int i = 0; i < 5; i++) {
+            record(telemetry, i, i);
+        }
+        assertEquals(5, telemetry.getRecordCount());
+        StringBuilder sb = new StringBuilder();
+        telemetry.appendRecord(sb, 2);
+        assertTrue(sb.toString().startsWith("Hand id=2 "));
+
+        // Overwritten records are not formatted.
+        sb.setLength(0);
+        telemetry.appendRecord(sb, 3);
+        assertEquals(0, sb.length());
+    }
+
+    @Test
+    public void dumpHoldsEveryRecordInOrder() throws Exception {
+        File file = File.createTempFile("hand", ".bin");
+        try {
+            HandTelemetry telemetry = new HandTelemetry(4);
+            record(telemetry, 100L, 99);
+            telemetry.startDump(file);
+            for (int i = 0; i < 7; i++) {
+                record(telemetry, i, i);
+            }
+            telemetry.stopDump().get();
+
+            ByteBuffer dump = read(file);
+            assertEquals(HandTelemetry.MAGIC, dump.getInt());
+            assertEquals(HandTelemetry.VERSION, dump.getInt());
+            assertEquals(HandTelemetry.RECORD_SIZE, dump.getInt());
+            assertEquals(7 - telemetry.getDumpDroppedCount(), dump.remaining() / HandTelemetry.RECORD_SIZE);
+            assertEquals(0, dump.remaining() % HandTelemetry.RECORD_SIZE);
+            long previous = -1L;
+            while (dump.hasRemaining()) {
+                int start = dump.position();
+                long time = dump.getLong();
+                assertTrue(time > previous);
+                assertEquals(time, dump.getInt());
+                previous = time;
+                dump.position(start + HandTelemetry.RECORD_SIZE);
+            }
+            assertEquals(6L, previous);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void restartedDumpKeepsItsFileOpen() throws Exception {
+        File first = File.createTempFile("hand", ".bin");
+        File second = File.createTempFile("hand", ".bin");
+        try {
+            HandTelemetry telemetry = new HandTelemetry(4);
+            telemetry.startDump(first);
+            record(telemetry, 1L, 1);
+            telemetry.stopDump();
+
+            // The second dump starts before the first one is closed.
+            telemetry.startDump(second);
+            record(telemetry, 2L, 2);
+            telemetry.stopDump().get();
+
+            assertEquals(HandTelemetry.HEADER_SIZE + HandTelemetry.RECORD_SIZE, read(first).remaining());
+            ByteBuffer dump = read(second);
+            assertEquals(HandTelemetry.HEADER_SIZE + HandTelemetry.RECORD_SIZE, dump.remaining());
+            assertEquals(2L, dump.getLong(HandTelemetry.HEADER_SIZE));
+        } finally {
+            assertTrue(first.delete());
+            assertTrue(second.delete());
+        }
+    }
+
+    private static void record(HandTelemetry telemetry, long time, int handId) {
+        telemetry.record(time, handId, 0, 0, CAMERA, CAMERA, null, null, null, null, 0, 0);
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                continue;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests and benchmark of ray-cast picking against a {@link BoundingVolumeHierarchy}.
+ */
+public class BoundingVolumeHierarchyTest {
+    private static final int BOX = BoundingVolumeHierarchy.BOX_SIZE;
+
+    private static final float[] IDENTITY = new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    @Test
+    public void raycastReturnsNearestOfOverlappingBoxes() {
+        // Three boxes behind each other along -Z; the middle one is inserted first.
+        float[] boxes = new float[]{
+            -1, -1, -6, 1, 1, -4,
+            -1, -1, -10, 1, 1, -8,
+            -2, -2, -3.5f, 2, 2, -2
+        };
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+        hierarchy.build(boxes, 3);
+        PickingRay ray = new PickingRay();
+        ray.set(0, 0, 0, 0, 0, -1);
+        assertEquals(2, hierarchy.raycast(ray));
+        assertEquals(2.0f, hierarchy.getHitDistance(), 1e-6f);
+
+        ray.set(0, 0, 0, 0, 0, 1);
+        assertEquals(BoundingVolumeHierarchy.NO_HIT, hierarchy.raycast(ray));
+    }
+
+    @Test
+    public void refitMovesItem() {
+        float[] boxes = new float[]{
+            -1, -1, -3, 1, 1, -2,
+            4, -1, -3, 6, 1, -2
+        };
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+        hierarchy.build(boxes, 2);
+        PickingRay ray = new PickingRay();
+        ray.set(5, 0, 0, 0, 0, -1);
+        assertEquals(1, hierarchy.raycast(ray));
+
+        // Move the first box in front of the second one.
+        float[] moved = new float[]{4, -1, -1.5f, 6, 1, -1};
+        hierarchy.refit(0, moved, 0);
+        assertEquals(0, hierarchy.raycast(ray));
+        assertEquals(1.0f, hierarchy.getHitDistance(), 1e-6f);
+        float[] bounds = new float[BOX];
+        assertTrue(hierarchy.getBounds(bounds));
+        assertEquals(4.0f, bounds[0], 0.0f);
+    }
+
+    @Test
+    public void raycastMatchesLinearScan() {
+        Random random = new Random(7);
+        int count = 500;
+        float[] boxes = createRandomBoxes(random, count);
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+        hierarchy.build(boxes, count);
+        PickingRay ray = new PickingRay();
+        for (int i = 0; i < 1000; i++) {
+            setRandomRay(random, ray);
+            int expected = linearScan(ray, boxes, count);
+            int actual = hierarchy.raycast(ray);
+            if (expected == BoundingVolumeHierarchy.NO_HIT) {
+                assertEquals(expected, actual);
+            } else {
+                assertEquals(ray.intersect(boxes, expected * BOX), hierarchy.getHitDistance(), 0.0f);
+            }
+
+            // Move one random item and compare again after the refit.
+            int item = random.nextInt(count);
+            float[] box = createRandomBoxes(random, 1);
+            System.arraycopy(box, 0, boxes, item * BOX, BOX);
+            hierarchy.refit(item, boxes, item * BOX);
+        }
+    }
+
+    @Test
+    public void screenRayPassesThroughTappedPixel() {
+        PickingRay ray = new PickingRay();
+        float[] projection = createPerspective(60.0f, 0.5f, 0.1f, 100.0f);
+
+        // The center of the screen looks straight down the -Z axis of the camera.
+        assertTrue(ray.setFromScreen(540, 1170, 1080, 2340, IDENTITY, projection));
+        float[] box = new float[]{-0.1f, -0.1f, -5.1f, 0.1f, 0.1f, -4.9f};
+        // The ray starts on the near plane at z = -0.1.
+        assertEquals(4.8f, ray.intersect(box, 0), 1e-3f);
+
+        // A tap in the top-left corner misses a box in the center.
+        assertTrue(ray.setFromScreen(0, 0, 1080, 2340, IDENTITY, projection));
+        assertEquals(PickingRay.NO_INTERSECTION, ray.intersect(box, 0), 0.0f);
+    }
+
+    @Test
+    public void pickerRefitsOnlyMovedObjects() {
+        ObjectPicker picker = new ObjectPicker();
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int center = objects.add("center", new float[4]);
+        int side = objects.add("side", new float[4]);
+        objects.setAnchorMatrix(objects.indexOf(center), createTranslation(0.0f, -5.0f));
+        objects.setAnchorMatrix(objects.indexOf(side), createTranslation(3.0f, -5.0f));
+        float[] box = new float[]{-0.1f, -0.1f, -0.1f, 0.1f, 0.1f, 0.1f};
+        float[] projection = createPerspective(60.0f, 0.5f, 0.1f, 100.0f);
+        assertEquals(center, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+        assertEquals(0, objects.getDirtyCount());
+
+        // Swap the positions; the hierarchy follows the dirty objects without a rebuild.
+        objects.setAnchorMatrix(objects.indexOf(center), createTranslation(3.0f, -5.0f));
+        objects.setAnchorMatrix(objects.indexOf(side), createTranslation(0.0f, -5.0f));
+        assertEquals(2, objects.getDirtyCount());
+        assertEquals(side, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+
+        // Removing an object rebuilds the hierarchy.
+        objects.remove(side);
+        assertEquals(ObjectStore.NO_HANDLE, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+    }
+
+    @Test
+    public void pickerSkipsHiddenObjects() {
+        ObjectPicker picker = new ObjectPicker();
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int near = objects.add("near", new float[4]);
+        int far = objects.add("far", new float[4]);
+        objects.setAnchorMatrix(objects.indexOf(near), createTranslation(0.0f, -5.0f));
+        objects.setAnchorMatrix(objects.indexOf(far), createTranslation(0.0f, -10.0f));
+        float[] box = new float[]{-0.1f, -0.1f, -0.1f, 0.1f, 0.1f, 0.1f};
+        float[] projection = createPerspective(60.0f, 0.5f, 0.1f, 100.0f);
+        assertEquals(near, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+
+        // The anchor of the near object is no longer tracked.
+        objects.setVisible(objects.indexOf(near), false);
+        assertEquals(far, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+
+        // A hidden object that moves is not refitted into the hierarchy.
+        objects.setAnchorMatrix(objects.indexOf(near), createTranslation(0.0f, -4.0f));
+        assertEquals(far, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+        objects.setVisible(objects.indexOf(far), false);
+        assertEquals(ObjectStore.NO_HANDLE, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+
+        objects.setVisible(objects.indexOf(near), true);
+        assertEquals(near, picker.pick(objects, box, IDENTITY, projection, 540, 1170, 1080, 2340));
+    }
+
+    @Test
+    public void pickerRebuildsWhenTheModelBoundsArrive() {
+        ObjectPicker picker = new ObjectPicker();
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int handle = objects.add("object", new float[4]);
+        objects.setAnchorMatrix(objects.indexOf(handle), createTranslation(0.0f, -5.0f));
+        float[] projection = createPerspective(60.0f, 0.5f, 0.1f, 100.0f);
+
+        // The model is still loading, so its bounding box is empty; a tap beside the object misses.
+        float[] box = new float[BOX];
+        assertEquals(ObjectStore.NO_HANDLE, picker.pick(objects, box, IDENTITY, projection, 560, 1170, 1080, 2340));
+
+        float[] loadedBox = new float[]{-0.5f, -0.5f, -0.5f, 0.5f, 0.5f, 0.5f};
+        assertEquals(handle, picker.pick(objects, loadedBox, IDENTITY, projection, 560, 1170, 1080, 2340));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void compareRaycastWithLinearScan() {
+        Random random = new Random(11);
+        PickingRay ray = new PickingRay();
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+        int queries = 2000;
+        for (int count : new int[]{16, 256, 4096, 65536}) {
+            float[] boxes = createRandomBoxes(random, count);
+            hierarchy.build(boxes, count);
+            long linearNanos = 0L;
+            long hierarchyNanos = 0L;
+            int checksum = 0;
+            for (int i = 0; i < queries; i++) {
+                setRandomRay(random, ray);
+                long start = System.nanoTime();
+                checksum += linearScan(ray, boxes, count);
+                linearNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                checksum -= hierarchy.raycast(ray);
+                hierarchyNanos += System.nanoTime() - start;
+            }
+            System.out.println("Pick among " + count + " objects: linear scan " + linearNanos / queries
+                    + " ns, hierarchy " + hierarchyNanos / queries + " ns (" + checksum + ")");
+        }
+    }
+
+    private static int linearScan(PickingRay ray, float[] boxes, int count) {
+        int nearest = BoundingVolumeHierarchy.NO_HIT;
+        float nearestDistance = PickingRay.NO_INTERSECTION;
+        for (int i = 0; i < count; i++) {
+            float distance = ray.intersect(boxes, i * BOX);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private static float[] createRandomBoxes(Random random, int count) {
+        float[] boxes = new float[count * BOX];
+        for (int i = 0; i < count; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float center = random.nextFloat() * 20.0f - 10.0f;
+                float halfSize = 0.05f + random.nextFloat() * 0.2f;
+                boxes[i * BOX + axis] = center - halfSize;
+                boxes[i * BOX + axis + 3] = center + halfSize;
+            }
+        }
+        return boxes;
+    }
+
+    private static void setRandomRay(Random random, PickingRay ray) {
+        ray.set(random.nextFloat() * 2.0f - 1.0f, random.nextFloat() * 2.0f - 1.0f, 12.0f,
+                random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, -1.0f);
+    }
+
+    // Column-major perspective projection, the same as android.opengl.Matrix#perspectiveM.
+    private static float[] createTranslation(float x, float z) {
+        float[] matrix = IDENTITY.clone();
+        matrix[12] = x;
+        matrix[14] = z;
+        return matrix;
+    }
+
+    static float[] createPerspective(float fovY, float aspect, float near, float far) {
+        float f = 1.0f / (float) Math.tan(Math.toRadians(fovY) / 2.0);
+        float rangeReciprocal = 1.0f / (near - far);
+        float[] matrix = new float[16];
+        matrix[0] = f / aspect;
+        matrix[5] = f;
+        matrix[10] = (far + near) * rangeReciprocal;
+        matrix[11] = -1.0f;
+        matrix[14] = 2.0f * far * near * rangeReciprocal;
+        return matrix;
+    }
+}
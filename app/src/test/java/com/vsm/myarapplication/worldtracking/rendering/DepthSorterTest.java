@@ -0,0 +1,251 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JVM tests and benchmark of the temporally coherent depth sorter.
+ */
+public class DepthSorterTest {
+    @Test
+    public void sortsByDescendingKey() {
+        Random random = new Random(1);
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        for (int count : new int[]{0, 1, 2, 17, 300}) {
+            Object[] items = createItems(count);
+            float[] keys = randomKeys(random, count);
+            sortFrame(sorter, items, keys);
+            assertSorted(sorter, items, keys);
+        }
+    }
+
+    @Test
+    public void coherentFramesUseInsertionSort() {
+        Random random = new Random(2);
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        Object[] items = createItems(500);
+        float[] keys = randomKeys(random, items.length);
+        sortFrame(sorter, items, keys);
+        assertTrue(sorter.isFullSort());
+
+        // Small camera motion swaps only neighbors in depth.
+        for (int frame = 0; frame < 20; frame++) {
+            jitter(random, keys, 0.01f);
+            sortFrame(sorter, items, keys);
+            assertFalse(sorter.isFullSort());
+            assertSorted(sorter, items, keys);
+        }
+    }
+
+    @Test
+    public void largeChangesFallBackToFullSort() {
+        Random random = new Random(3);
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        Object[] items = createItems(500);
+        sortFrame(sorter, items, randomKeys(random, items.length));
+        float[] keys = randomKeys(random, items.length);
+        sortFrame(sorter, items, keys);
+        assertTrue(sorter.isFullSort());
+        assertSorted(sorter, items, keys);
+    }
+
+    @Test
+    public void changedItemsDropThePreviousOrder() {
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        Object[] items = createItems(4);
+        sortFrame(sorter, items, new float[]{1.0f, 4.0f, 2.0f, 3.0f});
+        assertSame(items[1], sorter.get(0));
+
+        // An item is removed, so all slots after it shift.
+        Object[] remaining = {items[0], items[2], items[3]};
+        float[] keys = {1.0f, 2.0f, 3.0f};
+        sortFrame(sorter, remaining, keys);
+        assertSame(items[3], sorter.get(0));
+        assertSame(items[2], sorter.get(1));
+        assertSame(items[0], sorter.get(2));
+
+        // An item is appended, the existing slots keep their order.
+        Object[] appended = {items[0], items[2], items[3], items[1]};
+        sortFrame(sorter, appended, new float[]{1.0f, 2.0f, 3.0f, 0.5f});
+        assertSame(items[1], sorter.get(3));
+        assertEquals(3.0f, sorter.getKey(0), 0.0f);
+    }
+
+    @Test
+    public void equalItemsInNewObjectsKeepThePreviousOrder() {
+        Random random = new Random(6);
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        float[] keys = randomKeys(random, 500);
+        sortFrame(sorter, createPlanes(keys.length), keys);
+
+        // Each frame wraps the same planes in new objects.
+        for (int frame = 0; frame < 20; frame++) {
+            jitter(random, keys, 0.01f);
+            Object[] planes = createPlanes(keys.length);
+            sortFrame(sorter, planes, keys);
+            assertFalse(sorter.isFullSort());
+            assertSorted(sorter, planes, keys);
+        }
+    }
+
+    @Test
+    public void steadyFramesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Random random = new Random(4);
+        DepthSorter<Object> sorter = new DepthSorter<>();
+        Object[] items = createItems(300);
+        float[] keys = randomKeys(random, items.length);
+        float[][] frames = new float[64][];
+        for (int i = 0; i < frames.length; i++) {
+            jitter(random, keys, 0.01f);
+            frames[i] = keys.clone();
+        }
+        for (int i = 0; i < 20000; i++) {
+            sortFrame(sorter, items, frames[i % frames.length]);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            sortFrame(sorter, items, frames[i % frames.length]);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("Bytes allocated per frame", 0L, allocated / 1000);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void compareWithBoxedListSort() {
+        Random random = new Random(5);
+        for (int count : new int[]{16, 100, 500}) {
+            Object[] items = createItems(count);
+            float[] keys = randomKeys(random, count);
+            DepthSorter<Object> sorter = new DepthSorter<>();
+            int frames = 2000;
+            long listNanos = 0;
+            long sorterNanos = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                jitter(random, keys, 0.01f);
+                long start = System.nanoTime();
+                List<Object> sorted = sortBoxed(items, keys);
+                listNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                sortFrame(sorter, items, keys);
+                sorterNanos += System.nanoTime() - start;
+                assertSame(sorted.get(0), sorter.get(0));
+            }
+            System.out.println("Depth sort of " + count + " planes: boxed list sort " + listNanos / frames
+                    + " ns, coherent sorter " + sorterNanos / frames + " ns");
+        }
+    }
+
+    // The sort that LabelDisplay used before, with a map entry in place of android.util.Pair.
+    private static List<Object> sortBoxed(Object[] items, float[] keys) {
+        List<Map.Entry<Object, Float>> pairs = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            pairs.add(new AbstractMap.SimpleEntry<>(items[i], keys[i]));
+        }
+        pairs.sort(new Comparator<Map.Entry<Object, Float>>() {
+            @Override
+            public int compare(Map.Entry<Object, Float> first, Map.Entry<Object, Float> second) {
+                return second.getValue().compareTo(first.getValue());
+            }
+        });
+        List<Object> sorted = new ArrayList<>();
+        for (Map.Entry<Object, Float> pair : pairs) {
+            sorted.add(pair.getKey());
+        }
+        return sorted;
+    }
+
+    private static void sortFrame(DepthSorter<Object> sorter, Object[] items, float[] keys) {
+        sorter.begin();
+        for (int i = 0; i < items.length; i++) {
+            sorter.add(items[i], keys[i]);
+        }
+        sorter.sort();
+    }
+
+    private static void assertSorted(DepthSorter<Object> sorter, Object[] items, float[] keys) {
+        float[] expected = keys.clone();
+        Arrays.sort(expected);
+        assertEquals(keys.length, sorter.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(expected[keys.length - 1 - i], sorter.getKey(i), 0.0f);
+            assertEquals(keys[Arrays.asList(items).indexOf(sorter.get(i))], sorter.getKey(i), 0.0f);
+        }
+    }
+
+    private static Object[] createItems(int count) {
+        Object[] items = new Object[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new Object();
+        }
+        return items;
+    }
+
+    private static Object[] createPlanes(int count) {
+        Object[] planes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            planes[i] = new Plane(i);
+        }
+        return planes;
+    }
+
+    private static float[] randomKeys(Random random, int count) {
+        float[] keys = new float[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextFloat() * 10.0f;
+        }
+        return keys;
+    }
+
+    private static void jitter(Random random, float[] keys, float amount) {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] += (random.nextFloat() - 0.5f) * amount;
+        }
+    }
+
+    // Stands for the wrapper that the AR session returns for a plane, which equals the wrapper
+    // of the same plane from another frame.
+    private static final class Plane {
+        private final int mId;
+
+        Plane(int id) {
+            mId = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Plane && ((Plane) other).mId == mId;
+        }
+
+        @Override
+        public int hashCode() {
+            return mId;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.common.MatrixUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of frustum plane extraction and box culling.
+ */
+public class FrustumTest {
+    private final Frustum frustum = new Frustum();
+
+    @Before
+    public void setUp() {
+        // A camera at (0, 0, 2) that looks down the -Z axis.
+        float[] view = MatrixUtil.getOriginalMatrix();
+        view[14] = -2.0f;
+        float[] projection = BoundingVolumeHierarchyTest.createPerspective(60.0f, 0.5f, 0.1f, 10.0f);
+        float[] viewProjection = new float[16];
+        MatrixUtil.multiplyMM(viewProjection, projection, view);
+        frustum.set(viewProjection);
+    }
+
+    @Test
+    public void boxInFrontOfCameraIsVisible() {
+        assertTrue(frustum.isBoxVisible(new float[]{-0.1f, -0.1f, -0.1f, 0.1f, 0.1f, 0.1f}, 0));
+    }
+
+    @Test
+    public void boxBehindCameraIsCulled() {
+        assertFalse(frustum.isBoxVisible(new float[]{-0.1f, -0.1f, 2.5f, 0.1f, 0.1f, 3.0f}, 0));
+    }
+
+    @Test
+    public void boxBeyondFarPlaneIsCulled() {
+        assertFalse(frustum.isBoxVisible(new float[]{-0.1f, -0.1f, -9.0f, 0.1f, 0.1f, -8.5f}, 0));
+    }
+
+    @Test
+    public void boxBesideViewIsCulled() {
+        // The horizontal half-angle is about 16 degrees, so x = 3 at a distance of 2 is outside.
+        assertFalse(frustum.isBoxVisible(new float[]{2.9f, -0.1f, -0.1f, 3.1f, 0.1f, 0.1f}, 0));
+    }
+
+    @Test
+    public void boxCrossingSidePlaneIsVisible() {
+        assertTrue(frustum.isBoxVisible(new float[]{0.0f, -0.1f, -0.1f, 3.1f, 0.1f, 0.1f}, 0));
+    }
+
+    @Test
+    public void boxAtOffsetIsRead() {
+        float[] boxes = new float[]{0, 0, 5, 0, 0, 5, -0.1f, -0.1f, -0.1f, 0.1f, 0.1f, 0.1f};
+        assertFalse(frustum.isBoxVisible(boxes, 0));
+        assertTrue(frustum.isBoxVisible(boxes, 6));
+    }
+}
@@ -0,0 +1,78 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * JVM tests of the vertex and index layout of batched plane labels.
+ */
+public class LabelDisplayBatchTest {
+    private static final float EPSILON = 1e-6f;
+
+    private static final float[] FULL_REGION = {0.0f, 0.0f, 1.0f, 1.0f};
+
+    @Test
+    public void packLabelTransformsQuadToWorld() {
+        // A plane center at (1, 2, 3), rotated 90 degrees around the Y axis.
+        float[] modelMatrix = {0, 0, -1, 0, 0, 1, 0, 0, 1, 0, 0, 0, 1, 2, 3, 1};
+        float[] vertices = new float[LabelDisplay.FLOATS_PER_LABEL * 2];
+        LabelDisplay.packLabel(modelMatrix, FULL_REGION, 0, vertices, LabelDisplay.FLOATS_PER_LABEL);
+
+        // The first vertex is the corner (-0.15, 0, -0.15) of the label in plane coordinates.
+        int first = LabelDisplay.FLOATS_PER_LABEL;
+        assertEquals(1.0f - 0.15f, vertices[first], EPSILON);
+        assertEquals(2.0f, vertices[first + 1], EPSILON);
+        assertEquals(3.0f + 0.15f, vertices[first + 2], EPSILON);
+        assertEquals(0.0f, vertices[first + 3], EPSILON);
+        assertEquals(0.0f, vertices[first + 4], EPSILON);
+
+        // The third vertex is the opposite corner, with texture coordinates (1, 1).
+        int third = first + 2 * LabelDisplay.FLOATS_PER_BATCH_VERTEX;
+        assertEquals(1.0f + 0.15f, vertices[third], EPSILON);
+        assertEquals(3.0f - 0.15f, vertices[third + 2], EPSILON);
+        assertEquals(1.0f, vertices[third + 3], EPSILON);
+        assertEquals(1.0f, vertices[third + 4], EPSILON);
+
+        // The first label is left untouched.
+        assertEquals(0.0f, vertices[0], 0.0f);
+    }
+
+    @Test
+    public void batchIndicesFormTwoTrianglesPerLabel() {
+        short[] indices = LabelDisplay.createBatchIndices(3);
+        assertEquals(3 * LabelDisplay.INDICES_PER_LABEL, indices.length);
+        short[] third = {8, 9, 10, 8, 10, 11};
+        for (int i = 0; i < third.length; i++) {
+            assertEquals(third[i], indices[2 * LabelDisplay.INDICES_PER_LABEL + i]);
+        }
+
+        // The last vertex of a full batch still fits in an unsigned short.
+        short[] full = LabelDisplay.createBatchIndices(LabelDisplay.MAX_BATCH_LABELS);
+        assertEquals(65535, full[full.length - 1] & 0xFFFF);
+    }
+
+    @Test
+    public void packLabelMapsQuadToAtlasRegion() {
+        float[] identity = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+        float[] regions = {0.0f, 0.0f, 1.0f, 1.0f, 0.5f, 0.25f, 0.75f, 0.5f};
+        float[] vertices = new float[LabelDisplay.FLOATS_PER_LABEL];
+        LabelDisplay.packLabel(identity, regions, TextureAtlas.REGION_SIZE, vertices, 0);
+
+        // The first and third vertices are opposite corners of the region.
+        int third = 2 * LabelDisplay.FLOATS_PER_BATCH_VERTEX;
+        assertEquals(0.5f, vertices[3], EPSILON);
+        assertEquals(0.25f, vertices[4], EPSILON);
+        assertEquals(0.75f, vertices[third + 3], EPSILON);
+        assertEquals(0.5f, vertices[third + 4], EPSILON);
+    }
+
+    @Test
+    public void labelsWithoutRegionUseTheFirstOne() {
+        float[] regions = new float[6 * TextureAtlas.REGION_SIZE];
+        assertEquals(0, LabelDisplay.getRegionOffset(regions, 0));
+        assertEquals(5 * TextureAtlas.REGION_SIZE, LabelDisplay.getRegionOffset(regions, 5));
+        assertEquals(0, LabelDisplay.getRegionOffset(regions, 6));
+        assertEquals(0, LabelDisplay.getRegionOffset(new float[0], 3));
+    }
+}
@@ -0,0 +1,179 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * JVM tests of the precompiled binary mesh format.
+ */
+public class MeshFileTest {
+    private static final long SOURCE_STAMP = 42L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readReturnsWrittenMesh() throws IOException {
+        MeshData mesh = parseObj(createGridObj(8));
+        File file = temporaryFolder.newFile("grid.mesh");
+        MeshFile.write(mesh, SOURCE_STAMP, file);
+
+        MeshData loaded = MeshFile.read(file, SOURCE_STAMP);
+        assertNotNull(loaded);
+        assertEquals(mesh.vertexCount, loaded.vertexCount);
+        assertEquals(mesh.indexCount, loaded.indexCount);
+        assertEquals(mesh.indexSize, loaded.indexSize);
+        assertArrayEquals(mesh.boundingBox, loaded.boundingBox, 0.0f);
+        assertArrayEquals(mesh.levelIndexCounts, loaded.levelIndexCounts);
+        for (int i = 0; i < mesh.vertexCount * MeshData.FLOATS_PER_VERTEX; i++) {
+            assertEquals(mesh.vertices.get(i), loaded.vertices.get(i), 0.0f);
+        }
+        ShortBuffer expectedIndices = (ShortBuffer) mesh.indices;
+        ShortBuffer loadedIndices = (ShortBuffer) loaded.indices;
+        for (int i = 0; i < mesh.indexCount; i++) {
+            assertEquals(expectedIndices.get(i), loadedIndices.get(i));
+        }
+        assertEquals(0, loaded.vertices.position());
+        assertEquals(mesh.indexCount, loaded.indices.remaining());
+    }
+
+    @Test
+    public void readRejectsStaleOrMissingFile() throws IOException {
+        File file = temporaryFolder.newFile("stale.mesh");
+        MeshFile.write(parseObj(createGridObj(2)), SOURCE_STAMP, file);
+        assertNull(MeshFile.read(file, SOURCE_STAMP + 1));
+        assertNull(MeshFile.read(new File(temporaryFolder.getRoot(), "missing.mesh"), SOURCE_STAMP));
+    }
+
+    @Test
+    public void writeReplacesTheFileWithoutLeavingATemporaryFile() throws IOException {
+        File file = temporaryFolder.newFile("replaced.mesh");
+        MeshFile.write(parseObj(createGridObj(2)), SOURCE_STAMP, file);
+        MeshData mesh = parseObj(createGridObj(3));
+        MeshFile.write(mesh, SOURCE_STAMP + 1, file);
+
+        assertNull(MeshFile.read(file, SOURCE_STAMP));
+        MeshData loaded = MeshFile.read(file, SOURCE_STAMP + 1);
+        assertNotNull(loaded);
+        assertEquals(mesh.vertexCount, loaded.vertexCount);
+        assertArrayEquals(new String[] {"replaced.mesh"}, temporaryFolder.getRoot().list());
+    }
+
+    @Test
+    public void largeMeshUsesIntIndices() throws IOException {
+        // A 300 * 300 grid has 90601 vertices, which 16-bit indices cannot address.
+        MeshData mesh = parseObj(createGridObj(300));
+        assertEquals(MeshData.INDEX_SIZE_INT, mesh.indexSize);
+        File file = temporaryFolder.newFile("large.mesh");
+        MeshFile.write(mesh, SOURCE_STAMP, file);
+
+        MeshData loaded = MeshFile.read(file, SOURCE_STAMP);
+        assertNotNull(loaded);
+        assertEquals(MeshData.INDEX_SIZE_INT, loaded.indexSize);
+        IntBuffer loadedIndices = (IntBuffer) loaded.indices;
+        int maxIndex = 0;
+        for (int i = 0; i < loaded.indexCount; i++) {
+            maxIndex = Math.max(maxIndex, loadedIndices.get(i));
+        }
+        assertEquals(mesh.vertexCount - 1, maxIndex);
+    }
+
+    @Test
+    public void selectIndexSize() {
+        assertEquals(MeshData.INDEX_SIZE_SHORT, MeshData.selectIndexSize(MeshData.MAX_SHORT_INDEXED_VERTICES, false));
+        assertEquals(MeshData.INDEX_SIZE_INT, MeshData.selectIndexSize(MeshData.MAX_SHORT_INDEXED_VERTICES + 1, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selectIndexSizeFailsWithoutIntIndexSupport() {
+        MeshData.selectIndexSize(MeshData.MAX_SHORT_INDEXED_VERTICES + 1, false);
+    }
+
+    @Test
+    public void boundingBoxCoversAllVertices() {
+        MeshData mesh = parseObj(createGridObj(4));
+        assertArrayEquals(new float[]{0.0f, 0.0f, 0.0f, 4.0f, 0.0f, 4.0f}, mesh.boundingBox, 0.0f);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void compareLoadTimeWithObjParsing() throws IOException {
+        String objText = createGridObj(100);
+        File file = temporaryFolder.newFile("timing.mesh");
+        MeshFile.write(parseObj(objText), SOURCE_STAMP, file);
+
+        int rounds = 10;
+        long objNanos = 0L;
+        long meshNanos = 0L;
+        int vertexCount = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            MeshData parsed = parseObj(objText);
+            objNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            MeshData loaded = MeshFile.read(file, SOURCE_STAMP);
+            meshNanos += System.nanoTime() - start;
+
+            assertNotNull(loaded);
+            assertEquals(parsed.vertexCount, loaded.vertexCount);
+            vertexCount = loaded.vertexCount;
+        }
+        System.out.println("Mesh load of " + vertexCount + " vertices: de.javagl " + objNanos / rounds / 1000
+                + " us, binary cache " + meshNanos / rounds / 1000 + " us");
+    }
+
+    static MeshData parseObj(String objText) {
+        try {
+            Obj obj = ObjReader.read(new ByteArrayInputStream(objText.getBytes(StandardCharsets.UTF_8)));
+            return MeshData.fromObj(ObjUtils.convertToRenderable(obj), true);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // A flat grid of size * size quads on the XZ plane.
+    static String createGridObj(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int z = 0; z <= size; z++) {
+            for (int x = 0; x <= size; x++) {
+                sb.append("v ").append(x).append(" 0 ").append(z).append('\n');
+                sb.append("vt ").append((float) x / size).append(' ').append((float) z / size).append('\n');
+            }
+        }
+        sb.append("vn 0 1 0\n");
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int first = z * (size + 1) + x + 1;
+                int second = first + size + 1;
+                sb.append("f ").append(face(first)).append(face(second)).append(face(first + 1)).append('\n');
+                sb.append("f ").append(face(first + 1)).append(face(second)).append(face(second + 1)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String face(int index) {
+        return index + "/" + index + "/1 ";
+    }
+}
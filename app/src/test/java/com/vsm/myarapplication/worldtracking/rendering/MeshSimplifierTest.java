@@ -0,0 +1,208 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests and benchmark of the quadric edge collapse simplifier and level selection.
+ */
+public class MeshSimplifierTest {
+    @Test
+    public void simplifyFlatGridKeepsOutlineAndOrientation() {
+        int size = 40;
+        FloatBuffer vertices = createGridVertices(size);
+        int[] indices = createGridIndices(size);
+        MeshSimplifier simplifier = new MeshSimplifier(vertices, (size + 1) * (size + 1), indices);
+        int target = indices.length / 3 / 4;
+        int[] simplified = simplifier.simplify(target);
+
+        assertTrue(simplified.length / 3 <= target);
+        assertEquals(simplifier.getTriangleCount(), simplified.length / 3);
+
+        // Boundary planes keep the outline, so the flat grid still covers the full square
+        // and no triangle is turned over.
+        assertEquals(size * size, calculateArea(vertices, simplified), 1e-2f);
+        for (int i = 0; i < simplified.length; i += 3) {
+            assertTrue(calculateNormalY(vertices, simplified, i) >= 0.0f);
+        }
+    }
+
+    @Test
+    public void createLevelsReducesTriangles() {
+        int size = 40;
+        FloatBuffer vertices = createGridVertices(size);
+        int[] indices = createGridIndices(size);
+        int[][] levels = MeshData.createLevels(vertices, (size + 1) * (size + 1), indices);
+
+        assertEquals(MeshData.MAX_LEVEL_COUNT, levels.length);
+        assertEquals(indices.length, levels[0].length);
+        for (int level = 1; level < levels.length; level++) {
+            int expected = (int) (indices.length / 3 * MeshData.LEVEL_TRIANGLE_RATIOS[level - 1]);
+            assertTrue(levels[level].length / 3 <= expected);
+        }
+    }
+
+    @Test
+    public void smallMeshHasOneLevel() {
+        FloatBuffer vertices = createGridVertices(2);
+        assertEquals(1, MeshData.createLevels(vertices, 9, createGridIndices(2)).length);
+    }
+
+    @Test
+    public void selectLevelByScreenSize() {
+        assertEquals(0, MeshData.selectLevel(Float.POSITIVE_INFINITY, 4));
+        assertEquals(0, MeshData.selectLevel(0.5f, 4));
+        assertEquals(1, MeshData.selectLevel(0.2f, 4));
+        assertEquals(2, MeshData.selectLevel(0.05f, 4));
+        assertEquals(3, MeshData.selectLevel(0.01f, 4));
+
+        // A mesh with fewer levels uses its coarsest one.
+        assertEquals(1, MeshData.selectLevel(0.01f, 2));
+        assertEquals(0, MeshData.selectLevel(0.01f, 0));
+    }
+
+    @Test
+    public void simplifiedSphereStaysOnTheSphere() {
+        int rings = 32;
+        int segments = 64;
+        FloatBuffer vertices = createSphereVertices(rings, segments);
+        int[] indices = createSphereIndices(rings, segments);
+        int[][] levels = MeshData.createLevels(vertices, (rings + 1) * (segments + 1), indices);
+        assertEquals(MeshData.MAX_LEVEL_COUNT, levels.length);
+        for (int level = 1; level < levels.length; level++) {
+            assertTrue(levels[level].length < levels[level - 1].length);
+        }
+
+        // Collapsed edges keep vertices of the original mesh, which all lie on the unit sphere.
+        for (int index : levels[levels.length - 1]) {
+            float x = vertices.get(index * MeshData.FLOATS_PER_VERTEX);
+            float y = vertices.get(index * MeshData.FLOATS_PER_VERTEX + 1);
+            float z = vertices.get(index * MeshData.FLOATS_PER_VERTEX + 2);
+            assertEquals(1.0f, (float) Math.sqrt(x * x + y * y + z * z), 1e-4f);
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void simplifyHighPolySphere() {
+        int rings = 128;
+        int segments = 256;
+        FloatBuffer vertices = createSphereVertices(rings, segments);
+        int[] indices = createSphereIndices(rings, segments);
+        int vertexCount = (rings + 1) * (segments + 1);
+
+        long start = System.nanoTime();
+        int[][] levels = MeshData.createLevels(vertices, vertexCount, indices);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+        StringBuilder sb = new StringBuilder();
+        for (int[] level : levels) {
+            sb.append(' ').append(level.length / 3);
+        }
+        System.out.println("Simplified sphere of " + indices.length / 3 + " triangles in " + elapsedMillis
+                + " ms, triangles per level:" + sb);
+        assertEquals(MeshData.MAX_LEVEL_COUNT, levels.length);
+
+        // The coarsest level still stays close to the unit sphere.
+        int[] coarsest = levels[levels.length - 1];
+        for (int index : coarsest) {
+            float x = vertices.get(index * MeshData.FLOATS_PER_VERTEX);
+            float y = vertices.get(index * MeshData.FLOATS_PER_VERTEX + 1);
+            float z = vertices.get(index * MeshData.FLOATS_PER_VERTEX + 2);
+            assertEquals(1.0f, (float) Math.sqrt(x * x + y * y + z * z), 1e-4f);
+        }
+    }
+
+    private static FloatBuffer createGridVertices(int size) {
+        FloatBuffer vertices = MeshData.allocateVertices((size + 1) * (size + 1));
+        for (int z = 0; z <= size; z++) {
+            for (int x = 0; x <= size; x++) {
+                vertices.put(x).put(0.0f).put(z).put(0.0f).put(1.0f).put(0.0f)
+                        .put((float) x / size).put((float) z / size);
+            }
+        }
+        vertices.rewind();
+        return vertices;
+    }
+
+    private static int[] createGridIndices(int size) {
+        int[] indices = new int[size * size * 6];
+        int count = 0;
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int first = z * (size + 1) + x;
+                int second = first + size + 1;
+                indices[count++] = first;
+                indices[count++] = second;
+                indices[count++] = first + 1;
+                indices[count++] = first + 1;
+                indices[count++] = second;
+                indices[count++] = second + 1;
+            }
+        }
+        return indices;
+    }
+
+    // A closed UV sphere; the duplicated seam column makes its seam a boundary for the simplifier.
+    private static FloatBuffer createSphereVertices(int rings, int segments) {
+        FloatBuffer vertices = MeshData.allocateVertices((rings + 1) * (segments + 1));
+        for (int ring = 0; ring <= rings; ring++) {
+            double theta = Math.PI * ring / rings;
+            for (int segment = 0; segment <= segments; segment++) {
+                double phi = 2.0 * Math.PI * segment / segments;
+                float x = (float) (Math.sin(theta) * Math.cos(phi));
+                float y = (float) Math.cos(theta);
+                float z = (float) (Math.sin(theta) * Math.sin(phi));
+                vertices.put(x).put(y).put(z).put(x).put(y).put(z)
+                        .put((float) segment / segments).put((float) ring / rings);
+            }
+        }
+        vertices.rewind();
+        return vertices;
+    }
+
+    private static int[] createSphereIndices(int rings, int segments) {
+        int[] indices = new int[rings * segments * 6];
+        int count = 0;
+        for (int ring = 0; ring < rings; ring++) {
+            for (int segment = 0; segment < segments; segment++) {
+                int first = ring * (segments + 1) + segment;
+                int second = first + segments + 1;
+                indices[count++] = first;
+                indices[count++] = first + 1;
+                indices[count++] = second;
+                indices[count++] = first + 1;
+                indices[count++] = second + 1;
+                indices[count++] = second;
+            }
+        }
+        return indices;
+    }
+
+    private static float calculateArea(FloatBuffer vertices, int[] indices) {
+        float area = 0.0f;
+        for (int i = 0; i < indices.length; i += 3) {
+            area += Math.abs(calculateNormalY(vertices, indices, i)) * 0.5f;
+        }
+        return area;
+    }
+
+    // Y component of the unnormalized normal of a triangle on the XZ plane.
+    private static float calculateNormalY(FloatBuffer vertices, int[] indices, int offset) {
+        int a = indices[offset] * MeshData.FLOATS_PER_VERTEX;
+        int b = indices[offset + 1] * MeshData.FLOATS_PER_VERTEX;
+        int c = indices[offset + 2] * MeshData.FLOATS_PER_VERTEX;
+        float ux = vertices.get(b) - vertices.get(a);
+        float uz = vertices.get(b + 2) - vertices.get(a + 2);
+        float vx = vertices.get(c) - vertices.get(a);
+        float vz = vertices.get(c + 2) - vertices.get(a + 2);
+        return uz * vx - ux * vz;
+    }
+}
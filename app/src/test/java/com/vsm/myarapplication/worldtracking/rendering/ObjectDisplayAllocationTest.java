@@ -0,0 +1,67 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.common.CountingGlApi;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the steady-state per-frame path of {@link ObjectDisplay} does not allocate.
+ */
+public class ObjectDisplayAllocationTest {
+    private static final float[] IDENTITY = new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    private static final int OBJECT_COUNT = 16;
+
+    private static final int WARM_UP_FRAMES = 20000;
+
+    private static final int MEASURED_FRAMES = 1000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void simulatedFrameDoesNotAllocate() {
+        ObjectDisplay objectDisplay = ObjectDisplayBatchTest.createReadyDisplay(new CountingGlApi());
+        objectDisplay.setSize(1080, 2340);
+        ObjectStore<Object> objects = ObjectDisplayBatchTest.createObjects(OBJECT_COUNT);
+        objects.setSelected(0, true);
+
+        // Let the JIT settle, so that only the frame loop itself is measured.
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            simulateFrame(objectDisplay, objects);
+        }
+        long threadId = Thread.currentThread().getId();
+        long overhead = measureOverhead(threadId);
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            simulateFrame(objectDisplay, objects);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        assertEquals("Bytes allocated per frame", 0L, Math.max(0L, allocated) / MEASURED_FRAMES);
+    }
+
+    private long measureOverhead(long threadId) {
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static void simulateFrame(ObjectDisplay objectDisplay, ObjectStore<Object> objects) {
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects);
+        objectDisplay.pick(IDENTITY, IDENTITY, objects, 540.0f, 1170.0f);
+    }
+}
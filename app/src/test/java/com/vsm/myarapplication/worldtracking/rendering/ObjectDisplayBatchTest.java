@@ -0,0 +1,160 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.VirtualObject;
+import com.vsm.myarapplication.common.CountingGlApi;
+import com.vsm.myarapplication.common.RecordingGlApi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the GL calls issued by {@link ObjectDisplay} per frame.
+ */
+public class ObjectDisplayBatchTest {
+    private static final float[] COLOR = new float[]{66.0f, 133.0f, 244.0f, 255.0f};
+
+    private static final float[] IDENTITY = new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    @Test
+    public void batchedDrawKeepsSharedStateOutOfTheLoop() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = createReadyDisplay(gl);
+        int oneObjectCalls = countBatchedCalls(gl, objectDisplay, createObjects(1));
+        int twoObjectCalls = countBatchedCalls(gl, objectDisplay, createObjects(2));
+        int perObjectCalls = twoObjectCalls - oneObjectCalls;
+
+        // Light, color, two matrices and the draw call.
+        assertEquals(5, perObjectCalls);
+        for (int objectCount : new int[]{10, 100, 500}) {
+            int expected = oneObjectCalls + (objectCount - 1) * perObjectCalls;
+            assertEquals(expected, countBatchedCalls(gl, objectDisplay, createObjects(objectCount)));
+        }
+        assertEquals(0, countBatchedCalls(gl, objectDisplay, createObjects(0)));
+    }
+
+    @Test
+    public void batchedDrawIssuesNoMoreCallsThanPerObjectDraws() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = createReadyDisplay(gl);
+        for (int objectCount : new int[]{1, 16, 100, 500}) {
+            ObjectStore<Object> objects = createObjects(objectCount);
+            VirtualObject obj = new VirtualObject(null, COLOR);
+            objectDisplay.getGlState().invalidate();
+            gl.reset();
+            for (int i = 0; i < objectCount; i++) {
+                objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, obj);
+            }
+            int perObjectPathCalls = gl.getCallCount();
+            int batchedCalls = countBatchedCalls(gl, objectDisplay, objects);
+            assertTrue(batchedCalls <= perObjectPathCalls);
+        }
+    }
+
+    @Test
+    public void nextFrameReusesTheSharedState() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = createReadyDisplay(gl);
+        ObjectStore<Object> objects = createObjects(10);
+        int firstFrameCalls = countBatchedCalls(gl, objectDisplay, objects);
+
+        objectDisplay.getGlState().beginFrame();
+        gl.reset();
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects);
+        assertTrue(gl.getCallCount() < firstFrameCalls);
+        objectDisplay.getGlState().beginFrame();
+        assertEquals(0, objectDisplay.getGlState().getIssuedCount());
+    }
+
+    @Test
+    public void culledObjectsIssueNoGlCalls() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = createReadyDisplay(gl);
+        ObjectStore<Object> objects = createObjects(10);
+        Frustum frustum = new Frustum();
+
+        // The identity matrix keeps the clip space cube, which contains the objects.
+        frustum.set(IDENTITY);
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects, frustum);
+        assertEquals(10, objectDisplay.getDrawnCount());
+        assertEquals(0, objectDisplay.getCulledCount());
+
+        // Move everything far to the right of the clip space cube.
+        float[] shifted = IDENTITY.clone();
+        shifted[12] = 5.0f;
+        frustum.set(shifted);
+        gl.reset();
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects, frustum);
+        assertEquals(0, gl.getCallCount());
+        assertEquals(0, objectDisplay.getDrawnCount());
+        assertEquals(10, objectDisplay.getCulledCount());
+    }
+
+    @Test
+    public void hiddenObjectsAreSkipped() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = createReadyDisplay(gl);
+        ObjectStore<Object> objects = createObjects(10);
+        Frustum frustum = new Frustum();
+        frustum.set(IDENTITY);
+        for (int i = 0; i < 10; i += 2) {
+            objects.setVisible(i, false);
+        }
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects, frustum);
+        assertEquals(5, objectDisplay.getDrawnCount());
+        assertEquals(0, objectDisplay.getCulledCount());
+    }
+
+    @Test
+    public void displayWithoutMeshIssuesNoGlCalls() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = new ObjectDisplay(gl);
+        assertFalse(objectDisplay.isReady());
+        assertEquals(0, countBatchedCalls(gl, objectDisplay, createObjects(10)));
+        assertEquals(0, objectDisplay.getDrawnCount());
+    }
+
+    @Test
+    public void recordedFrame_drawsEachObjectOnce() {
+        RecordingGlApi gl = new RecordingGlApi();
+        ObjectDisplay objectDisplay = new ObjectDisplay(gl);
+        objectDisplay.uploadMesh(MeshFileTest.parseObj(MeshFileTest.createGridObj(2)));
+        objectDisplay.getGlState().invalidate();
+        gl.clear();
+
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, createObjects(10));
+
+        assertEquals(10, gl.getCount(RecordingGlApi.OP_DRAW_ELEMENTS));
+        assertEquals(1, gl.getCount(RecordingGlApi.OP_USE_PROGRAM));
+        CountingGlApi counter = new CountingGlApi();
+        gl.replay(counter);
+        assertEquals(gl.getCommandCount(), counter.getCallCount());
+    }
+
+    // An object display with a small mesh, as after the asset loader has uploaded it.
+    static ObjectDisplay createReadyDisplay(CountingGlApi gl) {
+        ObjectDisplay objectDisplay = new ObjectDisplay(gl);
+        objectDisplay.uploadMesh(MeshFileTest.parseObj(MeshFileTest.createGridObj(2)));
+        gl.reset();
+        return objectDisplay;
+    }
+
+    // Each count starts from an unknown state, as the first frame after the context was created.
+    private static int countBatchedCalls(CountingGlApi gl, ObjectDisplay objectDisplay, ObjectStore<?> objects) {
+        objectDisplay.getGlState().invalidate();
+        gl.reset();
+        objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects);
+        return gl.getCallCount();
+    }
+
+    // Objects at the origin, as with anchors at the world origin.
+    static ObjectStore<Object> createObjects(int count) {
+        ObjectStore<Object> objects = new ObjectStore<>(Math.max(count, 1), IDENTITY);
+        for (int i = 0; i < count; i++) {
+            objects.add(null, COLOR);
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,299 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+import com.vsm.myarapplication.common.CountingGlApi;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests and benchmarks of the object store.
+ */
+public class ObjectStoreTest {
+    private static final float[] IDENTITY = new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    @Test
+    public void handlesSurviveRemovalOfOtherObjects() {
+        ObjectStore<String> objects = new ObjectStore<>(8, IDENTITY);
+        int first = objects.add("first", createColor(1));
+        int second = objects.add("second", createColor(2));
+        int third = objects.add("third", createColor(3));
+        assertEquals("first", objects.remove(first));
+
+        // The last object has moved into the hole, its handle still finds it.
+        assertEquals(2, objects.size());
+        assertEquals("third", objects.getAnchor(objects.indexOf(third)));
+        assertEquals("second", objects.getAnchor(objects.indexOf(second)));
+        float[] color = new float[4];
+        objects.getColor(objects.indexOf(third), color);
+        assertArrayEquals(createColor(3), color, 0.0f);
+        assertEquals(third, objects.getHandle(objects.indexOf(third)));
+    }
+
+    @Test
+    public void staleHandleDoesNotFindANewerObject() {
+        ObjectStore<String> objects = new ObjectStore<>(1, IDENTITY);
+        int old = objects.add("old", createColor(1));
+        objects.remove(old);
+        int reused = objects.add("new", createColor(2));
+        assertNotEquals(old, reused);
+        assertEquals(-1, objects.indexOf(old));
+        assertNull(objects.remove(old));
+        assertEquals(-1, objects.indexOf(ObjectStore.NO_HANDLE));
+        assertEquals(1, objects.size());
+    }
+
+    @Test
+    public void fullStoreEvictsTheOldest() {
+        ObjectStore<Integer> objects = new ObjectStore<>(4, IDENTITY);
+        int[] handles = new int[6];
+        for (int i = 0; i < 4; i++) {
+            handles[i] = objects.add(i, createColor(i));
+        }
+        assertTrue(objects.isFull());
+        objects.remove(handles[1]);
+        handles[4] = objects.add(4, createColor(4));
+
+        // The removed object is skipped, so the next eviction takes the oldest remaining one.
+        handles[5] = objects.add(5, createColor(5));
+        assertEquals(4, objects.size());
+        assertEquals(-1, objects.indexOf(handles[0]));
+        assertEquals(Integer.valueOf(2), objects.evictOldest());
+        assertEquals(Integer.valueOf(3), objects.evictOldest());
+        assertEquals(Integer.valueOf(4), objects.evictOldest());
+        assertEquals(Integer.valueOf(5), objects.evictOldest());
+        assertNull(objects.evictOldest());
+    }
+
+    @Test
+    public void orderIsKeptWhenTheRingIsCompacted() {
+        ObjectStore<Integer> objects = new ObjectStore<>(8, IDENTITY);
+        List<Integer> expected = new ArrayList<>();
+        int next = 0;
+
+        // Remove every other object many times, so that the ring fills up with stale handles.
+        for (int round = 0; round < 50; round++) {
+            while (!objects.isFull()) {
+                objects.add(next, createColor(next));
+                expected.add(next++);
+            }
+            for (int i = objects.size() - 1; i >= 0; i -= 2) {
+                expected.remove(objects.removeAt(i));
+            }
+        }
+        for (Integer anchor : expected) {
+            assertEquals(anchor, objects.evictOldest());
+        }
+        assertEquals(0, objects.size());
+    }
+
+    @Test
+    public void selectionInvertsTheColor() {
+        ObjectStore<String> objects = new ObjectStore<>(2, IDENTITY);
+        int handle = objects.add("object", new float[]{66.0f, 133.0f, 244.0f, 255.0f});
+        int index = objects.indexOf(handle);
+        assertFalse(objects.isSelected(index));
+        objects.setSelected(index, true);
+        float[] color = new float[4];
+        objects.getColor(index, color);
+        assertArrayEquals(new float[]{189.0f, 122.0f, 11.0f, 255.0f}, color, 0.0f);
+    }
+
+    @Test
+    public void modelMatrixCombinesAnchorAndLocalMatrix() {
+        float[] scale = new float[]{2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 1};
+        ObjectStore<String> objects = new ObjectStore<>(2, scale);
+        objects.add("object", createColor(0));
+        float[] translation = IDENTITY.clone();
+        translation[12] = 1.0f;
+        translation[13] = 2.0f;
+        translation[14] = 3.0f;
+        objects.setAnchorMatrix(0, translation);
+        float[] expected = new float[]{2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 1, 2, 3, 1};
+        assertArrayEquals(expected, Arrays.copyOf(objects.getModelMatrices(), 16), 0.0f);
+    }
+
+    @Test
+    public void scaleIsAppliedInPlaceAndClamped() {
+        ObjectStore<String> objects = new ObjectStore<>(2, IDENTITY);
+        objects.add("object", createColor(0));
+        float[] translation = IDENTITY.clone();
+        translation[12] = 1.0f;
+        objects.scaleBy(0, 2.0f);
+        objects.setAnchorMatrix(0, translation);
+
+        // The object is scaled about its anchor, which keeps its position.
+        float[] expected = new float[]{2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 1, 0, 0, 1};
+        assertArrayEquals(expected, Arrays.copyOf(objects.getModelMatrices(), 16), 1e-6f);
+        for (int i = 0; i < 10; i++) {
+            objects.scaleBy(0, 2.0f);
+        }
+        assertEquals(ObjectStore.MAX_SCALE, objects.getScale(0), 1e-6f);
+        objects.setAnchorMatrix(0, IDENTITY);
+        assertEquals(ObjectStore.MAX_SCALE, objects.getModelMatrices()[0], 1e-5f);
+        objects.scaleBy(0, 0.0f);
+        assertEquals(ObjectStore.MIN_SCALE, objects.getScale(0), 1e-6f);
+    }
+
+    @Test
+    public void rotationFollowsTheObjectWhenItMoves() {
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int first = objects.add("first", createColor(0));
+        int second = objects.add("second", createColor(1));
+        objects.rotateBy(objects.indexOf(second), 90.0f);
+        objects.scaleBy(objects.indexOf(second), 0.5f);
+        objects.remove(first);
+        int index = objects.indexOf(second);
+        objects.setAnchorMatrix(index, IDENTITY);
+        float[] expected = new float[]{0, 0, -0.5f, 0, 0, 0.5f, 0, 0, 0.5f, 0, 0, 0, 0, 0, 0, 1};
+        assertArrayEquals(expected, Arrays.copyOf(objects.getModelMatrices(), 16), 1e-6f);
+        assertEquals(0.5f, objects.getScale(index), 0.0f);
+        assertEquals(90.0f, objects.getYaw(index), 0.0f);
+
+        // A new object starts from the local matrix of the store.
+        int third = objects.add("third", createColor(2));
+        assertEquals(1.0f, objects.getScale(objects.indexOf(third)), 0.0f);
+        assertEquals(0.0f, objects.getYaw(objects.indexOf(third)), 0.0f);
+    }
+
+    @Test
+    public void yawIsKeptWithinHalfATurn() {
+        ObjectStore<String> objects = new ObjectStore<>(1, IDENTITY);
+        objects.add("object", createColor(0));
+        objects.rotateBy(0, 150.0f);
+        objects.rotateBy(0, 60.0f);
+        assertEquals(-150.0f, objects.getYaw(0), 1e-4f);
+        objects.rotateBy(0, -30.0f);
+        assertEquals(180.0f, objects.getYaw(0), 1e-4f);
+        objects.rotateBy(0, -720.0f);
+        assertEquals(180.0f, objects.getYaw(0), 1e-4f);
+    }
+
+    @Test
+    public void changedObjectsAreDirtyUntilCleared() {
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        objects.add("first", createColor(0));
+        objects.add("second", createColor(1));
+        objects.setAnchorMatrix(0, IDENTITY);
+        objects.setAnchorMatrix(1, IDENTITY);
+        assertEquals(0, objects.getDirtyCount());
+
+        float[] translation = IDENTITY.clone();
+        translation[12] = 1.0f;
+        objects.setAnchorMatrix(1, translation);
+        objects.setAnchorMatrix(1, translation);
+        objects.rotateBy(0, 10.0f);
+        assertEquals(2, objects.getDirtyCount());
+        assertEquals(1, objects.getDirtyIndex(0));
+        assertEquals(0, objects.getDirtyIndex(1));
+
+        objects.clearDirty();
+        assertEquals(0, objects.getDirtyCount());
+        objects.scaleBy(1, 2.0f);
+        assertEquals(1, objects.getDirtyCount());
+    }
+
+    @Test
+    public void addAndRemoveChangeTheVersion() {
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int version = objects.getVersion();
+        int handle = objects.add("object", createColor(0));
+        assertNotEquals(version, objects.getVersion());
+
+        version = objects.getVersion();
+        objects.scaleBy(0, 2.0f);
+        objects.remove(handle);
+        assertNotEquals(version, objects.getVersion());
+        assertEquals(0, objects.getDirtyCount());
+    }
+
+    @Test
+    public void oldestHandleSkipsRemovedObjects() {
+        ObjectStore<String> objects = new ObjectStore<>(4, IDENTITY);
+        int first = objects.add("first", createColor(0));
+        int second = objects.add("second", createColor(1));
+        assertEquals(first, objects.getOldestHandle());
+
+        objects.remove(first);
+        assertEquals(second, objects.getOldestHandle());
+        assertEquals("second", objects.evictOldest());
+        assertEquals(ObjectStore.NO_HANDLE, objects.getOldestHandle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacityIsRejected() {
+        new ObjectStore<String>(0, IDENTITY);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void compareEvictionWithList() {
+        int capacity = 4096;
+        int additions = 200000;
+        ObjectStore<Integer> objects = new ObjectStore<>(capacity, IDENTITY);
+        List<Integer> list = new ArrayList<>(capacity);
+        float[] color = createColor(0);
+        for (int warmUp = 0; warmUp < 2; warmUp++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < additions; i++) {
+                objects.add(i, color);
+            }
+            long storeMicros = (System.nanoTime() - start) / 1000L;
+
+            start = System.nanoTime();
+            for (int i = 0; i < additions; i++) {
+                if (list.size() >= capacity) {
+                    list.remove(0);
+                }
+                list.add(i);
+            }
+            long listMicros = (System.nanoTime() - start) / 1000L;
+            if (warmUp == 1) {
+                System.out.println("Add " + additions + " objects with a capacity of " + capacity
+                        + ": store " + storeMicros + " us, list " + listMicros + " us");
+            }
+        }
+        assertEquals(capacity, objects.size());
+        assertEquals(Integer.valueOf(additions - capacity), objects.evictOldest());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void drawThroughputOfADenseScene() {
+        CountingGlApi gl = new CountingGlApi();
+        ObjectDisplay objectDisplay = ObjectDisplayBatchTest.createReadyDisplay(gl);
+        Frustum frustum = new Frustum();
+        frustum.set(IDENTITY);
+        for (int objectCount : new int[]{1000, 4000}) {
+            ObjectStore<Object> objects = ObjectDisplayBatchTest.createObjects(objectCount);
+            for (int i = 0; i < 100; i++) {
+                objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects, frustum);
+            }
+            int frames = 100;
+            gl.reset();
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                objectDisplay.onDrawFrame(IDENTITY, IDENTITY, 1.0f, objects, frustum);
+            }
+            long micros = (System.nanoTime() - start) / 1000L / frames;
+            assertEquals(objectCount, objectDisplay.getDrawnCount());
+            System.out.println("Draw " + objectCount + " objects: " + micros + " us and "
+                    + gl.getCallCount() / frames + " GL calls per frame");
+        }
+    }
+
+    private static float[] createColor(int index) {
+        return new float[]{index % 256, 133.0f, 244.0f, 255.0f};
+    }
+}
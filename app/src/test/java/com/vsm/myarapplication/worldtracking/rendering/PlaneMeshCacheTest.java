@@ -0,0 +1,160 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the plane mesh cache.
+ */
+public class PlaneMeshCacheTest {
+    @Test
+    public void unchangedPolygonIsNotTriangulatedAgain() {
+        PlaneMeshCache<String> cache = new PlaneMeshCache<>();
+        cache.begin();
+        PlaneMeshCache.Mesh mesh = cache.update("floor", square(1.0f));
+        cache.end();
+        assertEquals(1, cache.getRetessellatedCount());
+        assertEquals(6, mesh.vertexCount);
+        assertTrue(cache.isFullUploadNeeded());
+        cache.markUploaded();
+
+        // A new buffer with the same contents, as returned by the plane every frame.
+        cache.begin();
+        assertSame(mesh, cache.update("floor", square(1.0f)));
+        cache.end();
+        assertEquals(0, cache.getRetessellatedCount());
+        assertEquals(0, cache.getDirtyCount());
+        assertFalse(cache.isFullUploadNeeded());
+    }
+
+    @Test
+    public void changedPolygonIsTriangulatedInPlace() {
+        PlaneMeshCache<String> cache = new PlaneMeshCache<>();
+        cache.begin();
+        PlaneMeshCache.Mesh floor = cache.update("floor", square(1.0f));
+        PlaneMeshCache.Mesh table = cache.update("table", square(0.5f));
+        cache.end();
+        cache.markUploaded();
+        int first = table.first;
+
+        cache.begin();
+        cache.update("floor", square(1.0f));
+        cache.update("table", square(0.6f));
+        cache.end();
+        assertEquals(1, cache.getRetessellatedCount());
+        assertEquals(1, cache.getDirtyCount());
+        assertSame(table, cache.getDirtyMesh(0));
+        assertEquals(first, table.first);
+        assertFalse(cache.isFullUploadNeeded());
+        assertEquals(0.6f / 2.0f, maxX(cache, table), 0.0f);
+        assertEquals(0.5f, maxX(cache, floor), 0.0f);
+    }
+
+    @Test
+    public void positionOfThePolygonBufferIsKept() {
+        PlaneMeshCache<String> cache = new PlaneMeshCache<>();
+        FloatBuffer polygon = FloatBuffer.allocate(10);
+        polygon.put(new float[]{9.0f, 9.0f}).put(square(1.0f));
+        polygon.position(2);
+        cache.begin();
+        PlaneMeshCache.Mesh mesh = cache.update("floor", polygon);
+        cache.end();
+        assertEquals(2, polygon.position());
+        assertEquals(6, mesh.vertexCount);
+        assertEquals(0.5f, maxX(cache, mesh), 0.0f);
+    }
+
+    @Test
+    public void planesThatAreNotUpdatedAreDropped() {
+        PlaneMeshCache<String> cache = new PlaneMeshCache<>();
+        cache.begin();
+        PlaneMeshCache.Mesh floor = cache.update("floor", square(1.0f));
+        cache.update("table", square(0.5f));
+        cache.end();
+        assertEquals(2, cache.size());
+
+        cache.begin();
+        cache.update("table", square(0.5f));
+        cache.end();
+        assertEquals(1, cache.size());
+
+        // A plane that comes back is triangulated again.
+        cache.begin();
+        assertNotSame(floor, cache.update("floor", square(1.0f)));
+        cache.end();
+        assertEquals(1, cache.getRetessellatedCount());
+    }
+
+    @Test
+    public void growingMeshesAreMovedAndCompacted() {
+        PlaneMeshCache<Integer> cache = new PlaneMeshCache<>();
+        int planes = 20;
+        PlaneMeshCache.Mesh[] meshes = new PlaneMeshCache.Mesh[planes];
+        for (int points = 4; points <= 64; points *= 2) {
+            cache.begin();
+            for (int i = 0; i < planes; i++) {
+                meshes[i] = cache.update(i, circle(points, 1.0f + i));
+            }
+            cache.end();
+            cache.markUploaded();
+        }
+
+        // The ranges do not overlap and hold the triangles of their own polygon.
+        for (int i = 0; i < planes; i++) {
+            assertEquals(3 * (64 - 2), meshes[i].vertexCount);
+            assertEquals(1.0f + i, maxX(cache, meshes[i]), 1e-5f);
+            for (int j = 0; j < i; j++) {
+                assertTrue(meshes[i].first >= meshes[j].first + meshes[j].vertexCount
+                        || meshes[j].first >= meshes[i].first + meshes[i].vertexCount);
+            }
+            assertTrue(meshes[i].first + meshes[i].vertexCount <= cache.getVertexCapacity());
+        }
+    }
+
+    @Test
+    public void compactionRequestsFullUpload() {
+        PlaneMeshCache<Integer> cache = new PlaneMeshCache<>();
+        boolean isFullUploadSeen = false;
+        for (int points = 4; points <= 256; points *= 2) {
+            cache.begin();
+            for (int i = 0; i < 8; i++) {
+                cache.update(i, circle(points, 1.0f));
+            }
+            cache.end();
+            isFullUploadSeen |= cache.isFullUploadNeeded();
+            cache.markUploaded();
+        }
+        assertTrue(isFullUploadSeen);
+    }
+
+    private static float maxX(PlaneMeshCache<?> cache, PlaneMeshCache.Mesh mesh) {
+        float[] vertices = cache.getVertices();
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = mesh.first; i < mesh.first + mesh.vertexCount; i++) {
+            max = Math.max(max, vertices[i * PlaneMeshCache.FLOATS_PER_VERTEX]);
+        }
+        return max;
+    }
+
+    private static FloatBuffer square(float size) {
+        float half = size / 2.0f;
+        return FloatBuffer.wrap(new float[]{-half, -half, half, -half, half, half, -half, half});
+    }
+
+    private static FloatBuffer circle(int points, float radius) {
+        float[] polygon = new float[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2.0 * Math.PI * i / points;
+            polygon[i * 2] = (float) (radius * Math.cos(angle));
+            polygon[i * 2 + 1] = (float) (radius * Math.sin(angle));
+        }
+        return FloatBuffer.wrap(polygon);
+    }
+}
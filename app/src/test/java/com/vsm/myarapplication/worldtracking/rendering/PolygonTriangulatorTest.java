@@ -0,0 +1,89 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of the ear clipping triangulator.
+ */
+public class PolygonTriangulatorTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void triangulatesConvexPolygon() {
+        float[] square = {0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f};
+        assertTriangulation(square, 1.0f);
+    }
+
+    @Test
+    public void triangulatesConcavePolygon() {
+        // An L shape with one reflex corner at (1, 1).
+        float[] shape = {0.0f, 0.0f, 2.0f, 0.0f, 2.0f, 1.0f, 1.0f, 1.0f, 1.0f, 2.0f, 0.0f, 2.0f};
+        assertTriangulation(shape, 3.0f);
+    }
+
+    @Test
+    public void acceptsClockwisePolygon() {
+        float[] shape = {0.0f, 2.0f, 1.0f, 2.0f, 1.0f, 1.0f, 2.0f, 1.0f, 2.0f, 0.0f, 0.0f, 0.0f};
+        assertTrue(PolygonTriangulator.getSignedArea(shape, 6) < 0.0f);
+        assertTriangulation(shape, -3.0f);
+    }
+
+    @Test
+    public void triangulatesStar() {
+        int points = 10;
+        float[] star = new float[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2.0 * Math.PI * i / points;
+            float radius = i % 2 == 0 ? 1.0f : 0.4f;
+            star[i * 2] = (float) (radius * Math.cos(angle));
+            star[i * 2 + 1] = (float) (radius * Math.sin(angle));
+        }
+        assertTriangulation(star, PolygonTriangulator.getSignedArea(star, points));
+    }
+
+    @Test
+    public void degeneratePolygonsStillTerminate() {
+        PolygonTriangulator triangulator = new PolygonTriangulator();
+        int[] triangles = new int[30];
+        float[] collinear = {0.0f, 0.0f, 1.0f, 0.0f, 2.0f, 0.0f, 3.0f, 0.0f};
+        assertEquals(6, triangulator.triangulate(collinear, 4, triangles));
+        float[] bowTie = {0.0f, 0.0f, 1.0f, 1.0f, 1.0f, 0.0f, 0.0f, 1.0f};
+        assertEquals(6, triangulator.triangulate(bowTie, 4, triangles));
+        assertEquals(0, triangulator.triangulate(bowTie, 2, triangles));
+    }
+
+    @Test
+    public void growsScratchForLargePolygons() {
+        int points = 200;
+        float[] circle = new float[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2.0 * Math.PI * i / points;
+            circle[i * 2] = (float) Math.cos(angle);
+            circle[i * 2 + 1] = (float) Math.sin(angle);
+        }
+        assertTriangulation(circle, PolygonTriangulator.getSignedArea(circle, points));
+    }
+
+    // Every triangle has the winding of the polygon, and together they cover its area.
+    private static void assertTriangulation(float[] points, float expectedArea) {
+        int vertexCount = points.length / 2;
+        int[] triangles = new int[3 * (vertexCount - 2)];
+        int count = new PolygonTriangulator().triangulate(points, vertexCount, triangles);
+        assertEquals(triangles.length, count);
+        float area = 0.0f;
+        float[] triangle = new float[6];
+        for (int i = 0; i < count; i += 3) {
+            for (int j = 0; j < 3; j++) {
+                triangle[j * 2] = points[triangles[i + j] * 2];
+                triangle[j * 2 + 1] = points[triangles[i + j] * 2 + 1];
+            }
+            float triangleArea = PolygonTriangulator.getSignedArea(triangle, 3);
+            assertTrue(triangleArea * expectedArea >= 0.0f);
+            area += triangleArea;
+        }
+        assertEquals(expectedArea, area, EPSILON);
+    }
+}
@@ -0,0 +1,285 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests and benchmark of the scene file that keeps the placed objects.
+ */
+public class SceneFileTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void appendAndReadRoundTrip() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i));
+            }
+            assertEquals(3, writer.getCount());
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(3, records.count);
+        for (int i = 0; i < 3; i++) {
+            assertRecord(records, i, i);
+            assertEquals(i, records.ids[i]);
+        }
+    }
+
+    @Test
+    public void updateReplacesOnlyThePoseScaleAndYaw() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            writer.append(createPose(0), createScale(0), createYaw(0), createColor(0), 0);
+            int id = writer.append(createPose(1), createScale(1), createYaw(1), createColor(1), 1);
+            assertTrue(writer.update(id, createPose(5), createScale(5), createYaw(5)));
+            assertFalse(writer.update(id + 1, createPose(6), createScale(6), createYaw(6)));
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertRecord(records, 0, 0);
+        float[] pose = new float[SceneFile.POSE_SIZE];
+        System.arraycopy(records.poses, SceneFile.POSE_SIZE, pose, 0, pose.length);
+        assertArrayEquals(createPose(5), pose, 0.0f);
+        assertEquals(createScale(5), records.scales[1], 0.0f);
+        assertEquals(createYaw(5), records.yaws[1], 0.0f);
+        assertEquals(1, records.modelIds[1]);
+    }
+
+    @Test
+    public void removeKeepsTheOrderOfTheOthers() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < 5; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+            assertTrue(writer.remove(0));
+            assertTrue(writer.remove(3));
+            assertFalse(writer.remove(3));
+            assertEquals(3, writer.getCount());
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(3, records.count);
+        assertRecord(records, 0, 1);
+        assertRecord(records, 1, 2);
+        assertRecord(records, 2, 4);
+        assertEquals(4, records.ids[2]);
+    }
+
+    @Test
+    public void reopenedFileKeepsAppending() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            writer.append(createPose(0), createScale(0), createYaw(0), createColor(0), 0);
+        }
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            assertEquals(1, writer.getCount());
+
+            // Ids are not reused, so a new record does not take the id of an older one.
+            assertEquals(1, writer.append(createPose(1), createScale(1), createYaw(1), createColor(1), 1));
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(2, records.count);
+        assertRecord(records, 0, 0);
+        assertRecord(records, 1, 1);
+    }
+
+    @Test
+    public void writerGrowsTheMapping() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        int count = 1000;
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < count; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+        }
+        assertTrue(file.length() >= SceneFile.HEADER_SIZE + (long) count * SceneFile.RECORD_SIZE);
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(count, records.count);
+        assertRecord(records, count - 1, count - 1);
+    }
+
+    @Test
+    public void retainNewestDropsOldRecords() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < 10; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+            writer.retainNewest(4);
+            writer.append(createPose(10), createScale(10), createYaw(10), createColor(10), 10);
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(5, records.count);
+        for (int i = 0; i < 5; i++) {
+            assertRecord(records, i, i + 6);
+        }
+        SceneFile.Records newest = records.getNewest(2);
+        assertEquals(2, newest.count);
+        assertRecord(newest, 1, 10);
+    }
+
+    @Test
+    public void recordBeyondTheCountIsIgnored() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            writer.append(createPose(0), createScale(0), createYaw(0), createColor(0), 0);
+            writer.append(createPose(1), createScale(1), createYaw(1), createColor(1), 1);
+        }
+
+        // A process that died before the count was updated leaves the second record uncounted.
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(12);
+            randomAccessFile.write(new byte[]{1, 0, 0, 0});
+        }
+        SceneFile.Records records = SceneFile.read(file);
+        assertEquals(1, records.count);
+        assertRecord(records, 0, 0);
+    }
+
+    @Test
+    public void malformedFileIsStartedAnew() throws IOException {
+        File file = temporaryFolder.newFile("scene.bin");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.write(new byte[40]);
+        }
+        assertNull(SceneFile.read(file));
+        assertNull(SceneFile.read(new File(temporaryFolder.getRoot(), "missing.bin")));
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            assertEquals(0, writer.getCount());
+            writer.append(createPose(5), createScale(5), createYaw(5), createColor(5), 5);
+        }
+        assertRecord(SceneFile.read(file), 0, 5);
+    }
+
+    @Test
+    public void storeRestoresNewestAndSavesInOrder() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < 20; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+        }
+        final SceneStore store = new SceneStore(file);
+        FutureTask<SceneFile.Records> restore = new FutureTask<>(new Callable<SceneFile.Records>() {
+            @Override
+            public SceneFile.Records call() {
+                return store.restore(16);
+            }
+        });
+        store.getExecutor().execute(restore);
+        store.save(7, createPose(20), createScale(20), createYaw(20), createColor(20), 20);
+        store.close();
+        SceneFile.Records restored = restore.get(10, TimeUnit.SECONDS);
+        assertEquals(16, restored.count);
+        assertRecord(restored, 0, 4);
+
+        // The close runs after the save on the same thread, then the thread stops.
+        assertTrue(((ExecutorService) store.getExecutor()).awaitTermination(10, TimeUnit.SECONDS));
+        SceneFile.Records saved = SceneFile.read(file);
+        assertEquals(17, saved.count);
+        assertRecord(saved, 16, 20);
+    }
+
+    @Test
+    public void storeUpdatesAndRemovesTheRecordsOfItsObjects() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < 3; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+        }
+        final SceneStore store = new SceneStore(file);
+        FutureTask<SceneFile.Records> restore = new FutureTask<>(new Callable<SceneFile.Records>() {
+            @Override
+            public SceneFile.Records call() {
+                return store.restore(16);
+            }
+        });
+        store.getExecutor().execute(restore);
+        SceneFile.Records restored = restore.get(10, TimeUnit.SECONDS);
+        store.keep(100, restored.ids[1]);
+        store.save(101, createPose(3), createScale(3), createYaw(3), createColor(3), 3);
+        store.update(100, createPose(5), createScale(5), createYaw(5));
+        store.remove(101);
+
+        // A handle without a record, such as one whose save failed, is ignored.
+        store.update(102, createPose(6), createScale(6), createYaw(6));
+        store.remove(102);
+        store.close();
+
+        assertTrue(((ExecutorService) store.getExecutor()).awaitTermination(10, TimeUnit.SECONDS));
+        SceneFile.Records saved = SceneFile.read(file);
+        assertEquals(3, saved.count);
+        assertRecord(saved, 0, 0);
+        assertRecord(saved, 2, 2);
+        float[] pose = new float[SceneFile.POSE_SIZE];
+        System.arraycopy(saved.poses, SceneFile.POSE_SIZE, pose, 0, pose.length);
+        assertArrayEquals(createPose(5), pose, 0.0f);
+        assertEquals(createYaw(5), saved.yaws[1], 0.0f);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void restoreThousandsOfObjects() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "scene.bin");
+        int count = 5000;
+        try (SceneFile.Writer writer = new SceneFile.Writer(file)) {
+            for (int i = 0; i < count; i++) {
+                writer.append(createPose(i), createScale(i), createYaw(i), createColor(i), i);
+            }
+        }
+        SceneFile.read(file);
+        long start = System.nanoTime();
+        SceneFile.Records records = SceneFile.read(file);
+        long micros = (System.nanoTime() - start) / 1000L;
+        assertEquals(count, records.count);
+        System.out.println("Scene restore of " + count + " objects: " + micros + " us");
+    }
+
+    private static float[] createPose(int index) {
+        return new float[]{index, index * 0.5f, -index, 0.0f, (float) Math.sin(index), 0.0f, (float) Math.cos(index)};
+    }
+
+    private static float createScale(int index) {
+        return 1.0f + index * 0.25f;
+    }
+
+    private static float createYaw(int index) {
+        return index * 15.0f - 90.0f;
+    }
+
+    private static float[] createColor(int index) {
+        return new float[]{index % 256, 133.0f, 244.0f, 255.0f};
+    }
+
+    private static void assertRecord(SceneFile.Records records, int record, int index) {
+        float[] pose = new float[SceneFile.POSE_SIZE];
+        float[] color = new float[SceneFile.COLOR_SIZE];
+        System.arraycopy(records.poses, record * SceneFile.POSE_SIZE, pose, 0, pose.length);
+        System.arraycopy(records.colors, record * SceneFile.COLOR_SIZE, color, 0, color.length);
+        assertArrayEquals(createPose(index), pose, 0.0f);
+        assertEquals(createScale(index), records.scales[record], 0.0f);
+        assertEquals(createYaw(index), records.yaws[record], 0.0f);
+        assertArrayEquals(createColor(index), color, 0.0f);
+        assertEquals(index, records.modelIds[record]);
+    }
+}
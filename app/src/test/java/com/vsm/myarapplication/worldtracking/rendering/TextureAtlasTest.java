@@ -0,0 +1,93 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests of label atlas packing and its region table.
+ */
+public class TextureAtlasTest {
+    private static final int[] WIDTHS = {120, 90, 200, 64};
+
+    private static final int[] HEIGHTS = {40, 40, 60, 32};
+
+    private static final int[] COLORS = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFFFF};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void packedAtlasIsPowerOfTwo() {
+        TextureAtlas atlas = packSolidImages();
+        assertEquals(0, atlas.texture.width & (atlas.texture.width - 1));
+        assertEquals(0, atlas.texture.height & (atlas.texture.height - 1));
+        assertEquals(WIDTHS.length * TextureAtlas.REGION_SIZE, atlas.regions.length);
+    }
+
+    @Test
+    public void regionsKeepImageSizeAndDoNotOverlap() {
+        TextureAtlas atlas = packSolidImages();
+        int width = atlas.texture.width;
+        int height = atlas.texture.height;
+        for (int i = 0; i < WIDTHS.length; i++) {
+            int base = i * TextureAtlas.REGION_SIZE;
+            assertEquals(WIDTHS[i], Math.round((atlas.regions[base + 2] - atlas.regions[base]) * width));
+            assertEquals(HEIGHTS[i], Math.round((atlas.regions[base + 3] - atlas.regions[base + 1]) * height));
+            for (int j = 0; j < i; j++) {
+                int other = j * TextureAtlas.REGION_SIZE;
+                boolean isSeparate = atlas.regions[base] >= atlas.regions[other + 2]
+                        || atlas.regions[base + 2] <= atlas.regions[other]
+                        || atlas.regions[base + 1] >= atlas.regions[other + 3]
+                        || atlas.regions[base + 3] <= atlas.regions[other + 1];
+                assertTrue(isSeparate);
+            }
+        }
+    }
+
+    @Test
+    public void paddingRepeatsTheImageEdge() {
+        TextureAtlas atlas = packSolidImages();
+        int width = atlas.texture.width;
+        for (int i = 0; i < WIDTHS.length; i++) {
+            int base = i * TextureAtlas.REGION_SIZE;
+            int left = Math.round(atlas.regions[base] * width) - TextureAtlas.PADDING;
+            int top = Math.round(atlas.regions[base + 1] * atlas.texture.height) - TextureAtlas.PADDING;
+
+            // The top left corner of the border has the color of the image.
+            assertEquals(toRgb565(COLORS[i]), atlas.texture.levels[0].getShort((top * width + left) * 2));
+        }
+    }
+
+    @Test
+    public void regionsRoundTrip() throws IOException {
+        float[] regions = packSolidImages().regions;
+        File file = temporaryFolder.newFile("labels.uv");
+        TextureAtlas.writeRegions(regions, 42L, file);
+        assertArrayEquals(regions, TextureAtlas.readRegions(file, 42L), 0.0f);
+        assertNull(TextureAtlas.readRegions(file, 43L));
+        assertNull(TextureAtlas.readRegions(new File(temporaryFolder.getRoot(), "missing.uv"), 42L));
+    }
+
+    private static TextureAtlas packSolidImages() {
+        int[][] images = new int[WIDTHS.length][];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new int[WIDTHS[i] * HEIGHTS[i]];
+            Arrays.fill(images[i], COLORS[i]);
+        }
+        return TextureAtlas.pack(images, WIDTHS, HEIGHTS);
+    }
+
+    private static short toRgb565(int color) {
+        return (short) ((((color >> 16) & 0xFF) >> 3) << 11 | (((color >> 8) & 0xFF) >> 2) << 5 | (color & 0xFF) >> 3);
+    }
+}
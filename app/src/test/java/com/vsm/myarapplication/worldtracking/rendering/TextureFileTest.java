@@ -0,0 +1,168 @@
+package com.vsm.myarapplication.worldtracking.rendering;
+
+import com.vsm.myarapplication.Benchmark;
+import com.vsm.myarapplication.common.CountingGlApi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * JVM tests and benchmark of the mip chain builder and the texture cache container.
+ */
+public class TextureFileTest {
+    private static final long KEY = TextureFile.createKey(1234L, "AR_logo.png RGB565");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mipChainGoesDownToOnePixel() {
+        TextureData texture = TextureData.fromArgb(new int[12 * 5], 12, 5);
+
+        // 12 * 5, 6 * 2, 3 * 1, 1 * 1.
+        assertEquals(4, texture.levels.length);
+        assertEquals(12 * 5 * 2, texture.levels[0].remaining());
+        assertEquals(6 * 2 * 2, texture.levels[1].remaining());
+        assertEquals(3 * 2, texture.levels[2].remaining());
+        assertEquals(2, texture.levels[3].remaining());
+        assertEquals((60 + 12 + 3 + 1) * 2, texture.getByteCount());
+    }
+
+    @Test
+    public void mipLevelsAreBoxFiltered() {
+        // A 2 * 2 checkerboard of white and black averages to mid gray.
+        int[] pixels = {0xFFFFFFFF, 0xFF000000, 0xFF000000, 0xFFFFFFFF};
+        TextureData texture = TextureData.fromArgb(pixels, 2, 2);
+        assertEquals(0xFFFF, texture.levels[0].getShort(0) & 0xFFFF);
+        assertEquals(0, texture.levels[0].getShort(2));
+
+        // 128 of 255 is 16 of 31 for red and blue and 32 of 63 for green.
+        assertEquals((16 << 11) | (32 << 5) | 16, texture.levels[1].getShort(0) & 0xFFFF);
+    }
+
+    @Test
+    public void writeAndMapRoundTrip() throws IOException {
+        TextureData texture = TextureData.fromArgb(createPattern(37, 20), 37, 20);
+        File file = temporaryFolder.newFile("round_trip.tex");
+        TextureFile.write(texture, KEY, file);
+        assertEquals(TextureFile.HEADER_SIZE + texture.getByteCount(), file.length());
+
+        TextureData loaded = TextureFile.read(file, KEY);
+        assertNotNull(loaded);
+        assertEquals(texture.width, loaded.width);
+        assertEquals(texture.height, loaded.height);
+        assertEquals(TextureData.FORMAT_RGB565, loaded.format);
+        assertEquals(texture.levels.length, loaded.levels.length);
+        for (int level = 0; level < texture.levels.length; level++) {
+            assertEquals(texture.levels[level], loaded.levels[level]);
+        }
+    }
+
+    @Test
+    public void compressedLevelsRoundTrip() throws IOException {
+        int width = 9;
+        int height = 4;
+        int levelCount = TextureData.getLevelCount(width, height);
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            int byteCount = TextureData.getLevelByteCount(TextureData.FORMAT_ETC1,
+                    TextureData.getLevelSize(width, level), TextureData.getLevelSize(height, level));
+            levels[level] = ByteBuffer.allocate(byteCount);
+            for (int i = 0; i < byteCount; i++) {
+                levels[level].put((byte) (level * 31 + i));
+            }
+            levels[level].flip();
+        }
+        TextureData texture = new TextureData(width, height, TextureData.FORMAT_ETC1, levels);
+        File file = temporaryFolder.newFile("etc1.tex");
+        TextureFile.write(texture, KEY, file);
+
+        TextureData loaded = TextureFile.read(file, KEY);
+        assertNotNull(loaded);
+        assertEquals(TextureData.FORMAT_ETC1, loaded.format);
+        assertEquals(3 * 1 * 8, loaded.levels[0].remaining());
+        for (int level = 0; level < levelCount; level++) {
+            assertEquals(levels[level], loaded.levels[level]);
+        }
+    }
+
+    @Test
+    public void staleOrMalformedFileIsIgnored() throws IOException {
+        File file = temporaryFolder.newFile("stale.tex");
+        TextureFile.write(TextureData.fromArgb(createPattern(8, 8), 8, 8), KEY, file);
+        assertNull(TextureFile.read(file, TextureFile.createKey(1235L, "AR_logo.png RGB565")));
+        assertNull(TextureFile.read(new File(temporaryFolder.getRoot(), "missing.tex"), KEY));
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(file.length() - 1);
+        }
+        assertNull(TextureFile.read(file, KEY));
+    }
+
+    @Test
+    public void keyDependsOnStampAndSource() {
+        assertEquals(KEY, TextureFile.createKey(1234L, "AR_logo.png RGB565"));
+        assertNotEquals(KEY, TextureFile.createKey(1234L, "AR_logo.png ETC1"));
+        assertNotEquals(KEY, TextureFile.createKey(4321L, "AR_logo.png RGB565"));
+    }
+
+    @Test
+    public void uploadIssuesOneCommandPerLevel() {
+        TextureData texture = TextureData.fromArgb(createPattern(16, 16), 16, 16);
+        CountingGlApi gl = new CountingGlApi();
+        texture.upload(gl);
+
+        // Five levels and the unpack alignment before and after.
+        assertEquals(5 + 2, gl.getCallCount());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void compareMipChainBuildAndCachedLoad() throws IOException {
+        int size = 1024;
+        int[] pixels = createPattern(size, size);
+        File file = temporaryFolder.newFile("benchmark.tex");
+        TextureFile.write(TextureData.fromArgb(pixels, size, size), KEY, file);
+
+        int rounds = 10;
+        long buildNanos = 0;
+        long readNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            TextureData built = TextureData.fromArgb(pixels, size, size);
+            buildNanos += System.nanoTime() - start;
+            assertEquals(size, built.width);
+
+            start = System.nanoTime();
+            TextureData loaded = TextureFile.read(file, KEY);
+            readNanos += System.nanoTime() - start;
+            assertNotNull(loaded);
+        }
+        System.out.println("Mip chain of " + size + " * " + size + " pixels: build " + buildNanos / rounds / 1000
+                + " us, mapped cache " + readNanos / rounds / 1000 + " us, " + size * size * 4 * 4 / 3 / 1024
+                + " KB as RGBA8888, " + TextureData.fromArgb(pixels, size, size).getByteCount() / 1024
+                + " KB as RGB565");
+    }
+
+    private static int[] createPattern(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = 0xFF000000 | ((x * 7) & 0xFF) << 16 | ((y * 13) & 0xFF) << 8 | ((x ^ y) & 0xFF);
+            }
+        }
+        return pixels;
+    }
+}